@@ -0,0 +1,315 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.costmodel;
+
+import java.util.Arrays;
+import at.unisalzburg.dbresearch.apted.costmodel.LabelIdCostModel;
+import at.unisalzburg.dbresearch.apted.node.Node;
+
+/**
+ * A cost model decorator that memoizes the rename costs of another label-id
+ * cost model. It is meant for cost models whose rename cost is expensive to
+ * compute, for example, the string edit distance between two labels, and
+ * which are called on the same pairs of labels many times.
+ *
+ * <p>The rename costs are stored in an open-addressing hash table keyed on
+ * pairs of label ids. The table starts small and grows up to a fixed
+ * capacity. When it is full, it is cleared and filled again. The label ids
+ * must be non-negative.
+ *
+ * <p>The deletion and insertion costs, and the label ids, are delegated to
+ * the decorated cost model.
+ *
+ * <p>A cost model with a cache is not thread-safe.
+ *
+ * @param <D> type of node data.
+ * @see LabelIdCostModel
+ */
+public class CachingRenameCostModel<D> implements LabelIdCostModel<D> {
+
+  /**
+   * Default maximum number of cached rename costs.
+   */
+  public static final int DEFAULT_CAPACITY = 1 << 20;
+
+  /**
+   * Marks an empty slot of the table. Not a valid key because label ids are
+   * non-negative.
+   */
+  private static final long EMPTY = -1L;
+
+  /**
+   * Number of slots of a new or cleared table, unless the capacity needs
+   * fewer.
+   */
+  private static final int INITIAL_SLOTS = 1 << 10;
+
+  /**
+   * The decorated cost model.
+   */
+  private LabelIdCostModel<D> costModel;
+
+  /**
+   * Keys of the table. A key holds the source label id in the upper and the
+   * destination label id in the lower 32 bits.
+   */
+  private long[] keys;
+
+  /**
+   * Cached rename costs, aligned with keys.
+   */
+  private float[] values;
+
+  /**
+   * Maximum number of entries in the table before it is cleared. At most
+   * half of the maximum number of slots.
+   */
+  private int capacity;
+
+  /**
+   * Number of slots the table grows to.
+   */
+  private int maxSlots;
+
+  /**
+   * Number of entries in the table.
+   */
+  private int entries;
+
+  /**
+   * Number of rename costs found in the table.
+   */
+  private long hits;
+
+  /**
+   * Number of rename costs computed by the decorated cost model.
+   */
+  private long misses;
+
+  /**
+   * Decorates a cost model with a cache of the default capacity.
+   *
+   * @param costModel the cost model to decorate.
+   */
+  public CachingRenameCostModel(LabelIdCostModel<D> costModel) {
+    this(costModel, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Decorates a cost model with a cache of the given capacity.
+   *
+   * @param costModel the cost model to decorate.
+   * @param capacity maximum number of cached rename costs.
+   */
+  public CachingRenameCostModel(LabelIdCostModel<D> costModel, int capacity) {
+    if (capacity < 1 || capacity > 1 << 29) {
+      throw new IllegalArgumentException("Cache capacity out of range: " + capacity);
+    }
+    this.costModel = costModel;
+    this.capacity = capacity;
+    // Keep the load factor at most one half.
+    this.maxSlots = Integer.highestOneBit(capacity - 1 | 1) << 2;
+    allocate(Math.min(maxSlots, INITIAL_SLOTS));
+  }
+
+  /**
+   * Replaces the table with an empty one.
+   *
+   * @param slots number of slots, a power of two.
+   */
+  private void allocate(int slots) {
+    keys = new long[slots];
+    values = new float[slots];
+    Arrays.fill(keys, EMPTY);
+  }
+
+  /**
+   * Returns the decorated cost model.
+   *
+   * @return the decorated cost model.
+   */
+  public LabelIdCostModel<D> getCostModel() {
+    return costModel;
+  }
+
+  /**
+   * Returns the number of rename costs that were found in the cache.
+   *
+   * @return number of cache hits.
+   */
+  public long getHits() {
+    return hits;
+  }
+
+  /**
+   * Returns the number of rename costs that were computed by the decorated
+   * cost model.
+   *
+   * @return number of cache misses.
+   */
+  public long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Removes all cached rename costs and resets the counters. The table
+   * shrinks to its initial size.
+   */
+  public void clear() {
+    allocate(Math.min(maxSlots, INITIAL_SLOTS));
+    entries = 0;
+    hits = 0L;
+    misses = 0L;
+  }
+
+  /**
+   * Calculates the cost of deleting a node.
+   *
+   * @param n the node considered to be deleted.
+   * @return the cost of deleting node n given by the decorated cost model.
+   */
+  public float del(Node<D> n) {
+    return costModel.del(n);
+  }
+
+  /**
+   * Calculates the cost of inserting a node.
+   *
+   * @param n the node considered to be inserted.
+   * @return the cost of inserting node n given by the decorated cost model.
+   */
+  public float ins(Node<D> n) {
+    return costModel.ins(n);
+  }
+
+  /**
+   * Calculates the cost of renaming (mapping) two nodes from their label ids.
+   *
+   * @param n1 the source node of rename.
+   * @param n2 the destination node of rename.
+   * @return the cost of renaming (mapping) node n1 to n2.
+   */
+  public float ren(Node<D> n1, Node<D> n2) {
+    return ren(costModel.labelId(n1), costModel.labelId(n2));
+  }
+
+  /**
+   * Returns the label id of a node given by the decorated cost model.
+   *
+   * @param n a node.
+   * @return the label id of node n.
+   */
+  public int labelId(Node<D> n) {
+    return costModel.labelId(n);
+  }
+
+  /**
+   * Returns the cached rename cost of two label ids. Computes and caches it
+   * with the decorated cost model if it is not cached.
+   *
+   * @param l1 the label id of the source node of rename.
+   * @param l2 the label id of the destination node of rename.
+   * @return the cost of renaming (mapping) label l1 to l2.
+   */
+  public float ren(int l1, int l2) {
+    long key = (long)l1 << 32 | (l2 & 0xFFFFFFFFL);
+    int mask = keys.length - 1;
+    int slot = hash(key) & mask;
+    while (keys[slot] != EMPTY) {
+      if (keys[slot] == key) {
+        hits++;
+        return values[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    misses++;
+    float cost = costModel.ren(l1, l2);
+    if (entries == capacity) {
+      // The table is full. Start over instead of evicting single entries.
+      Arrays.fill(keys, EMPTY);
+      entries = 0;
+      slot = hash(key) & mask;
+    } else if (entries >= keys.length >> 1) {
+      // Keep the load factor at most one half until the table has grown to
+      // its maximum size.
+      grow();
+      slot = findEmpty(key);
+    }
+    keys[slot] = key;
+    values[slot] = cost;
+    entries++;
+    return cost;
+  }
+
+  /**
+   * Doubles the number of slots and moves the entries to the new table.
+   */
+  private void grow() {
+    long[] oldKeys = keys;
+    float[] oldValues = values;
+    allocate(keys.length << 1);
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != EMPTY) {
+        int slot = findEmpty(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  /**
+   * Returns the slot of a key that is not in the table.
+   *
+   * @param key a pair of label ids.
+   * @return the first empty slot of the probe sequence of the key.
+   */
+  private int findEmpty(long key) {
+    int mask = keys.length - 1;
+    int slot = hash(key) & mask;
+    while (keys[slot] != EMPTY) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /**
+   * Spreads the bits of a key over the lower bits of the slot index.
+   *
+   * @param key a pair of label ids.
+   * @return hash of the key.
+   */
+  private static int hash(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int)(h ^ (h >>> 32));
+  }
+
+  /**
+   * Says if the decorated cost model is symmetric.
+   *
+   * @return {@code true} if the decorated cost model is symmetric.
+   */
+  public boolean isSymmetric() {
+    return costModel.isSymmetric();
+  }
+}
@@ -64,4 +64,17 @@ public interface CostModel<D> {
    * @return the cost of renaming (mapping) node n1 to n2.
    */
   public float ren(Node<D> n1, Node<D> n2);
+
+  /**
+   * Says if the cost model is symmetric, that is, if deleting a node costs
+   * as much as inserting it, and renaming n1 to n2 costs as much as renaming
+   * n2 to n1. Then the tree edit distance is symmetric too, which is used
+   * when computing the distances between all pairs of trees.
+   *
+   * @return {@code true} if the cost model is symmetric, {@code false} by
+   *         default.
+   */
+  public default boolean isSymmetric() {
+    return false;
+  }
 }
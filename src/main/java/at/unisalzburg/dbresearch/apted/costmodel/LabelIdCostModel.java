@@ -0,0 +1,63 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.costmodel;
+
+import at.unisalzburg.dbresearch.apted.costmodel.CostModel;
+import at.unisalzburg.dbresearch.apted.node.LabelDictionary;
+import at.unisalzburg.dbresearch.apted.node.Node;
+
+/**
+ * A cost model whose rename cost depends only on integer label ids. The ids
+ * are assigned to the nodes once, when the trees are indexed, and the
+ * algorithm computes the rename costs from arrays of ids instead of
+ * dereferencing the node data of every pair of nodes.
+ *
+ * <p>The rename cost of two nodes must be equal to the rename cost of their
+ * label ids.
+ *
+ * @param <D> type of node data.
+ * @see LabelDictionary
+ * @see node.NodeIndexer
+ */
+public interface LabelIdCostModel<D> extends CostModel<D> {
+
+  /**
+   * Returns the integer id of the label of a node. Nodes with equal labels
+   * must get equal ids.
+   *
+   * @param n a node.
+   * @return the label id of node n.
+   */
+  public int labelId(Node<D> n);
+
+  /**
+   * Calculates the cost of renaming a node with label id {@code l1} to a node
+   * with label id {@code l2}.
+   *
+   * @param l1 the label id of the source node of rename.
+   * @param l2 the label id of the destination node of rename.
+   * @return the cost of renaming (mapping) label l1 to l2.
+   */
+  public float ren(int l1, int l2);
+}
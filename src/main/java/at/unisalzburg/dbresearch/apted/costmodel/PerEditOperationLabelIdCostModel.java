@@ -0,0 +1,164 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.costmodel;
+
+import at.unisalzburg.dbresearch.apted.costmodel.LabelIdCostModel;
+import at.unisalzburg.dbresearch.apted.node.LabelDictionary;
+import at.unisalzburg.dbresearch.apted.node.Node;
+import at.unisalzburg.dbresearch.apted.node.StringNodeData;
+
+/**
+ * This is a cost model defined on {@link node.StringNodeData} with a fixed cost
+ * per edit operation, where string labels are encoded with integer ids. It
+ * gives the same costs as {@link PerEditOperationStringNodeDataCostModel}, but
+ * renames are computed by comparing label ids.
+ *
+ * <p>All trees compared with one instance of this cost model share its label
+ * dictionary.
+ *
+ * @see PerEditOperationStringNodeDataCostModel
+ * @see LabelDictionary
+ */
+public class PerEditOperationLabelIdCostModel implements LabelIdCostModel<StringNodeData> {
+
+  /**
+   * Stores the cost of deleting a node.
+   */
+  private float delCost;
+
+  /**
+   * Stores the cost of inserting a node.
+   */
+  private float insCost;
+
+  /**
+   * Stores the cost of mapping two nodes (renaming their labels).
+   */
+  private float renCost;
+
+  /**
+   * Dictionary encoding the labels of all nodes seen by this cost model.
+   */
+  private LabelDictionary dictionary;
+
+  /**
+   * Initialises the cost model with the passed edit operation costs and an
+   * empty label dictionary.
+   *
+   * @param delCost deletion cost.
+   * @param insCost insertion cost.
+   * @param renCost rename cost.
+   */
+  public PerEditOperationLabelIdCostModel(float delCost, float insCost, float renCost) {
+    this(delCost, insCost, renCost, new LabelDictionary());
+  }
+
+  /**
+   * Initialises the cost model with the passed edit operation costs and label
+   * dictionary.
+   *
+   * @param delCost deletion cost.
+   * @param insCost insertion cost.
+   * @param renCost rename cost.
+   * @param dictionary label dictionary to encode the labels with.
+   */
+  public PerEditOperationLabelIdCostModel(float delCost, float insCost, float renCost, LabelDictionary dictionary) {
+    this.delCost = delCost;
+    this.insCost = insCost;
+    this.renCost = renCost;
+    this.dictionary = dictionary;
+  }
+
+  /**
+   * Returns the label dictionary of this cost model.
+   *
+   * @return label dictionary.
+   */
+  public LabelDictionary getLabelDictionary() {
+    return dictionary;
+  }
+
+  /**
+   * Calculates the cost of deleting a node.
+   *
+   * @param n the node considered to be deleted.
+   * @return the cost of deleting node n.
+   */
+  public float del(Node<StringNodeData> n) {
+    return delCost;
+  }
+
+  /**
+   * Calculates the cost of inserting a node.
+   *
+   * @param n the node considered to be inserted.
+   * @return the cost of inserting node n.
+   */
+  public float ins(Node<StringNodeData> n) {
+    return insCost;
+  }
+
+  /**
+   * Calculates the cost of renaming the string labels of two nodes.
+   *
+   * @param n1 the source node of rename.
+   * @param n2 the destination node of rename.
+   * @return the cost of renaming node n1 to n2.
+   */
+  public float ren(Node<StringNodeData> n1, Node<StringNodeData> n2) {
+    return (n1.getNodeData().getLabel().equals(n2.getNodeData().getLabel())) ? 0.0f : renCost;
+  }
+
+  /**
+   * Returns the id of the node's label. Stores the label in the dictionary if
+   * it has not been seen yet.
+   *
+   * @param n a node.
+   * @return the label id of node n.
+   */
+  public int labelId(Node<StringNodeData> n) {
+    return dictionary.store(n.getNodeData().getLabel());
+  }
+
+  /**
+   * Calculates the cost of renaming label id {@code l1} to label id
+   * {@code l2}.
+   *
+   * @param l1 the label id of the source node of rename.
+   * @param l2 the label id of the destination node of rename.
+   * @return the cost of renaming label l1 to l2.
+   */
+  public float ren(int l1, int l2) {
+    return l1 == l2 ? 0.0f : renCost;
+  }
+
+  /**
+   * Says if the cost model is symmetric.
+   *
+   * @return {@code true} if the deletion and insertion costs are equal.
+   */
+  public boolean isSymmetric() {
+    return delCost == insCost;
+  }
+}
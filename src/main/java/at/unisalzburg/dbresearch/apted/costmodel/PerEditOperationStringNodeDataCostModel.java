@@ -91,4 +91,13 @@ public class PerEditOperationStringNodeDataCostModel implements CostModel<String
   public float ren(Node<StringNodeData> n1, Node<StringNodeData> n2) {
     return (n1.getNodeData().getLabel().equals(n2.getNodeData().getLabel())) ? 0.0f : renCost;
   }
+
+  /**
+   * Says if the cost model is symmetric.
+   *
+   * @return {@code true} if the deletion and insertion costs are equal.
+   */
+  public boolean isSymmetric() {
+    return delCost == insCost;
+  }
 }
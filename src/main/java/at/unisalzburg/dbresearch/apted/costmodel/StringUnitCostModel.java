@@ -32,9 +32,8 @@ import at.unisalzburg.dbresearch.apted.node.StringNodeData;
  *
  * @see CostModel
  * @see StringNodeData
+ * @see StringUnitLabelIdCostModel
  */
- // TODO: Use a label dictionary to encode string labels with integers for
- //       faster rename cost computation.
 public class StringUnitCostModel implements CostModel<StringNodeData> {
 
   /**
@@ -68,4 +67,13 @@ public class StringUnitCostModel implements CostModel<StringNodeData> {
   public float ren(Node<StringNodeData> n1, Node<StringNodeData> n2) {
     return (n1.getNodeData().getLabel().equals(n2.getNodeData().getLabel())) ? 0.0f : 1.0f;
   }
+
+  /**
+   * Says if the cost model is symmetric.
+   *
+   * @return {@code true} - all costs are symmetric.
+   */
+  public boolean isSymmetric() {
+    return true;
+  }
 }
@@ -0,0 +1,137 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.costmodel;
+
+import at.unisalzburg.dbresearch.apted.costmodel.LabelIdCostModel;
+import at.unisalzburg.dbresearch.apted.node.LabelDictionary;
+import at.unisalzburg.dbresearch.apted.node.Node;
+import at.unisalzburg.dbresearch.apted.node.StringNodeData;
+
+/**
+ * This is a unit-cost model defined on string labels that are encoded with
+ * integer ids. It gives the same costs as {@link StringUnitCostModel}, but
+ * renames are computed by comparing label ids.
+ *
+ * <p>All trees compared with one instance of this cost model share its label
+ * dictionary.
+ *
+ * @see StringUnitCostModel
+ * @see LabelDictionary
+ */
+public class StringUnitLabelIdCostModel implements LabelIdCostModel<StringNodeData> {
+
+  /**
+   * Dictionary encoding the labels of all nodes seen by this cost model.
+   */
+  private LabelDictionary dictionary;
+
+  /**
+   * Initialises the cost model with an empty label dictionary.
+   */
+  public StringUnitLabelIdCostModel() {
+    this(new LabelDictionary());
+  }
+
+  /**
+   * Initialises the cost model with the given label dictionary.
+   *
+   * @param dictionary label dictionary to encode the labels with.
+   */
+  public StringUnitLabelIdCostModel(LabelDictionary dictionary) {
+    this.dictionary = dictionary;
+  }
+
+  /**
+   * Returns the label dictionary of this cost model.
+   *
+   * @return label dictionary.
+   */
+  public LabelDictionary getLabelDictionary() {
+    return dictionary;
+  }
+
+  /**
+   * Calculates the cost of deleting a node.
+   *
+   * @param n a node considered to be deleted.
+   * @return {@code 1} - a fixed cost of deleting a node.
+   */
+  public float del(Node<StringNodeData> n) {
+    return 1.0f;
+  }
+
+  /**
+   * Calculates the cost of inserting a node.
+   *
+   * @param n a node considered to be inserted.
+   * @return {@code 1} - a fixed cost of inserting a node.
+   */
+  public float ins(Node<StringNodeData> n) {
+    return 1.0f;
+  }
+
+  /**
+   * Calculates the cost of renaming the label of the source node to the label
+   * of the destination node.
+   *
+   * @param n1 a source node for rename.
+   * @param n2 a destination node for rename.
+   * @return {@code 1} if labels of renamed nodes are not equal, and {@code 0} otherwise.
+   */
+  public float ren(Node<StringNodeData> n1, Node<StringNodeData> n2) {
+    return (n1.getNodeData().getLabel().equals(n2.getNodeData().getLabel())) ? 0.0f : 1.0f;
+  }
+
+  /**
+   * Returns the id of the node's label. Stores the label in the dictionary if
+   * it has not been seen yet.
+   *
+   * @param n a node.
+   * @return the label id of node n.
+   */
+  public int labelId(Node<StringNodeData> n) {
+    return dictionary.store(n.getNodeData().getLabel());
+  }
+
+  /**
+   * Calculates the cost of renaming label id {@code l1} to label id
+   * {@code l2}.
+   *
+   * @param l1 the label id of a source node for rename.
+   * @param l2 the label id of a destination node for rename.
+   * @return {@code 1} if the label ids are not equal, and {@code 0} otherwise.
+   */
+  public float ren(int l1, int l2) {
+    return l1 == l2 ? 0.0f : 1.0f;
+  }
+
+  /**
+   * Says if the cost model is symmetric.
+   *
+   * @return {@code true} - all costs are symmetric.
+   */
+  public boolean isSymmetric() {
+    return true;
+  }
+}
@@ -23,13 +23,21 @@
 
 package at.unisalzburg.dbresearch.apted.distance;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
 import at.unisalzburg.dbresearch.apted.node.Node;
 import at.unisalzburg.dbresearch.apted.node.NodeIndexer;
 import at.unisalzburg.dbresearch.apted.costmodel.CostModel;
+import at.unisalzburg.dbresearch.apted.costmodel.LabelIdCostModel;
 
 /**
  * Implements APTED algorithm [1,2].
@@ -62,17 +70,23 @@ public class APTED<C extends CostModel, D> {
   /**
    * Identifier of left path type = {@value LEFT};
    */
-  private static final byte LEFT = 0;
+  static final byte LEFT = 0;
 
   /**
    * Identifier of right path type = {@value RIGHT};
    */
-  private static final byte RIGHT = 1;
+  static final byte RIGHT = 1;
 
   /**
    * Identifier of inner path type = {@value INNER};
    */
-  private static final byte INNER = 2;
+  static final byte INNER = 2;
+
+  /**
+   * Added to the path type by {@link #strategyPath} for paths in the
+   * destination tree = {@value PATH_IN_DESTINATION}.
+   */
+  static final int PATH_IN_DESTINATION = 4;
 
   /**
    * Indexer of the source tree.
@@ -102,7 +116,7 @@ public class APTED<C extends CostModel, D> {
    * The distance matrix [1, Sections 3.4,8.2,8.3]. Used to store intermediate
    * distances between pairs of subtrees.
    */
-  private float delta[][];
+  private DeltaMatrix delta;
 
   /**
    * One of distance arrays to store intermediate distances in spfA.
@@ -138,13 +152,187 @@ public class APTED<C extends CostModel, D> {
    */
   private C costModel;
 
+  /**
+   * The cost model as a {@link LabelIdCostModel} if it is one, {@code null}
+   * otherwise. If set, rename costs are computed from the label ids stored
+   * by the node indexers.
+   */
+  private LabelIdCostModel labelCostModel;
+
+  /**
+   * Maximum number of cells of the rename matrix. If the number of distinct
+   * labels in the source tree times the number of distinct labels in the
+   * destination tree is larger, the rename costs are computed by the cost
+   * model on every call.
+   */
+  public static final int RENAME_MATRIX_MAX_CELLS = 1 << 16;
+
+  /**
+   * Rename costs between the distinct labels of the source (rows) and
+   * destination (columns) trees in row-major order, or {@code null} if the
+   * rename costs are computed by the cost model. Used only with a
+   * {@link LabelIdCostModel}.
+   */
+  private float[] renameMatrix;
+
+  /**
+   * Number of columns of the rename matrix.
+   */
+  private int renameMatrixCols;
+
+  /**
+   * Arrays reused across distance computations.
+   */
+  private Workspace workspace;
+
+  /**
+   * The pool that computes independent subproblems in parallel, or
+   * {@code null} if the distance is computed sequentially.
+   */
+  private ForkJoinPool pool;
+
+  /**
+   * Workspaces of the fork-join tasks, reused across tasks and computations.
+   * Shared by the algorithm objects of the tasks. {@code null} if the
+   * distance is computed sequentially.
+   */
+  private WorkerWorkspaces workerWorkspaces;
+
+  /**
+   * Minimum number of subtree pairs of a subproblem, that is, the product of
+   * its subtree sizes, to decompose it in parallel. Also the minimum number
+   * of cells of a forestdist array to fill it in in parallel.
+   */
+  private long parallelThreshold;
+
+  /**
+   * Number of rows and columns of a tile of the forestdist array that is
+   * filled in by one task in the wavefront order.
+   */
+  static final int WAVEFRONT_TILE_SIZE = 64;
+
+  /**
+   * Mask of the row numbers at which the cancellation token is checked
+   * inside the single-path functions and the strategy computation, that is,
+   * every 64 rows.
+   */
+  static final int CANCELLATION_CHECK_MASK = 63;
+
+  /**
+   * Token that stops the current computation, or {@code null}.
+   */
+  private CancellationToken cancellation;
+
+  /**
+   * The current computation stops as soon as the distance is known to exceed
+   * this threshold. Infinite if the distance is computed exactly.
+   */
+  private float threshold = Float.POSITIVE_INFINITY;
+
+  /**
+   * Lower bound of the distance between the current input trees, computed
+   * when they are initialised with a finite threshold.
+   */
+  private float lowerBound;
+
+  /**
+   * Minimum deletion cost of the nodes of the source tree, computed with the
+   * lower bound.
+   */
+  private float minDelCost;
+
+  /**
+   * Minimum insertion cost of the nodes of the destination tree, computed
+   * with the lower bound.
+   */
+  private float minInsCost;
+
   /**
    * Constructs the APTED algorithm object with the specified cost model.
    *
    * @param costModel cost model for edit operations.
    */
   public APTED(C costModel) {
+    this(costModel, new Workspace());
+  }
+
+  /**
+   * Constructs the APTED algorithm object with the specified cost model and
+   * workspace. The arrays held by the workspace are reused by consecutive
+   * distance computations of this object. The workspace also decides if the
+   * distance matrix is allocated off the heap.
+   *
+   * @param costModel cost model for edit operations.
+   * @param workspace workspace to take the arrays from.
+   */
+  public APTED(C costModel, Workspace workspace) {
+    this(costModel, workspace, null, 0L);
+  }
+
+  /**
+   * Constructs the APTED algorithm object that computes independent
+   * subproblems of a single distance computation in parallel.
+   *
+   * <p>When a pair of subtrees with at least {@code parallelThreshold} pairs
+   * of nodes is decomposed along its strategy path, the pairs of relevant
+   * subtrees hanging off the path are computed as fork-join tasks: one task
+   * for each pair with at least {@code parallelThreshold} pairs of nodes and
+   * one task for all the smaller pairs. The tasks write disjoint regions of
+   * the distance matrix. Each task has its own arrays, taken from a workspace
+   * of the worker thread that runs it. These workspaces are kept by this
+   * object and reused by later tasks and computations. The cost model is
+   * used concurrently and must be thread-safe.
+   *
+   * @param costModel cost model for edit operations.
+   * @param workspace workspace to take the arrays from.
+   * @param pool fork-join pool to compute the subproblems on, or
+   *             {@code null} to compute them sequentially.
+   * @param parallelThreshold minimum number of pairs of nodes of a pair of
+   *                          subtrees to decompose it in parallel, and
+   *                          minimum number of cells of a forestdist array
+   *                          to fill it in in parallel.
+   */
+  public APTED(C costModel, Workspace workspace, ForkJoinPool pool, long parallelThreshold) {
     this.costModel = costModel;
+    this.workspace = workspace;
+    this.pool = pool;
+    this.parallelThreshold = parallelThreshold;
+    if (costModel instanceof LabelIdCostModel) {
+      labelCostModel = (LabelIdCostModel)costModel;
+    }
+    if (pool != null) {
+      workerWorkspaces = new WorkerWorkspaces();
+    }
+  }
+
+  /**
+   * Constructs an algorithm object that computes subproblems of the distance
+   * computation of another object in parallel. It shares the distance matrix,
+   * the indices and the rename costs, but has its own current nodes and
+   * arrays.
+   *
+   * @param parent the algorithm object whose subproblems are computed.
+   * @param workspace workspace to take the arrays from.
+   */
+  private APTED(APTED<C, D> parent, Workspace workspace) {
+    costModel = parent.costModel;
+    labelCostModel = parent.labelCostModel;
+    this.workspace = workspace;
+    pool = parent.pool;
+    workerWorkspaces = parent.workerWorkspaces;
+    parallelThreshold = parent.parallelThreshold;
+    it1 = new NodeIndexer(parent.it1);
+    it2 = new NodeIndexer(parent.it2);
+    size1 = parent.size1;
+    size2 = parent.size2;
+    delta = parent.delta;
+    cancellation = parent.cancellation;
+    renameMatrix = parent.renameMatrix;
+    renameMatrixCols = parent.renameMatrixCols;
+    int maxSize = Math.max(size1, size2) + 1;
+    q = workspace.q(maxSize);
+    fn = workspace.fn(maxSize + 1);
+    ft = workspace.ft(maxSize + 1);
   }
 
   /**
@@ -158,19 +346,216 @@ public class APTED<C extends CostModel, D> {
   public float computeEditDistance(Node<D> t1, Node<D> t2) {
     // Index the nodes of both input trees.
     init(t1, t2);
+    return computeEditDistance();
+  }
+
+  /**
+   * Compute tree edit distance between two trees indexed in advance using
+   * APTED algorithm [1,2]. The indexers must have been created with a cost
+   * model that gives the same costs as the cost model of this object.
+   *
+   * <p>The indexers are not modified. An indexed tree can be compared to
+   * many other trees without indexing it again, also by algorithm objects
+   * that run concurrently.
+   *
+   * @param it1 node indexer of the source tree.
+   * @param it2 node indexer of the destination tree.
+   * @return tree edit distance.
+   */
+  public float computeEditDistance(NodeIndexer it1, NodeIndexer it2) {
+    init(it1, it2);
+    return computeEditDistance();
+  }
+
+  /**
+   * Compute tree edit distance between source and destination trees, unless
+   * the computation is cancelled by the given token.
+   *
+   * @param t1 source tree.
+   * @param t2 destination tree.
+   * @param cancellation token that stops the computation.
+   * @return tree edit distance.
+   * @throws ComputationCancelledException if the token is cancelled before
+   *         the distance is computed.
+   */
+  public float computeEditDistance(Node<D> t1, Node<D> t2, CancellationToken cancellation) {
+    init(t1, t2);
+    return computeEditDistance(cancellation);
+  }
+
+  /**
+   * Compute tree edit distance between two trees indexed in advance, unless
+   * the computation is cancelled by the given token.
+   *
+   * @param it1 node indexer of the source tree.
+   * @param it2 node indexer of the destination tree.
+   * @param cancellation token that stops the computation.
+   * @return tree edit distance.
+   * @throws ComputationCancelledException if the token is cancelled before
+   *         the distance is computed.
+   * @see #computeEditDistance(NodeIndexer, NodeIndexer)
+   */
+  public float computeEditDistance(NodeIndexer it1, NodeIndexer it2, CancellationToken cancellation) {
+    init(it1, it2);
+    return computeEditDistance(cancellation);
+  }
+
+  /**
+   * Compute tree edit distance between source and destination trees if it
+   * does not exceed the given threshold. Otherwise, the computation may stop
+   * early and return a lower bound of the distance that exceeds the
+   * threshold.
+   *
+   * <p>Before the distance is computed, it is bounded by the tree sizes, the
+   * minimum deletion and insertion costs and, for a
+   * {@link LabelIdCostModel}, the number of equal labels of the trees. If
+   * the final single-path function is spfL or spfR, the computation stops as
+   * soon as all distances of a row of its forest distance array exceed the
+   * threshold. The edit mapping cannot be computed after an early stop.
+   *
+   * @param t1 source tree.
+   * @param t2 destination tree.
+   * @param threshold the maximum distance of interest.
+   * @return tree edit distance if it is at most the threshold, a value
+   *         greater than the threshold otherwise.
+   */
+  public float computeEditDistance(Node<D> t1, Node<D> t2, float threshold) {
+    this.threshold = threshold;
+    try {
+      init(t1, t2);
+      return computeBoundedEditDistance();
+    } finally {
+      this.threshold = Float.POSITIVE_INFINITY;
+    }
+  }
+
+  /**
+   * Compute tree edit distance between two trees indexed in advance if it
+   * does not exceed the given threshold.
+   *
+   * @param it1 node indexer of the source tree.
+   * @param it2 node indexer of the destination tree.
+   * @param threshold the maximum distance of interest.
+   * @return tree edit distance if it is at most the threshold, a value
+   *         greater than the threshold otherwise.
+   * @see #computeEditDistance(Node, Node, float)
+   */
+  public float computeEditDistance(NodeIndexer it1, NodeIndexer it2, float threshold) {
+    this.threshold = threshold;
+    try {
+      init(it1, it2);
+      return computeBoundedEditDistance();
+    } finally {
+      this.threshold = Float.POSITIVE_INFINITY;
+    }
+  }
+
+  /**
+   * Computes the tree edit distance between the input trees initialised with
+   * a finite threshold, unless the lower bound or the distances of the
+   * single-path function of the input trees exceed the threshold.
+   *
+   * @return tree edit distance, or a lower bound greater than the threshold.
+   */
+  private float computeBoundedEditDistance() {
+    if (lowerBound > threshold) {
+      return lowerBound;
+    }
+    try {
+      return computeEditDistance();
+    } catch (ThresholdExceededException e) {
+      delta = null;
+      return e.bound;
+    }
+  }
+
+  /**
+   * Computes the tree edit distance between the initialised input trees with
+   * a cancellation token. A cancelled computation leaves no strategy and
+   * distances behind.
+   *
+   * @param cancellation token that stops the computation.
+   * @return tree edit distance.
+   * @throws ComputationCancelledException if the token is cancelled.
+   */
+  private float computeEditDistance(CancellationToken cancellation) {
+    this.cancellation = cancellation;
+    try {
+      return computeEditDistance();
+    } catch (ComputationCancelledException e) {
+      delta = null;
+      throw e;
+    } finally {
+      this.cancellation = null;
+    }
+  }
+
+  /**
+   * Computes the tree edit distance between the initialised input trees.
+   *
+   * @return tree edit distance.
+   */
+  private float computeEditDistance() {
     // Determine the optimal strategy for the distance computation.
     // Use the heuristic from [2, Section 5.3].
     if (it1.lchl < it1.rchl) {
-      delta = computeOptStrategy_postL(it1, it2);
+      delta = workspace.delta(it1.getSize(), it2.getSize());
+      computeOptStrategy_postL(workspace, it1, it2, delta, null, cancellation);
     } else {
-      delta = computeOptStrategy_postR(it1, it2);
+      delta = workspace.delta(it1.getSize(), it2.getSize());
+      computeOptStrategy_postR(workspace, it1, it2, delta, null, cancellation);
     }
     // Initialise structures for distance computation.
     tedInit();
     // Compute the distance.
+    // Run inside the pool such that the subproblems are forked to it. A task
+    // of the pool, e.g., of AllPairsAPTED, computes the distance itself
+    // instead of blocking on another task.
+    if (pool != null && !(ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == pool)) {
+      return pool.invoke(ForkJoinTask.adapt(() -> gted(it1, it2)));
+    }
     return gted(it1, it2);
   }
 
+  /**
+   * Estimates the number of subproblems and the peak memory of computing the
+   * tree edit distance between the source and destination trees, without
+   * computing it. The estimate is obtained from a run of the strategy
+   * computation that does not store the strategy, which takes time
+   * proportional to the product of the tree sizes and memory proportional to
+   * the size of the destination tree times the height of the source tree.
+   *
+   * @param t1 source tree.
+   * @param t2 destination tree.
+   * @return resource estimate.
+   * @see ResourceEstimate
+   */
+  public ResourceEstimate estimate(Node<D> t1, Node<D> t2) {
+    return estimate(new NodeIndexer(t1, costModel), new NodeIndexer(t2, costModel));
+  }
+
+  /**
+   * Estimates the number of subproblems and the peak memory of computing the
+   * tree edit distance between two indexed trees, without computing it.
+   *
+   * @param it1 node indexer of the source input tree.
+   * @param it2 node indexer of the destination input tree.
+   * @return resource estimate.
+   * @see #estimate(Node, Node)
+   */
+  public ResourceEstimate estimate(NodeIndexer it1, NodeIndexer it2) {
+    ResourceEstimate estimate = new ResourceEstimate();
+    double strategyCost;
+    // Use the same heuristic as computeEditDistance.
+    if (it1.lchl < it1.rchl) {
+      strategyCost = computeOptStrategy_postL(workspace, it1, it2, null, estimate, null);
+    } else {
+      strategyCost = computeOptStrategy_postR(workspace, it1, it2, null, estimate, null);
+    }
+    estimate.finish(it1, it2, strategyCost, workspace.isOffHeap((long)it1.getSize() * it2.getSize()));
+    return estimate;
+  }
+
   /**
    * This method is only for testing purspose. It computes TED with a fixed
    * path type in the strategy to trigger execution of a specific single-path
@@ -185,15 +570,15 @@ public class APTED<C extends CostModel, D> {
     // Index the nodes of both input trees.
     init(t1, t2);
     // Initialise delta array.
-    delta = new float[size1][size2];
+    delta = workspace.delta(size1, size2);
     // Fix a path type to trigger specific spf.
-    for (int i = 0; i < delta.length; i++) {
-      for (int j = 0; j < delta[i].length; j++) {
+    for (int i = 0; i < size1; i++) {
+      for (int j = 0; j < size2; j++) {
         // Fix path type.
         if (spfType == LEFT) {
-          delta[i][j] = it1.preL_to_lld(i) + 1;
+          delta.set(i, j, it1.preL_to_lld(i) + 1);
         } else if (spfType == RIGHT) {
-          delta[i][j] = it1.preL_to_rld(i) + 1;
+          delta.set(i, j, it1.preL_to_rld(i) + 1);
         }
       }
     }
@@ -212,8 +597,215 @@ public class APTED<C extends CostModel, D> {
   public void init(Node<D> t1, Node<D> t2) {
     it1 = new NodeIndexer(t1, costModel);
     it2 = new NodeIndexer(t2, costModel);
+    initIndexers();
+  }
+
+  /**
+   * Initialises the algorithm with node indexers of the input trees and
+   * stores input tree sizes. The indexers are shared, not modified.
+   *
+   * @param it1 node indexer of the source input tree.
+   * @param it2 node indexer of the destination input tree.
+   */
+  public void init(NodeIndexer it1, NodeIndexer it2) {
+    this.it1 = new NodeIndexer(it1);
+    this.it2 = new NodeIndexer(it2);
+    initIndexers();
+  }
+
+  /**
+   * Stores input tree sizes and prepares the rename costs after the node
+   * indexers are set.
+   */
+  private void initIndexers() {
+    // The distances of the previous input trees are not valid anymore.
+    delta = null;
     size1 = it1.getSize();
     size2 = it2.getSize();
+    renameMatrix = null;
+    // Without label ids, all pairs of nodes may be mapped for free.
+    int commonLabels = Math.min(size1, size2);
+    if (labelCostModel != null) {
+      commonLabels = initLabels();
+    }
+    if (threshold < Float.POSITIVE_INFINITY) {
+      lowerBound = computeLowerBound(commonLabels);
+    }
+  }
+
+  /**
+   * Computes a lower bound of the distance between the input trees.
+   *
+   * <p>Each node of the source tree is deleted or mapped, and each node of
+   * the destination tree is inserted or mapped. At most as many pairs of
+   * nodes as the common labels of the trees (counted with multiplicity) have
+   * equal labels. Only these may be mapped for free. The other mapped pairs
+   * cost at least the minimum rename cost of different labels, taken from
+   * the rename matrix, the other nodes at least the minimum deletion or
+   * insertion cost. The cost is linear in the number of mapped pairs of
+   * different labels, hence the bound is the minimum of the costs with none
+   * and with as many as possible of them.
+   *
+   * @param freePairs number of pairs of nodes that may be mapped for free.
+   * @return lower bound of the distance.
+   */
+  private float computeLowerBound(int freePairs) {
+    double minDel = Double.POSITIVE_INFINITY;
+    for (int i = 0; i < size1; i++) {
+      minDel = Math.min(minDel, it1.postL_to_delCost[i]);
+    }
+    double minIns = Double.POSITIVE_INFINITY;
+    for (int i = 0; i < size2; i++) {
+      minIns = Math.min(minIns, it2.postL_to_insCost[i]);
+    }
+    minDelCost = (float)minDel;
+    minInsCost = (float)minIns;
+    int pairs = Math.min(size1, size2);
+    // Minimum rename cost of the other pairs, unknown without the matrix.
+    double minRen = renameMatrix != null ? workspace.renameMatrix().minRenameCost() : 0;
+    // All other nodes are deleted or inserted.
+    double bound = (size1 - freePairs) * minDel + (size2 - freePairs) * minIns;
+    if (pairs > freePairs) {
+      // As many other pairs as possible are renamed.
+      bound = Math.min(bound, (size1 - pairs) * minDel + (size2 - pairs) * minIns + (pairs - freePairs) * minRen);
+    }
+    // Rounding to nearest may exceed the distance computed in float.
+    return TEDLowerBounds.roundDown(roundingTolerant(bound));
+  }
+
+  /**
+   * Reduces a lower bound of the distance by the rounding error of the
+   * distance computed in float. The distances are sums of at most as many
+   * costs as there are nodes in the input trees, and so are the float
+   * distances in the bound. Each sum is off by at most its number of terms
+   * times the relative precision of float.
+   *
+   * @param bound lower bound of the distance, possibly of float values.
+   * @return lower bound of the distance computed in float.
+   */
+  private double roundingTolerant(double bound) {
+    return bound * (1 - 2 * (size1 + size2) * 0x1p-24);
+  }
+
+  /**
+   * Sorts the label ids of the input trees in workspace arrays, counts their
+   * common labels and precomputes the rename costs between all pairs of
+   * distinct labels if their number does not exceed
+   * {@link #RENAME_MATRIX_MAX_CELLS}. The number of pairs is at most the
+   * number of node pairs, for which the rename costs are computed anyway.
+   * The matrix is taken from the workspace and computed only if the labels
+   * differ from the previous computation (see {@link RenameMatrix}).
+   *
+   * <p>The label arrays of the node indexers are replaced by arrays from the
+   * workspace with the row and column numbers of the matrix. The arrays of
+   * the original indexers are not modified.
+   *
+   * @return number of common labels of the input trees, with multiplicity.
+   */
+  private int initLabels() {
+    int[] labels1 = workspace.sortedLabels1(size1);
+    int[] labels2 = workspace.sortedLabels2(size2);
+    System.arraycopy(it1.preL_to_label, 0, labels1, 0, size1);
+    System.arraycopy(it2.preL_to_label, 0, labels2, 0, size2);
+    Arrays.sort(labels1, 0, size1);
+    Arrays.sort(labels2, 0, size2);
+    int commonLabels = commonLabels(labels1, size1, labels2, size2);
+    int rows = distinct(labels1, size1);
+    int cols = distinct(labels2, size2);
+    if ((long)rows * cols > RENAME_MATRIX_MAX_CELLS) {
+      return commonLabels;
+    }
+    RenameMatrix matrix = workspace.renameMatrix();
+    matrix.fill(labelCostModel, labels1, rows, labels2, cols);
+    renameMatrix = matrix.costs;
+    renameMatrixCols = cols;
+    toMatrixIndexes(it1, labels1, rows, workspace.preL_to_row(size1), workspace.postL_to_row(size1), workspace.postR_to_row(size1));
+    toMatrixIndexes(it2, labels2, cols, workspace.preL_to_col(size2), workspace.postL_to_col(size2), workspace.postR_to_col(size2));
+    return commonLabels;
+  }
+
+  /**
+   * Counts the common labels of two trees, with multiplicity.
+   *
+   * @param labels1 sorted label ids of the nodes of a tree.
+   * @param size1 number of nodes of the tree.
+   * @param labels2 sorted label ids of the nodes of another tree.
+   * @param size2 number of nodes of the other tree.
+   * @return size of the multiset intersection of the label ids.
+   */
+  private static int commonLabels(int[] labels1, int size1, int[] labels2, int size2) {
+    int common = 0;
+    for (int i = 0, j = 0; i < size1 && j < size2; ) {
+      if (labels1[i] < labels2[j]) {
+        i++;
+      } else if (labels1[i] > labels2[j]) {
+        j++;
+      } else {
+        common++;
+        i++;
+        j++;
+      }
+    }
+    return common;
+  }
+
+  /**
+   * Moves the distinct values of a sorted array to its beginning.
+   *
+   * @param sorted sorted values.
+   * @param length number of values.
+   * @return number of distinct values.
+   */
+  private static int distinct(int[] sorted, int length) {
+    int distinct = 0;
+    for (int i = 0; i < length; i++) {
+      if (i == 0 || sorted[i] != sorted[i - 1]) {
+        sorted[distinct++] = sorted[i];
+      }
+    }
+    return distinct;
+  }
+
+  /**
+   * Replaces the label ids of a node indexer by their positions in the
+   * sorted distinct label ids.
+   *
+   * @param it node indexer whose label arrays are replaced.
+   * @param distinct sorted distinct label ids of the tree.
+   * @param count number of distinct label ids.
+   * @param preL array that receives the positions in left-to-right preorder.
+   * @param postL array that receives the positions in left-to-right
+   *              postorder.
+   * @param postR array that receives the positions in right-to-left
+   *              postorder.
+   */
+  private static void toMatrixIndexes(NodeIndexer it, int[] distinct, int count, int[] preL, int[] postL, int[] postR) {
+    int size = it.getSize();
+    for (int i = 0; i < size; i++) {
+      preL[i] = Arrays.binarySearch(distinct, 0, count, it.preL_to_label[i]);
+    }
+    for (int i = 0; i < size; i++) {
+      postL[i] = preL[it.postL_to_preL[i]];
+      postR[i] = preL[it.postR_to_preL[i]];
+    }
+    it.preL_to_label = preL;
+    it.postL_to_label = postL;
+    it.postR_to_label = postR;
+  }
+
+  /**
+   * Returns the rename cost of two labels, either from the rename matrix or
+   * from the cost model. Used only with a {@link LabelIdCostModel}.
+   *
+   * @param l1 label of the source node of rename, as stored in the indexer.
+   * @param l2 label of the destination node of rename, as stored in the indexer.
+   * @return the cost of renaming label l1 to l2.
+   */
+  private float ren(int l1, int l2) {
+    if (renameMatrix != null) {
+      return renameMatrix[l1 * renameMatrixCols + l2];
+    }
+    return labelCostModel.ren(l1, l2);
   }
 
   /**
@@ -226,10 +818,10 @@ public class APTED<C extends CostModel, D> {
     // Initialize arrays.
     int maxSize = Math.max(size1, size2) + 1;
     // TODO: Move q initialisation to spfA.
-    q = new float[maxSize];
+    q = workspace.q(maxSize);
     // TODO: Do not use fn and ft arrays [1, Section 8.4].
-    fn = new int[maxSize + 1];
-    ft = new int[maxSize + 1];
+    fn = workspace.fn(maxSize + 1);
+    ft = workspace.ft(maxSize + 1);
     // Compute subtree distances without the root nodes when one of subtrees
     // is a single node.
     int sizeX = -1;
@@ -248,11 +840,11 @@ public class APTED<C extends CostModel, D> {
         // In this method we don't have to verify the order of the input trees
         // because it is equal to the original.
         if (sizeX == 1 && sizeY == 1) {
-          delta[x][y] = 0.0f;
+          delta.set(x, y, 0.0f);
         } else if (sizeX == 1) {
-          delta[x][y] = it2.preL_to_sumInsCost[y] - costModel.ins(it2.preL_to_node[y]); // USE COST MODEL.
+          delta.set(x, y, it2.preL_to_sumInsCost[y] - it2.preL_to_insCost[y]); // USE COST MODEL.
         } else if (sizeY == 1) {
-          delta[x][y] = it1.preL_to_sumDelCost[x] - costModel.del(it1.preL_to_node[x]); // USE COST MODEL.
+          delta.set(x, y, it1.preL_to_sumDelCost[x] - it1.preL_to_delCost[x]); // USE COST MODEL.
         }
       }
     }
@@ -264,24 +856,42 @@ public class APTED<C extends CostModel, D> {
    *
    * @param it1 node indexer of the source input tree.
    * @param it2 node indexer of the destination input tree.
-   * @return array with the optimal strategy.
+   * @return matrix with the optimal strategy.
+   */
+  public DeltaMatrix computeOptStrategy_postL(NodeIndexer it1, NodeIndexer it2) {
+    DeltaMatrix strategy = workspace.delta(it1.getSize(), it2.getSize());
+    computeOptStrategy_postL(workspace, it1, it2, strategy, null, null);
+    return strategy;
+  }
+
+  /**
+   * Compute the optimal strategy using left-to-right postorder traversal of
+   * the nodes [2, Algorithm 1]. The strategy is stored only if a strategy
+   * matrix is given. Otherwise only the costs are computed.
+   *
+   * @param workspace workspace to take the strategy cost arrays from.
+   * @param it1 node indexer of the source input tree.
+   * @param it2 node indexer of the destination input tree.
+   * @param strategy matrix to store the strategy in, or {@code null}.
+   * @param estimate estimate to collect the array sizes in, or {@code null}.
+   * @param cancellation token that stops the computation, or {@code null}.
+   * @return cost of the optimal strategy for the input trees.
    */
   // TODO: Document the internals. Point to lines of the lagorithm.
-  public float[][] computeOptStrategy_postL(NodeIndexer it1, NodeIndexer it2) {
+  static double computeOptStrategy_postL(Workspace workspace, NodeIndexer it1, NodeIndexer it2, DeltaMatrix strategy, ResourceEstimate estimate, CancellationToken cancellation) {
 
     int size1 = it1.getSize();
     int size2 = it2.getSize();
-    float strategy[][] = new float[size1][size2];
-    float cost1_L[][] = new float[size1][];
-    float cost1_R[][] = new float[size1][];
-    float cost1_I[][] = new float[size1][];
-    float cost2_L[] = new float[size2];
-    float cost2_R[] = new float[size2];
-    float cost2_I[] = new float[size2];
-    int cost2_path[] = new int[size2];
-    float leafRow[] = new float[size2];
+    double cost1_L[][] = workspace.cost1_L(size1);
+    double cost1_R[][] = workspace.cost1_R(size1);
+    double cost1_I[][] = workspace.cost1_I(size1);
+    double cost2_L[] = workspace.cost2_L(size2);
+    double cost2_R[] = workspace.cost2_R(size2);
+    double cost2_I[] = workspace.cost2_I(size2);
+    int cost2_path[] = workspace.cost2_path(size2);
+    double leafRow[] = workspace.leafRow(size2);
     int pathIDOffset = size1;
-    float minCost = 0x7fffffffffffffffL;
+    double minCost = 0x7fffffffffffffffL;
     int strategyPath = -1;
 
     int[] pre2size1 = it1.sizes;
@@ -311,21 +921,29 @@ public class APTED<C extends CostModel, D> {
 
     int size_v, parent_v_preL, parent_w_preL, parent_w_postL = -1, size_w, parent_v_postL = -1;
     int leftPath_v, rightPath_v;
-    float[] cost_Lpointer_v, cost_Rpointer_v, cost_Ipointer_v;
-    float[] strategypointer_v;
-    float[] cost_Lpointer_parent_v = null, cost_Rpointer_parent_v = null, cost_Ipointer_parent_v = null;
-    float[] strategypointer_parent_v = null;
+    double[] cost_Lpointer_v, cost_Rpointer_v, cost_Ipointer_v;
+    int strategypointer_v;
+    double[] cost_Lpointer_parent_v = null, cost_Rpointer_parent_v = null, cost_Ipointer_parent_v = null;
+    int strategypointer_parent_v = -1;
     int krSum_v, revkrSum_v, descSum_v;
     boolean is_v_leaf;
 
     int v_in_preL;
     int w_in_preL;
 
-    Stack<float[]> rowsToReuse_L = new Stack<float[]>();
-    Stack<float[]> rowsToReuse_R = new Stack<float[]>();
-    Stack<float[]> rowsToReuse_I = new Stack<float[]>();
+    int rowLength = workspace.strategyRowLength(size2);
+    Stack<double[]> rowsToReuse_L = workspace.rowsToReuse_L();
+    Stack<double[]> rowsToReuse_R = workspace.rowsToReuse_R();
+    Stack<double[]> rowsToReuse_I = workspace.rowsToReuse_I();
+    // The strategy rows of v and its parent are updated in arrays, such that
+    // the matrix is accessed only once per row.
+    int[] strategyRow_v = strategy == null ? null : workspace.strategyRow(size2);
+    int[] strategyRow_parent_v = strategy == null ? null : workspace.parentStrategyRow(size2);
 
     for(int v = 0; v < size1; v++) {
+      if (cancellation != null && (v & CANCELLATION_CHECK_MASK) == 0) {
+        cancellation.check();
+      }
       v_in_preL = postL_to_preL_1[v];
 
       is_v_leaf = it1.isLeaf(v_in_preL);
@@ -335,7 +953,7 @@ public class APTED<C extends CostModel, D> {
         parent_v_postL = preL_to_postL_1[parent_v_preL];
       }
 
-      strategypointer_v = strategy[v_in_preL];
+      strategypointer_v = v_in_preL;
 
       size_v = pre2size1[v_in_preL];
       leftPath_v = -(preR_to_preL_1[preL_to_preR_1[v_in_preL] + size_v - 1] + 1);// this is the left path's ID which is the leftmost leaf node: l-r_preorder(r-l_preorder(v) + |Fv| - 1)
@@ -348,9 +966,6 @@ public class APTED<C extends CostModel, D> {
         cost1_L[v] = leafRow;
         cost1_R[v] = leafRow;
         cost1_I[v] = leafRow;
-        for(int i = 0; i < size2; i++) {
-          strategypointer_v[postL_to_preL_2[i]] = v_in_preL;
-        }
       }
 
       cost_Lpointer_v = cost1_L[v];
@@ -359,27 +974,41 @@ public class APTED<C extends CostModel, D> {
 
       if(parent_v_preL != -1 && cost1_L[parent_v_postL] == null) {
         if (rowsToReuse_L.isEmpty()) {
-          cost1_L[parent_v_postL] = new float[size2];
-          cost1_R[parent_v_postL] = new float[size2];
-          cost1_I[parent_v_postL] = new float[size2];
+          cost1_L[parent_v_postL] = new double[rowLength];
+          cost1_R[parent_v_postL] = new double[rowLength];
+          cost1_I[parent_v_postL] = new double[rowLength];
         } else {
           cost1_L[parent_v_postL] = rowsToReuse_L.pop();
           cost1_R[parent_v_postL] = rowsToReuse_R.pop();
           cost1_I[parent_v_postL] = rowsToReuse_I.pop();
         }
+        if (estimate != null) {
+          estimate.strategyRowsAcquired(rowLength);
+        }
       }
 
       if (parent_v_preL != -1) {
         cost_Lpointer_parent_v = cost1_L[parent_v_postL];
         cost_Rpointer_parent_v = cost1_R[parent_v_postL];
         cost_Ipointer_parent_v = cost1_I[parent_v_postL];
-        strategypointer_parent_v = strategy[parent_v_preL];
+        strategypointer_parent_v = parent_v_preL;
+      }
+
+      if (strategy != null) {
+        if (is_v_leaf) {
+          Arrays.fill(strategyRow_v, 0, size2, v_in_preL);
+        } else {
+          strategy.getRow(strategypointer_v, strategyRow_v);
+        }
+        if (parent_v_preL != -1) {
+          strategy.getRow(strategypointer_parent_v, strategyRow_parent_v);
+        }
       }
 
-      Arrays.fill(cost2_L, 0L);
-      Arrays.fill(cost2_R, 0L);
-      Arrays.fill(cost2_I, 0L);
-      Arrays.fill(cost2_path, 0);
+      Arrays.fill(cost2_L, 0, size2, 0L);
+      Arrays.fill(cost2_R, 0, size2, 0L);
+      Arrays.fill(cost2_I, 0, size2, 0L);
+      Arrays.fill(cost2_path, 0, size2, 0);
 
       for(int w = 0; w < size2; w++) {
         w_in_preL = postL_to_preL_2[w];
@@ -398,37 +1027,38 @@ public class APTED<C extends CostModel, D> {
         }
         minCost = 0x7fffffffffffffffL;
         strategyPath = -1;
-        float tmpCost = 0x7fffffffffffffffL;
+        double tmpCost = 0x7fffffffffffffffL;
 
         if (size_v <= 1 || size_w <= 1) { // USE NEW SINGLE_PATH FUNCTIONS FOR SMALL SUBTREES
           minCost = Math.max(size_v, size_w);
         } else {
-          tmpCost = (float) size_v * (float) pre2krSum2[w_in_preL] + cost_Lpointer_v[w];
+          tmpCost = (double)size_v * pre2krSum2[w_in_preL] + cost_Lpointer_v[w];
           if (tmpCost < minCost) {
             minCost = tmpCost;
             strategyPath = leftPath_v;
           }
-          tmpCost = (float) size_v * (float) pre2revkrSum2[w_in_preL] + cost_Rpointer_v[w];
+          tmpCost = (double)size_v * pre2revkrSum2[w_in_preL] + cost_Rpointer_v[w];
           if (tmpCost < minCost) {
             minCost = tmpCost;
             strategyPath = rightPath_v;
           }
-          tmpCost = (float) size_v * (float) pre2descSum2[w_in_preL] + cost_Ipointer_v[w];
+          tmpCost = (double)size_v * pre2descSum2[w_in_preL] + cost_Ipointer_v[w];
           if (tmpCost < minCost) {
             minCost = tmpCost;
-            strategyPath = (int)strategypointer_v[w_in_preL] + 1;
+            // Without the strategy matrix, 0 marks an inner path in the source tree.
+            strategyPath = strategy == null ? 0 : strategyRow_v[w_in_preL] + 1;
           }
-          tmpCost = (float) size_w * (float) krSum_v + cost2_L[w];
+          tmpCost = (double)size_w * krSum_v + cost2_L[w];
           if (tmpCost < minCost) {
             minCost = tmpCost;
             strategyPath = -(preR_to_preL_2[preL_to_preR_2[w_in_preL] + size_w - 1] + pathIDOffset + 1);
           }
-          tmpCost = (float) size_w * (float) revkrSum_v + cost2_R[w];
+          tmpCost = (double)size_w * revkrSum_v + cost2_R[w];
           if (tmpCost < minCost) {
             minCost = tmpCost;
             strategyPath = w_in_preL + size_w - 1 + pathIDOffset + 1;
           }
-          tmpCost = (float) size_w * (float) descSum_v + cost2_I[w];
+          tmpCost = (double)size_w * descSum_v + cost2_I[w];
           if (tmpCost < minCost) {
             minCost = tmpCost;
             strategyPath = cost2_path[w] + pathIDOffset + 1;
@@ -440,7 +1070,9 @@ public class APTED<C extends CostModel, D> {
           tmpCost = -minCost + cost1_I[v][w];
           if (tmpCost < cost1_I[parent_v_postL][w]) {
             cost_Ipointer_parent_v[w] = tmpCost;
-            strategypointer_parent_v[w_in_preL] = strategypointer_v[w_in_preL];
+            if (strategy != null) {
+              strategyRow_parent_v[w_in_preL] = strategyRow_v[w_in_preL];
+            }
           }
           if (nodeType_R_1[v_in_preL]) {
             cost_Ipointer_parent_v[w] += cost_Rpointer_parent_v[w];
@@ -469,7 +1101,19 @@ public class APTED<C extends CostModel, D> {
             cost2_L[parent_w_postL] += minCost;
           }
         }
-        strategypointer_v[w_in_preL] = strategyPath;
+        if (strategy != null) {
+          strategyRow_v[w_in_preL] = strategyPath;
+        }
+        if (estimate != null && strategyPath != -1) {
+          estimate.strategyPathChosen(strategyPath, pathIDOffset, v_in_preL, size_v, w_in_preL, size_w);
+        }
+      }
+
+      if (strategy != null) {
+        strategy.setRow(strategypointer_v, strategyRow_v);
+        if (parent_v_preL != -1) {
+          strategy.setRow(strategypointer_parent_v, strategyRow_parent_v);
+        }
       }
 
       if (!it1.isLeaf(v_in_preL)) {
@@ -479,10 +1123,14 @@ public class APTED<C extends CostModel, D> {
         rowsToReuse_L.push(cost1_L[v]);
         rowsToReuse_R.push(cost1_R[v]);
         rowsToReuse_I.push(cost1_I[v]);
+        if (estimate != null) {
+          estimate.strategyRowsReleased();
+        }
       }
 
     }
-    return strategy;
+    // The root nodes are processed last.
+    return minCost;
   }
 
   /**
@@ -491,24 +1139,42 @@ public class APTED<C extends CostModel, D> {
    *
    * @param it1 node indexer of the source input tree.
    * @param it2 node indexer of the destination input tree.
-   * @return array with the optimal strategy.
+   * @return matrix with the optimal strategy.
+   */
+  public DeltaMatrix computeOptStrategy_postR(NodeIndexer it1, NodeIndexer it2) {
+    DeltaMatrix strategy = workspace.delta(it1.getSize(), it2.getSize());
+    computeOptStrategy_postR(workspace, it1, it2, strategy, null, null);
+    return strategy;
+  }
+
+  /**
+   * Compute the optimal strategy using right-to-left postorder traversal of
+   * the nodes [2, Algorithm 1]. The strategy is stored only if a strategy
+   * matrix is given. Otherwise only the costs are computed.
+   *
+   * @param workspace workspace to take the strategy cost arrays from.
+   * @param it1 node indexer of the source input tree.
+   * @param it2 node indexer of the destination input tree.
+   * @param strategy matrix to store the strategy in, or {@code null}.
+   * @param estimate estimate to collect the array sizes in, or {@code null}.
+   * @param cancellation token that stops the computation, or {@code null}.
+   * @return cost of the optimal strategy for the input trees.
    */
   // QUESTION: Is it possible to merge it with the other strategy computation?
   // TODO: Document the internals. Point to lines of the lagorithm.
-  public float[][] computeOptStrategy_postR(NodeIndexer it1, NodeIndexer it2) {
+  static double computeOptStrategy_postR(Workspace workspace, NodeIndexer it1, NodeIndexer it2, DeltaMatrix strategy, ResourceEstimate estimate, CancellationToken cancellation) {
     int size1 = it1.getSize();
     int size2 = it2.getSize();
-    float strategy[][] = new float[size1][size2];
-    float cost1_L[][] = new float[size1][];
-    float cost1_R[][] = new float[size1][];
-    float cost1_I[][] = new float[size1][];
-    float cost2_L[] = new float[size2];
-    float cost2_R[] = new float[size2];
-    float cost2_I[] = new float[size2];
-    int cost2_path[] = new int[size2];
-    float leafRow[] = new float[size2];
+    double cost1_L[][] = workspace.cost1_L(size1);
+    double cost1_R[][] = workspace.cost1_R(size1);
+    double cost1_I[][] = workspace.cost1_I(size1);
+    double cost2_L[] = workspace.cost2_L(size2);
+    double cost2_R[] = workspace.cost2_R(size2);
+    double cost2_I[] = workspace.cost2_I(size2);
+    int cost2_path[] = workspace.cost2_path(size2);
+    double leafRow[] = workspace.leafRow(size2);
     int pathIDOffset = size1;
-    float minCost = 0x7fffffffffffffffL;
+    double minCost = 0x7fffffffffffffffL;
     int strategyPath = -1;
 
     int[] pre2size1 = it1.sizes;
@@ -532,22 +1198,30 @@ public class APTED<C extends CostModel, D> {
 
     int size_v, parent_v, parent_w, size_w;
     int leftPath_v, rightPath_v;
-    float[] cost_Lpointer_v, cost_Rpointer_v, cost_Ipointer_v;
-    float[] strategypointer_v;
-    float[] cost_Lpointer_parent_v = null, cost_Rpointer_parent_v = null, cost_Ipointer_parent_v = null;
-    float[] strategypointer_parent_v = null;
+    double[] cost_Lpointer_v, cost_Rpointer_v, cost_Ipointer_v;
+    int strategypointer_v;
+    double[] cost_Lpointer_parent_v = null, cost_Rpointer_parent_v = null, cost_Ipointer_parent_v = null;
+    int strategypointer_parent_v = -1;
     int krSum_v, revkrSum_v, descSum_v;
     boolean is_v_leaf;
 
-    Stack<float[]> rowsToReuse_L = new Stack<float[]>();
-    Stack<float[]> rowsToReuse_R = new Stack<float[]>();
-    Stack<float[]> rowsToReuse_I = new Stack<float[]>();
+    int rowLength = workspace.strategyRowLength(size2);
+    Stack<double[]> rowsToReuse_L = workspace.rowsToReuse_L();
+    Stack<double[]> rowsToReuse_R = workspace.rowsToReuse_R();
+    Stack<double[]> rowsToReuse_I = workspace.rowsToReuse_I();
+    // The strategy rows of v and its parent are updated in arrays, such that
+    // the matrix is accessed only once per row.
+    int[] strategyRow_v = strategy == null ? null : workspace.strategyRow(size2);
+    int[] strategyRow_parent_v = strategy == null ? null : workspace.parentStrategyRow(size2);
 
     for(int v = size1 - 1; v >= 0; v--) {
+      if (cancellation != null && (v & CANCELLATION_CHECK_MASK) == 0) {
+        cancellation.check();
+      }
       is_v_leaf = it1.isLeaf(v);
       parent_v = pre2parent1[v];
 
-      strategypointer_v = strategy[v];
+      strategypointer_v = v;
 
       size_v = pre2size1[v];
       leftPath_v = -(preR_to_preL_1[preL_to_preR_1[v] + pre2size1[v] - 1] + 1);// this is the left path's ID which is the leftmost leaf node: l-r_preorder(r-l_preorder(v) + |Fv| - 1)
@@ -560,9 +1234,6 @@ public class APTED<C extends CostModel, D> {
         cost1_L[v] = leafRow;
         cost1_R[v] = leafRow;
         cost1_I[v] = leafRow;
-        for (int i = 0; i < size2; i++) {
-          strategypointer_v[i] = v;
-        }
       }
 
       cost_Lpointer_v = cost1_L[v];
@@ -571,27 +1242,41 @@ public class APTED<C extends CostModel, D> {
 
       if (parent_v != -1 && cost1_L[parent_v] == null) {
         if (rowsToReuse_L.isEmpty()) {
-          cost1_L[parent_v] = new float[size2];
-          cost1_R[parent_v] = new float[size2];
-          cost1_I[parent_v] = new float[size2];
+          cost1_L[parent_v] = new double[rowLength];
+          cost1_R[parent_v] = new double[rowLength];
+          cost1_I[parent_v] = new double[rowLength];
         } else {
           cost1_L[parent_v] = rowsToReuse_L.pop();
           cost1_R[parent_v] = rowsToReuse_R.pop();
           cost1_I[parent_v] = rowsToReuse_I.pop();
         }
+        if (estimate != null) {
+          estimate.strategyRowsAcquired(rowLength);
+        }
       }
 
       if (parent_v != -1) {
         cost_Lpointer_parent_v = cost1_L[parent_v];
         cost_Rpointer_parent_v = cost1_R[parent_v];
         cost_Ipointer_parent_v = cost1_I[parent_v];
-        strategypointer_parent_v = strategy[parent_v];
+        strategypointer_parent_v = parent_v;
+      }
+
+      if (strategy != null) {
+        if (is_v_leaf) {
+          Arrays.fill(strategyRow_v, 0, size2, v);
+        } else {
+          strategy.getRow(strategypointer_v, strategyRow_v);
+        }
+        if (parent_v != -1) {
+          strategy.getRow(strategypointer_parent_v, strategyRow_parent_v);
+        }
       }
 
-      Arrays.fill(cost2_L, 0L);
-      Arrays.fill(cost2_R, 0L);
-      Arrays.fill(cost2_I, 0L);
-      Arrays.fill(cost2_path, 0);
+      Arrays.fill(cost2_L, 0, size2, 0L);
+      Arrays.fill(cost2_R, 0, size2, 0L);
+      Arrays.fill(cost2_I, 0, size2, 0L);
+      Arrays.fill(cost2_path, 0, size2, 0);
       for (int w = size2 - 1; w >= 0; w--) {
         size_w = pre2size2[w];
         if (it2.isLeaf(w)) {
@@ -602,37 +1287,38 @@ public class APTED<C extends CostModel, D> {
         }
         minCost = 0x7fffffffffffffffL;
         strategyPath = -1;
-        float tmpCost = 0x7fffffffffffffffL;
+        double tmpCost = 0x7fffffffffffffffL;
 
         if (size_v <= 1 || size_w <= 1) { // USE NEW SINGLE_PATH FUNCTIONS FOR SMALL SUBTREES
         	minCost = Math.max(size_v, size_w);
         } else {
-          tmpCost = (float) size_v * (float) pre2krSum2[w] + cost_Lpointer_v[w];
+          tmpCost = (double)size_v * pre2krSum2[w] + cost_Lpointer_v[w];
           if (tmpCost < minCost) {
             minCost = tmpCost;
             strategyPath = leftPath_v;
           }
-          tmpCost = (float) size_v * (float) pre2revkrSum2[w] + cost_Rpointer_v[w];
+          tmpCost = (double)size_v * pre2revkrSum2[w] + cost_Rpointer_v[w];
           if (tmpCost < minCost){
             minCost = tmpCost;
             strategyPath = rightPath_v;
           }
-          tmpCost = (float) size_v * (float) pre2descSum2[w] + cost_Ipointer_v[w];
+          tmpCost = (double)size_v * pre2descSum2[w] + cost_Ipointer_v[w];
           if (tmpCost < minCost) {
             minCost = tmpCost;
-            strategyPath = (int)strategypointer_v[w] + 1;
+            // Without the strategy matrix, 0 marks an inner path in the source tree.
+            strategyPath = strategy == null ? 0 : strategyRow_v[w] + 1;
           }
-          tmpCost = (float) size_w * (float) krSum_v + cost2_L[w];
+          tmpCost = (double)size_w * krSum_v + cost2_L[w];
           if (tmpCost < minCost) {
             minCost = tmpCost;
             strategyPath = -(preR_to_preL_2[preL_to_preR_2[w] + size_w - 1] + pathIDOffset + 1);
           }
-          tmpCost = (float) size_w * (float) revkrSum_v + cost2_R[w];
+          tmpCost = (double)size_w * revkrSum_v + cost2_R[w];
           if (tmpCost < minCost) {
             minCost = tmpCost;
             strategyPath = w + size_w - 1 + pathIDOffset + 1;
           }
-          tmpCost = (float) size_w * (float) descSum_v + cost2_I[w];
+          tmpCost = (double)size_w * descSum_v + cost2_I[w];
           if (tmpCost < minCost) {
             minCost = tmpCost;
             strategyPath = cost2_path[w] + pathIDOffset + 1;
@@ -644,7 +1330,9 @@ public class APTED<C extends CostModel, D> {
           tmpCost = -minCost + cost1_I[v][w];
           if (tmpCost < cost1_I[parent_v][w]) {
             cost_Ipointer_parent_v[w] = tmpCost;
-            strategypointer_parent_v[w] = strategypointer_v[w];
+            if (strategy != null) {
+              strategyRow_parent_v[w] = strategyRow_v[w];
+            }
           }
           if (nodeType_L_1[v]) {
             cost_Ipointer_parent_v[w] += cost_Lpointer_parent_v[w];
@@ -674,7 +1362,19 @@ public class APTED<C extends CostModel, D> {
             cost2_R[parent_w] += minCost;
           }
         }
-        strategypointer_v[w] = strategyPath;
+        if (strategy != null) {
+          strategyRow_v[w] = strategyPath;
+        }
+        if (estimate != null && strategyPath != -1) {
+          estimate.strategyPathChosen(strategyPath, pathIDOffset, v, size_v, w, size_w);
+        }
+      }
+
+      if (strategy != null) {
+        strategy.setRow(strategypointer_v, strategyRow_v);
+        if (parent_v != -1) {
+          strategy.setRow(strategypointer_parent_v, strategyRow_parent_v);
+        }
       }
 
       if (!it1.isLeaf(v)) {
@@ -684,9 +1384,13 @@ public class APTED<C extends CostModel, D> {
         rowsToReuse_L.push(cost1_L[v]);
         rowsToReuse_R.push(cost1_R[v]);
         rowsToReuse_I.push(cost1_I[v]);
+        if (estimate != null) {
+          estimate.strategyRowsReleased();
+        }
         }
       }
-      return strategy;
+      // The root nodes are processed last.
+      return minCost;
   }
 
   /**
@@ -715,20 +1419,20 @@ public class APTED<C extends CostModel, D> {
     if (subtreeSize1 == 1 && subtreeSize2 == 1) {
       Node<D> n1 = ni1.preL_to_node[subtreeRootNode1];
       Node<D> n2 = ni2.preL_to_node[subtreeRootNode2];
-      float maxCost = costModel.del(n1) + costModel.ins(n2);
-      float renCost = costModel.ren(n1, n2);
+      float maxCost = ni1.preL_to_delCost[subtreeRootNode1] + ni2.preL_to_insCost[subtreeRootNode2];
+      float renCost = labelCostModel != null ? ren(ni1.preL_to_label[subtreeRootNode1], ni2.preL_to_label[subtreeRootNode2]) : costModel.ren(n1, n2);
       return renCost < maxCost ? renCost : maxCost;
     }
     if (subtreeSize1 == 1) {
       Node<D> n1 = ni1.preL_to_node[subtreeRootNode1];
       Node<D> n2 = null;
       float cost = ni2.preL_to_sumInsCost[subtreeRootNode2];
-      float maxCost = cost + costModel.del(n1);
+      float maxCost = cost + ni1.preL_to_delCost[subtreeRootNode1];
       float minRenMinusIns = cost;
       float nodeRenMinusIns = 0;
       for (int i = subtreeRootNode2; i < subtreeRootNode2 + subtreeSize2; i++) {
         n2 = ni2.preL_to_node[i];
-        nodeRenMinusIns = costModel.ren(n1, n2) - costModel.ins(n2);
+        nodeRenMinusIns = (labelCostModel != null ? ren(ni1.preL_to_label[subtreeRootNode1], ni2.preL_to_label[i]) : costModel.ren(n1, n2)) - ni2.preL_to_insCost[i];
         if (nodeRenMinusIns < minRenMinusIns) {
           minRenMinusIns = nodeRenMinusIns;
         }
@@ -740,12 +1444,12 @@ public class APTED<C extends CostModel, D> {
       Node<D> n1 = null;
       Node<D> n2 = ni2.preL_to_node[subtreeRootNode2];
       float cost = ni1.preL_to_sumDelCost[subtreeRootNode1];
-      float maxCost = cost + costModel.ins(n2);
+      float maxCost = cost + ni2.preL_to_insCost[subtreeRootNode2];
       float minRenMinusDel = cost;
       float nodeRenMinusDel = 0;
       for (int i = subtreeRootNode1; i < subtreeRootNode1 + subtreeSize1; i++) {
         n1 = ni1.preL_to_node[i];
-        nodeRenMinusDel = costModel.ren(n1, n2) - costModel.del(n1);
+        nodeRenMinusDel = (labelCostModel != null ? ren(ni1.preL_to_label[i], ni2.preL_to_label[subtreeRootNode2]) : costModel.ren(n1, n2)) - ni1.preL_to_delCost[i];
         if (nodeRenMinusDel < minRenMinusDel) {
           minRenMinusDel = nodeRenMinusDel;
         }
@@ -759,87 +1463,316 @@ public class APTED<C extends CostModel, D> {
   /**
    * Implements GTED algorithm [1, Section 3.4].
    *
+   * <p>The pairs of subtrees to compute are kept on an explicit stack instead
+   * of the call stack, such that the depth of the input trees is not limited
+   * by the thread stack size. A pair is first decomposed along its strategy
+   * path: it is pushed back marked as decomposed, followed by the pairs of
+   * its relevant subtrees. When it is popped again, the distances of all
+   * relevant subtrees are known, and a single-path function computes the
+   * distance of the pair. The pairs are processed in the same order as by
+   * the recursive formulation.
+   *
    * @param it1 node indexer for the source input tree.
    * @param it2 node indexer for the destination input tree.
    * @return the tree edit distance between the source and destination trees.
    */
   // TODO: Document the internals. Point to lines of the algorithm.
   private float gted(NodeIndexer it1, NodeIndexer it2) {
-    int currentSubtree1 = it1.getCurrentNode();
-    int currentSubtree2 = it2.getCurrentNode();
-    int subtreeSize1 = it1.sizes[currentSubtree1];
-    int subtreeSize2 = it2.sizes[currentSubtree2];
+    // Two cells per pair. A decomposed pair stores the complement of the
+    // subtree root in the source tree.
+    int[] stack = workspace.gtedStack(2 * (size1 + size2));
+    int top = 0;
+    stack[top++] = it1.getCurrentNode();
+    stack[top++] = it2.getCurrentNode();
+    float result = 0;
+    while (top > 0) {
+      int currentSubtree2 = stack[--top];
+      int currentSubtree1 = stack[--top];
+      if (currentSubtree1 < 0) {
+        result = spf(it1, ~currentSubtree1, it2, currentSubtree2);
+        continue;
+      }
+      int subtreeSize1 = it1.sizes[currentSubtree1];
+      int subtreeSize2 = it2.sizes[currentSubtree2];
 
-    // Use spf1.
-    if ((subtreeSize1 == 1 || subtreeSize2 == 1)) {
-      return spf1(it1, currentSubtree1, it2, currentSubtree2);
-    }
+      // Use spf1.
+      if ((subtreeSize1 == 1 || subtreeSize2 == 1)) {
+        result = spf1(it1, currentSubtree1, it2, currentSubtree2);
+        continue;
+      }
 
-    int strategyPathID = (int)delta[currentSubtree1][currentSubtree2];
+      // The pair and its relevant subtrees take at most one cell pair per
+      // node of the decomposed subtree.
+      int required = top + 2 * (Math.max(subtreeSize1, subtreeSize2) + 1);
+      if (required > stack.length) {
+        stack = Arrays.copyOf(stack, 2 * required);
+      }
+      int firstRelevant = top + 2;
+      top = decompose(stack, top, it1, currentSubtree1, it2, currentSubtree2, (int)delta.get(currentSubtree1, currentSubtree2));
+      // Compute the relevant subtrees in parallel. The decomposed pair is
+      // popped next, after all of them are computed.
+      if (pool != null && (long)subtreeSize1 * subtreeSize2 >= parallelThreshold
+          && gtedInParallel(stack, firstRelevant, top)) {
+        top = firstRelevant;
+      }
+    }
+    return result;
+  }
 
-    byte strategyPathType = -1;
+  /**
+   * Decomposes a pair of subtrees along its strategy path in gted. Pushes the
+   * pair marked as decomposed, that is, with the complement of its subtree
+   * root in the source tree, followed by the pairs of its relevant subtrees.
+   * They are pushed in reverse order of the path, such that they are popped
+   * in the order of the path and before the decomposed pair.
+   *
+   * @param stack gted stack with two cells per pair and room for the pair
+   *              and one pair per node of the decomposed subtree.
+   * @param top number of used cells of the stack.
+   * @param it1 node indexer for the source input tree.
+   * @param currentSubtree1 root node of a subtree in the source input tree.
+   * @param it2 node indexer for the destination input tree.
+   * @param currentSubtree2 root node of a subtree in the destination input tree.
+   * @param strategyPathID raw path id of the pair from the strategy array.
+   * @return number of used cells of the stack after the relevant subtrees.
+   */
+  static int decompose(int[] stack, int top, NodeIndexer it1, int currentSubtree1, NodeIndexer it2, int currentSubtree2, int strategyPathID) {
     int currentPathNode = Math.abs(strategyPathID) - 1;
     int pathIDOffset = it1.getSize();
-
+    stack[top++] = ~currentSubtree1;
+    stack[top++] = currentSubtree2;
+    int firstRelevant = top;
     int parent = -1;
-    if(currentPathNode < pathIDOffset) {
-      strategyPathType = getStrategyPathType(strategyPathID, pathIDOffset, it1, currentSubtree1, subtreeSize1);
+    if (currentPathNode < pathIDOffset) {
       while((parent = it1.parents[currentPathNode]) >= currentSubtree1) {
-        int ai[];
-        int k = (ai = it1.children[parent]).length;
-        for(int i = 0; i < k; i++) {
-          int child = ai[i];
+        for (int c = it1.childrenOffsets[parent]; c < it1.childrenOffsets[parent + 1]; c++) {
+          int child = it1.children[c];
           if(child != currentPathNode) {
-            it1.setCurrentNode(child);
-            gted(it1, it2);
+            stack[top++] = child;
+            stack[top++] = currentSubtree2;
           }
         }
         currentPathNode = parent;
       }
-      // TODO: Move this property away from node indexer and pass directly to spfs.
-      it1.setCurrentNode(currentSubtree1);
-
-      // Pass to spfs a boolean that says says if the order of input subtrees
-      // has been swapped compared to the order of the initial input trees.
-      // Used for accessing delta array and deciding on the edit operation
-      // [1, Section 3.4].
-      if (strategyPathType == 0) {
-        return spfL(it1, it2, false);
+    } else {
+      currentPathNode -= pathIDOffset;
+      while((parent = it2.parents[currentPathNode]) >= currentSubtree2) {
+        for (int c = it2.childrenOffsets[parent]; c < it2.childrenOffsets[parent + 1]; c++) {
+          int child = it2.children[c];
+          if(child != currentPathNode) {
+            stack[top++] = currentSubtree1;
+            stack[top++] = child;
+          }
+        }
+        currentPathNode = parent;
       }
-      if (strategyPathType == 1) {
-        return spfR(it1, it2, false);
+    }
+    // Reverse the relevant subtrees to pop them in the order of the path.
+    for (int i = firstRelevant, j = top - 2; i < j; i += 2, j -= 2) {
+      int s1 = stack[i];
+      int s2 = stack[i + 1];
+      stack[i] = stack[j];
+      stack[i + 1] = stack[j + 1];
+      stack[j] = s1;
+      stack[j + 1] = s2;
+    }
+    return top;
+  }
+
+  /**
+   * Computes the distances of pairs of relevant subtrees as fork-join tasks,
+   * if at least one of them has enough pairs of nodes.
+   *
+   * @param pairs array with pairs of subtree root nodes.
+   * @param from index of the first pair in the array (inclusive).
+   * @param to index after the last pair in the array (exclusive).
+   * @return {@code true} if the pairs have been computed, {@code false} if
+   *         they are all small and left to the caller.
+   */
+  private boolean gtedInParallel(int[] pairs, int from, int to) {
+    List<GtedTask> tasks = new ArrayList<>();
+    int[] smallPairs = new int[to - from];
+    int smallPairsLength = 0;
+    for (int i = from; i < to; i += 2) {
+      if ((long)it1.sizes[pairs[i]] * it2.sizes[pairs[i + 1]] >= parallelThreshold) {
+        tasks.add(new GtedTask(Arrays.copyOfRange(pairs, i, i + 2)));
+      } else {
+        smallPairs[smallPairsLength++] = pairs[i];
+        smallPairs[smallPairsLength++] = pairs[i + 1];
       }
-      return spfA(it1, it2, Math.abs(strategyPathID) - 1, strategyPathType, false);
-    }
-
-    currentPathNode -= pathIDOffset;
-    strategyPathType = getStrategyPathType(strategyPathID, pathIDOffset, it2, currentSubtree2, subtreeSize2);
-    while((parent = it2.parents[currentPathNode]) >= currentSubtree2) {
-      int ai1[];
-      int l = (ai1 = it2.children[parent]).length;
-      for(int j = 0; j < l; j++) {
-        int child = ai1[j];
-        if(child != currentPathNode) {
-          it2.setCurrentNode(child);
-          gted(it1, it2);
+    }
+    if (tasks.isEmpty()) {
+      return false;
+    }
+    if (smallPairsLength > 0) {
+      tasks.add(new GtedTask(Arrays.copyOf(smallPairs, smallPairsLength)));
+    }
+    ForkJoinTask.invokeAll(tasks);
+    for (GtedTask task : tasks) {
+      counter += task.counter;
+    }
+    return true;
+  }
+
+  /**
+   * Computes the distances of pairs of subtrees with an own algorithm object
+   * (see {@link #APTED(APTED, Workspace)}).
+   */
+  private class GtedTask extends RecursiveAction {
+
+    /**
+     * Version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Pairs of subtree root nodes to compute, in the source and destination
+     * trees.
+     */
+    private final int[] pairs;
+
+    /**
+     * The number of subproblems encountered by this task.
+     */
+    private long counter;
+
+    /**
+     * Creates a task for the given pairs of subtrees.
+     *
+     * @param pairs pairs of subtree root nodes.
+     */
+    GtedTask(int[] pairs) {
+      this.pairs = pairs;
+    }
+
+    /**
+     * Computes the pairs of subtrees in the order of the array.
+     */
+    @Override
+    protected void compute() {
+      ArrayDeque<Workspace> free = workerWorkspaces.ofCurrentThread(pool);
+      Workspace workspace = free == null || free.isEmpty() ? new Workspace() : free.pop();
+      try {
+        APTED<C, D> apted = new APTED<>(APTED.this, workspace);
+        for (int i = 0; i < pairs.length; i += 2) {
+          apted.it1.setCurrentNode(pairs[i]);
+          apted.it2.setCurrentNode(pairs[i + 1]);
+          apted.gted(apted.it1, apted.it2);
+        }
+        counter = apted.counter;
+      } finally {
+        if (free != null) {
+          free.push(workspace);
         }
       }
-      currentPathNode = parent;
     }
-    // TODO: Move this property away from node indexer and pass directly to spfs.
-    it2.setCurrentNode(currentSubtree2);
+  }
+
+  /**
+   * Free workspaces of the fork-join tasks, one list per worker thread of
+   * the pool. A task takes a workspace from the list of the thread that runs
+   * it and returns it when done, hence each list is used by one thread only.
+   * A thread holds more than one workspace only while it runs nested tasks,
+   * e.g., the subtasks that a task joins.
+   */
+  private static class WorkerWorkspaces {
+
+    /**
+     * Lists of free workspaces indexed by the pool index of the thread.
+     */
+    private final List<ArrayDeque<Workspace>> free = new ArrayList<>();
+
+    /**
+     * Returns the list of free workspaces of the current thread.
+     *
+     * @param pool the pool that runs the tasks.
+     * @return the list of the current thread, or {@code null} if it is not
+     *         a worker thread of the pool.
+     */
+    synchronized ArrayDeque<Workspace> ofCurrentThread(ForkJoinPool pool) {
+      Thread thread = Thread.currentThread();
+      if (!(thread instanceof ForkJoinWorkerThread) || ((ForkJoinWorkerThread)thread).getPool() != pool) {
+        return null;
+      }
+      int index = ((ForkJoinWorkerThread)thread).getPoolIndex();
+      while (free.size() <= index) {
+        free.add(new ArrayDeque<>());
+      }
+      return free.get(index);
+    }
+  }
 
+  /**
+   * Computes the distance between a pair of subtrees with the single-path
+   * function of its strategy path. The distances of all relevant subtrees
+   * must be already computed.
+   *
+   * @param it1 node indexer for the source input tree.
+   * @param currentSubtree1 root node of a subtree in the source input tree.
+   * @param it2 node indexer for the destination input tree.
+   * @param currentSubtree2 root node of a subtree in the destination input tree.
+   * @return the tree edit distance between the two subtrees.
+   */
+  private float spf(NodeIndexer it1, int currentSubtree1, NodeIndexer it2, int currentSubtree2) {
+    if (cancellation != null) {
+      cancellation.check();
+    }
+    int strategyPathID = (int)delta.get(currentSubtree1, currentSubtree2);
+    int strategyPath = strategyPath(it1, currentSubtree1, it2, currentSubtree2, strategyPathID);
+    byte strategyPathType = (byte)(strategyPath % PATH_IN_DESTINATION);
     // Pass to spfs a boolean that says says if the order of input subtrees
     // has been swapped compared to the order of the initial input trees. Used
     // for accessing delta array and deciding on the edit operation
     // [1, Section 3.4].
-    if (strategyPathType == 0) {
-      return spfL(it2, it1, true);
+    boolean treesSwapped = strategyPath >= PATH_IN_DESTINATION;
+    NodeIndexer pathTree = treesSwapped ? it2 : it1;
+    NodeIndexer otherTree = treesSwapped ? it1 : it2;
+    if (strategyPathType == LEFT) {
+      return spfL(pathTree, otherTree, treesSwapped);
     }
-    if (strategyPathType == 1) {
-      return spfR(it2, it1, true);
+    if (strategyPathType == RIGHT) {
+      return spfR(pathTree, otherTree, treesSwapped);
     }
-    return spfA(it2, it1, Math.abs(strategyPathID) - pathIDOffset - 1, strategyPathType, true);
+    return spfA(pathTree, otherTree, pathLeaf(strategyPathID, it1.getSize()), strategyPathType, treesSwapped);
+  }
+
+  /**
+   * Prepares a pair of subtrees for the single-path function of its strategy
+   * path. Sets the subtree roots as the current nodes of the indexers and
+   * decodes the path.
+   *
+   * @param it1 node indexer for the source input tree.
+   * @param currentSubtree1 root node of a subtree in the source input tree.
+   * @param it2 node indexer for the destination input tree.
+   * @param currentSubtree2 root node of a subtree in the destination input tree.
+   * @param strategyPathID raw path id of the pair from the strategy array.
+   * @return type of the strategy path (LEFT, RIGHT, INNER), plus
+   *         {@link #PATH_IN_DESTINATION} if the path is in the destination
+   *         tree. Then the single-path function takes the indexers in
+   *         swapped order.
+   */
+  static int strategyPath(NodeIndexer it1, int currentSubtree1, NodeIndexer it2, int currentSubtree2, int strategyPathID) {
+    int pathIDOffset = it1.getSize();
+    // TODO: Move this property away from node indexer and pass directly to spfs.
+    it1.setCurrentNode(currentSubtree1);
+    it2.setCurrentNode(currentSubtree2);
+    if(Math.abs(strategyPathID) - 1 < pathIDOffset) {
+      return getStrategyPathType(strategyPathID, pathIDOffset, it1, currentSubtree1, it1.sizes[currentSubtree1]);
+    }
+    return PATH_IN_DESTINATION + getStrategyPathType(strategyPathID, pathIDOffset, it2, currentSubtree2, it2.sizes[currentSubtree2]);
+  }
+
+  /**
+   * Decodes the path from the optimal strategy to its leaf node.
+   *
+   * @param pathIDWithPathIDOffset raw path id from strategy array.
+   * @param pathIDOffset offset used to distinguish between paths in the source and destination trees.
+   * @return the left-to-right preorder id of the path's leaf node in the
+   *         tree of the path.
+   */
+  static int pathLeaf(int pathIDWithPathIDOffset, int pathIDOffset) {
+    int pathID = Math.abs(pathIDWithPathIDOffset) - 1;
+    return pathID < pathIDOffset ? pathID : pathID - pathIDOffset;
   }
 
   /**
@@ -865,6 +1798,10 @@ public class APTED<C extends CostModel, D> {
   private float spfA(NodeIndexer it1, NodeIndexer it2, int pathID, byte pathType, boolean treesSwapped) {
     Node<D>[] it2nodes = it2.preL_to_node;
     Node<D> lFNode;
+    // Label ids for a LabelIdCostModel, null otherwise.
+    int[] it1labels = it1.preL_to_label;
+    int[] it2labels = it2.preL_to_label;
+    int lFLabel = -1;
     int[] it1sizes = it1.sizes;
     int[] it2sizes = it2.sizes;
     int[] it1parents = it1.parents;
@@ -873,6 +1810,15 @@ public class APTED<C extends CostModel, D> {
     int[] it2preL_to_preR = it2.preL_to_preR;
     int[] it1preR_to_preL = it1.preR_to_preL;
     int[] it2preR_to_preL = it2.preR_to_preL;
+    // Costs of deleting nodes from the left-hand subtree and inserting nodes
+    // to the right-hand subtree. If the input subtrees have been swapped,
+    // deletions and insertions are swapped too.
+    float[] it1preL_to_delCost = treesSwapped ? it1.preL_to_insCost : it1.preL_to_delCost;
+    float[] it1preR_to_delCost = treesSwapped ? it1.preR_to_insCost : it1.preR_to_delCost;
+    float[] it1preL_to_sumDelCost = treesSwapped ? it1.preL_to_sumInsCost : it1.preL_to_sumDelCost;
+    float[] it2preL_to_insCost = treesSwapped ? it2.preL_to_delCost : it2.preL_to_insCost;
+    float[] it2preR_to_insCost = treesSwapped ? it2.preR_to_delCost : it2.preR_to_insCost;
+    float[] it2preL_to_sumInsCost = treesSwapped ? it2.preL_to_sumDelCost : it2.preL_to_sumInsCost;
     int currentSubtreePreL1 = it1.getCurrentNode();
     int currentSubtreePreL2 = it2.getCurrentNode();
 
@@ -887,8 +1833,8 @@ public class APTED<C extends CostModel, D> {
 
     int subtreeSize2 = it2.sizes[currentSubtreePreL2];
     int subtreeSize1 = it1.sizes[currentSubtreePreL1];
-    float[][] t = new float[subtreeSize2+1][subtreeSize2+1];
-    float[][] s = new float[subtreeSize1+1][subtreeSize2+1];
+    float[][] t = workspace.t(subtreeSize2+1, subtreeSize2+1);
+    float[][] s = workspace.s(subtreeSize1+1, subtreeSize2+1);
     float minCost = -1;
     // sp1, sp2 and sp3 correspond to three elements of the minimum in the
     // recursive formula [1, Figure 12].
@@ -908,7 +1854,14 @@ public class APTED<C extends CostModel, D> {
     rGfirst_in_preL;
     boolean leftPart,rightPart,fForestIsTree,lFIsConsecutiveNodeOfCurrentPathNode,lFIsLeftSiblingOfCurrentPathNode,
     rFIsConsecutiveNodeOfCurrentPathNode,rFIsRightSiblingOfCurrentPathNode;
-    float[] sp1spointer,sp2spointer,sp3spointer,sp3deltapointer,swritepointer,sp1tpointer,sp3tpointer;
+    float lFCost,rFCost;
+    float[] sp1spointer,sp2spointer,sp3spointer,swritepointer,sp1tpointer,sp3tpointer;
+    // The distances of the largest forests in F to all forests G_{lG,rG} of
+    // the input trees are checked against the threshold. The forests of an
+    // inner path are enumerated for all rG and lG.
+    boolean checkForests = threshold < Float.POSITIVE_INFINITY && pathType == 2 && currentSubtreePreL1 == 0 && currentSubtreePreL2 == 0;
+    double forestsBound = Double.POSITIVE_INFINITY;
+    int windowSize2 = 0;
     // These variables store the id of the source (which array) of looking up
     // elements of the minimum in the recursive formula [1, Figures 12,13].
     byte sp1source,sp3source;
@@ -955,8 +1908,12 @@ public class APTED<C extends CostModel, D> {
         // Store the current size and cost of forest in F.
         tmpForestSize1 = currentForestSize1;
         tmpForestCost1 = currentForestCost1;
+        forestsBound = Double.POSITIVE_INFINITY;
         // Loop B [1, Algoritm 3] - for all nodes in G (right-hand input tree).
         for (int rG = rGfirst; rG >= rGlast; rG--) {
+          if (cancellation != null && (rG & CANCELLATION_CHECK_MASK) == 0) {
+            cancellation.check();
+          }
           lGfirst = it2preR_to_preL[rG];
           rG_in_preL = it2preR_to_preL[rG];
           rGminus1_in_preL = rG <= it2preL_to_preR[currentSubtreePreL2] ? 0x7fffffff : it2preR_to_preL[rG - 1];
@@ -971,8 +1928,8 @@ public class APTED<C extends CostModel, D> {
           } else {
             lGlast = lGfirst == currentSubtreePreL2 ? lGfirst : currentSubtreePreL2+1;
           }
-          updateFnArray(it2.preL_to_ln[lGfirst], lGfirst, currentSubtreePreL2);
-          updateFtArray(it2.preL_to_ln[lGfirst], lGfirst);
+          updateFnArray(fn, it2.preL_to_ln[lGfirst], lGfirst, currentSubtreePreL2);
+          updateFtArray(fn, ft, it2.preL_to_ln[lGfirst], lGfirst);
           int rF = rFfirst;
           // Reset size and cost of the forest in F.
           currentForestSize1 = tmpForestSize1;
@@ -984,12 +1941,16 @@ public class APTED<C extends CostModel, D> {
               rF = rFlast;
             }
             lFNode = it1.preL_to_node[lF];
+            if (labelCostModel != null) {
+              lFLabel = it1labels[lF];
+            }
+            lFCost = it1preL_to_delCost[lF];
             // Increment size and cost of F forest by node lF.
             currentForestSize1++;
-            currentForestCost1 += (treesSwapped ? costModel.ins(lFNode) : costModel.del(lFNode)); // USE COST MODEL - sum up deletion cost of a forest.
+            currentForestCost1 += lFCost; // USE COST MODEL - sum up deletion cost of a forest.
             // Reset size and cost of forest in G to subtree G_lGfirst.
             currentForestSize2 = it2sizes[lGfirst];
-            currentForestCost2 = (treesSwapped ? it2.preL_to_sumDelCost[lGfirst] : it2.preL_to_sumInsCost[lGfirst]); // USE COST MODEL - reset to subtree insertion cost.
+            currentForestCost2 = it2preL_to_sumInsCost[lGfirst]; // USE COST MODEL - reset to subtree insertion cost.
             lF_in_preR = it1preL_to_preR[lF];
             fForestIsTree = lF_in_preR == rF;
             lFSubtreeSize = it1sizes[lF];
@@ -998,7 +1959,6 @@ public class APTED<C extends CostModel, D> {
             sp1spointer = s[(lF + 1) - it1PreLoff];
             sp2spointer = s[lF - it1PreLoff];
             sp3spointer = s[0];
-            sp3deltapointer = treesSwapped ? null : delta[lF];
             swritepointer = s[lF - it1PreLoff];
             sp1source = 1; // Search sp1 value in s array by default.
             sp3source = 1; // Search second part of sp3 value in s array by default.
@@ -1014,7 +1974,7 @@ public class APTED<C extends CostModel, D> {
               if (lFIsConsecutiveNodeOfCurrentPathNode) {
                 sp1source = 2;
               }
-              sp3 = currentForestCost1 - (treesSwapped ? it1.preL_to_sumInsCost[lF] : it1.preL_to_sumDelCost[lF]); // USE COST MODEL - Delete F_{lF,rF}-F_lF.
+              sp3 = currentForestCost1 - it1preL_to_sumDelCost[lF]; // USE COST MODEL - Delete F_{lF,rF}-F_lF.
               if (lFIsLeftSiblingOfCurrentPathNode) {
                 sp3source = 3;
               }
@@ -1032,7 +1992,7 @@ public class APTED<C extends CostModel, D> {
               case 2: sp1 = t[lG - it2PreLoff][rG - it2PreRoff]; break;
               case 3: sp1 = currentForestCost2; break; // USE COST MODEL - Insert G_{lG,rG}.
             }
-            sp1 += (treesSwapped ? costModel.ins(lFNode) : costModel.del(lFNode));// USE COST MODEL - Delete lF, leftmost root node in F_{lF,rF}.
+            sp1 += lFCost;// USE COST MODEL - Delete lF, leftmost root node in F_{lF,rF}.
             // sp1 -- END
             minCost = sp1; // Start with sp1 as minimal value.
             // sp2 -- START
@@ -1041,16 +2001,16 @@ public class APTED<C extends CostModel, D> {
             } else { // G_{lG,rG} is a tree.
               sp2 = q[lF];
             }
-            sp2 += (treesSwapped ? costModel.del(it2nodes[lG]) : costModel.ins(it2nodes[lG]));// USE COST MODEL - Insert lG, leftmost root node in G_{lG,rG}.
+            sp2 += it2preL_to_insCost[lG];// USE COST MODEL - Insert lG, leftmost root node in G_{lG,rG}.
             if (sp2 < minCost) { // Check if sp2 is minimal value.
               minCost = sp2;
             }
             // sp2 -- END
             // sp3 -- START
             if (sp3 < minCost) {
-              sp3 += treesSwapped ? delta[lG][lF] : sp3deltapointer[lG];
+              sp3 += treesSwapped ? delta.get(lG, lF) : delta.get(lF, lG);
               if (sp3 < minCost) {
-                sp3 += (treesSwapped ? costModel.ren(it2nodes[lG], lFNode) : costModel.ren(lFNode, it2nodes[lG])); // USE COST MODEL - Rename the leftmost root nodes in F_{lF,rF} and G_{lG,rG}.
+                sp3 += (labelCostModel != null ? (treesSwapped ? ren(it2labels[lG], lFLabel) : ren(lFLabel, it2labels[lG])) : (treesSwapped ? costModel.ren(it2nodes[lG], lFNode) : costModel.ren(lFNode, it2nodes[lG]))); // USE COST MODEL - Rename the leftmost root nodes in F_{lF,rF} and G_{lG,rG}.
                 if(sp3 < minCost) {
                   minCost = sp3;
                 }
@@ -1065,26 +2025,26 @@ public class APTED<C extends CostModel, D> {
             while (lG >= lGlast) {
               // Increment size and cost of G forest by node lG.
               currentForestSize2++;
-              currentForestCost2 += (treesSwapped ? costModel.del(it2nodes[lG]) : costModel.ins(it2nodes[lG]));
+              currentForestCost2 += it2preL_to_insCost[lG];
               switch(sp1source) {
-                case 1: sp1 = sp1spointer[lG - it2PreLoff] + (treesSwapped ? costModel.ins(lFNode) : costModel.del(lFNode)); break; // USE COST MODEL - Delete lF, leftmost root node in F_{lF,rF}.
-                case 2: sp1 = t[lG - it2PreLoff][rG - it2PreRoff] + (treesSwapped ? costModel.ins(lFNode) : costModel.del(lFNode)); break; // USE COST MODEL - Delete lF, leftmost root node in F_{lF,rF}.
-                case 3: sp1 = currentForestCost2 + (treesSwapped ? costModel.ins(lFNode) : costModel.del(lFNode)); break; // USE COST MODEL - Insert G_{lG,rG} and elete lF, leftmost root node in F_{lF,rF}.
+                case 1: sp1 = sp1spointer[lG - it2PreLoff] + lFCost; break; // USE COST MODEL - Delete lF, leftmost root node in F_{lF,rF}.
+                case 2: sp1 = t[lG - it2PreLoff][rG - it2PreRoff] + lFCost; break; // USE COST MODEL - Delete lF, leftmost root node in F_{lF,rF}.
+                case 3: sp1 = currentForestCost2 + lFCost; break; // USE COST MODEL - Insert G_{lG,rG} and elete lF, leftmost root node in F_{lF,rF}.
               }
-              sp2 = sp2spointer[fn[lG] - it2PreLoff] + (treesSwapped ? costModel.del(it2nodes[lG]) : costModel.ins(it2nodes[lG])); // USE COST MODEL - Insert lG, leftmost root node in G_{lG,rG}.
+              sp2 = sp2spointer[fn[lG] - it2PreLoff] + it2preL_to_insCost[lG]; // USE COST MODEL - Insert lG, leftmost root node in G_{lG,rG}.
               minCost = sp1;
               if(sp2 < minCost) {
                 minCost = sp2;
               }
-              sp3 = treesSwapped ? delta[lG][lF] : sp3deltapointer[lG];
+              sp3 = treesSwapped ? delta.get(lG, lF) : delta.get(lF, lG);
               if (sp3 < minCost) {
                 switch(sp3source) {
                     case 1: sp3 += sp3spointer[fn[(lG + it2sizes[lG]) - 1] - it2PreLoff]; break;
-                    case 2: sp3 += currentForestCost2 - (treesSwapped ? it2.preL_to_sumDelCost[lG] : it2.preL_to_sumInsCost[lG]); break; // USE COST MODEL - Insert G_{lG,rG}-G_lG.
+                    case 2: sp3 += currentForestCost2 - it2preL_to_sumInsCost[lG]; break; // USE COST MODEL - Insert G_{lG,rG}-G_lG.
                     case 3: sp3 += t[fn[(lG + it2sizes[lG]) - 1] - it2PreLoff][rG - it2PreRoff]; break;
                 }
                 if (sp3 < minCost) {
-                  sp3 += (treesSwapped ? costModel.ren(it2nodes[lG], lFNode) : costModel.ren(lFNode, it2nodes[lG])); // USE COST MODEL - Rename the leftmost root nodes in F_{lF,rF} and G_{lG,rG}.
+                  sp3 += (labelCostModel != null ? (treesSwapped ? ren(it2labels[lG], lFLabel) : ren(lFLabel, it2labels[lG])) : (treesSwapped ? costModel.ren(it2nodes[lG], lFNode) : costModel.ren(lFNode, it2nodes[lG]))); // USE COST MODEL - Rename the leftmost root nodes in F_{lF,rF} and G_{lG,rG}.
                   if (sp3 < minCost) {
                     minCost = sp3;
                   }
@@ -1099,16 +2059,16 @@ public class APTED<C extends CostModel, D> {
             if (!rightPart) {
               if (leftPart) {
                 if (treesSwapped) {
-                  delta[parent_of_rG_in_preL][endPathNode] = s[(lFlast + 1) - it1PreLoff][(rGminus1_in_preL + 1) - it2PreLoff];
+                  delta.set(parent_of_rG_in_preL, endPathNode, s[(lFlast + 1) - it1PreLoff][(rGminus1_in_preL + 1) - it2PreLoff]);
                 } else {
-                  delta[endPathNode][parent_of_rG_in_preL] = s[(lFlast + 1) - it1PreLoff][(rGminus1_in_preL + 1) - it2PreLoff];
+                  delta.set(endPathNode, parent_of_rG_in_preL, s[(lFlast + 1) - it1PreLoff][(rGminus1_in_preL + 1) - it2PreLoff]);
                 }
               }
               if (endPathNode > 0 && endPathNode == parent_of_endPathNode + 1 && endPathNode_in_preR == parent_of_endPathNode_in_preR + 1) {
                 if (treesSwapped) {
-                  delta[parent_of_rG_in_preL][parent_of_endPathNode] = s[lFlast - it1PreLoff][(rGminus1_in_preL + 1) - it2PreLoff];
+                  delta.set(parent_of_rG_in_preL, parent_of_endPathNode, s[lFlast - it1PreLoff][(rGminus1_in_preL + 1) - it2PreLoff]);
                 } else {
-                  delta[parent_of_endPathNode][parent_of_rG_in_preL] = s[lFlast - it1PreLoff][(rGminus1_in_preL + 1) - it2PreLoff];
+                  delta.set(parent_of_endPathNode, parent_of_rG_in_preL, s[lFlast - it1PreLoff][(rGminus1_in_preL + 1) - it2PreLoff]);
                 }
               }
             }
@@ -1117,10 +2077,17 @@ public class APTED<C extends CostModel, D> {
             }
           }
           // TODO: first pointers can be precomputed
+          windowSize2 = it2sizes[lGfirst];
           for (int lG = lGfirst; lG >= lGlast; lG = ft[lG]) {
             t[lG - it2PreLoff][rG - it2PreRoff] = s[lFlast - it1PreLoff][lG - it2PreLoff];
+            if (checkForests) {
+              forestsBound = Math.min(forestsBound, t[lG - it2PreLoff][rG - it2PreRoff] + restBound(subtreeSize1 - currentForestSize1, subtreeSize2 - windowSize2++, treesSwapped));
+            }
           }
         }
+        if (checkForests) {
+          checkForestsBound(forestsBound, currentForestCost1, subtreeSize1 - currentForestSize1, subtreeSize2, treesSwapped);
+        }
       }
       // Deal with nodes to the right of the path.
       if (pathType == 0 || pathType == 2 && rightPart || pathType == 2 && !leftPart && !rightPart) {
@@ -1143,11 +2110,15 @@ public class APTED<C extends CostModel, D> {
         // Store size and cost of the current forest in F.
         tmpForestSize1 = currentForestSize1;
         tmpForestCost1 = currentForestCost1;
+        forestsBound = Double.POSITIVE_INFINITY;
         // Loop B' [1, Algorithm 3] - for all nodes in G.
         for (int lG = lGfirst; lG >= lGlast; lG--) {
+          if (cancellation != null && (lG & CANCELLATION_CHECK_MASK) == 0) {
+            cancellation.check();
+          }
           rGfirst = it2preL_to_preR[lG];
-          updateFnArray(it2.preR_to_ln[rGfirst], rGfirst, it2preL_to_preR[currentSubtreePreL2]);
-          updateFtArray(it2.preR_to_ln[rGfirst], rGfirst);
+          updateFnArray(fn, it2.preR_to_ln[rGfirst], rGfirst, it2preL_to_preR[currentSubtreePreL2]);
+          updateFtArray(fn, ft, it2.preR_to_ln[rGfirst], rGfirst);
           int lF = lFfirst;
           lGminus1_in_preR = lG <= currentSubtreePreL2 ? 0x7fffffff : it2preL_to_preR[lG - 1];
           parent_of_lG = it2parents[lG];
@@ -1158,7 +2129,7 @@ public class APTED<C extends CostModel, D> {
           if (pathType == 0) {
             if (lG == currentSubtreePreL2) {
               rGlast = rGfirst;
-            } else if (it2.children[parent_of_lG][0] != lG) {
+            } else if (it2.children[it2.childrenOffsets[parent_of_lG]] != lG) {
               rGlast = rGfirst;
             } else {
               rGlast = it2preL_to_preR[parent_of_lG]+1;
@@ -1172,12 +2143,13 @@ public class APTED<C extends CostModel, D> {
               lF = lFlast;
             }
             rF_in_preL = it1preR_to_preL[rF];
+            rFCost = it1preR_to_delCost[rF];
             // Increment size and cost of F forest by node rF.
             currentForestSize1++;
-            currentForestCost1 += (treesSwapped ? costModel.ins(it1.preL_to_node[rF_in_preL]) : costModel.del(it1.preL_to_node[rF_in_preL])); // USE COST MODEL - sum up deletion cost of a forest.
+            currentForestCost1 += rFCost; // USE COST MODEL - sum up deletion cost of a forest.
             // Reset size and cost of G forest to G_lG.
             currentForestSize2 = it2sizes[lG];
-            currentForestCost2 = (treesSwapped ? it2.preL_to_sumDelCost[lG] : it2.preL_to_sumInsCost[lG]); // USE COST MODEL - reset to subtree insertion cost.
+            currentForestCost2 = it2preL_to_sumInsCost[lG]; // USE COST MODEL - reset to subtree insertion cost.
             rFSubtreeSize = it1sizes[rF_in_preL];
             if (startPathNode > 0) {
               rFIsConsecutiveNodeOfCurrentPathNode = startPathNode_in_preR - rF == 1;
@@ -1188,10 +2160,10 @@ public class APTED<C extends CostModel, D> {
             }
             fForestIsTree = rF_in_preL == lF;
             Node<D> rFNode = it1.preL_to_node[rF_in_preL];
+            int rFLabel = labelCostModel != null ? it1labels[rF_in_preL] : -1;
             sp1spointer = s[(rF + 1) - it1PreRoff];
             sp2spointer = s[rF - it1PreRoff];
             sp3spointer = s[0];
-            sp3deltapointer = treesSwapped ? null : delta[rF_in_preL];
             swritepointer = s[rF - it1PreRoff];
             sp1tpointer = t[lG - it2PreLoff];
             sp3tpointer = t[lG - it2PreLoff];
@@ -1209,7 +2181,7 @@ public class APTED<C extends CostModel, D> {
               if (rFIsConsecutiveNodeOfCurrentPathNode) {
                 sp1source = 2;
               }
-              sp3 = currentForestCost1 - (treesSwapped ? it1.preL_to_sumInsCost[rF_in_preL] : it1.preL_to_sumDelCost[rF_in_preL]); // USE COST MODEL - Delete F_{lF,rF}-F_rF.
+              sp3 = currentForestCost1 - it1preL_to_sumDelCost[rF_in_preL]; // USE COST MODEL - Delete F_{lF,rF}-F_rF.
               if (rFIsRightSiblingOfCurrentPathNode) {
                 sp3source = 3;
               }
@@ -1230,16 +2202,16 @@ public class APTED<C extends CostModel, D> {
               case 2: sp1 = sp1tpointer[rG - it2PreRoff]; break;
               case 3: sp1 = currentForestCost2; break; // USE COST MODEL - Insert G_{lG,rG}.
             }
-            sp1 += (treesSwapped ? costModel.ins(rFNode) : costModel.del(rFNode)); // USE COST MODEL - Delete rF.
+            sp1 += rFCost; // USE COST MODEL - Delete rF.
             minCost = sp1;
-            sp2 += (treesSwapped ? costModel.del(it2nodes[rGfirst_in_preL]) : costModel.ins(it2nodes[rGfirst_in_preL])); // USE COST MODEL - Insert rG.
+            sp2 += it2preR_to_insCost[rGfirst]; // USE COST MODEL - Insert rG.
             if (sp2 < minCost) {
               minCost = sp2;
             }
             if (sp3 < minCost) {
-              sp3 += treesSwapped ? delta[rGfirst_in_preL][rF_in_preL] : sp3deltapointer[rGfirst_in_preL];
+              sp3 += treesSwapped ? delta.get(rGfirst_in_preL, rF_in_preL) : delta.get(rF_in_preL, rGfirst_in_preL);
               if (sp3 < minCost) {
-                sp3 += (treesSwapped ? costModel.ren(it2nodes[rGfirst_in_preL], rFNode) : costModel.ren(rFNode, it2nodes[rGfirst_in_preL]));
+                sp3 += (labelCostModel != null ? (treesSwapped ? ren(it2labels[rGfirst_in_preL], rFLabel) : ren(rFLabel, it2labels[rGfirst_in_preL])) : (treesSwapped ? costModel.ren(it2nodes[rGfirst_in_preL], rFNode) : costModel.ren(rFNode, it2nodes[rGfirst_in_preL])));
                 if (sp3 < minCost) {
                   minCost = sp3;
                 }
@@ -1253,26 +2225,26 @@ public class APTED<C extends CostModel, D> {
               rG_in_preL = it2preR_to_preL[rG];
               // Increment size and cost of G forest by node rG.
               currentForestSize2++;
-              currentForestCost2 += (treesSwapped ? costModel.del(it2nodes[rG_in_preL]) : costModel.ins(it2nodes[rG_in_preL]));
+              currentForestCost2 += it2preR_to_insCost[rG];
               switch (sp1source) {
-                case 1: sp1 = sp1spointer[rG - it2PreRoff] + (treesSwapped ? costModel.ins(rFNode) : costModel.del(rFNode)); break; // USE COST MODEL - Delete rF.
-                case 2: sp1 = sp1tpointer[rG - it2PreRoff] + (treesSwapped ? costModel.ins(rFNode) : costModel.del(rFNode)); break; // USE COST MODEL - Delete rF.
-                case 3: sp1 = currentForestCost2 + (treesSwapped ? costModel.ins(rFNode) : costModel.del(rFNode)); break; // USE COST MODEL - Insert G_{lG,rG} and delete rF.
+                case 1: sp1 = sp1spointer[rG - it2PreRoff] + rFCost; break; // USE COST MODEL - Delete rF.
+                case 2: sp1 = sp1tpointer[rG - it2PreRoff] + rFCost; break; // USE COST MODEL - Delete rF.
+                case 3: sp1 = currentForestCost2 + rFCost; break; // USE COST MODEL - Insert G_{lG,rG} and delete rF.
               }
-              sp2 = sp2spointer[fn[rG] - it2PreRoff] + (treesSwapped ? costModel.del(it2nodes[rG_in_preL]) : costModel.ins(it2nodes[rG_in_preL])); // USE COST MODEL - Insert rG.
+              sp2 = sp2spointer[fn[rG] - it2PreRoff] + it2preR_to_insCost[rG]; // USE COST MODEL - Insert rG.
               minCost = sp1;
               if (sp2 < minCost) {
                 minCost = sp2;
               }
-              sp3 = treesSwapped ? delta[rG_in_preL][rF_in_preL] : sp3deltapointer[rG_in_preL];
+              sp3 = treesSwapped ? delta.get(rG_in_preL, rF_in_preL) : delta.get(rF_in_preL, rG_in_preL);
               if (sp3 < minCost) {
                 switch (sp3source) {
                   case 1: sp3 += sp3spointer[fn[(rG + it2sizes[rG_in_preL]) - 1] - it2PreRoff]; break;
-                  case 2: sp3 += currentForestCost2 - (treesSwapped ? it2.preL_to_sumDelCost[rG_in_preL] : it2.preL_to_sumInsCost[rG_in_preL]); break; // USE COST MODEL - Insert G_{lG,rG}-G_rG.
+                  case 2: sp3 += currentForestCost2 - it2preL_to_sumInsCost[rG_in_preL]; break; // USE COST MODEL - Insert G_{lG,rG}-G_rG.
                   case 3: sp3 += sp3tpointer[fn[(rG + it2sizes[rG_in_preL]) - 1] - it2PreRoff]; break;
                 }
                 if (sp3 < minCost) {
-                  sp3 += (treesSwapped ? costModel.ren(it2nodes[rG_in_preL], rFNode) : costModel.ren(rFNode, it2nodes[rG_in_preL])); // USE COST MODEL - Rename rF to rG.
+                  sp3 += (labelCostModel != null ? (treesSwapped ? ren(it2labels[rG_in_preL], rFLabel) : ren(rFLabel, it2labels[rG_in_preL])) : (treesSwapped ? costModel.ren(it2nodes[rG_in_preL], rFNode) : costModel.ren(rFNode, it2nodes[rG_in_preL]))); // USE COST MODEL - Rename rF to rG.
                   if (sp3 < minCost) {
                     minCost = sp3;
                   }
@@ -1286,26 +2258,33 @@ public class APTED<C extends CostModel, D> {
           if (lG > currentSubtreePreL2 && lG - 1 == parent_of_lG) {
             if (rightPart) {
               if (treesSwapped) {
-                delta[parent_of_lG][endPathNode] = s[(rFlast + 1) - it1PreRoff][(lGminus1_in_preR + 1) - it2PreRoff];
+                delta.set(parent_of_lG, endPathNode, s[(rFlast + 1) - it1PreRoff][(lGminus1_in_preR + 1) - it2PreRoff]);
               } else {
-                delta[endPathNode][parent_of_lG] = s[(rFlast + 1) - it1PreRoff][(lGminus1_in_preR + 1) - it2PreRoff];
+                delta.set(endPathNode, parent_of_lG, s[(rFlast + 1) - it1PreRoff][(lGminus1_in_preR + 1) - it2PreRoff]);
               }
             }
             if (endPathNode > 0 && endPathNode == parent_of_endPathNode + 1 && endPathNode_in_preR == parent_of_endPathNode_in_preR + 1)
               if (treesSwapped) {
-                delta[parent_of_lG][parent_of_endPathNode] = s[rFlast - it1PreRoff][(lGminus1_in_preR + 1) - it2PreRoff];
+                delta.set(parent_of_lG, parent_of_endPathNode, s[rFlast - it1PreRoff][(lGminus1_in_preR + 1) - it2PreRoff]);
               } else {
-                delta[parent_of_endPathNode][parent_of_lG] = s[rFlast - it1PreRoff][(lGminus1_in_preR + 1) - it2PreRoff];
+                delta.set(parent_of_endPathNode, parent_of_lG, s[rFlast - it1PreRoff][(lGminus1_in_preR + 1) - it2PreRoff]);
               }
             for (int rF = rFfirst; rF >= rFlast; rF--) {
               q[rF] = s[rF - it1PreRoff][(parent_of_lG_in_preR + 1) - it2PreRoff];
             }
           }
           // TODO: first pointers can be precomputed
+          windowSize2 = it2sizes[lG];
           for (int rG = rGfirst; rG >= rGlast; rG = ft[rG]) {
             t[lG - it2PreLoff][rG - it2PreRoff] = s[rFlast - it1PreRoff][rG - it2PreRoff];
+            if (checkForests) {
+              forestsBound = Math.min(forestsBound, t[lG - it2PreLoff][rG - it2PreRoff] + restBound(subtreeSize1 - currentForestSize1, subtreeSize2 - windowSize2++, treesSwapped));
+            }
           }
         }
+        if (checkForests) {
+          checkForestsBound(forestsBound, currentForestCost1, subtreeSize1 - currentForestSize1, subtreeSize2, treesSwapped);
+        }
       }
       // Walk up the path by one node.
       startPathNode = endPathNode;
@@ -1314,6 +2293,29 @@ public class APTED<C extends CostModel, D> {
     return minCost;
   }
 
+  /**
+   * Stops the computation in spfA of the input trees if the distances of a
+   * forest F_{lF,rF} of the left-hand tree, each plus a bound of the distance
+   * between the remaining nodes, exceed the threshold. An optimal mapping of
+   * the trees restricted to the forest maps it to the forest G_{lG,rG} with
+   * the leftmost and the rightmost image as lG and rG, or deletes it. The
+   * mapping preserves the preorders, hence no other node of G_{lG,rG} is
+   * mapped to a node outside F_{lF,rF}, and the remaining nodes are mapped
+   * only among each other.
+   *
+   * @param forestsBound minimum of the distances of the forest to all forests
+   *                     G_{lG,rG}, each plus the bound of the remaining nodes.
+   * @param forestCost cost of deleting the forest.
+   * @param rest1 number of nodes of the left-hand tree outside the forest.
+   * @param size2 size of the right-hand tree.
+   * @param treesSwapped true if the order of input trees has been swapped
+   *                     compared to the order in the single-path function.
+   * @throws ThresholdExceededException if the bound exceeds the threshold.
+   */
+  private void checkForestsBound(double forestsBound, float forestCost, int rest1, int size2, boolean treesSwapped) {
+    checkThreshold(Math.min(forestsBound, forestCost + restBound(rest1, size2, treesSwapped)));
+  }
+
   // ===================== BEGIN spfL
   /**
    * Implements single-path function for left paths [1, Sections 3.3,3.4,3.5].
@@ -1332,8 +2334,8 @@ public class APTED<C extends CostModel, D> {
   private float spfL(NodeIndexer it1, NodeIndexer it2, boolean treesSwapped) {
     // Initialise the array to store the keyroot nodes in the right-hand input
     // subtree.
-    int[] keyRoots = new int[it2.sizes[it2.getCurrentNode()]];
-    Arrays.fill(keyRoots, -1);
+    int[] keyRoots = workspace.keyRoots(it2.sizes[it2.getCurrentNode()]);
+    Arrays.fill(keyRoots, 0, it2.sizes[it2.getCurrentNode()], -1);
     // Get the leftmost leaf node of the right-hand input subtree.
     int pathID = it2.preL_to_lld(it2.getCurrentNode());
     // Calculate the keyroot nodes in the right-hand input subtree.
@@ -1342,7 +2344,7 @@ public class APTED<C extends CostModel, D> {
     // than the number of keyroot nodes.
     int firstKeyRoot = computeKeyRoots(it2, it2.getCurrentNode(), pathID, keyRoots, 0);
     // Initialise an array to store intermediate distances for subforest pairs.
-    float[][] forestdist = new float[it1.sizes[it1.getCurrentNode()]+1][it2.sizes[it2.getCurrentNode()]+1];
+    float[][] forestdist = workspace.forestdist(it1.sizes[it1.getCurrentNode()]+1, it2.sizes[it2.getCurrentNode()]+1);
     // Compute the distances between pairs of keyroot nodes. In the left-hand
     // input subtree only the root is the keyroot. Thus, we compute the distance
     // between the left-hand input subtree and all keyroot nodes in the
@@ -1355,35 +2357,50 @@ public class APTED<C extends CostModel, D> {
   }
 
   /**
-   * Calculates and stores keyroot nodes for left paths of the given subtree
-   * recursively.
+   * Calculates and stores keyroot nodes for left paths of the given subtree.
+   * The keyroot nodes are stored in the order of a preorder traversal of the
+   * nested subtrees, with an explicit stack instead of recursion.
    *
    * @param it2 node indexer.
-   * @param subtreeRootNode keyroot node - recursion point.
+   * @param subtreeRootNode root node of the subtree, the first keyroot node.
    * @param pathID left-to-right preorder id of the leftmost leaf node of subtreeRootNode.
    * @param keyRoots array that stores all key roots in the order of their left-to-right preorder ids.
    * @param index the index of keyRoots array where to store the next keyroot node.
    * @return the index of the first keyroot node to process.
    */
   // TODO: Merge with computeRevKeyRoots - the only difference is between leftmost and rightmost leaf.
-  private int computeKeyRoots(NodeIndexer it2, int subtreeRootNode, int pathID, int[] keyRoots, int index) {
-    // The subtreeRootNode is a keyroot node. Add it to keyRoots.
-    keyRoots[index] = subtreeRootNode;
-    // Increment the index to know where to store the next keyroot node.
-    index++;
-    // Walk up the left path starting with the leftmost leaf of subtreeRootNode,
-    // until the child of subtreeRootNode.
-    int pathNode = pathID;
-    while (pathNode > subtreeRootNode) {
-      int parent = it2.parents[pathNode];
-      // For each sibling to the right of pathNode, execute this method recursively.
-      // Each right sibling of pathNode is a keyroot node.
-      for (int child : it2.children[parent]) {
-        // Execute computeKeyRoots recursively for the new subtree rooted at child and child's leftmost leaf node.
-        if (child != pathNode) index = computeKeyRoots(it2, child, it2.preL_to_lld(child), keyRoots, index);
+  static int computeKeyRoots(NodeIndexer it2, int subtreeRootNode, int pathID, int[] keyRoots, int index) {
+    // The keyroot nodes still to visit are kept on a stack at the end of
+    // keyRoots. The visited and the waiting keyroot nodes are distinct, hence
+    // the stack never overlaps the stored keyroot nodes.
+    int top = keyRoots.length;
+    keyRoots[--top] = subtreeRootNode;
+    while (top < keyRoots.length) {
+      int keyRoot = keyRoots[top++];
+      // The keyRoot is a keyroot node. Add it to keyRoots.
+      keyRoots[index] = keyRoot;
+      // Increment the index to know where to store the next keyroot node.
+      index++;
+      // Walk up the left path starting with the leftmost leaf of keyRoot,
+      // until the child of keyRoot.
+      int pathNode = keyRoot == subtreeRootNode ? pathID : it2.preL_to_lld(keyRoot);
+      int firstPushed = top;
+      while (pathNode > keyRoot) {
+        int parent = it2.parents[pathNode];
+        // Each right sibling of pathNode is a keyroot node. Visit it later.
+        for (int c = it2.childrenOffsets[parent]; c < it2.childrenOffsets[parent + 1]; c++) {
+          int child = it2.children[c];
+          if (child != pathNode) keyRoots[--top] = child;
+        }
+        // Walk up.
+        pathNode = parent;
+      }
+      // Reverse the pushed keyroot nodes to visit them in the order of the path.
+      for (int i = top, j = firstPushed - 1; i < j; i++, j--) {
+        int k = keyRoots[i];
+        keyRoots[i] = keyRoots[j];
+        keyRoots[j] = k;
       }
-      // Walk up.
-      pathNode = parent;
     }
     return index;
   }
@@ -1415,40 +2432,105 @@ public class APTED<C extends CostModel, D> {
     // i+ioff and j+joff.
     int ioff = it1.postL_to_lld[i] - 1;
     int joff = it2.postL_to_lld[j] - 1;
-    // Variables holding costs of each minimum element.
-    float da = 0;
-    float db = 0;
-    float dc = 0;
     // Initialize forestdist array with deletion and insertion costs of each
     // relevant subforest.
+    // Costs of deleting nodes from the left-hand subtree and inserting nodes
+    // to the right-hand subtree. If the input subtrees have been swapped,
+    // deletions and insertions are swapped too.
+    float[] delCost1 = treesSwapped ? it1.postL_to_insCost : it1.postL_to_delCost;
+    float[] insCost2 = treesSwapped ? it2.postL_to_delCost : it2.postL_to_insCost;
+    int rows = i - ioff;
+    int cols = j - joff;
     forestdist[0][0] = 0;
-    for (int i1 = 1; i1 <= i - ioff; i1++) {
-      forestdist[i1][0] = forestdist[i1 - 1][0] + (treesSwapped ? costModel.ins(it1.postL_to_node(i1 + ioff)) : costModel.del(it1.postL_to_node(i1 + ioff))); // USE COST MODEL - delete i1.
+    for (int i1 = 1; i1 <= rows; i1++) {
+      forestdist[i1][0] = forestdist[i1 - 1][0] + delCost1[i1 + ioff]; // USE COST MODEL - delete i1.
+    }
+    for (int j1 = 1; j1 <= cols; j1++) {
+      forestdist[0][j1] = forestdist[0][j1 - 1] + insCost2[j1 + joff]; // USE COST MODEL - insert j1.
     }
-    for (int j1 = 1; j1 <= j - joff; j1++) {
-      forestdist[0][j1] = forestdist[0][j1 - 1] + (treesSwapped ? costModel.del(it2.postL_to_node(j1 + joff)) : costModel.ins(it2.postL_to_node(j1 + joff))); // USE COST MODEL - insert j1.
+    // Fill in the remaining costs, in tiles computed in parallel if the array
+    // is large enough.
+    // The array of the input trees is checked row by row against the
+    // threshold.
+    boolean checkRows = threshold < Float.POSITIVE_INFINITY && it1subtree == 0 && it2subtree == 0;
+    if (pool != null && (long)rows * cols >= parallelThreshold) {
+      fillInWavefront(rows, cols, (rowFrom, rowTo, colFrom, colTo) ->
+        treeEditDistTile(it1, it2, i, j, forestdist, treesSwapped, rowFrom, rowTo, colFrom, colTo),
+        checkRows ? i1 -> checkThreshold(forestdist[i1], rows - i1, cols, treesSwapped) : null);
+    } else if (checkRows) {
+      for (int i1 = 1; i1 <= rows; i1++) {
+        treeEditDistTile(it1, it2, i, j, forestdist, treesSwapped, i1, i1 + 1, 1, cols + 1);
+        checkThreshold(forestdist[i1], rows - i1, cols, treesSwapped);
+      }
+    } else {
+      treeEditDistTile(it1, it2, i, j, forestdist, treesSwapped, 1, rows + 1, 1, cols + 1);
     }
-    // Fill in the remaining costs.
-    for (int i1 = 1; i1 <= i - ioff; i1++) {
-      for (int j1 = 1; j1 <= j - joff; j1++) {
-        // Increment the number of subproblems.
-        counter++;
+    // Increment the number of subproblems.
+    counter += (long)rows * cols;
+  }
+
+  /**
+   * Fills in a tile of the forestdist array for the subtrees given to
+   * {@link #treeEditDist}. The cells above and left of the tile must be filled
+   * in.
+   *
+   * @param it1 node indexer of the left-hand input subtree.
+   * @param it2 node indexer of the right-hand input subtree.
+   * @param i left-to-right postorder id of the root node of the left-hand
+   *          input subtree.
+   * @param j left-to-right postorder id of the root node of the right-hand
+   *          input subtree.
+   * @param forestdist the array to be filled in with intermediate distances of
+   *                   subforest pairs.
+   * @param treesSwapped says if the order of input subtrees has been swapped
+   *                     compared to the order of the initial input trees.
+   * @param rowFrom first row of the tile (inclusive).
+   * @param rowTo last row of the tile (exclusive).
+   * @param colFrom first column of the tile (inclusive).
+   * @param colTo last column of the tile (exclusive).
+   */
+  private void treeEditDistTile(NodeIndexer it1, NodeIndexer it2, int i, int j, float[][] forestdist, boolean treesSwapped, int rowFrom, int rowTo, int colFrom, int colTo) {
+    int ioff = it1.postL_to_lld[i] - 1;
+    int joff = it2.postL_to_lld[j] - 1;
+    // Variables holding costs of each minimum element.
+    float da = 0;
+    float db = 0;
+    float dc = 0;
+    float[] delCost1 = treesSwapped ? it1.postL_to_insCost : it1.postL_to_delCost;
+    float[] insCost2 = treesSwapped ? it2.postL_to_delCost : it2.postL_to_insCost;
+    // Label ids for a LabelIdCostModel, null otherwise.
+    int[] labels1 = it1.postL_to_label;
+    int[] labels2 = it2.postL_to_label;
+    for (int i1 = rowFrom; i1 < rowTo; i1++) {
+      if (cancellation != null && (i1 & CANCELLATION_CHECK_MASK) == 0) {
+        cancellation.check();
+      }
+      Node<D> i1Node = it1.postL_to_node(i1 + ioff);
+      int i1Label = labelCostModel != null ? labels1[i1 + ioff] : -1;
+      float i1DelCost = delCost1[i1 + ioff];
+      for (int j1 = colFrom; j1 < colTo; j1++) {
         // Calculate partial distance values for this subproblem.
-        float u = (treesSwapped ? costModel.ren(it2.postL_to_node(j1 + joff), it1.postL_to_node(i1 + ioff)) : costModel.ren(it1.postL_to_node(i1 + ioff), it2.postL_to_node(j1 + joff))); // USE COST MODEL - rename i1 to j1.
-        da = forestdist[i1 - 1][j1] + (treesSwapped ? costModel.ins(it1.postL_to_node(i1 + ioff)) : costModel.del(it1.postL_to_node(i1 + ioff))); // USE COST MODEL - delete i1.
-        db = forestdist[i1][j1 - 1] + (treesSwapped ? costModel.del(it2.postL_to_node(j1 + joff)) : costModel.ins(it2.postL_to_node(j1 + joff))); // USE COST MODEL - insert j1.
+        float u;
+        if (labelCostModel != null) {
+          u = (treesSwapped ? ren(labels2[j1 + joff], i1Label) : ren(i1Label, labels2[j1 + joff])); // USE COST MODEL - rename i1 to j1.
+        } else {
+          Node<D> j1Node = it2.postL_to_node(j1 + joff);
+          u = (treesSwapped ? costModel.ren(j1Node, i1Node) : costModel.ren(i1Node, j1Node)); // USE COST MODEL - rename i1 to j1.
+        }
+        da = forestdist[i1 - 1][j1] + i1DelCost; // USE COST MODEL - delete i1.
+        db = forestdist[i1][j1 - 1] + insCost2[j1 + joff]; // USE COST MODEL - insert j1.
         // If current subforests are subtrees.
         if (it1.postL_to_lld[i1 + ioff] == it1.postL_to_lld[i] && it2.postL_to_lld[j1 + joff] == it2.postL_to_lld[j]) {
           dc = forestdist[i1 - 1][j1 - 1] + u;
           // Store the relevant distance value in delta array.
           if (treesSwapped) {
-            delta[it2.postL_to_preL[j1 + joff]][it1.postL_to_preL[i1 + ioff]] = forestdist[i1 - 1][j1 - 1];
+            delta.set(it2.postL_to_preL[j1 + joff], it1.postL_to_preL[i1 + ioff], forestdist[i1 - 1][j1 - 1]);
           } else {
-            delta[it1.postL_to_preL[i1 + ioff]][it2.postL_to_preL[j1 + joff]] = forestdist[i1 - 1][j1 - 1];
+            delta.set(it1.postL_to_preL[i1 + ioff], it2.postL_to_preL[j1 + joff], forestdist[i1 - 1][j1 - 1]);
           }
         } else {
           dc = forestdist[it1.postL_to_lld[i1 + ioff] - 1 - ioff][it2.postL_to_lld[j1 + joff] - 1 - joff] +
-            (treesSwapped ? delta[it2.postL_to_preL[j1 + joff]][it1.postL_to_preL[i1 + ioff]] : delta[it1.postL_to_preL[i1 + ioff]][it2.postL_to_preL[j1 + joff]]) + u;
+            (treesSwapped ? delta.get(it2.postL_to_preL[j1 + joff], it1.postL_to_preL[i1 + ioff]) : delta.get(it1.postL_to_preL[i1 + ioff], it2.postL_to_preL[j1 + joff])) + u;
         }
         // Calculate final minimum.
         forestdist[i1][j1] = da >= db ? db >= dc ? dc : db : da >= dc ? dc : da;
@@ -1475,8 +2557,8 @@ public class APTED<C extends CostModel, D> {
   private float spfR(NodeIndexer it1, NodeIndexer it2, boolean treesSwapped) {
     // Initialise the array to store the keyroot nodes in the right-hand input
     // subtree.
-    int[] revKeyRoots = new int[it2.sizes[it2.getCurrentNode()]];
-    Arrays.fill(revKeyRoots, -1);
+    int[] revKeyRoots = workspace.keyRoots(it2.sizes[it2.getCurrentNode()]);
+    Arrays.fill(revKeyRoots, 0, it2.sizes[it2.getCurrentNode()], -1);
     // Get the rightmost leaf node of the right-hand input subtree.
     int pathID = it2.preL_to_rld(it2.getCurrentNode());
     // Calculate the keyroot nodes in the right-hand input subtree.
@@ -1485,7 +2567,7 @@ public class APTED<C extends CostModel, D> {
     // than the number of keyroot nodes.
     int firstKeyRoot = computeRevKeyRoots(it2, it2.getCurrentNode(), pathID, revKeyRoots, 0);
     // Initialise an array to store intermediate distances for subforest pairs.
-    float[][] forestdist = new float[it1.sizes[it1.getCurrentNode()]+1][it2.sizes[it2.getCurrentNode()]+1];
+    float[][] forestdist = workspace.forestdist(it1.sizes[it1.getCurrentNode()]+1, it2.sizes[it2.getCurrentNode()]+1);
     // Compute the distances between pairs of keyroot nodes. In the left-hand
     // input subtree only the root is the keyroot. Thus, we compute the distance
     // between the left-hand input subtree and all keyroot nodes in the
@@ -1498,34 +2580,49 @@ public class APTED<C extends CostModel, D> {
   }
 
   /**
-   * Calculates and stores keyroot nodes for right paths of the given subtree
-   * recursively.
+   * Calculates and stores keyroot nodes for right paths of the given subtree.
+   * The keyroot nodes are stored in the order of a preorder traversal of the
+   * nested subtrees, with an explicit stack instead of recursion.
    *
    * @param it2 node indexer.
-   * @param subtreeRootNode keyroot node - recursion point.
+   * @param subtreeRootNode root node of the subtree, the first keyroot node.
    * @param pathID left-to-right preorder id of the rightmost leaf node of subtreeRootNode.
    * @param revKeyRoots array that stores all key roots in the order of their left-to-right preorder ids.
    * @param index the index of keyRoots array where to store the next keyroot node.
    * @return the index of the first keyroot node to process.
    */
-  private int computeRevKeyRoots(NodeIndexer it2, int subtreeRootNode, int pathID, int[] revKeyRoots, int index) {
-    // The subtreeRootNode is a keyroot node. Add it to keyRoots.
-    revKeyRoots[index] = subtreeRootNode;
-    // Increment the index to know where to store the next keyroot node.
-    index++;
-    // Walk up the right path starting with the rightmost leaf of
-    // subtreeRootNode, until the child of subtreeRootNode.
-    int pathNode = pathID;
-    while (pathNode > subtreeRootNode) {
-      int parent = it2.parents[pathNode];
-      // For each sibling to the left of pathNode, execute this method recursively.
-      // Each left sibling of pathNode is a keyroot node.
-      for (int child : it2.children[parent]) {
-        // Execute computeRevKeyRoots recursively for the new subtree rooted at child and child's rightmost leaf node.
-        if (child != pathNode) index = computeRevKeyRoots(it2, child, it2.preL_to_rld(child), revKeyRoots, index);
+  static int computeRevKeyRoots(NodeIndexer it2, int subtreeRootNode, int pathID, int[] revKeyRoots, int index) {
+    // The keyroot nodes still to visit are kept on a stack at the end of
+    // revKeyRoots. The visited and the waiting keyroot nodes are distinct, hence
+    // the stack never overlaps the stored keyroot nodes.
+    int top = revKeyRoots.length;
+    revKeyRoots[--top] = subtreeRootNode;
+    while (top < revKeyRoots.length) {
+      int keyRoot = revKeyRoots[top++];
+      // The keyRoot is a keyroot node. Add it to revKeyRoots.
+      revKeyRoots[index] = keyRoot;
+      // Increment the index to know where to store the next keyroot node.
+      index++;
+      // Walk up the right path starting with the rightmost leaf of keyRoot,
+      // until the child of keyRoot.
+      int pathNode = keyRoot == subtreeRootNode ? pathID : it2.preL_to_rld(keyRoot);
+      int firstPushed = top;
+      while (pathNode > keyRoot) {
+        int parent = it2.parents[pathNode];
+        // Each left sibling of pathNode is a keyroot node. Visit it later.
+        for (int c = it2.childrenOffsets[parent]; c < it2.childrenOffsets[parent + 1]; c++) {
+          int child = it2.children[c];
+          if (child != pathNode) revKeyRoots[--top] = child;
+        }
+        // Walk up.
+        pathNode = parent;
+      }
+      // Reverse the pushed keyroot nodes to visit them in the order of the path.
+      for (int i = top, j = firstPushed - 1; i < j; i++, j--) {
+        int k = revKeyRoots[i];
+        revKeyRoots[i] = revKeyRoots[j];
+        revKeyRoots[j] = k;
       }
-      // Walk up.
-      pathNode = parent;
     }
     return index;
   }
@@ -1558,40 +2655,105 @@ public class APTED<C extends CostModel, D> {
     // i+ioff and j+joff.
     int ioff = it1.postR_to_rld[i] - 1;
     int joff = it2.postR_to_rld[j] - 1;
-    // Variables holding costs of each minimum element.
-    float da = 0;
-    float db = 0;
-    float dc = 0;
     // Initialize forestdist array with deletion and insertion costs of each
     // relevant subforest.
+    // Costs of deleting nodes from the left-hand subtree and inserting nodes
+    // to the right-hand subtree. If the input subtrees have been swapped,
+    // deletions and insertions are swapped too.
+    float[] delCost1 = treesSwapped ? it1.postR_to_insCost : it1.postR_to_delCost;
+    float[] insCost2 = treesSwapped ? it2.postR_to_delCost : it2.postR_to_insCost;
+    int rows = i - ioff;
+    int cols = j - joff;
     forestdist[0][0] = 0;
-    for (int i1 = 1; i1 <= i - ioff; i1++) {
-      forestdist[i1][0] = forestdist[i1 - 1][0] + (treesSwapped ? costModel.ins(it1.postR_to_node(i1 + ioff)) : costModel.del(it1.postR_to_node(i1 + ioff))); // USE COST MODEL - delete i1.
+    for (int i1 = 1; i1 <= rows; i1++) {
+      forestdist[i1][0] = forestdist[i1 - 1][0] + delCost1[i1 + ioff]; // USE COST MODEL - delete i1.
+    }
+    for (int j1 = 1; j1 <= cols; j1++) {
+      forestdist[0][j1] = forestdist[0][j1 - 1] + insCost2[j1 + joff]; // USE COST MODEL - insert j1.
     }
-    for (int j1 = 1; j1 <= j - joff; j1++) {
-      forestdist[0][j1] = forestdist[0][j1 - 1] + (treesSwapped ? costModel.del(it2.postR_to_node(j1 + joff)) : costModel.ins(it2.postR_to_node(j1 + joff))); // USE COST MODEL - insert j1.
+    // Fill in the remaining costs, in tiles computed in parallel if the array
+    // is large enough.
+    // The array of the input trees is checked row by row against the
+    // threshold.
+    boolean checkRows = threshold < Float.POSITIVE_INFINITY && it1subtree == 0 && it2subtree == 0;
+    if (pool != null && (long)rows * cols >= parallelThreshold) {
+      fillInWavefront(rows, cols, (rowFrom, rowTo, colFrom, colTo) ->
+        revTreeEditDistTile(it1, it2, i, j, forestdist, treesSwapped, rowFrom, rowTo, colFrom, colTo),
+        checkRows ? i1 -> checkThreshold(forestdist[i1], rows - i1, cols, treesSwapped) : null);
+    } else if (checkRows) {
+      for (int i1 = 1; i1 <= rows; i1++) {
+        revTreeEditDistTile(it1, it2, i, j, forestdist, treesSwapped, i1, i1 + 1, 1, cols + 1);
+        checkThreshold(forestdist[i1], rows - i1, cols, treesSwapped);
+      }
+    } else {
+      revTreeEditDistTile(it1, it2, i, j, forestdist, treesSwapped, 1, rows + 1, 1, cols + 1);
     }
-    // Fill in the remaining costs.
-    for (int i1 = 1; i1 <= i - ioff; i1++) {
-      for (int j1 = 1; j1 <= j - joff; j1++) {
-        // Increment the number of subproblems.
-        counter++;
+    // Increment the number of subproblems.
+    counter += (long)rows * cols;
+  }
+
+  /**
+   * Fills in a tile of the forestdist array for the subtrees given to
+   * {@link #revTreeEditDist}. The cells above and left of the tile must be filled
+   * in.
+   *
+   * @param it1 node indexer of the left-hand input subtree.
+   * @param it2 node indexer of the right-hand input subtree.
+   * @param i right-to-left postorder id of the root node of the left-hand
+   *          input subtree.
+   * @param j right-to-left postorder id of the root node of the right-hand
+   *          input subtree.
+   * @param forestdist the array to be filled in with intermediate distances of
+   *                   subforest pairs.
+   * @param treesSwapped says if the order of input subtrees has been swapped
+   *                     compared to the order of the initial input trees.
+   * @param rowFrom first row of the tile (inclusive).
+   * @param rowTo last row of the tile (exclusive).
+   * @param colFrom first column of the tile (inclusive).
+   * @param colTo last column of the tile (exclusive).
+   */
+  private void revTreeEditDistTile(NodeIndexer it1, NodeIndexer it2, int i, int j, float[][] forestdist, boolean treesSwapped, int rowFrom, int rowTo, int colFrom, int colTo) {
+    int ioff = it1.postR_to_rld[i] - 1;
+    int joff = it2.postR_to_rld[j] - 1;
+    // Variables holding costs of each minimum element.
+    float da = 0;
+    float db = 0;
+    float dc = 0;
+    float[] delCost1 = treesSwapped ? it1.postR_to_insCost : it1.postR_to_delCost;
+    float[] insCost2 = treesSwapped ? it2.postR_to_delCost : it2.postR_to_insCost;
+    // Label ids for a LabelIdCostModel, null otherwise.
+    int[] labels1 = it1.postR_to_label;
+    int[] labels2 = it2.postR_to_label;
+    for (int i1 = rowFrom; i1 < rowTo; i1++) {
+      if (cancellation != null && (i1 & CANCELLATION_CHECK_MASK) == 0) {
+        cancellation.check();
+      }
+      Node<D> i1Node = it1.postR_to_node(i1 + ioff);
+      int i1Label = labelCostModel != null ? labels1[i1 + ioff] : -1;
+      float i1DelCost = delCost1[i1 + ioff];
+      for (int j1 = colFrom; j1 < colTo; j1++) {
         // Calculate partial distance values for this subproblem.
-        float u = (treesSwapped ? costModel.ren(it2.postR_to_node(j1 + joff), it1.postR_to_node(i1 + ioff)) : costModel.ren(it1.postR_to_node(i1 + ioff), it2.postR_to_node(j1 + joff))); // USE COST MODEL - rename i1 to j1.
-        da = forestdist[i1 - 1][j1] + (treesSwapped ? costModel.ins(it1.postR_to_node(i1 + ioff)) : costModel.del(it1.postR_to_node(i1 + ioff))); // USE COST MODEL - delete i1.
-        db = forestdist[i1][j1 - 1] + (treesSwapped ? costModel.del(it2.postR_to_node(j1 + joff)) : costModel.ins(it2.postR_to_node(j1 + joff))); // USE COST MODEL - insert j1.
+        float u;
+        if (labelCostModel != null) {
+          u = (treesSwapped ? ren(labels2[j1 + joff], i1Label) : ren(i1Label, labels2[j1 + joff])); // USE COST MODEL - rename i1 to j1.
+        } else {
+          Node<D> j1Node = it2.postR_to_node(j1 + joff);
+          u = (treesSwapped ? costModel.ren(j1Node, i1Node) : costModel.ren(i1Node, j1Node)); // USE COST MODEL - rename i1 to j1.
+        }
+        da = forestdist[i1 - 1][j1] + i1DelCost; // USE COST MODEL - delete i1.
+        db = forestdist[i1][j1 - 1] + insCost2[j1 + joff]; // USE COST MODEL - insert j1.
         // If current subforests are subtrees.
         if (it1.postR_to_rld[i1 + ioff] == it1.postR_to_rld[i] && it2.postR_to_rld[j1 + joff] == it2.postR_to_rld[j]) {
           dc = forestdist[i1 - 1][j1 - 1] + u;
           // Store the relevant distance value in delta array.
           if (treesSwapped) {
-            delta[it2.postR_to_preL[j1+joff]][it1.postR_to_preL[i1+ioff]] = forestdist[i1 - 1][j1 - 1];
+            delta.set(it2.postR_to_preL[j1+joff], it1.postR_to_preL[i1+ioff], forestdist[i1 - 1][j1 - 1]);
           } else {
-            delta[it1.postR_to_preL[i1+ioff]][it2.postR_to_preL[j1+joff]] = forestdist[i1 - 1][j1 - 1];
+            delta.set(it1.postR_to_preL[i1+ioff], it2.postR_to_preL[j1+joff], forestdist[i1 - 1][j1 - 1]);
           }
         } else {
           dc = forestdist[it1.postR_to_rld[i1 + ioff] - 1 - ioff][it2.postR_to_rld[j1 + joff] - 1 - joff] +
-            (treesSwapped ? delta[it2.postR_to_preL[j1 + joff]][it1.postR_to_preL[i1 + ioff]] : delta[it1.postR_to_preL[i1 + ioff]][it2.postR_to_preL[j1 + joff]]) + u;
+            (treesSwapped ? delta.get(it2.postR_to_preL[j1 + joff], it1.postR_to_preL[i1 + ioff]) : delta.get(it1.postR_to_preL[i1 + ioff], it2.postR_to_preL[j1 + joff])) + u;
         }
         // Calculate final minimum.
         forestdist[i1][j1] = da >= db ? db >= dc ? dc : db : da >= dc ? dc : da;
@@ -1600,6 +2762,144 @@ public class APTED<C extends CostModel, D> {
   }
   // ===================== END spfR
 
+  /**
+   * Stops the computation if all distances of a row of the forest distance
+   * array of the input trees, each plus a bound of the distance between the
+   * remaining nodes, exceed the threshold. A row holds the distances from a
+   * postorder prefix of the left-hand tree to all postorder prefixes of the
+   * right-hand tree. An optimal mapping of the trees restricted to the prefix
+   * is a mapping to one of the prefixes, and the nodes after the prefixes are
+   * mapped only among each other. Hence the minimum of the sums is a lower
+   * bound of the distance.
+   *
+   * @param row a filled in row of the forest distance array.
+   * @param rest1 number of nodes of the left-hand tree after the row.
+   * @param cols the last column of the row.
+   * @param treesSwapped true if the order of input trees has been swapped
+   *                     compared to the order in the single-path function.
+   * @throws ThresholdExceededException if the bound exceeds the threshold.
+   */
+  private void checkThreshold(float[] row, int rest1, int cols, boolean treesSwapped) {
+    double min = Double.POSITIVE_INFINITY;
+    for (int j1 = 0; j1 <= cols; j1++) {
+      min = Math.min(min, row[j1] + restBound(rest1, cols - j1, treesSwapped));
+    }
+    checkThreshold(min);
+  }
+
+  /**
+   * Stops the computation if a lower bound of the distance exceeds the
+   * threshold.
+   *
+   * @param bound lower bound of the distance, possibly of float values.
+   * @throws ThresholdExceededException if the bound exceeds the threshold.
+   */
+  private void checkThreshold(double bound) {
+    bound = roundingTolerant(bound);
+    if (bound > threshold) {
+      // The float below the bound may equal the threshold.
+      throw new ThresholdExceededException(Math.max(TEDLowerBounds.roundDown(bound), Math.nextUp(threshold)));
+    }
+  }
+
+  /**
+   * Lower bound of the distance between two parts of the input trees of the
+   * given sizes. At least the surplus nodes of the larger part are deleted or
+   * inserted.
+   *
+   * @param size1 number of nodes of the part of the left-hand tree.
+   * @param size2 number of nodes of the part of the right-hand tree.
+   * @param treesSwapped true if the order of input trees has been swapped
+   *                     compared to the order in the single-path function.
+   * @return lower bound of the distance between the parts.
+   */
+  private double restBound(int size1, int size2, boolean treesSwapped) {
+    if (size1 > size2) {
+      return (double)(size1 - size2) * (treesSwapped ? minInsCost : minDelCost);
+    }
+    return (double)(size2 - size1) * (treesSwapped ? minDelCost : minInsCost);
+  }
+
+  /**
+   * Stops a computation whose distance is known to exceed the threshold.
+   */
+  private static class ThresholdExceededException extends RuntimeException {
+
+    /**
+     * Version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Lower bound of the distance that exceeds the threshold.
+     */
+    final float bound;
+
+    /**
+     * Creates the exception without a stack trace. The constructor is not
+     * public, such that a fork-join pool rethrows this instance.
+     *
+     * @param bound lower bound of the distance.
+     */
+    ThresholdExceededException(float bound) {
+      super(null, null, false, false);
+      this.bound = bound;
+    }
+  }
+
+  /**
+   * Fills in a tile of a forestdist array.
+   */
+  private interface TileKernel {
+
+    /**
+     * Fills in the cells of a tile.
+     *
+     * @param rowFrom first row of the tile (inclusive).
+     * @param rowTo last row of the tile (exclusive).
+     * @param colFrom first column of the tile (inclusive).
+     * @param colTo last column of the tile (exclusive).
+     */
+    void fill(int rowFrom, int rowTo, int colFrom, int colTo);
+  }
+
+  /**
+   * Fills in a forestdist array of spfL or spfR in tiles, anti-diagonal by
+   * anti-diagonal. A cell depends only on cells above and left of it and on
+   * the distance matrix, hence the tiles of an anti-diagonal are independent
+   * and computed in parallel. The first row and column must be filled in.
+   *
+   * @param rows number of rows to fill in, starting with row 1.
+   * @param cols number of columns to fill in, starting with column 1.
+   * @param kernel the function filling in one tile.
+   * @param completedRow called with each row once it is filled in, or
+   *                     {@code null}.
+   */
+  private void fillInWavefront(int rows, int cols, TileKernel kernel, IntConsumer completedRow) {
+    int tileRows = (rows + WAVEFRONT_TILE_SIZE - 1) / WAVEFRONT_TILE_SIZE;
+    int tileCols = (cols + WAVEFRONT_TILE_SIZE - 1) / WAVEFRONT_TILE_SIZE;
+    List<ForkJoinTask<?>> tasks = new ArrayList<>();
+    for (int diagonal = 0; diagonal < tileRows + tileCols - 1; diagonal++) {
+      tasks.clear();
+      for (int r = Math.max(0, diagonal - tileCols + 1); r <= Math.min(diagonal, tileRows - 1); r++) {
+        int rowFrom = 1 + r * WAVEFRONT_TILE_SIZE;
+        int rowTo = Math.min(rows + 1, rowFrom + WAVEFRONT_TILE_SIZE);
+        int colFrom = 1 + (diagonal - r) * WAVEFRONT_TILE_SIZE;
+        int colTo = Math.min(cols + 1, colFrom + WAVEFRONT_TILE_SIZE);
+        tasks.add(ForkJoinTask.adapt(() -> kernel.fill(rowFrom, rowTo, colFrom, colTo)));
+      }
+      ForkJoinTask.invokeAll(tasks);
+      // The last tile of a tile row is on this anti-diagonal.
+      int completedTileRow = diagonal - tileCols + 1;
+      if (completedRow != null && completedTileRow >= 0) {
+        int rowFrom = 1 + completedTileRow * WAVEFRONT_TILE_SIZE;
+        for (int i1 = rowFrom; i1 < Math.min(rows + 1, rowFrom + WAVEFRONT_TILE_SIZE); i1++) {
+          completedRow.accept(i1);
+        }
+      }
+    }
+  }
+
   /**
    * Decodes the path from the optimal strategy to its type.
    *
@@ -1610,15 +2910,11 @@ public class APTED<C extends CostModel, D> {
    * @param currentSubtreeSize the size of the subtree currently processed in tree decomposition phase.
    * @return type of the strategy path (LEFT, RIGHT, INNER).
    */
-  private byte getStrategyPathType(int pathIDWithPathIDOffset, int pathIDOffset, NodeIndexer it, int currentRootNodePreL, int currentSubtreeSize) {
+  static byte getStrategyPathType(int pathIDWithPathIDOffset, int pathIDOffset, NodeIndexer it, int currentRootNodePreL, int currentSubtreeSize) {
     if (Integer.signum(pathIDWithPathIDOffset) == -1) {
       return LEFT;
     }
-    int pathID = Math.abs(pathIDWithPathIDOffset) - 1;
-    if (pathID >= pathIDOffset) {
-      pathID = pathID - pathIDOffset;
-    }
-    if (pathID == (currentRootNodePreL + currentSubtreeSize) - 1) {
+    if (pathLeaf(pathIDWithPathIDOffset, pathIDOffset) == (currentRootNodePreL + currentSubtreeSize) - 1) {
       return RIGHT;
     }
     return INNER;
@@ -1630,11 +2926,12 @@ public class APTED<C extends CostModel, D> {
    *
    * <p>TODO: Do not use it [1, Section 8.4].
    *
+   * @param fn the fn array.
    * @param lnForNode ---
    * @param node ---
    * @param currentSubtreePreL ---
    */
-  private void updateFnArray(int lnForNode, int node, int currentSubtreePreL) {
+  static void updateFnArray(int[] fn, int lnForNode, int node, int currentSubtreePreL) {
     if (lnForNode >= currentSubtreePreL) {
       fn[node] = fn[lnForNode];
       fn[lnForNode] = node;
@@ -1650,10 +2947,12 @@ public class APTED<C extends CostModel, D> {
    *
    * <p>TODO: Do not use it [1, Section 8.4].
    *
+   * @param fn the fn array.
+   * @param ft the ft array.
    * @param lnForNode ---
    * @param node ---
    */
-  private void updateFtArray(int lnForNode, int node) {
+  static void updateFtArray(int[] fn, int[] ft, int lnForNode, int node) {
     ft[node] = lnForNode;
     if(fn[node] > -1) {
       ft[fn[node]] = node;
@@ -1664,22 +2963,29 @@ public class APTED<C extends CostModel, D> {
    * Compute the edit mapping between two trees. The trees are input trees
    * to the distance computation and the distance must be computed before
    * computing the edit mapping (distances of subtree pairs are required).
+   * The mapping is computed for the trees of the last distance computation
+   * of this object. Use {@link APTEDEngine} to keep the state of several
+   * distance computations.
    *
    * @return Returns list of pairs of nodes that are mapped as pairs of their
    *         postorder IDs (starting with 1). Nodes that are deleted or
    *         inserted are mapped to 0.
+   * @throws IllegalStateException if the distance has not been computed for
+   *         the current input trees.
    */
   // TODO: Mapping computation requires more thorough documentation
   //       (methods computeEditMapping, forestDist, mappingCost).
-  // TODO: Before computing the mapping, verify if TED has been computed.
-  //       Mapping computation should trigger distance computation if
+  // TODO: Mapping computation should trigger distance computation if
   //       necessary.
   public List<int[]> computeEditMapping() {
+    if (delta == null) {
+      throw new IllegalStateException("The distance must be computed before the edit mapping.");
+    }
 
     // Initialize tree and forest distance arrays.
     // Arrays for subtree distrances is not needed because the distances
     // between subtrees without the root nodes are already stored in delta.
-    float[][] forestdist = new float[size1 + 1][size2 + 1];
+    float[][] forestdist = workspace.forestdist(size1 + 1, size2 + 1);
 
     boolean rootNodePair = true;
 
@@ -1713,11 +3019,11 @@ public class APTED<C extends CostModel, D> {
       int row = lastRow;
       int col = lastCol;
       while ((row > firstRow) || (col > firstCol)) {
-        if ((row > firstRow) && (forestdist[row - 1][col] + costModel.del(it1.postL_to_node(row-1)) == forestdist[row][col])) { // USE COST MODEL - Delete node row of source tree.
+        if ((row > firstRow) && (forestdist[row - 1][col] + it1.postL_to_delCost[row-1] == forestdist[row][col])) { // USE COST MODEL - Delete node row of source tree.
           // node with postorderID row is deleted from ted1
           editMapping.push(new int[] { row, 0 });
           row--;
-        } else if ((col > firstCol) && (forestdist[row][col - 1] + costModel.ins(it2.postL_to_node(col-1)) == forestdist[row][col])) { // USE COST MODEL - Insert node col of destination tree.
+        } else if ((col > firstCol) && (forestdist[row][col - 1] + it2.postL_to_insCost[col-1] == forestdist[row][col])) { // USE COST MODEL - Insert node col of destination tree.
           // node with postorderID col is inserted into ted2
           editMapping.push(new int[] { 0, col });
           col--;
@@ -1767,16 +3073,16 @@ public class APTED<C extends CostModel, D> {
     forestdist[ted1.postL_to_lld[i-1]][ted2.postL_to_lld[j-1]] = 0;
 
     for (int di = ted1.postL_to_lld[i-1]+1; di <= i; di++) {
-      forestdist[di][ted2.postL_to_lld[j-1]] = forestdist[di - 1][ted2.postL_to_lld[j-1]] + costModel.del(ted1.postL_to_node(di-1));
+      forestdist[di][ted2.postL_to_lld[j-1]] = forestdist[di - 1][ted2.postL_to_lld[j-1]] + ted1.postL_to_delCost[di-1];
       for (int dj = ted2.postL_to_lld[j-1]+1; dj <= j; dj++) {
-        forestdist[ted1.postL_to_lld[i-1]][dj] = forestdist[ted1.postL_to_lld[i-1]][dj - 1] + costModel.ins(ted2.postL_to_node(dj-1));
-        float costRen = costModel.ren(ted1.postL_to_node(di-1), ted2.postL_to_node(dj-1));
+        forestdist[ted1.postL_to_lld[i-1]][dj] = forestdist[ted1.postL_to_lld[i-1]][dj - 1] + ted2.postL_to_insCost[dj-1];
+        float costRen = labelCostModel != null ? ren(ted1.postL_to_label[di-1], ted2.postL_to_label[dj-1]) : costModel.ren(ted1.postL_to_node(di-1), ted2.postL_to_node(dj-1));
         // TODO: The first two elements of the minimum can be computed here,
         //       similarly to spfL and spfR.
         if ((ted1.postL_to_lld[di-1] == ted1.postL_to_lld[i-1]) && (ted2.postL_to_lld[dj-1] == ted2.postL_to_lld[j-1])) {
           forestdist[di][dj] = Math.min(Math.min(
-                  forestdist[di - 1][dj] + costModel.del(ted1.postL_to_node(di-1)),
-                  forestdist[di][dj - 1] + costModel.ins(ted2.postL_to_node(dj-1))),
+                  forestdist[di - 1][dj] + ted1.postL_to_delCost[di-1],
+                  forestdist[di][dj - 1] + ted2.postL_to_insCost[dj-1]),
                   forestdist[di - 1][dj - 1] + costRen);
           // If substituted with delta, this will overwrite the value
           // in delta.
@@ -1787,16 +3093,41 @@ public class APTED<C extends CostModel, D> {
           // treedist[di][dj] = forestdist[di][dj];
         } else {
           // di and dj are postorder ids of the nodes - starting with 1
-          // Substituted 'treedist[di][dj]' with 'delta[it1.postL_to_preL[di-1]][it2.postL_to_preL[dj-1]]'
+          // Substituted 'treedist[di][dj]' with 'delta.get(it1.postL_to_preL[di-1], it2.postL_to_preL[dj-1])'
           forestdist[di][dj] = Math.min(Math.min(
-                  forestdist[di - 1][dj] + costModel.del(ted1.postL_to_node(di-1)),
-                  forestdist[di][dj - 1] + costModel.ins(ted2.postL_to_node(dj-1))),
-                  forestdist[ted1.postL_to_lld[di-1]][ted2.postL_to_lld[dj-1]] + delta[it1.postL_to_preL[di-1]][it2.postL_to_preL[dj-1]] + costRen);
+                  forestdist[di - 1][dj] + ted1.postL_to_delCost[di-1],
+                  forestdist[di][dj - 1] + ted2.postL_to_insCost[dj-1]),
+                  forestdist[ted1.postL_to_lld[di-1]][ted2.postL_to_lld[dj-1]] + delta.get(it1.postL_to_preL[di-1], it2.postL_to_preL[dj-1]) + costRen);
         }
       }
     }
   }
 
+  /**
+   * Releases the arrays of the workspace. The distance matrix, the node
+   * indexers and the rename costs of the last computation are kept, such
+   * that the edit mapping can still be computed. The mapping computation
+   * allocates its forest distance array again.
+   *
+   * @see APTEDResult
+   */
+  void releaseWorkspace() {
+    workspace.clear();
+    q = null;
+    fn = null;
+    ft = null;
+  }
+
+  /**
+   * Returns the number of subproblems encountered while computing the last
+   * distance [1, Section 10].
+   *
+   * @return number of subproblems.
+   */
+  public long getSubproblemCount() {
+    return counter;
+  }
+
   /**
    * Calculates the cost of an edit mapping. It traverses the mapping and sums
    * up the cost of each operation. The costs are taken from the cost model.
@@ -1805,14 +3136,30 @@ public class APTED<C extends CostModel, D> {
    * @return cost of edit mapping.
    */
   public float mappingCost(List<int[]> mapping) {
+    return mappingCost(costModel, it1, it2, mapping);
+  }
+
+  /**
+   * Calculates the cost of an edit mapping between two indexed trees.
+   *
+   * @param costModel the cost model of the edit operations.
+   * @param it1 node indexer of the source tree.
+   * @param it2 node indexer of the destination tree.
+   * @param mapping an edit mapping as pairs of postorder ids (starting with
+   *                1), with deleted and inserted nodes mapped to 0.
+   * @return cost of edit mapping.
+   * @see #mappingCost(List)
+   */
+  static float mappingCost(CostModel costModel, NodeIndexer it1, NodeIndexer it2, List<int[]> mapping) {
     float cost = 0.0f;
-    for (int i = 0; i < mapping.size(); i++) {
-      if (mapping.get(i)[0] == 0) { // Insertion.
-          cost += costModel.ins(it2.postL_to_node(mapping.get(i)[1]-1));
-      } else if (mapping.get(i)[1] == 0) { // Deletion.
-          cost += costModel.del(it1.postL_to_node(mapping.get(i)[0]-1));
+    // The mapping may be a linked list.
+    for (int[] pair : mapping) {
+      if (pair[0] == 0) { // Insertion.
+          cost += costModel.ins(it2.postL_to_node(pair[1]-1));
+      } else if (pair[1] == 0) { // Deletion.
+          cost += costModel.del(it1.postL_to_node(pair[0]-1));
       } else { // Rename.
-        cost += costModel.ren(it1.postL_to_node(mapping.get(i)[0]-1), it2.postL_to_node(mapping.get(i)[1]-1));
+        cost += costModel.ren(it1.postL_to_node(pair[0]-1), it2.postL_to_node(pair[1]-1));
       }
     }
     return cost;
@@ -0,0 +1,153 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.distance;
+
+import at.unisalzburg.dbresearch.apted.node.Node;
+import at.unisalzburg.dbresearch.apted.node.NodeIndexer;
+import at.unisalzburg.dbresearch.apted.costmodel.CostModel;
+
+/**
+ * A thread-safe entry point to APTED algorithm [1,2]. An engine holds only
+ * the configuration, that is, the cost model. Every distance computation
+ * gets its own state, returned as an {@link APTEDResult} together with the
+ * distance. One engine can serve concurrent computations without pooling or
+ * locking.
+ *
+ * <p>The cost model is shared by all computations. Its methods must be
+ * thread-safe, including {@link costmodel.LabelIdCostModel#labelId} if the
+ * trees are passed as {@link Node} objects and indexed by the engine.
+ *
+ * <p>References:
+ * <ul>
+ * <li>[1] M. Pawlik and N. Augsten. Efficient Computation of the Tree Edit
+ *      Distance. ACM Transactions on Database Systems (TODS) 40(1). 2015.
+ * <li>[2] M. Pawlik and N. Augsten. Tree edit distance: Robust and memory-
+ *      efficient. Information Systems 56. 2016.
+ * </ul>
+ *
+ * @param <C> type of cost model.
+ * @param <D> type of node data.
+ * @see APTED
+ */
+public final class APTEDEngine<C extends CostModel, D> {
+
+  /**
+   * Cost model to be used for calculating costs of edit operations.
+   */
+  private final C costModel;
+
+  /**
+   * Constructs the engine with the specified cost model.
+   *
+   * @param costModel cost model for edit operations.
+   */
+  public APTEDEngine(C costModel) {
+    this.costModel = costModel;
+  }
+
+  /**
+   * Returns the cost model of this engine.
+   *
+   * @return cost model.
+   */
+  public C getCostModel() {
+    return costModel;
+  }
+
+  /**
+   * Compute tree edit distance between source and destination trees.
+   *
+   * @param t1 source tree.
+   * @param t2 destination tree.
+   * @return the distance and the state to compute the edit mapping.
+   */
+  public APTEDResult<C, D> computeEditDistance(Node<D> t1, Node<D> t2) {
+    APTED<C, D> apted = new APTED<>(costModel);
+    float distance = apted.computeEditDistance(t1, t2);
+    return new APTEDResult<>(apted, distance);
+  }
+
+  /**
+   * Compute tree edit distance between two trees indexed in advance. The
+   * indexers are not modified and can be shared by concurrent computations.
+   *
+   * @param it1 node indexer of the source tree.
+   * @param it2 node indexer of the destination tree.
+   * @return the distance and the state to compute the edit mapping.
+   * @see APTED#computeEditDistance(NodeIndexer, NodeIndexer)
+   */
+  public APTEDResult<C, D> computeEditDistance(NodeIndexer it1, NodeIndexer it2) {
+    APTED<C, D> apted = new APTED<>(costModel);
+    float distance = apted.computeEditDistance(it1, it2);
+    return new APTEDResult<>(apted, distance);
+  }
+
+  /**
+   * Compute tree edit distance between source and destination trees, unless
+   * the computation is cancelled by the given token.
+   *
+   * @param t1 source tree.
+   * @param t2 destination tree.
+   * @param cancellation token that stops the computation.
+   * @return the distance and the state to compute the edit mapping.
+   * @throws ComputationCancelledException if the token is cancelled before
+   *         the distance is computed.
+   */
+  public APTEDResult<C, D> computeEditDistance(Node<D> t1, Node<D> t2, CancellationToken cancellation) {
+    APTED<C, D> apted = new APTED<>(costModel);
+    float distance = apted.computeEditDistance(t1, t2, cancellation);
+    return new APTEDResult<>(apted, distance);
+  }
+
+  /**
+   * Compute tree edit distance between two trees indexed in advance, unless
+   * the computation is cancelled by the given token.
+   *
+   * @param it1 node indexer of the source tree.
+   * @param it2 node indexer of the destination tree.
+   * @param cancellation token that stops the computation.
+   * @return the distance and the state to compute the edit mapping.
+   * @throws ComputationCancelledException if the token is cancelled before
+   *         the distance is computed.
+   */
+  public APTEDResult<C, D> computeEditDistance(NodeIndexer it1, NodeIndexer it2, CancellationToken cancellation) {
+    APTED<C, D> apted = new APTED<>(costModel);
+    float distance = apted.computeEditDistance(it1, it2, cancellation);
+    return new APTEDResult<>(apted, distance);
+  }
+
+  /**
+   * Estimates the number of subproblems and the peak memory of computing the
+   * tree edit distance between the source and destination trees, without
+   * computing it.
+   *
+   * @param t1 source tree.
+   * @param t2 destination tree.
+   * @return resource estimate.
+   * @see APTED#estimate(Node, Node)
+   */
+  public ResourceEstimate estimate(Node<D> t1, Node<D> t2) {
+    return new APTED<C, D>(costModel).estimate(t1, t2);
+  }
+}
@@ -0,0 +1,120 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.distance;
+
+import java.util.List;
+import at.unisalzburg.dbresearch.apted.costmodel.CostModel;
+
+/**
+ * The result of a single distance computation of {@link APTEDEngine}. Holds
+ * the distance, the number of subproblems, and the state required to
+ * compute the edit mapping of the two input trees.
+ *
+ * <p>A result retains the distance matrix of its computation, which is
+ * quadratic in the sizes of the input trees, until it is unreachable. The
+ * other arrays of the computation are released when the result is created,
+ * and those of a mapping computation when the mapping is returned. A result
+ * is meant to be used by one thread at a time.
+ *
+ * @param <C> type of cost model.
+ * @param <D> type of node data.
+ */
+public class APTEDResult<C extends CostModel, D> {
+
+  /**
+   * The algorithm object that computed the distance, without its workspace
+   * arrays.
+   */
+  private final APTED<C, D> apted;
+
+  /**
+   * The tree edit distance.
+   */
+  private final float distance;
+
+  /**
+   * The number of subproblems encountered while computing the distance.
+   */
+  private final long subproblemCount;
+
+  /**
+   * Creates the result of a computation.
+   *
+   * @param apted the algorithm object that computed the distance.
+   * @param distance the tree edit distance.
+   */
+  APTEDResult(APTED<C, D> apted, float distance) {
+    apted.releaseWorkspace();
+    this.apted = apted;
+    this.distance = distance;
+    this.subproblemCount = apted.getSubproblemCount();
+  }
+
+  /**
+   * Returns the tree edit distance.
+   *
+   * @return tree edit distance.
+   */
+  public float getDistance() {
+    return distance;
+  }
+
+  /**
+   * Returns the number of subproblems encountered while computing the
+   * distance.
+   *
+   * @return number of subproblems.
+   */
+  public long getSubproblemCount() {
+    return subproblemCount;
+  }
+
+  /**
+   * Compute the edit mapping between the input trees of this result.
+   *
+   * @return list of pairs of nodes that are mapped as pairs of their
+   *         postorder IDs (starting with 1). Nodes that are deleted or
+   *         inserted are mapped to 0.
+   * @see APTED#computeEditMapping()
+   */
+  public List<int[]> computeEditMapping() {
+    try {
+      return apted.computeEditMapping();
+    } finally {
+      apted.releaseWorkspace();
+    }
+  }
+
+  /**
+   * Calculates the cost of an edit mapping between the input trees of this
+   * result.
+   *
+   * @param mapping an edit mapping.
+   * @return cost of edit mapping.
+   * @see APTED#mappingCost(List)
+   */
+  public float mappingCost(List<int[]> mapping) {
+    return apted.mappingCost(mapping);
+  }
+}
@@ -0,0 +1,451 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.distance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import at.unisalzburg.dbresearch.apted.node.Node;
+import at.unisalzburg.dbresearch.apted.node.NodeIndexer;
+import at.unisalzburg.dbresearch.apted.costmodel.CostModel;
+
+/**
+ * Computes the tree edit distances between all pairs of trees of a list with
+ * APTED algorithm, in parallel on a fork-join pool.
+ *
+ * <p>Each tree is indexed once, on the calling thread. The pairs of trees are
+ * then computed by one task per thread of the pool, and every task computes
+ * its pairs with its own {@link APTED} object and {@link Workspace}. If the
+ * cost model is symmetric (see {@link CostModel#isSymmetric()}), the distance
+ * of each pair is computed once. Otherwise, it is computed in both
+ * directions.
+ *
+ * <p>The pairs are scheduled by their estimated cost, the product of the tree
+ * sizes, with the most expensive first (longest processing time first). The
+ * tasks take the next pairs from a shared list. The big pairs, each of which
+ * would keep a thread busy for a large share of the total time, are computed
+ * first with their independent subproblems in parallel (see
+ * {@link APTED#APTED(CostModel, Workspace, ForkJoinPool, long)}). The
+ * remaining pairs follow in chunks, in the order of the trees sorted by
+ * decreasing size, which roughly decreases their cost. Hence, no large pair
+ * is left for the end of the computation.
+ *
+ * <p>A similarity join computes only the distances up to a threshold. The
+ * pairs whose lower bound (see {@link TEDLowerBounds}) exceeds the threshold
+ * are filtered out, and the remaining pairs are computed with a threshold
+ * (see {@link APTED#computeEditDistance(NodeIndexer, NodeIndexer, float)}).
+ *
+ * <p>The cost model is shared by all worker threads. Its del, ins and ren
+ * methods must be thread-safe. Its label ids (see
+ * {@link costmodel.LabelIdCostModel}) are only requested while indexing.
+ *
+ * @param <C> type of cost model.
+ * @param <D> type of node data.
+ * @see DistanceMatrix
+ */
+public class AllPairsAPTED<C extends CostModel, D> {
+
+  /**
+   * Maximum number of pairs of trees computed by a task without taking the
+   * next pairs.
+   */
+  private static final int PAIRS_PER_TASK = 8;
+
+  /**
+   * Minimum estimated cost of a big pair, computed with its subproblems in
+   * parallel.
+   */
+  static final long MIN_BIG_PAIR_COST = 1L << 20;
+
+  /**
+   * The big pairs are those whose estimated cost exceeds the total cost
+   * divided by this factor and by the parallelism of the pool.
+   */
+  private static final int BIG_PAIR_FACTOR = 4;
+
+  /**
+   * A subproblem of a big pair is decomposed in parallel if its cost is at
+   * least the cost of the pair divided by this factor and by the parallelism
+   * of the pool.
+   */
+  private static final int SUBPROBLEM_FACTOR = 8;
+
+  /**
+   * Cost model to be used for calculating costs of edit operations.
+   */
+  private C costModel;
+
+  /**
+   * The pool that runs the tasks.
+   */
+  private ForkJoinPool pool;
+
+  /**
+   * Constructs the algorithm object with the specified cost model. The
+   * distances are computed on the common fork-join pool.
+   *
+   * @param costModel cost model for edit operations.
+   */
+  public AllPairsAPTED(C costModel) {
+    this(costModel, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Constructs the algorithm object with the specified cost model and pool.
+   *
+   * @param costModel cost model for edit operations.
+   * @param pool fork-join pool to compute the distances on.
+   */
+  public AllPairsAPTED(C costModel, ForkJoinPool pool) {
+    this.costModel = costModel;
+    this.pool = pool;
+  }
+
+  /**
+   * Computes the tree edit distances between all pairs of the given trees.
+   *
+   * @param trees input trees.
+   * @return the distance matrix of the trees, indexed by their positions in
+   *         the list.
+   * @throws IllegalArgumentException if there are too many trees to store
+   *         their distances in a single array.
+   */
+  public DistanceMatrix computeDistanceMatrix(List<Node<D>> trees) {
+    return computeDistanceMatrix(trees, Float.POSITIVE_INFINITY, null);
+  }
+
+  /**
+   * Computes the tree edit distances up to a threshold between all pairs of
+   * the given trees. The pairs whose lower bound exceeds the threshold are
+   * not computed.
+   *
+   * @param trees input trees.
+   * @param threshold the maximum distance of interest.
+   * @param lowerBounds the lower bounds to filter the pairs with, or
+   *                    {@code null} to compute all pairs with the threshold.
+   * @return the distance matrix of the trees, indexed by their positions in
+   *         the list. A distance greater than the threshold is a lower bound
+   *         of the distance.
+   * @throws IllegalArgumentException if there are too many trees to store
+   *         their distances in a single array.
+   */
+  public DistanceMatrix computeDistanceMatrix(List<Node<D>> trees, float threshold, TEDLowerBounds lowerBounds) {
+    int size = trees.size();
+    DistanceMatrix matrix = new DistanceMatrix(size, costModel.isSymmetric());
+    // Index each tree once.
+    NodeIndexer[] indexers = new NodeIndexer[size];
+    for (int i = 0; i < size; i++) {
+      indexers[i] = new NodeIndexer(trees.get(i), costModel);
+    }
+    if (size < 2) {
+      return matrix;
+    }
+    TEDLowerBounds.Signature[] signatures = null;
+    if (lowerBounds != null) {
+      signatures = new TEDLowerBounds.Signature[size];
+      for (int i = 0; i < size; i++) {
+        signatures[i] = new TEDLowerBounds.Signature(indexers[i]);
+      }
+    }
+    pool.invoke(new ScheduleTask(new Schedule(indexers, matrix, pool.getParallelism(), threshold, lowerBounds, signatures)));
+    return matrix;
+  }
+
+  /**
+   * The pairs of trees in the order of computation, shared by the tasks. The
+   * trees are sorted by decreasing size. The big pairs are numbered first, in
+   * the order of decreasing cost, and the other pairs follow in chunks of
+   * pairs (i, j) of the sorted trees with i smaller than j, numbered row by
+   * row as in {@link DistanceMatrix}.
+   */
+  private class Schedule {
+
+    /**
+     * Node indexers of the input trees, in the order of the input.
+     */
+    final NodeIndexer[] indexers;
+
+    /**
+     * The matrix to store the distances in.
+     */
+    final DistanceMatrix matrix;
+
+    /**
+     * Positions of the input trees, sorted by decreasing tree size.
+     */
+    final int[] order;
+
+    /**
+     * Sizes of the trees, in the sorted order.
+     */
+    final long[] sizes;
+
+    /**
+     * The big pairs as positions of the sorted trees, in the order of
+     * decreasing cost.
+     */
+    final int[][] bigPairs;
+
+    /**
+     * Pairs whose estimated cost is at least this cost are big.
+     */
+    final long bigPairCost;
+
+    /**
+     * The parallelism of the pool.
+     */
+    final int parallelism;
+
+    /**
+     * The maximum distance of interest. Infinite if all distances are
+     * computed exactly.
+     */
+    final float threshold;
+
+    /**
+     * The lower bounds to filter the pairs with, or {@code null}.
+     */
+    final TEDLowerBounds lowerBounds;
+
+    /**
+     * Signatures of the input trees, in the order of the input. Used only
+     * with lower bounds.
+     */
+    final TEDLowerBounds.Signature[] signatures;
+
+    /**
+     * The number of the next work unit to compute: a big pair, or a chunk of
+     * the other pairs.
+     */
+    final AtomicLong next = new AtomicLong();
+
+    /**
+     * The number of work units.
+     */
+    final long units;
+
+    /**
+     * Sorts the trees, estimates the total cost and finds the big pairs.
+     *
+     * @param indexers node indexers of the input trees.
+     * @param matrix the matrix to store the distances in.
+     * @param parallelism the parallelism of the pool.
+     * @param threshold the maximum distance of interest.
+     * @param lowerBounds the lower bounds to filter the pairs with, or
+     *                    {@code null}.
+     * @param signatures signatures of the input trees if filtered.
+     */
+    Schedule(NodeIndexer[] indexers, DistanceMatrix matrix, int parallelism, float threshold, TEDLowerBounds lowerBounds, TEDLowerBounds.Signature[] signatures) {
+      this.indexers = indexers;
+      this.matrix = matrix;
+      this.parallelism = parallelism;
+      this.threshold = threshold;
+      this.lowerBounds = lowerBounds;
+      this.signatures = signatures;
+      int size = indexers.length;
+      // Sort the trees by decreasing size. The sizes and positions are packed
+      // into longs to sort them without boxing.
+      long[] packed = new long[size];
+      for (int i = 0; i < size; i++) {
+        packed[i] = ((long)indexers[i].getSize() << 32) | i;
+      }
+      Arrays.sort(packed);
+      order = new int[size];
+      sizes = new long[size];
+      long sum = 0;
+      long sumOfSquares = 0;
+      for (int i = 0; i < size; i++) {
+        order[i] = (int)packed[size - 1 - i];
+        sizes[i] = packed[size - 1 - i] >>> 32;
+        sum += sizes[i];
+        sumOfSquares += sizes[i] * sizes[i];
+      }
+      // The total cost of all pairs (i, j) with i smaller than j.
+      long totalCost = (sum * sum - sumOfSquares) / 2;
+      bigPairCost = Math.max(totalCost / ((long)BIG_PAIR_FACTOR * parallelism) + 1, MIN_BIG_PAIR_COST);
+      // Find the big pairs. Their number is at most the factor times the
+      // parallelism. In the sorted order, the costs decrease along each row
+      // and the first pairs of the rows.
+      List<int[]> big = new ArrayList<>();
+      for (int i = 0; i + 1 < size && sizes[i] * sizes[i + 1] >= bigPairCost; i++) {
+        for (int j = i + 1; j < size && sizes[i] * sizes[j] >= bigPairCost; j++) {
+          big.add(new int[] {i, j});
+        }
+      }
+      bigPairs = big.toArray(new int[big.size()][]);
+      Arrays.sort(bigPairs, (p1, p2) -> Long.compare(sizes[p2[0]] * sizes[p2[1]], sizes[p1[0]] * sizes[p1[1]]));
+      long pairs = (long)size * (size - 1) / 2;
+      units = bigPairs.length + (pairs + PAIRS_PER_TASK - 1) / PAIRS_PER_TASK;
+    }
+
+    /**
+     * Computes the work units taken from the shared list until all of them
+     * are taken.
+     *
+     * @param apted algorithm object for the pairs that are not big.
+     */
+    void run(APTED<C, D> apted) {
+      long unit;
+      while ((unit = next.getAndIncrement()) < units) {
+        if (unit < bigPairs.length) {
+          computeBigPair(bigPairs[(int)unit][0], bigPairs[(int)unit][1]);
+        } else {
+          long from = (unit - bigPairs.length) * PAIRS_PER_TASK;
+          computePairs(apted, from, Math.min(from + PAIRS_PER_TASK, (long)indexers.length * (indexers.length - 1) / 2));
+        }
+      }
+    }
+
+    /**
+     * Computes a big pair with its independent subproblems in parallel.
+     *
+     * @param i position of the first tree in the sorted order.
+     * @param j position of the second tree in the sorted order.
+     */
+    private void computeBigPair(int i, int j) {
+      long threshold = sizes[i] * sizes[j] / ((long)SUBPROBLEM_FACTOR * parallelism);
+      APTED<C, D> apted = new APTED<>(costModel, new Workspace(), pool, threshold);
+      computePair(apted, order[i], order[j]);
+    }
+
+    /**
+     * Computes a range of the pairs that are not big.
+     *
+     * @param apted algorithm object of the current thread.
+     * @param from the first pair of the range (inclusive).
+     * @param to the last pair of the range (exclusive).
+     */
+    private void computePairs(APTED<C, D> apted, long from, long to) {
+      int size = indexers.length;
+      // Find the row of the first pair of the range. Solve rowStart(i) = from
+      // for i and correct the rounding errors.
+      double b = 2.0 * size - 1;
+      int i = (int)((b - Math.sqrt(b * b - 8.0 * from)) / 2);
+      while (i > 0 && rowStart(i, size) > from) {
+        i--;
+      }
+      while (rowStart(i + 1, size) <= from) {
+        i++;
+      }
+      int j = (int)(from - rowStart(i, size)) + i + 1;
+      for (long pair = from; pair < to; pair++) {
+        // The big pairs are computed separately.
+        if (sizes[i] * sizes[j] < bigPairCost) {
+          computePair(apted, order[i], order[j]);
+        }
+        if (++j == size) {
+          i++;
+          j = i + 1;
+        }
+      }
+    }
+
+    /**
+     * Computes the distance of a pair of trees, in both directions if the
+     * distance is not symmetric, and stores it.
+     *
+     * @param apted algorithm object of the current thread.
+     * @param i position of the first tree in the input.
+     * @param j position of the second tree in the input.
+     */
+    private void computePair(APTED<C, D> apted, int i, int j) {
+      matrix.set(i, j, computeDistance(apted, i, j));
+      if (!matrix.isSymmetric()) {
+        matrix.set(j, i, computeDistance(apted, j, i));
+      }
+    }
+
+    /**
+     * Computes the distance from one tree to another up to the threshold,
+     * unless its lower bound exceeds the threshold.
+     *
+     * @param apted algorithm object of the current thread.
+     * @param i position of the source tree in the input.
+     * @param j position of the destination tree in the input.
+     * @return the distance, or a lower bound greater than the threshold.
+     */
+    private float computeDistance(APTED<C, D> apted, int i, int j) {
+      if (lowerBounds != null) {
+        float bound = lowerBounds.lowerBound(signatures[i], signatures[j], threshold);
+        if (bound > threshold) {
+          return bound;
+        }
+      }
+      return apted.computeEditDistance(indexers[i], indexers[j], threshold);
+    }
+  }
+
+  /**
+   * Runs one task per thread of the pool, each computing the work units of a
+   * schedule.
+   */
+  private class ScheduleTask extends RecursiveAction {
+
+    /**
+     * Version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The shared schedule.
+     */
+    private final Schedule schedule;
+
+    /**
+     * Creates the task for a schedule.
+     *
+     * @param schedule the shared schedule.
+     */
+    ScheduleTask(Schedule schedule) {
+      this.schedule = schedule;
+    }
+
+    /**
+     * Forks the tasks and waits for them.
+     */
+    @Override
+    protected void compute() {
+      List<ForkJoinTask<?>> tasks = new ArrayList<>();
+      for (int t = 0; t < schedule.parallelism; t++) {
+        tasks.add(ForkJoinTask.adapt(() -> schedule.run(new APTED<C, D>(costModel))));
+      }
+      invokeAll(tasks);
+    }
+  }
+
+  /**
+   * Returns the number of the first pair of row i.
+   *
+   * @param i index of a tree.
+   * @param size number of trees.
+   * @return number of pair (i, i + 1).
+   */
+  private static long rowStart(int i, int size) {
+    return (long)i * (2L * size - i - 1) / 2;
+  }
+}
@@ -0,0 +1,435 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.distance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import at.unisalzburg.dbresearch.apted.node.Node;
+import at.unisalzburg.dbresearch.apted.node.NodeIndexer;
+import at.unisalzburg.dbresearch.apted.costmodel.LabelIdCostModel;
+
+/**
+ * A Burkhard-Keller tree over a list of trees that answers range and
+ * k-nearest-neighbour queries by the unit-cost tree edit distance, computed
+ * with {@link UnitCostAPTED}. The unit-cost distance is an integer metric,
+ * and queries prune the index with the triangle inequality.
+ *
+ * <p>Each node of the index is one of the trees. The other trees of its
+ * subtree are grouped by their distances to it, and each group forms the
+ * subtree of a child whose edge is labelled with the distance. A query
+ * computes the distance d to a node and visits only the children whose edge
+ * label e may lead to trees within the search threshold t of the query:
+ * |e - d| at most t.
+ *
+ * <p>The index is built once and is immutable. The trees are indexed on the
+ * calling thread, which assigns their label ids, and the distances to each
+ * node are computed in parallel on a fork-join pool. The index equals the
+ * index built by inserting the trees one by one in the list order. A query
+ * indexes the query tree with the cost model and assigns the label ids of
+ * its new labels, hence queries must not run concurrently unless the label
+ * ids are assigned in a thread-safe way.
+ *
+ * @param <C> type of cost model.
+ * @param <D> type of node data.
+ * @see VPTree
+ * @see SearchResult
+ */
+public class BKTree<C extends LabelIdCostModel, D> {
+
+  /**
+   * Minimum number of distances to a node computed in parallel.
+   */
+  private static final int PARALLEL_DISTANCES = 64;
+
+  /**
+   * Number of distances computed by a task while building.
+   */
+  private static final int DISTANCES_PER_TASK = 16;
+
+  /**
+   * Cost model that assigns the label ids.
+   */
+  private final C costModel;
+
+  /**
+   * Node indexers of the trees, by id.
+   */
+  private final NodeIndexer[] indexers;
+
+  /**
+   * The first child of each tree in the index, or {@code -1}.
+   */
+  private final int[] firstChild;
+
+  /**
+   * The next sibling of each tree in the index, or {@code -1}.
+   */
+  private final int[] nextSibling;
+
+  /**
+   * The distance of each tree to its parent in the index, the label of its
+   * edge.
+   */
+  private final int[] parentDistance;
+
+  /**
+   * Builds the index of the given trees on the common fork-join pool.
+   *
+   * @param costModel cost model that assigns label ids to the nodes.
+   * @param trees the trees to index, identified by their positions.
+   */
+  public BKTree(C costModel, List<Node<D>> trees) {
+    this(costModel, trees, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Builds the index of the given trees on the given pool.
+   *
+   * @param costModel cost model that assigns label ids to the nodes.
+   * @param trees the trees to index, identified by their positions.
+   * @param pool fork-join pool to compute the distances on.
+   */
+  public BKTree(C costModel, List<Node<D>> trees, ForkJoinPool pool) {
+    this.costModel = costModel;
+    int size = trees.size();
+    indexers = new NodeIndexer[size];
+    for (int i = 0; i < size; i++) {
+      indexers[i] = new NodeIndexer(trees.get(i), costModel);
+    }
+    firstChild = new int[size];
+    nextSibling = new int[size];
+    parentDistance = new int[size];
+    Arrays.fill(firstChild, -1);
+    Arrays.fill(nextSibling, -1);
+    if (size > 0) {
+      int[] others = new int[size - 1];
+      for (int i = 1; i < size; i++) {
+        others[i - 1] = i;
+      }
+      pool.invoke(new BuildTask(0, others));
+    }
+  }
+
+  /**
+   * Returns the number of trees in the index.
+   *
+   * @return number of trees.
+   */
+  public int size() {
+    return indexers.length;
+  }
+
+  /**
+   * Returns the tree with the given id.
+   *
+   * @param id id of a tree.
+   * @return the tree.
+   */
+  public Node<D> get(int id) {
+    return (Node<D>)indexers[id].preL_to_node[0];
+  }
+
+  /**
+   * Finds the k trees nearest to the query tree. Trees at equal distances are
+   * ranked by their ids.
+   *
+   * @param query the query tree.
+   * @param k the number of trees to find.
+   * @return the nearest trees, fewer than k if the index is smaller.
+   * @throws IllegalArgumentException if k is not positive.
+   */
+  public SearchResult nearest(Node<D> query, int k) {
+    return search(query, new NearestTrees(k, Float.POSITIVE_INFINITY));
+  }
+
+  /**
+   * Finds all trees within the given distance from the query tree.
+   *
+   * @param query the query tree.
+   * @param radius the maximum distance.
+   * @return the trees within the radius, in ascending order of distance.
+   */
+  public SearchResult range(Node<D> query, int radius) {
+    return search(query, new NearestTrees(Integer.MAX_VALUE, radius));
+  }
+
+  /**
+   * Visits the trees of the index that may be within the current search
+   * threshold, the children with the smallest lower bounds first.
+   *
+   * @param query the query tree.
+   * @param nearest collects the trees found.
+   * @return the result of the search.
+   */
+  private SearchResult search(Node<D> query, NearestTrees nearest) {
+    int size = indexers.length;
+    NodeIndexer queryIndexer = new NodeIndexer(query, costModel);
+    UnitCostAPTED<C, D> apted = new UnitCostAPTED<>(costModel);
+    // The trees to visit with lower bounds of their distances, packed into
+    // longs.
+    long[] stack = new long[64];
+    int top = 0;
+    if (size > 0) {
+      stack[top++] = 0;
+    }
+    long[] children = new long[16];
+    int computed = 0;
+    while (top > 0) {
+      long tree = stack[--top];
+      if ((int)(tree >>> 32) > nearest.threshold()) {
+        continue;
+      }
+      int id = (int)tree;
+      int distance = apted.computeEditDistance(queryIndexer, indexers[id]);
+      computed++;
+      nearest.offer(id, distance);
+      float threshold = nearest.threshold();
+      // By the triangle inequality, the trees of the subtree of a child are
+      // at least |e - d| from the query.
+      int count = 0;
+      for (int child = firstChild[id]; child != -1; child = nextSibling[child]) {
+        int bound = Math.abs(parentDistance[child] - distance);
+        if (bound <= threshold) {
+          if (count == children.length) {
+            children = Arrays.copyOf(children, 2 * count);
+          }
+          children[count++] = ((long)bound << 32) | child;
+        }
+      }
+      // Push the children with the largest bounds first to visit the others
+      // first.
+      Arrays.sort(children, 0, count);
+      if (top + count > stack.length) {
+        stack = Arrays.copyOf(stack, Math.max(2 * stack.length, top + count));
+      }
+      for (int c = count - 1; c >= 0; c--) {
+        stack[top++] = children[c];
+      }
+    }
+    return nearest.toResult(computed, size - computed);
+  }
+
+  /**
+   * Builds the subtree of the index rooted at a tree. Computes the distances
+   * of the other trees of the subtree to the root, and groups them by
+   * distance. The subtrees of the groups are built in parallel, where this
+   * task continues with the largest group, such that the depth of the nested
+   * tasks is logarithmic even if the index is deep.
+   */
+  private class BuildTask extends RecursiveAction {
+
+    /**
+     * Version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The root of the subtree.
+     */
+    private final int root;
+
+    /**
+     * The other trees of the subtree, in the list order.
+     */
+    private final int[] others;
+
+    /**
+     * Creates the task for a subtree.
+     *
+     * @param root the root of the subtree.
+     * @param others the other trees of the subtree, in the list order.
+     */
+    BuildTask(int root, int[] others) {
+      this.root = root;
+      this.others = others;
+    }
+
+    /**
+     * Builds the subtree.
+     */
+    @Override
+    protected void compute() {
+      List<BuildTask> forked = new ArrayList<>();
+      int subtreeRoot = root;
+      int[] subtreeOthers = others;
+      while (subtreeOthers.length > 0) {
+        int count = subtreeOthers.length;
+        int[] distances = computeDistances(subtreeRoot, subtreeOthers);
+        // Group the trees by their distances, keeping the list order within
+        // a group. The first tree of a group becomes the child.
+        long[] sorted = new long[count];
+        for (int i = 0; i < count; i++) {
+          sorted[i] = ((long)distances[i] << 32) | subtreeOthers[i];
+        }
+        Arrays.sort(sorted);
+        int largestChild = -1;
+        int[] largestGroup = new int[0];
+        int previousChild = -1;
+        for (int groupFrom = 0; groupFrom < count; ) {
+          int distance = (int)(sorted[groupFrom] >>> 32);
+          int groupTo = groupFrom + 1;
+          while (groupTo < count && (int)(sorted[groupTo] >>> 32) == distance) {
+            groupTo++;
+          }
+          int child = (int)sorted[groupFrom];
+          parentDistance[child] = distance;
+          if (previousChild == -1) {
+            firstChild[subtreeRoot] = child;
+          } else {
+            nextSibling[previousChild] = child;
+          }
+          previousChild = child;
+          int[] group = new int[groupTo - groupFrom - 1];
+          for (int i = groupFrom + 1; i < groupTo; i++) {
+            group[i - groupFrom - 1] = (int)sorted[i];
+          }
+          if (group.length > largestGroup.length) {
+            if (largestGroup.length > 0) {
+              forked.add(new BuildTask(largestChild, largestGroup));
+              forked.get(forked.size() - 1).fork();
+            }
+            largestChild = child;
+            largestGroup = group;
+          } else if (group.length > 0) {
+            forked.add(new BuildTask(child, group));
+            forked.get(forked.size() - 1).fork();
+          }
+          groupFrom = groupTo;
+        }
+        subtreeRoot = largestChild;
+        subtreeOthers = largestGroup;
+      }
+      for (BuildTask task : forked) {
+        task.join();
+      }
+    }
+
+    /**
+     * Computes the distances of the other trees of a subtree to its root, in
+     * parallel if there are many.
+     *
+     * @param subtreeRoot the root of the subtree.
+     * @param subtreeOthers the other trees of the subtree.
+     * @return the distances of the other trees to the root.
+     */
+    private int[] computeDistances(int subtreeRoot, int[] subtreeOthers) {
+      int count = subtreeOthers.length;
+      int[] distances = new int[count];
+      if (count < PARALLEL_DISTANCES) {
+        computeDistances(subtreeRoot, subtreeOthers, distances, 0, count);
+        return distances;
+      }
+      RecursiveAction[] tasks = new RecursiveAction[(count + DISTANCES_PER_TASK - 1) / DISTANCES_PER_TASK];
+      for (int t = 0; t < tasks.length; t++) {
+        int taskFrom = t * DISTANCES_PER_TASK;
+        int taskTo = Math.min(taskFrom + DISTANCES_PER_TASK, count);
+        tasks[t] = new DistancesTask(subtreeRoot, subtreeOthers, distances, taskFrom, taskTo);
+      }
+      invokeAll(tasks);
+      return distances;
+    }
+
+    /**
+     * Computes the distances of a range of the other trees of a subtree to
+     * its root.
+     *
+     * @param subtreeRoot the root of the subtree.
+     * @param subtreeOthers the other trees of the subtree.
+     * @param distances the array to store the distances in.
+     * @param from first index of the range.
+     * @param to last index of the range (exclusive).
+     */
+    private void computeDistances(int subtreeRoot, int[] subtreeOthers, int[] distances, int from, int to) {
+      UnitCostAPTED<C, D> apted = new UnitCostAPTED<>(costModel);
+      for (int i = from; i < to; i++) {
+        distances[i] = apted.computeEditDistance(indexers[subtreeRoot], indexers[subtreeOthers[i]]);
+      }
+    }
+
+    /**
+     * Computes the distances of a range of the other trees of a subtree to
+     * its root, in parallel with the other ranges.
+     */
+    private class DistancesTask extends RecursiveAction {
+
+      /**
+       * Version of the serialized form.
+       */
+      private static final long serialVersionUID = 1L;
+
+      /**
+       * The root of the subtree.
+       */
+      private final int subtreeRoot;
+
+      /**
+       * The other trees of the subtree.
+       */
+      private final int[] subtreeOthers;
+
+      /**
+       * The array to store the distances in.
+       */
+      private final int[] distances;
+
+      /**
+       * First index of the range.
+       */
+      private final int from;
+
+      /**
+       * Last index of the range (exclusive).
+       */
+      private final int to;
+
+      /**
+       * Creates the task for a range.
+       *
+       * @param subtreeRoot the root of the subtree.
+       * @param subtreeOthers the other trees of the subtree.
+       * @param distances the array to store the distances in.
+       * @param from first index of the range.
+       * @param to last index of the range (exclusive).
+       */
+      DistancesTask(int subtreeRoot, int[] subtreeOthers, int[] distances, int from, int to) {
+        this.subtreeRoot = subtreeRoot;
+        this.subtreeOthers = subtreeOthers;
+        this.distances = distances;
+        this.from = from;
+        this.to = to;
+      }
+
+      /**
+       * Computes the distances of the range.
+       */
+      @Override
+      protected void compute() {
+        computeDistances(subtreeRoot, subtreeOthers, distances, from, to);
+      }
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.distance;
+
+/**
+ * Cancels a running distance computation, explicitly or after a deadline.
+ * The computation checks the token between single-path functions and every
+ * few rows of their distance arrays, and throws a
+ * {@link ComputationCancelledException} once the token is cancelled.
+ *
+ * <p>A token is thread-safe. It can be cancelled from any thread and shared
+ * by several computations, for example, by all computations of a request.
+ *
+ * @see APTED#computeEditDistance(node.Node, node.Node, CancellationToken)
+ */
+public class CancellationToken {
+
+  /**
+   * Says if the token has been cancelled explicitly.
+   */
+  private volatile boolean cancelled;
+
+  /**
+   * Value of {@link System#nanoTime()} at the deadline.
+   */
+  private final long deadline;
+
+  /**
+   * Says if the token has a deadline.
+   */
+  private final boolean hasDeadline;
+
+  /**
+   * Creates a token without a deadline, cancelled only by {@link #cancel()}.
+   */
+  public CancellationToken() {
+    this.deadline = 0;
+    this.hasDeadline = false;
+  }
+
+  /**
+   * Creates a token that is cancelled after the given time from now, or
+   * before by {@link #cancel()}.
+   *
+   * @param timeoutMillis time to the deadline in milliseconds.
+   */
+  public CancellationToken(long timeoutMillis) {
+    this.deadline = System.nanoTime() + timeoutMillis * 1000000L;
+    this.hasDeadline = true;
+  }
+
+  /**
+   * Cancels the computations that use this token.
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  /**
+   * Says if the token has been cancelled or its deadline has passed.
+   *
+   * @return {@code true} if the computations have to stop.
+   */
+  public boolean isCancelled() {
+    return cancelled || (hasDeadline && System.nanoTime() - deadline >= 0);
+  }
+
+  /**
+   * Stops the current computation if the token is cancelled.
+   *
+   * @throws ComputationCancelledException if the token has been cancelled or
+   *         its deadline has passed.
+   */
+  public void check() {
+    if (isCancelled()) {
+      throw new ComputationCancelledException(cancelled ? "The computation has been cancelled." : "The deadline of the computation has passed.");
+    }
+  }
+}
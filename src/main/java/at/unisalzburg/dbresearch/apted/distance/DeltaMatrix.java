@@ -0,0 +1,126 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.distance;
+
+/**
+ * The distance matrix of APTED [1, Sections 3.4,8.2,8.3]. First, it stores
+ * the optimal strategy computed for each pair of subtrees. Then, the
+ * strategy entries are overwritten with the distances between pairs of
+ * subtrees without their root nodes.
+ *
+ * <p>The rows correspond to the nodes of the source tree and the columns to
+ * the nodes of the destination tree, both in left-to-right preorder. The
+ * cells are stored in row-major order. The storage is defined by the
+ * subclasses: {@link HeapDeltaMatrix} keeps the cells in a single array on
+ * the Java heap and {@link OffHeapDeltaMatrix} in direct buffers outside of
+ * the heap.
+ *
+ * <p>References:
+ * <ul>
+ * <li>[1] M. Pawlik and N. Augsten. Efficient Computation of the Tree Edit
+ *      Distance. ACM Transactions on Database Systems (TODS) 40(1). 2015.
+ * </ul>
+ */
+public abstract class DeltaMatrix {
+
+  /**
+   * Number of rows.
+   */
+  protected int rows;
+
+  /**
+   * Number of columns.
+   */
+  protected int cols;
+
+  /**
+   * Returns the value of a cell.
+   *
+   * @param row row of the cell.
+   * @param col column of the cell.
+   * @return value stored in the cell.
+   */
+  public abstract float get(int row, int col);
+
+  /**
+   * Stores a value in a cell.
+   *
+   * @param row row of the cell.
+   * @param col column of the cell.
+   * @param value value to store.
+   */
+  public abstract void set(int row, int col, float value);
+
+  /**
+   * Returns the number of cells that can be stored without allocating.
+   *
+   * @return capacity in cells.
+   */
+  public abstract long getCapacity();
+
+  /**
+   * Changes the dimensions of this matrix. The storage is reallocated only if
+   * it is too small. The values of the cells are undefined afterwards.
+   *
+   * @param rows number of rows.
+   * @param cols number of columns.
+   */
+  abstract void reshape(int rows, int cols);
+
+  /**
+   * Copies the cells of a row to an array, converted to integers. Used by
+   * the strategy computation, which accesses whole rows of path ids.
+   *
+   * @param row the row to copy.
+   * @param values array of at least {@link #getCols()} values.
+   */
+  abstract void getRow(int row, int[] values);
+
+  /**
+   * Stores values in the cells of a row.
+   *
+   * @param row the row to store.
+   * @param values array of at least {@link #getCols()} values.
+   */
+  abstract void setRow(int row, int[] values);
+
+  /**
+   * Returns the number of rows.
+   *
+   * @return number of rows.
+   */
+  public int getRows() {
+    return rows;
+  }
+
+  /**
+   * Returns the number of columns.
+   *
+   * @return number of columns.
+   */
+  public int getCols() {
+    return cols;
+  }
+
+}
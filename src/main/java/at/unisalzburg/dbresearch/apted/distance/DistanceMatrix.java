@@ -0,0 +1,141 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.distance;
+
+/**
+ * Stores the tree edit distances between all pairs of trees of a list. The
+ * distance of a tree to itself is {@code 0} and is not stored.
+ *
+ * <p>The distances are stored in row-major upper triangles of float arrays,
+ * without the diagonal. If the distance is symmetric, a single triangle
+ * holds all distances. Otherwise, a second triangle holds the distances from
+ * the trees with the larger index to the trees with the smaller index.
+ *
+ * @see AllPairsAPTED
+ */
+public class DistanceMatrix {
+
+  /**
+   * Maximum number of cells of a triangle.
+   */
+  static final long MAX_CELLS = HeapDeltaMatrix.MAX_CELLS;
+
+  /**
+   * Number of trees.
+   */
+  private final int size;
+
+  /**
+   * Distances from tree i to tree j for i smaller than j.
+   */
+  private final float[] upper;
+
+  /**
+   * Distances from tree j to tree i for i smaller than j. The same array as
+   * upper if the distance is symmetric.
+   */
+  private final float[] lower;
+
+  /**
+   * Creates a matrix of zero distances between the given number of trees.
+   *
+   * @param size number of trees.
+   * @param symmetric says if the distance is symmetric.
+   * @throws IllegalArgumentException if the number of pairs of trees exceeds
+   *         the maximum array size.
+   */
+  DistanceMatrix(int size, boolean symmetric) {
+    long cells = (long)size * (size - 1) / 2;
+    if (cells > MAX_CELLS) {
+      throw new IllegalArgumentException("Too many trees for a distance matrix: " + size);
+    }
+    this.size = size;
+    upper = new float[(int)cells];
+    lower = symmetric ? upper : new float[(int)cells];
+  }
+
+  /**
+   * Returns the number of trees.
+   *
+   * @return number of trees.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Says if the distances are symmetric and stored in a single triangle.
+   *
+   * @return {@code true} if the distances are symmetric.
+   */
+  public boolean isSymmetric() {
+    return upper == lower;
+  }
+
+  /**
+   * Returns the tree edit distance from tree i to tree j.
+   *
+   * @param i index of the source tree.
+   * @param j index of the destination tree.
+   * @return tree edit distance.
+   */
+  public float get(int i, int j) {
+    if (i < j) {
+      return upper[index(i, j)];
+    }
+    if (i > j) {
+      return lower[index(j, i)];
+    }
+    return 0.0f;
+  }
+
+  /**
+   * Stores the tree edit distance from tree i to tree j. Storing the
+   * distance in one direction stores it in both if the distances are
+   * symmetric.
+   *
+   * @param i index of the source tree.
+   * @param j index of the destination tree, different from i.
+   * @param distance tree edit distance.
+   */
+  void set(int i, int j, float distance) {
+    if (i < j) {
+      upper[index(i, j)] = distance;
+    } else {
+      lower[index(j, i)] = distance;
+    }
+  }
+
+  /**
+   * Returns the index of a pair of trees in a triangle. The pairs of row i
+   * are preceded by the n - 1, n - 2, ..., n - i pairs of the previous rows.
+   *
+   * @param i index of a tree.
+   * @param j index of a tree, larger than i.
+   * @return index of the pair in a triangle.
+   */
+  private int index(int i, int j) {
+    return (int)((long)i * (2 * size - i - 1) / 2) + j - i - 1;
+  }
+}
@@ -0,0 +1,98 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.distance;
+
+/**
+ * An {@link IntegerDeltaMatrix} that stores the cells in a single int array
+ * on the Java heap. The number of cells is limited by the maximum array size.
+ */
+public class IntDeltaMatrix extends IntegerDeltaMatrix {
+
+  /**
+   * The cells of the matrix in row-major order. The array may be longer than
+   * the number of cells of the matrix.
+   */
+  private int[] cells;
+
+  /**
+   * Constructs a matrix with the given dimensions.
+   *
+   * @param rows number of rows.
+   * @param cols number of columns.
+   */
+  public IntDeltaMatrix(int rows, int cols) {
+    this.cells = new int[checkedCells(rows, cols)];
+    this.rows = rows;
+    this.cols = cols;
+  }
+
+  /**
+   * Returns the value of a cell.
+   *
+   * @param row row of the cell.
+   * @param col column of the cell.
+   * @return value stored in the cell.
+   */
+  public int getInt(int row, int col) {
+    return cells[row * cols + col];
+  }
+
+  /**
+   * Stores a value in a cell.
+   *
+   * @param row row of the cell.
+   * @param col column of the cell.
+   * @param value value to store.
+   */
+  public void setInt(int row, int col, int value) {
+    cells[row * cols + col] = value;
+  }
+
+  /**
+   * Returns the number of cells that can be stored without allocating.
+   *
+   * @return capacity in cells.
+   */
+  public long getCapacity() {
+    return cells.length;
+  }
+
+  void getRow(int row, int[] values) {
+    System.arraycopy(cells, row * cols, values, 0, cols);
+  }
+
+  void setRow(int row, int[] values) {
+    System.arraycopy(values, 0, cells, row * cols, cols);
+  }
+
+  void reshape(int rows, int cols) {
+    int length = checkedCells(rows, cols);
+    if (cells.length < length) {
+      cells = new int[length];
+    }
+    this.rows = rows;
+    this.cols = cols;
+  }
+
+}
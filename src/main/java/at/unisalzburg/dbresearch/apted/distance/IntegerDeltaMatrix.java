@@ -0,0 +1,94 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.distance;
+
+/**
+ * A {@link DeltaMatrix} with integer cells, used by {@link UnitCostAPTED}.
+ * With unit costs all distances are integers, and so are the strategy path
+ * ids. The cells are accessed with {@link #getInt} and {@link #setInt}, and
+ * by the strategy computation row by row. The float accessors convert the
+ * values.
+ *
+ * <p>The storage is defined by the subclasses: {@link IntDeltaMatrix} keeps
+ * the cells in an int array and {@link ShortDeltaMatrix} in a short array for
+ * inputs whose values fit into a short.
+ */
+public abstract class IntegerDeltaMatrix extends DeltaMatrix {
+
+  /**
+   * Returns the value of a cell.
+   *
+   * @param row row of the cell.
+   * @param col column of the cell.
+   * @return value stored in the cell.
+   */
+  public abstract int getInt(int row, int col);
+
+  /**
+   * Stores a value in a cell.
+   *
+   * @param row row of the cell.
+   * @param col column of the cell.
+   * @param value value to store.
+   */
+  public abstract void setInt(int row, int col, int value);
+
+  /**
+   * Returns the value of a cell.
+   *
+   * @param row row of the cell.
+   * @param col column of the cell.
+   * @return value stored in the cell.
+   */
+  public float get(int row, int col) {
+    return getInt(row, col);
+  }
+
+  /**
+   * Stores a value in a cell. The value is truncated to an integer.
+   *
+   * @param row row of the cell.
+   * @param col column of the cell.
+   * @param value value to store.
+   */
+  public void set(int row, int col, float value) {
+    setInt(row, col, (int)value);
+  }
+
+  /**
+   * Verifies that the number of cells fits in a single array.
+   *
+   * @param rows number of rows.
+   * @param cols number of columns.
+   * @return number of cells.
+   */
+  static int checkedCells(int rows, int cols) {
+    long length = (long)rows * cols;
+    if (length > HeapDeltaMatrix.MAX_CELLS) {
+      throw new IllegalArgumentException("The matrix " + rows + "x" + cols + " exceeds the maximum array size.");
+    }
+    return (int)length;
+  }
+
+}
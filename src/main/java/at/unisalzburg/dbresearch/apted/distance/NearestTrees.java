@@ -0,0 +1,152 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.distance;
+
+import java.util.Arrays;
+
+/**
+ * Collects the nearest trees of a search: the k trees with the smallest
+ * distances up to a radius. Trees at equal distances are ranked by their ids.
+ *
+ * <p>The trees are kept in a binary max-heap of their distances and ids,
+ * packed into longs. Distances are non-negative floats, which compare as
+ * their bits.
+ *
+ * @see SearchResult
+ */
+class NearestTrees {
+
+  /**
+   * Initial capacity of the heap.
+   */
+  private static final int INITIAL_CAPACITY = 16;
+
+  /**
+   * The maximum number of trees to collect.
+   */
+  private final int k;
+
+  /**
+   * The maximum distance of the trees to collect.
+   */
+  private final float radius;
+
+  /**
+   * The heap of the collected trees, the farthest first.
+   */
+  private long[] heap;
+
+  /**
+   * The number of collected trees.
+   */
+  private int size;
+
+  /**
+   * Creates an empty collection of the nearest trees.
+   *
+   * @param k the maximum number of trees to collect.
+   * @param radius the maximum distance of the trees to collect.
+   * @throws IllegalArgumentException if k is not positive.
+   */
+  NearestTrees(int k, float radius) {
+    if (k <= 0) {
+      throw new IllegalArgumentException("The number of trees to find must be positive: " + k);
+    }
+    this.k = k;
+    this.radius = radius;
+    heap = new long[Math.min(k, INITIAL_CAPACITY)];
+  }
+
+  /**
+   * Returns the distance that a tree must not exceed to be collected: the
+   * distance of the k-th nearest tree if k trees are collected, the radius
+   * otherwise.
+   *
+   * @return the current search threshold.
+   */
+  float threshold() {
+    return size < k ? radius : Float.intBitsToFloat((int)(heap[0] >>> 32));
+  }
+
+  /**
+   * Collects a tree if it is nearer than the farthest collected tree or if
+   * fewer than k trees are collected, and within the radius.
+   *
+   * @param id id of the tree.
+   * @param distance distance of the tree.
+   */
+  void offer(int id, float distance) {
+    if (distance > radius) {
+      return;
+    }
+    // Adding zero turns a negative zero into zero.
+    long tree = ((long)Float.floatToIntBits(distance + 0.0f) << 32) | (id & 0xffffffffL);
+    if (size < k) {
+      if (size == heap.length) {
+        heap = Arrays.copyOf(heap, 2 * size);
+      }
+      // Sift the tree up.
+      int i = size++;
+      while (i > 0 && heap[(i - 1) / 2] < tree) {
+        heap[i] = heap[(i - 1) / 2];
+        i = (i - 1) / 2;
+      }
+      heap[i] = tree;
+    } else if (tree < heap[0]) {
+      // Replace the farthest tree and sift the tree down.
+      int i = 0;
+      while (2 * i + 1 < size) {
+        int child = 2 * i + 1;
+        if (child + 1 < size && heap[child + 1] > heap[child]) {
+          child++;
+        }
+        if (heap[child] <= tree) {
+          break;
+        }
+        heap[i] = heap[child];
+        i = child;
+      }
+      heap[i] = tree;
+    }
+  }
+
+  /**
+   * Returns the collected trees in ascending order of distance.
+   *
+   * @param computedCount number of computed distances.
+   * @param prunedCount number of trees filtered out by bounds.
+   * @return the result of the search.
+   */
+  SearchResult toResult(int computedCount, int prunedCount) {
+    long[] trees = Arrays.copyOf(heap, size);
+    Arrays.sort(trees);
+    int[] ids = new int[size];
+    float[] distances = new float[size];
+    for (int i = 0; i < size; i++) {
+      ids[i] = (int)trees[i];
+      distances[i] = Float.intBitsToFloat((int)(trees[i] >>> 32));
+    }
+    return new SearchResult(ids, distances, computedCount, prunedCount);
+  }
+}
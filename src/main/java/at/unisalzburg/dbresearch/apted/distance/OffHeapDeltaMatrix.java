@@ -0,0 +1,157 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.distance;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * A {@link DeltaMatrix} that stores the cells in direct buffers outside of
+ * the Java heap. The garbage collector does not trace or copy the cells,
+ * which matters for matrices of large trees that would otherwise dominate the
+ * heap. The number of cells is not limited by the maximum array size.
+ *
+ * <p>The cells are split into chunks of {@value #CHUNK_CELLS} cells, each
+ * stored in a separate direct buffer. The total size of direct buffers is
+ * bounded by the JVM option {@code -XX:MaxDirectMemorySize}. The memory is
+ * released when the matrix becomes unreachable.
+ */
+public class OffHeapDeltaMatrix extends DeltaMatrix {
+
+  /**
+   * Base-2 logarithm of the number of cells in a chunk.
+   */
+  private static final int CHUNK_SHIFT = 27;
+
+  /**
+   * Number of cells in a chunk = {@value}.
+   */
+  public static final int CHUNK_CELLS = 1 << CHUNK_SHIFT;
+
+  /**
+   * Mask of the cell offset within a chunk.
+   */
+  private static final long CHUNK_MASK = CHUNK_CELLS - 1;
+
+  /**
+   * The chunks of the matrix in row-major order. All chunks except the last
+   * one have {@link #CHUNK_CELLS} cells.
+   */
+  private FloatBuffer[] chunks;
+
+  /**
+   * Number of cells that can be stored in the chunks.
+   */
+  private long capacity;
+
+  /**
+   * Constructs a matrix with the given dimensions.
+   *
+   * @param rows number of rows.
+   * @param cols number of columns.
+   */
+  public OffHeapDeltaMatrix(int rows, int cols) {
+    allocate((long)rows * cols);
+    this.rows = rows;
+    this.cols = cols;
+  }
+
+  /**
+   * Returns the value of a cell.
+   *
+   * @param row row of the cell.
+   * @param col column of the cell.
+   * @return value stored in the cell.
+   */
+  public float get(int row, int col) {
+    long index = (long)row * cols + col;
+    return chunks[(int)(index >>> CHUNK_SHIFT)].get((int)(index & CHUNK_MASK));
+  }
+
+  /**
+   * Stores a value in a cell.
+   *
+   * @param row row of the cell.
+   * @param col column of the cell.
+   * @param value value to store.
+   */
+  public void set(int row, int col, float value) {
+    long index = (long)row * cols + col;
+    chunks[(int)(index >>> CHUNK_SHIFT)].put((int)(index & CHUNK_MASK), value);
+  }
+
+  /**
+   * Returns the number of cells that can be stored without allocating.
+   *
+   * @return capacity in cells.
+   */
+  public long getCapacity() {
+    return capacity;
+  }
+
+  void getRow(int row, int[] values) {
+    long index = (long)row * cols;
+    for (int col = 0; col < cols; col++, index++) {
+      values[col] = (int)chunks[(int)(index >>> CHUNK_SHIFT)].get((int)(index & CHUNK_MASK));
+    }
+  }
+
+  void setRow(int row, int[] values) {
+    long index = (long)row * cols;
+    for (int col = 0; col < cols; col++, index++) {
+      chunks[(int)(index >>> CHUNK_SHIFT)].put((int)(index & CHUNK_MASK), values[col]);
+    }
+  }
+
+  void reshape(int rows, int cols) {
+    long length = (long)rows * cols;
+    if (capacity < length) {
+      allocate(length);
+    }
+    this.rows = rows;
+    this.cols = cols;
+  }
+
+  /**
+   * Allocates the chunks for the given number of cells. The previous chunks
+   * are dropped before allocating such that their memory can be reclaimed.
+   *
+   * @param length number of cells.
+   */
+  private void allocate(long length) {
+    chunks = null;
+    int numChunks = (int)((length + CHUNK_MASK) >>> CHUNK_SHIFT);
+    FloatBuffer[] newChunks = new FloatBuffer[numChunks];
+    long remaining = length;
+    for (int i = 0; i < numChunks; i++) {
+      int chunkCells = (int)Math.min(remaining, CHUNK_CELLS);
+      newChunks[i] = ByteBuffer.allocateDirect(chunkCells * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+      remaining -= chunkCells;
+    }
+    chunks = newChunks;
+    capacity = length;
+  }
+
+}
@@ -0,0 +1,313 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.distance;
+
+import java.util.Arrays;
+import java.util.List;
+import at.unisalzburg.dbresearch.apted.node.Node;
+import at.unisalzburg.dbresearch.apted.node.NodeIndexer;
+import at.unisalzburg.dbresearch.apted.costmodel.LabelIdCostModel;
+
+/**
+ * An inverted index over the pq-gram profiles of a list of trees, used to
+ * generate candidates for the nearest trees before their exact distances
+ * are computed.
+ *
+ * <p>The index maps every distinct pq-gram to the trees that contain it,
+ * with the number of occurrences. It is stored in primitive arrays: the
+ * sorted distinct pq-grams, and for each of them a range of the posting
+ * lists of tree ids and counts, in ascending order of tree id. A query
+ * looks up the distinct pq-grams of its profile and accumulates the common
+ * pq-grams of the trees in its posting lists. Its time depends on the
+ * lengths of these lists, not on the number of trees.
+ *
+ * <p>The candidates are the trees with the smallest pq-gram distances (see
+ * {@link PQGramProfile#distance(PQGramProfile)}) among the trees that share
+ * at least one pq-gram with the query. The nearest trees are found by
+ * computing the tree edit distances of the candidates only, which is an
+ * approximation: a tree with a small tree edit distance but a large pq-gram
+ * distance may be missed.
+ *
+ * <p>The index is built once and is immutable. The trees and the queries are
+ * indexed with the cost model, which assigns the label ids, and share one
+ * array of accumulators. Hence, queries must not run concurrently.
+ *
+ * @param <C> type of cost model.
+ * @param <D> type of node data.
+ * @see PQGramProfile
+ * @see SearchResult
+ */
+public class PQGramIndex<C extends LabelIdCostModel, D> {
+
+  /**
+   * Cost model that assigns the label ids and computes the exact distances.
+   */
+  private final C costModel;
+
+  /**
+   * Length of the stems.
+   */
+  private final int p;
+
+  /**
+   * Length of the bases.
+   */
+  private final int q;
+
+  /**
+   * Node indexers of the trees, by id.
+   */
+  private final NodeIndexer[] indexers;
+
+  /**
+   * Profile sizes of the trees, by id.
+   */
+  private final int[] profileSizes;
+
+  /**
+   * The distinct pq-grams of all trees in ascending order.
+   */
+  private final long[] grams;
+
+  /**
+   * The first position of the posting list of each distinct pq-gram, and the
+   * end of the last list.
+   */
+  private final int[] postingOffsets;
+
+  /**
+   * Ids of the trees that contain the pq-grams.
+   */
+  private final int[] postingIds;
+
+  /**
+   * Numbers of occurrences of the pq-grams in the trees.
+   */
+  private final int[] postingCounts;
+
+  /**
+   * Accumulators of the common pq-grams of a query, by tree id, reused by
+   * the queries. All zero between queries.
+   */
+  private final int[] accumulators;
+
+  /**
+   * Builds the index of the given trees with the default stem and base
+   * lengths.
+   *
+   * @param costModel cost model that assigns label ids to the nodes.
+   * @param trees the trees to index, identified by their positions.
+   */
+  public PQGramIndex(C costModel, List<Node<D>> trees) {
+    this(costModel, trees, PQGramProfile.DEFAULT_P, PQGramProfile.DEFAULT_Q);
+  }
+
+  /**
+   * Builds the index of the given trees.
+   *
+   * @param costModel cost model that assigns label ids to the nodes.
+   * @param trees the trees to index, identified by their positions.
+   * @param p length of the stems, at least 1.
+   * @param q length of the bases, at least 1.
+   * @throws IllegalArgumentException if p or q is not positive.
+   */
+  public PQGramIndex(C costModel, List<Node<D>> trees, int p, int q) {
+    this.costModel = costModel;
+    this.p = p;
+    this.q = q;
+    int size = trees.size();
+    indexers = new NodeIndexer[size];
+    profileSizes = new int[size];
+    long[][] profiles = new long[size][];
+    int total = 0;
+    for (int id = 0; id < size; id++) {
+      indexers[id] = new NodeIndexer(trees.get(id), costModel);
+      profiles[id] = new PQGramProfile(indexers[id], p, q).grams;
+      profileSizes[id] = profiles[id].length;
+      total += profiles[id].length;
+    }
+    // Collect the distinct pq-grams of all trees.
+    long[] all = new long[total];
+    int position = 0;
+    for (long[] profile : profiles) {
+      System.arraycopy(profile, 0, all, position, profile.length);
+      position += profile.length;
+    }
+    Arrays.sort(all);
+    grams = Arrays.copyOf(all, distinct(all, all.length));
+    // Count the trees of each pq-gram, then fill in the posting lists in the
+    // order of the tree ids.
+    postingOffsets = new int[grams.length + 1];
+    for (long[] profile : profiles) {
+      for (int i = 0; i < profile.length; i++) {
+        if (i == 0 || profile[i] != profile[i - 1]) {
+          postingOffsets[Arrays.binarySearch(grams, profile[i]) + 1]++;
+        }
+      }
+    }
+    for (int g = 0; g < grams.length; g++) {
+      postingOffsets[g + 1] += postingOffsets[g];
+    }
+    postingIds = new int[postingOffsets[grams.length]];
+    postingCounts = new int[postingIds.length];
+    int[] next = Arrays.copyOf(postingOffsets, grams.length);
+    for (int id = 0; id < size; id++) {
+      long[] profile = profiles[id];
+      for (int i = 0; i < profile.length; i++) {
+        int g = Arrays.binarySearch(grams, profile[i]);
+        if (i == 0 || profile[i] != profile[i - 1]) {
+          postingIds[next[g]++] = id;
+        }
+        postingCounts[next[g] - 1]++;
+      }
+    }
+    accumulators = new int[size];
+  }
+
+  /**
+   * Moves the distinct values of a sorted array to its beginning.
+   *
+   * @param sorted sorted values.
+   * @param length number of values.
+   * @return number of distinct values.
+   */
+  private static int distinct(long[] sorted, int length) {
+    int distinct = 0;
+    for (int i = 0; i < length; i++) {
+      if (i == 0 || sorted[i] != sorted[i - 1]) {
+        sorted[distinct++] = sorted[i];
+      }
+    }
+    return distinct;
+  }
+
+  /**
+   * Returns the number of trees in the index.
+   *
+   * @return number of trees.
+   */
+  public int size() {
+    return indexers.length;
+  }
+
+  /**
+   * Returns the tree with the given id.
+   *
+   * @param id id of a tree.
+   * @return the tree.
+   */
+  public Node<D> get(int id) {
+    return (Node<D>)indexers[id].preL_to_node[0];
+  }
+
+  /**
+   * Finds the candidates for the nearest trees to the query tree: the trees
+   * with the smallest pq-gram distances among those that share a pq-gram
+   * with the query.
+   *
+   * @param query the query tree.
+   * @param count the number of candidates to find.
+   * @return the candidates with their pq-gram distances. The trees whose
+   *         pq-gram distances are computed count as computed.
+   * @throws IllegalArgumentException if count is not positive.
+   */
+  public SearchResult candidates(Node<D> query, int count) {
+    return candidates(new NodeIndexer(query, costModel), count);
+  }
+
+  /**
+   * Finds the candidates for the nearest trees to an indexed query tree.
+   *
+   * @param queryIndexer node indexer of the query tree.
+   * @param count the number of candidates to find.
+   * @return the candidates with their pq-gram distances.
+   */
+  private SearchResult candidates(NodeIndexer queryIndexer, int count) {
+    NearestTrees candidates = new NearestTrees(count, Float.POSITIVE_INFINITY);
+    long[] profile = new PQGramProfile(queryIndexer, p, q).grams;
+    int[] common = accumulators;
+    // The trees that share a pq-gram with the query, at most the size of the
+    // index.
+    int[] touched = new int[Math.min(indexers.length, 16)];
+    int touchedCount = 0;
+    for (int i = 0; i < profile.length; ) {
+      // Count the occurrences of the pq-gram in the query.
+      int occurrences = 1;
+      while (i + occurrences < profile.length && profile[i + occurrences] == profile[i]) {
+        occurrences++;
+      }
+      int g = Arrays.binarySearch(grams, profile[i]);
+      i += occurrences;
+      if (g < 0) {
+        continue;
+      }
+      for (int posting = postingOffsets[g]; posting < postingOffsets[g + 1]; posting++) {
+        int id = postingIds[posting];
+        if (common[id] == 0) {
+          if (touchedCount == touched.length) {
+            touched = Arrays.copyOf(touched, Math.min(2 * touchedCount, indexers.length));
+          }
+          touched[touchedCount++] = id;
+        }
+        common[id] += Math.min(occurrences, postingCounts[posting]);
+      }
+    }
+    for (int t = 0; t < touchedCount; t++) {
+      int id = touched[t];
+      candidates.offer(id, PQGramProfile.distance(common[id], profile.length, profileSizes[id]));
+      common[id] = 0;
+    }
+    return candidates.toResult(touchedCount, indexers.length - touchedCount);
+  }
+
+  /**
+   * Finds the k trees nearest to the query tree among the candidates with
+   * the smallest pq-gram distances. Computes the tree edit distances of the
+   * candidates in the order of their pq-gram distances, bounded by the
+   * distance of the current k-th nearest tree (see
+   * {@link APTED#computeEditDistance(NodeIndexer, NodeIndexer, float)}).
+   *
+   * @param query the query tree.
+   * @param k the number of trees to find.
+   * @param candidateCount the number of candidates, at least k.
+   * @return the nearest candidates with their tree edit distances. The
+   *         trees that are not candidates count as pruned.
+   * @throws IllegalArgumentException if k is not positive or larger than
+   *         the number of candidates.
+   */
+  public SearchResult nearest(Node<D> query, int k, int candidateCount) {
+    if (candidateCount < k) {
+      throw new IllegalArgumentException("The number of candidates must be at least k: " + candidateCount);
+    }
+    NearestTrees nearest = new NearestTrees(k, Float.POSITIVE_INFINITY);
+    NodeIndexer queryIndexer = new NodeIndexer(query, costModel);
+    SearchResult candidates = candidates(queryIndexer, candidateCount);
+    APTED<C, D> apted = new APTED<>(costModel);
+    for (int rank = 0; rank < candidates.size(); rank++) {
+      int id = candidates.getId(rank);
+      nearest.offer(id, apted.computeEditDistance(queryIndexer, indexers[id], nearest.threshold()));
+    }
+    return nearest.toResult(candidates.size(), indexers.length - candidates.size());
+  }
+}
@@ -0,0 +1,240 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.distance;
+
+import java.util.Arrays;
+import at.unisalzburg.dbresearch.apted.node.NodeIndexer;
+
+/**
+ * The pq-gram profile of a tree [4], an approximation of the tree for the
+ * pq-gram distance.
+ *
+ * <p>A pq-gram of a node, the anchor, consists of a stem of p labels, the
+ * anchor and its p - 1 nearest ancestors, and a base of q labels of
+ * consecutive children of the anchor. The tree is extended with null labels:
+ * p - 1 ancestors above the root, q - 1 children before the first and after
+ * the last child of every node with children, and q children below every
+ * leaf. The profile is the bag of all pq-grams of the extended tree. Each
+ * pq-gram is hashed to a long, and the profile is stored as a sorted array
+ * of the hashes.
+ *
+ * <p>The labels are the label ids of the nodes, hence the trees must be
+ * indexed with a {@link costmodel.LabelIdCostModel}, and the profiles of
+ * trees with a common label dictionary are comparable.
+ *
+ * <p>[4] N. Augsten, M. B&ouml;hlen, and J. Gamper. The pq-gram distance
+ *        between ordered labeled trees. ACM Transactions on Database Systems
+ *        (TODS) 35(1). 2010.
+ *
+ * @see PQGramIndex
+ */
+public class PQGramProfile {
+
+  /**
+   * Default length of the stems.
+   */
+  public static final int DEFAULT_P = 2;
+
+  /**
+   * Default length of the bases.
+   */
+  public static final int DEFAULT_Q = 3;
+
+  /**
+   * The null label of the nodes of the extended tree.
+   */
+  private static final int NULL_LABEL = -1;
+
+  /**
+   * Multiplier of the hash function, the golden ratio in fixed point.
+   */
+  private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+  /**
+   * Length of the stems.
+   */
+  private final int p;
+
+  /**
+   * Length of the bases.
+   */
+  private final int q;
+
+  /**
+   * Sorted hashes of the pq-grams, with duplicates.
+   */
+  final long[] grams;
+
+  /**
+   * Computes the profile of an indexed tree with the default stem and base
+   * lengths.
+   *
+   * @param indexer node indexer of the tree, with label ids.
+   * @throws IllegalArgumentException if the tree has no label ids.
+   */
+  public PQGramProfile(NodeIndexer indexer) {
+    this(indexer, DEFAULT_P, DEFAULT_Q);
+  }
+
+  /**
+   * Computes the profile of an indexed tree. Uses only the parents, the
+   * children and the label ids of the nodes.
+   *
+   * @param indexer node indexer of the tree, with label ids.
+   * @param p length of the stems, at least 1.
+   * @param q length of the bases, at least 1.
+   * @throws IllegalArgumentException if the tree has no label ids, or if p
+   *         or q is not positive.
+   */
+  public PQGramProfile(NodeIndexer indexer, int p, int q) {
+    if (indexer.preL_to_label == null) {
+      throw new IllegalArgumentException("A pq-gram profile requires label ids.");
+    }
+    if (p < 1 || q < 1) {
+      throw new IllegalArgumentException("The stem and base lengths must be positive: " + p + ", " + q);
+    }
+    this.p = p;
+    this.q = q;
+    int size = indexer.getSize();
+    int[] labels = indexer.preL_to_label;
+    // A leaf has one pq-gram, a node with k children k + q - 1.
+    int count = 0;
+    for (int v = 0; v < size; v++) {
+      int children = indexer.childrenOffsets[v + 1] - indexer.childrenOffsets[v];
+      count += children == 0 ? 1 : children + q - 1;
+    }
+    grams = new long[count];
+    int gram = 0;
+    int[] labelsOfGram = new int[p + q];
+    for (int v = 0; v < size; v++) {
+      // The stem, from the farthest ancestor to the anchor.
+      int ancestor = v;
+      for (int s = p - 1; s >= 0; s--) {
+        labelsOfGram[s] = ancestor == -1 ? NULL_LABEL : labels[ancestor];
+        ancestor = ancestor == -1 ? -1 : indexer.parents[ancestor];
+      }
+      int from = indexer.childrenOffsets[v];
+      int to = indexer.childrenOffsets[v + 1];
+      if (from == to) {
+        Arrays.fill(labelsOfGram, p, p + q, NULL_LABEL);
+        grams[gram++] = hash(labelsOfGram);
+        continue;
+      }
+      // Slide the base over the children extended with q - 1 null labels on
+      // both sides.
+      for (int window = from - q + 1; window < to; window++) {
+        for (int b = 0; b < q; b++) {
+          int child = window + b;
+          labelsOfGram[p + b] = child < from || child >= to ? NULL_LABEL : labels[indexer.children[child]];
+        }
+        grams[gram++] = hash(labelsOfGram);
+      }
+    }
+    Arrays.sort(grams);
+  }
+
+  /**
+   * Hashes the labels of a pq-gram, depending on their order.
+   *
+   * @param labels labels of the stem followed by the labels of the base.
+   * @return hash of the pq-gram.
+   */
+  private static long hash(int[] labels) {
+    long hash = 0;
+    for (int label : labels) {
+      hash = (hash + label + 2) * HASH_MULTIPLIER;
+      hash ^= hash >>> 29;
+    }
+    return hash;
+  }
+
+  /**
+   * Returns the number of pq-grams of the profile.
+   *
+   * @return profile size.
+   */
+  public int size() {
+    return grams.length;
+  }
+
+  /**
+   * Computes the pq-gram distance to another profile: one minus twice the
+   * number of common pq-grams divided by the sum of the profile sizes. The
+   * distance is between {@code 0} for equal profiles and {@code 1} for
+   * profiles without common pq-grams.
+   *
+   * @param other profile of another tree.
+   * @return pq-gram distance.
+   * @throws IllegalArgumentException if the profiles have different stem or
+   *         base lengths.
+   */
+  public float distance(PQGramProfile other) {
+    if (p != other.p || q != other.q) {
+      throw new IllegalArgumentException("The profiles have different stem or base lengths.");
+    }
+    int common = 0;
+    for (int i = 0, j = 0; i < grams.length && j < other.grams.length; ) {
+      if (grams[i] < other.grams[j]) {
+        i++;
+      } else if (grams[i] > other.grams[j]) {
+        j++;
+      } else {
+        common++;
+        i++;
+        j++;
+      }
+    }
+    return distance(common, grams.length, other.grams.length);
+  }
+
+  /**
+   * Computes the pq-gram distance from the number of common pq-grams.
+   *
+   * @param common number of common pq-grams.
+   * @param size1 size of a profile.
+   * @param size2 size of the other profile.
+   * @return pq-gram distance.
+   */
+  static float distance(int common, int size1, int size2) {
+    return 1.0f - 2.0f * common / (size1 + size2);
+  }
+
+  /**
+   * Returns the length of the stems.
+   *
+   * @return p.
+   */
+  public int getP() {
+    return p;
+  }
+
+  /**
+   * Returns the length of the bases.
+   *
+   * @return q.
+   */
+  public int getQ() {
+    return q;
+  }
+}
@@ -0,0 +1,163 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.distance;
+
+import at.unisalzburg.dbresearch.apted.costmodel.LabelIdCostModel;
+
+/**
+ * Rename costs between the distinct labels of a source and a destination
+ * tree, precomputed by {@link APTED} for a {@link LabelIdCostModel}.
+ *
+ * <p>The matrix is held by a {@link Workspace} and reused by consecutive
+ * computations. Its arrays grow to the largest size requested so far, which
+ * is bounded by {@link APTED#RENAME_MATRIX_MAX_CELLS}. The costs are computed
+ * again only if the distinct labels of the trees or the cost model differ
+ * from the previous computation.
+ */
+class RenameMatrix {
+
+  /**
+   * Rename costs in row-major order. The rows stand for the distinct labels
+   * of the source tree and the columns for those of the destination tree.
+   */
+  float[] costs = new float[0];
+
+  /**
+   * Number of rows.
+   */
+  int rows;
+
+  /**
+   * Number of columns.
+   */
+  int cols;
+
+  /**
+   * Label ids of the rows in ascending order.
+   */
+  private int[] rowLabels = new int[0];
+
+  /**
+   * Label ids of the columns in ascending order.
+   */
+  private int[] colLabels = new int[0];
+
+  /**
+   * The cost model that computed the costs, or {@code null} if the costs are
+   * not valid.
+   */
+  private LabelIdCostModel costModel;
+
+  /**
+   * Minimum rename cost of different labels, or NaN if not computed yet.
+   */
+  private float minRenameCost = Float.NaN;
+
+  /**
+   * Computes the rename costs between the given distinct labels, unless the
+   * matrix already holds them.
+   *
+   * @param costModel cost model that computes the rename costs.
+   * @param labels1 distinct label ids of the source tree in ascending order.
+   * @param rows number of distinct label ids of the source tree.
+   * @param labels2 distinct label ids of the destination tree in ascending
+   *                order.
+   * @param cols number of distinct label ids of the destination tree.
+   */
+  void fill(LabelIdCostModel costModel, int[] labels1, int rows, int[] labels2, int cols) {
+    if (costModel == this.costModel && rows == this.rows && cols == this.cols
+        && equal(labels1, rowLabels, rows) && equal(labels2, colLabels, cols)) {
+      return;
+    }
+    // Invalidate the costs in case the cost model throws.
+    this.costModel = null;
+    minRenameCost = Float.NaN;
+    this.rows = rows;
+    this.cols = cols;
+    if (rowLabels.length < rows) {
+      rowLabels = new int[rows];
+    }
+    if (colLabels.length < cols) {
+      colLabels = new int[cols];
+    }
+    if (costs.length < rows * cols) {
+      costs = new float[rows * cols];
+    }
+    System.arraycopy(labels1, 0, rowLabels, 0, rows);
+    System.arraycopy(labels2, 0, colLabels, 0, cols);
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < cols; j++) {
+        costs[i * cols + j] = costModel.ren(labels1[i], labels2[j]);
+      }
+    }
+    this.costModel = costModel;
+  }
+
+  /**
+   * Returns the minimum rename cost between different labels of the matrix.
+   * Computed once per filled matrix.
+   *
+   * @return minimum rename cost, or infinity if all labels are equal.
+   */
+  float minRenameCost() {
+    if (Float.isNaN(minRenameCost)) {
+      float min = Float.POSITIVE_INFINITY;
+      for (int i = 0; i < rows; i++) {
+        for (int j = 0; j < cols; j++) {
+          if (rowLabels[i] != colLabels[j]) {
+            min = Math.min(min, costs[i * cols + j]);
+          }
+        }
+      }
+      minRenameCost = min;
+    }
+    return minRenameCost;
+  }
+
+  /**
+   * Returns the number of array cells held by the matrix.
+   *
+   * @return number of cells.
+   */
+  long getCapacity() {
+    return (long)costs.length + rowLabels.length + colLabels.length;
+  }
+
+  /**
+   * Compares the first elements of two arrays.
+   *
+   * @param a an array.
+   * @param b another array.
+   * @param length number of elements to compare.
+   * @return {@code true} if the first {@code length} elements are equal.
+   */
+  private static boolean equal(int[] a, int[] b, int length) {
+    for (int i = 0; i < length; i++) {
+      if (a[i] != b[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
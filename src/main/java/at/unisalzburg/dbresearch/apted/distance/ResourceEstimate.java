@@ -0,0 +1,347 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.distance;
+
+import at.unisalzburg.dbresearch.apted.node.NodeIndexer;
+
+/**
+ * Predicted resources of a distance computation with {@link APTED}, obtained
+ * with {@link APTED#estimate} before the distance is computed. It can be used
+ * to reject, defer or route pairs of trees that are too large.
+ *
+ * <p>The number of subproblems is the cost of the optimal strategy
+ * [2, Section 5]. It is an upper bound of the number of subproblems
+ * reported by {@link APTED#getSubproblemCount} after the computation, and
+ * usually larger than it.
+ *
+ * <p>The memory is given in bytes and assumes an empty workspace. It is an
+ * upper bound on the memory held by the arrays of the node indexers, the
+ * distance matrix, the strategy computation and the single-path functions
+ * during {@link APTED#computeEditDistance}. The sizes of the arrays of the
+ * single-path functions are bounded by the largest pairs of subtrees for
+ * which the strategy chooses the respective function. Object headers are
+ * approximated and the input trees themselves are not included.
+ *
+ * <p>References:
+ * <ul>
+ * <li>[2] M. Pawlik and N. Augsten. Tree edit distance: Robust and memory-
+ *      efficient. Information Systems 56. 2016.
+ * </ul>
+ */
+public class ResourceEstimate {
+
+  /**
+   * Approximate size of an array header in bytes.
+   */
+  private static final long ARRAY_HEADER_BYTES = 16;
+
+  /**
+   * Size of a reference in bytes, assuming uncompressed references.
+   */
+  private static final long REFERENCE_BYTES = 8;
+
+  /**
+   * Predicted number of subproblems.
+   */
+  private long subproblems;
+
+  /**
+   * Bytes of the arrays of both node indexers.
+   */
+  private long indexBytes;
+
+  /**
+   * Bytes of the distance matrix.
+   */
+  private long deltaBytes;
+
+  /**
+   * Says if the distance matrix is allocated off the heap.
+   */
+  private boolean deltaOffHeap;
+
+  /**
+   * Bytes of the arrays of the strategy computation.
+   */
+  private long strategyBytes;
+
+  /**
+   * Bytes of the arrays of the single-path functions.
+   */
+  private long distanceBytes;
+
+  /**
+   * Number of strategy rows in use and the maximum thereof.
+   */
+  private int liveStrategyRows;
+  private int maxLiveStrategyRows;
+
+  /**
+   * Length of the strategy rows.
+   */
+  private int strategyRowLength;
+
+  /**
+   * Largest dimensions of the arrays of the single-path functions. The
+   * two-dimensional arrays are kept for tall (index 0) and wide (index 1)
+   * requests separately (see {@link Workspace}).
+   */
+  private final int[] forestdistRows = new int[2];
+  private final int[] forestdistCols = new int[2];
+  private int keyRootsLength;
+  private final int[] sRows = new int[2];
+  private final int[] sCols = new int[2];
+  private int tSize;
+
+  /**
+   * Only {@link APTED} creates estimates.
+   */
+  ResourceEstimate() {
+  }
+
+  /**
+   * Returns the predicted number of subproblems, an upper bound of
+   * {@link APTED#getSubproblemCount} after the computation.
+   *
+   * @return number of subproblems.
+   */
+  public long getSubproblems() {
+    return subproblems;
+  }
+
+  /**
+   * Returns the bytes of the arrays of both node indexers.
+   *
+   * @return bytes of the node indexers.
+   */
+  public long getIndexBytes() {
+    return indexBytes;
+  }
+
+  /**
+   * Returns the bytes of the distance matrix.
+   *
+   * @return bytes of the distance matrix.
+   */
+  public long getDeltaBytes() {
+    return deltaBytes;
+  }
+
+  /**
+   * Says if the distance matrix is allocated off the heap.
+   *
+   * @return {@code true} if the distance matrix is off the heap.
+   */
+  public boolean isDeltaOffHeap() {
+    return deltaOffHeap;
+  }
+
+  /**
+   * Returns the bytes of the arrays of the strategy computation.
+   *
+   * @return bytes of the strategy computation.
+   */
+  public long getStrategyBytes() {
+    return strategyBytes;
+  }
+
+  /**
+   * Returns the bytes of the arrays of the single-path functions.
+   *
+   * @return bytes of the single-path functions.
+   */
+  public long getDistanceBytes() {
+    return distanceBytes;
+  }
+
+  /**
+   * Returns the predicted peak memory in bytes, on and off the heap.
+   *
+   * @return peak bytes.
+   */
+  public long getPeakBytes() {
+    return indexBytes + deltaBytes + strategyBytes + distanceBytes;
+  }
+
+  /**
+   * Returns the predicted peak memory on the heap in bytes.
+   *
+   * @return peak heap bytes.
+   */
+  public long getPeakHeapBytes() {
+    return getPeakBytes() - (deltaOffHeap ? deltaBytes : 0);
+  }
+
+  /**
+   * Records that the strategy computation acquired a row in each of its
+   * three cost arrays.
+   *
+   * @param rowLength length of the rows.
+   */
+  void strategyRowsAcquired(int rowLength) {
+    strategyRowLength = rowLength;
+    liveStrategyRows++;
+    maxLiveStrategyRows = Math.max(maxLiveStrategyRows, liveStrategyRows);
+  }
+
+  /**
+   * Records that the strategy computation released a row in each of its
+   * three cost arrays.
+   */
+  void strategyRowsReleased() {
+    liveStrategyRows--;
+  }
+
+  /**
+   * Records the single-path function chosen for a pair of subtrees. The path
+   * id is encoded as in the strategy matrix, where 0 stands for an inner path
+   * in the source tree whose leaf is not known.
+   *
+   * @param strategyPath path id.
+   * @param pathIDOffset offset of the path ids in the destination tree.
+   * @param v left-to-right preorder id of the source subtree root.
+   * @param size_v size of the source subtree.
+   * @param w left-to-right preorder id of the destination subtree root.
+   * @param size_w size of the destination subtree.
+   */
+  void strategyPathChosen(int strategyPath, int pathIDOffset, int v, int size_v, int w, int size_w) {
+    if (strategyPath == 0) {
+      // The path may still be the right path. Account for both functions.
+      spfA(size_v, size_w);
+      spfLR(size_v, size_w);
+      return;
+    }
+    int pathNode = Math.abs(strategyPath) - 1;
+    if (pathNode < pathIDOffset) {
+      if (strategyPath < 0 || pathNode == v + size_v - 1) {
+        spfLR(size_v, size_w);
+      } else {
+        spfA(size_v, size_w);
+      }
+    } else {
+      pathNode -= pathIDOffset;
+      if (strategyPath < 0 || pathNode == w + size_w - 1) {
+        spfLR(size_w, size_v);
+      } else {
+        spfA(size_w, size_v);
+      }
+    }
+  }
+
+  /**
+   * Computes the byte figures after the strategy computation.
+   *
+   * @param it1 node indexer of the source input tree.
+   * @param it2 node indexer of the destination input tree.
+   * @param strategyCost cost of the optimal strategy.
+   * @param deltaOffHeap says if the distance matrix is allocated off the heap.
+   */
+  void finish(NodeIndexer it1, NodeIndexer it2, double strategyCost, boolean deltaOffHeap) {
+    int size1 = it1.getSize();
+    int size2 = it2.getSize();
+    int maxSize = Math.max(size1, size2) + 1;
+    this.subproblems = (long)strategyCost;
+    this.indexBytes = indexBytes(it1) + indexBytes(it2);
+    this.deltaBytes = array((long)size1 * size2, 4);
+    this.deltaOffHeap = deltaOffHeap;
+    // cost1_L, cost1_R, cost1_I, their rows, cost2_L, cost2_R, cost2_I, the
+    // leaf row, cost2_path and the two strategy rows.
+    this.strategyBytes = 3 * array(size1, REFERENCE_BYTES)
+                       + 3L * maxLiveStrategyRows * array(strategyRowLength, 8)
+                       + 4 * array(size2, 8) + 3 * array(size2, 4);
+    // q, fn, ft, keyRoots, forestdist, s and t.
+    this.distanceBytes = array(maxSize, 4) + 2 * array(maxSize + 1, 4)
+                       + array(keyRootsLength, 4)
+                       + matrix(forestdistRows[0], forestdistCols[0])
+                       + matrix(forestdistRows[1], forestdistCols[1])
+                       + matrix(sRows[0], sCols[0])
+                       + matrix(sRows[1], sCols[1])
+                       + matrix(tSize, tSize);
+    // The rename matrix, at most one cell per pair of nodes, and per tree
+    // the labels of the matrix, the sorted labels and the rows or columns of
+    // the nodes in three traversals.
+    if (it1.preL_to_label != null) {
+      this.distanceBytes += array(Math.min((long)size1 * size2, APTED.RENAME_MATRIX_MAX_CELLS), 4)
+                          + 5 * (array(size1, 4) + array(size2, 4));
+    }
+  }
+
+  /**
+   * Records the arrays of spfL or spfR for a pair of subtrees.
+   *
+   * @param pathSize size of the subtree with the path.
+   * @param otherSize size of the other subtree.
+   */
+  private void spfLR(int pathSize, int otherSize) {
+    int shape = pathSize >= otherSize ? 0 : 1;
+    forestdistRows[shape] = Math.max(forestdistRows[shape], pathSize + 1);
+    forestdistCols[shape] = Math.max(forestdistCols[shape], otherSize + 1);
+    keyRootsLength = Math.max(keyRootsLength, otherSize);
+  }
+
+  /**
+   * Records the arrays of spfA for a pair of subtrees.
+   *
+   * @param pathSize size of the subtree with the path.
+   * @param otherSize size of the other subtree.
+   */
+  private void spfA(int pathSize, int otherSize) {
+    int shape = pathSize >= otherSize ? 0 : 1;
+    sRows[shape] = Math.max(sRows[shape], pathSize + 1);
+    sCols[shape] = Math.max(sCols[shape], otherSize + 1);
+    tSize = Math.max(tSize, otherSize + 1);
+  }
+
+  /**
+   * Returns the bytes of the arrays of a node indexer.
+   *
+   * @param it node indexer.
+   * @return bytes of the arrays.
+   */
+  private static long indexBytes(NodeIndexer it) {
+    long size = it.getSize();
+    // sizes, parents, postL_to_lld, postR_to_rld, preL_to_ln, preR_to_ln,
+    // the six traversal translations and the three strategy sums.
+    long bytes = 15 * array(size, 4);
+    // The sums of subtree costs, the node costs in four traversals and the
+    // node types.
+    bytes += 10 * array(size, 4) + 2 * array(size, 1);
+    // The label ids in three traversals.
+    if (it.preL_to_label != null) {
+      bytes += 3 * array(size, 4);
+    }
+    // preL_to_node, childrenOffsets and children.
+    bytes += array(size, REFERENCE_BYTES) + array(size + 1, 4) + array(size - 1, 4);
+    return bytes;
+  }
+
+  private static long array(long length, long elementBytes) {
+    return ARRAY_HEADER_BYTES + length * elementBytes;
+  }
+
+  private static long matrix(long rows, long cols) {
+    return array(rows, REFERENCE_BYTES) + rows * array(cols, 4);
+  }
+
+}
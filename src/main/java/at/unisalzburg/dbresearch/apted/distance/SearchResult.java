@@ -0,0 +1,122 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.distance;
+
+/**
+ * The result of a nearest-tree search: the ids of the nearest trees with
+ * their distances in ascending order of distance, and the number of
+ * distance computations that were needed.
+ *
+ * @see TreeCollection
+ * @see VPTree
+ * @see BKTree
+ */
+public class SearchResult {
+
+  /**
+   * Ids of the nearest trees, in ascending order of distance.
+   */
+  private final int[] ids;
+
+  /**
+   * Distances of the nearest trees.
+   */
+  private final float[] distances;
+
+  /**
+   * Number of trees whose distance has been computed.
+   */
+  private final int computedCount;
+
+  /**
+   * Number of trees whose distance has not been computed, because their
+   * lower bounds exceeded the search radius or the distance of the k-th
+   * nearest tree.
+   */
+  private final int prunedCount;
+
+  /**
+   * Creates the result of a search.
+   *
+   * @param ids ids of the nearest trees, in ascending order of distance.
+   * @param distances distances of the nearest trees.
+   * @param computedCount number of computed distances.
+   * @param prunedCount number of trees filtered out by bounds.
+   */
+  SearchResult(int[] ids, float[] distances, int computedCount, int prunedCount) {
+    this.ids = ids;
+    this.distances = distances;
+    this.computedCount = computedCount;
+    this.prunedCount = prunedCount;
+  }
+
+  /**
+   * Returns the number of trees found.
+   *
+   * @return number of trees found.
+   */
+  public int size() {
+    return ids.length;
+  }
+
+  /**
+   * Returns the id of the tree at the given rank.
+   *
+   * @param rank rank of the tree, starting with {@code 0} for the nearest.
+   * @return id of the tree.
+   */
+  public int getId(int rank) {
+    return ids[rank];
+  }
+
+  /**
+   * Returns the distance of the tree at the given rank.
+   *
+   * @param rank rank of the tree, starting with {@code 0} for the nearest.
+   * @return tree edit distance.
+   */
+  public float getDistance(int rank) {
+    return distances[rank];
+  }
+
+  /**
+   * Returns the number of trees whose distance has been computed, possibly
+   * stopped early by a threshold.
+   *
+   * @return number of distance computations.
+   */
+  public int getComputedCount() {
+    return computedCount;
+  }
+
+  /**
+   * Returns the number of trees whose distance computation has been avoided
+   * by bounds.
+   *
+   * @return number of avoided distance computations.
+   */
+  public int getPrunedCount() {
+    return prunedCount;
+  }
+}
@@ -0,0 +1,350 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.distance;
+
+import java.util.Arrays;
+import at.unisalzburg.dbresearch.apted.node.NodeIndexer;
+
+/**
+ * Cheap lower bounds of the tree edit distance, used to filter out pairs of
+ * trees before their distance is computed with {@link APTED}.
+ *
+ * <p>The bounds are computed from a {@link Signature} of each tree, built in
+ * one pass over the arrays of its {@link NodeIndexer}, in time linear in the
+ * size of the signatures. They are consistent with the cost model that
+ * indexed the trees: every deletion costs at least the minimum deletion cost
+ * of the source tree, and every insertion at least the minimum insertion cost
+ * of the destination tree. The rename cost of different labels is bounded by
+ * a minimum rename cost given by the user.
+ *
+ * <p>The bounds are applied in a chain, cheapest first. A chain stops as soon
+ * as a bound exceeds the threshold of interest.
+ *
+ * <ul>
+ * <li>{@link #SIZE}: the difference of the tree sizes, weighted by the
+ *     minimum deletion or insertion cost.
+ * <li>{@link #labels(float)}: the nodes whose labels do not occur in the
+ *     other tree (label histograms, only for trees indexed with a
+ *     {@link costmodel.LabelIdCostModel}).
+ * <li>{@link #DEGREES}: the L1 distance of the histograms of the node
+ *     degrees, which an insertion or deletion changes by at most three.
+ * <li>{@link #LEAF_DISTANCES}: the L1 distance of the histograms of the
+ *     distances of the nodes to their deepest leaf descendants, which an
+ *     insertion or deletion in a tree of height h changes by at most
+ *     2h + 1.
+ * </ul>
+ *
+ * <p>A chain object holds no mutable state and may be shared by threads.
+ *
+ * @see Signature
+ */
+public class TEDLowerBounds {
+
+  /**
+   * A lower bound of the tree edit distance computed from the signatures of
+   * two trees.
+   */
+  public interface Bound {
+
+    /**
+     * Computes the lower bound of the distance from the source tree to the
+     * destination tree.
+     *
+     * @param s1 signature of the source tree.
+     * @param s2 signature of the destination tree.
+     * @return lower bound of the distance.
+     */
+    float compute(Signature s1, Signature s2);
+  }
+
+  /**
+   * The summary of a tree that the lower bounds are computed from.
+   */
+  public static class Signature {
+
+    /**
+     * Number of nodes.
+     */
+    final int size;
+
+    /**
+     * Minimum cost of deleting a node.
+     */
+    final float minDelCost;
+
+    /**
+     * Minimum cost of inserting a node.
+     */
+    final float minInsCost;
+
+    /**
+     * Distinct label ids in ascending order, or {@code null} if the tree has
+     * no label ids.
+     */
+    final int[] labels;
+
+    /**
+     * Numbers of nodes with each label of {@link #labels}.
+     */
+    final int[] labelCounts;
+
+    /**
+     * Numbers of nodes with each number of children.
+     */
+    final int[] degrees;
+
+    /**
+     * Numbers of nodes with each distance to their deepest leaf descendant.
+     * The length minus one is the height of the tree.
+     */
+    final int[] leafDistances;
+
+    /**
+     * Builds the signature of an indexed tree.
+     *
+     * @param indexer node indexer of the tree.
+     */
+    public Signature(NodeIndexer indexer) {
+      size = indexer.getSize();
+      float minDel = Float.POSITIVE_INFINITY;
+      float minIns = Float.POSITIVE_INFINITY;
+      int maxDegree = 0;
+      for (int i = 0; i < size; i++) {
+        minDel = Math.min(minDel, indexer.preL_to_delCost[i]);
+        minIns = Math.min(minIns, indexer.preL_to_insCost[i]);
+        maxDegree = Math.max(maxDegree, indexer.childrenOffsets[i + 1] - indexer.childrenOffsets[i]);
+      }
+      minDelCost = minDel;
+      minInsCost = minIns;
+      degrees = new int[maxDegree + 1];
+      // The children of a node follow it in preorder, hence the distances of
+      // the nodes are final when visited in reverse preorder.
+      int[] distances = new int[size];
+      for (int i = size - 1; i >= 0; i--) {
+        degrees[indexer.childrenOffsets[i + 1] - indexer.childrenOffsets[i]]++;
+        int parent = indexer.parents[i];
+        if (parent >= 0) {
+          distances[parent] = Math.max(distances[parent], distances[i] + 1);
+        }
+      }
+      leafDistances = new int[distances[0] + 1];
+      for (int i = 0; i < size; i++) {
+        leafDistances[distances[i]]++;
+      }
+      if (indexer.preL_to_label == null) {
+        labels = null;
+        labelCounts = null;
+        return;
+      }
+      int[] sorted = Arrays.copyOf(indexer.preL_to_label, size);
+      Arrays.sort(sorted);
+      int[] distinct = new int[size];
+      int[] counts = new int[size];
+      int labelCount = 0;
+      for (int i = 0; i < size; i++) {
+        if (i == 0 || sorted[i] != sorted[i - 1]) {
+          distinct[labelCount++] = sorted[i];
+        }
+        counts[labelCount - 1]++;
+      }
+      labels = Arrays.copyOf(distinct, labelCount);
+      labelCounts = Arrays.copyOf(counts, labelCount);
+    }
+
+    /**
+     * Returns the number of nodes of the tree.
+     *
+     * @return tree size.
+     */
+    public int getSize() {
+      return size;
+    }
+  }
+
+  /**
+   * The size difference bound. At least the surplus nodes of the larger tree
+   * are deleted or inserted.
+   */
+  public static final Bound SIZE = (s1, s2) -> {
+    if (s1.size > s2.size) {
+      return roundDown((double)(s1.size - s2.size) * s1.minDelCost);
+    }
+    return roundDown((double)(s2.size - s1.size) * s2.minInsCost);
+  };
+
+  /**
+   * The degree histogram bound. An insertion or deletion changes the degree
+   * of the node and of its parent, hence it changes the histogram of the
+   * degrees by at most three. A rename does not change it.
+   */
+  public static final Bound DEGREES = (s1, s2) -> {
+    long distance = histogramDistance(s1.degrees, s2.degrees);
+    return roundDown((distance + 2) / 3 * (double)Math.min(s1.minDelCost, s2.minInsCost));
+  };
+
+  /**
+   * The leaf distance histogram bound. An insertion or deletion removes or
+   * adds the distance of the node, and changes the distances of its
+   * ancestors by at most one each. Deleting the nodes first and inserting
+   * them afterwards, the intermediate trees are not higher than the larger
+   * of the two heights.
+   */
+  public static final Bound LEAF_DISTANCES = (s1, s2) -> {
+    long distance = histogramDistance(s1.leafDistances, s2.leafDistances);
+    long maxChange = 2L * Math.max(s1.leafDistances.length, s2.leafDistances.length) - 1;
+    return roundDown((distance + maxChange - 1) / maxChange * (double)Math.min(s1.minDelCost, s2.minInsCost));
+  };
+
+  /**
+   * The bounds of this chain, in the order of application.
+   */
+  private final Bound[] bounds;
+
+  /**
+   * Constructs the chain of all built-in bounds, cheapest first.
+   *
+   * @param minRenameCost minimum cost of renaming a label to a different
+   *                      label, {@code 0} if not known.
+   * @see #labels(float)
+   */
+  public TEDLowerBounds(float minRenameCost) {
+    this(SIZE, labels(minRenameCost), DEGREES, LEAF_DISTANCES);
+  }
+
+  /**
+   * Constructs a chain of the given bounds.
+   *
+   * @param bounds the bounds in the order of application.
+   */
+  public TEDLowerBounds(Bound... bounds) {
+    this.bounds = bounds.clone();
+  }
+
+  /**
+   * Returns the label histogram bound. Only the pairs of nodes with equal
+   * labels, at most as many as the common labels of the trees counted with
+   * multiplicity, are mapped for free. The other nodes are deleted,
+   * inserted or renamed to a different label at the given minimum cost.
+   * For trees without label ids, it is the size difference bound.
+   *
+   * @param minRenameCost minimum cost of renaming a label to a different
+   *                      label.
+   * @return the label histogram bound.
+   */
+  public static Bound labels(float minRenameCost) {
+    return (s1, s2) -> {
+      int pairs = Math.min(s1.size, s2.size);
+      int freePairs = pairs;
+      if (s1.labels != null && s2.labels != null) {
+        freePairs = commonLabels(s1, s2);
+      }
+      // The cost is linear in the number of renamed pairs, hence minimal with
+      // none or as many as possible.
+      double bound = (double)(s1.size - freePairs) * s1.minDelCost + (double)(s2.size - freePairs) * s2.minInsCost;
+      if (pairs > freePairs) {
+        bound = Math.min(bound, (double)(s1.size - pairs) * s1.minDelCost + (double)(s2.size - pairs) * s2.minInsCost + (double)(pairs - freePairs) * minRenameCost);
+      }
+      return roundDown(bound);
+    };
+  }
+
+  /**
+   * Returns the maximum of the bounds of this chain.
+   *
+   * @param s1 signature of the source tree.
+   * @param s2 signature of the destination tree.
+   * @return lower bound of the distance.
+   */
+  public float lowerBound(Signature s1, Signature s2) {
+    return lowerBound(s1, s2, Float.POSITIVE_INFINITY);
+  }
+
+  /**
+   * Applies the bounds of this chain until one exceeds the given threshold.
+   *
+   * @param s1 signature of the source tree.
+   * @param s2 signature of the destination tree.
+   * @param threshold the maximum distance of interest.
+   * @return the first bound that exceeds the threshold, or the maximum of
+   *         the bounds if none does.
+   */
+  public float lowerBound(Signature s1, Signature s2, float threshold) {
+    float max = 0.0f;
+    for (Bound bound : bounds) {
+      max = Math.max(max, bound.compute(s1, s2));
+      if (max > threshold) {
+        break;
+      }
+    }
+    return max;
+  }
+
+  /**
+   * Counts the common labels of two trees, with multiplicity.
+   *
+   * @param s1 signature of a tree with label ids.
+   * @param s2 signature of another tree with label ids.
+   * @return size of the multiset intersection of the labels.
+   */
+  private static int commonLabels(Signature s1, Signature s2) {
+    int common = 0;
+    for (int i = 0, j = 0; i < s1.labels.length && j < s2.labels.length; ) {
+      if (s1.labels[i] < s2.labels[j]) {
+        i++;
+      } else if (s1.labels[i] > s2.labels[j]) {
+        j++;
+      } else {
+        common += Math.min(s1.labelCounts[i++], s2.labelCounts[j++]);
+      }
+    }
+    return common;
+  }
+
+  /**
+   * Computes the L1 distance of two histograms.
+   *
+   * @param h1 a histogram.
+   * @param h2 another histogram.
+   * @return sum of the absolute differences of the counts.
+   */
+  private static long histogramDistance(int[] h1, int[] h2) {
+    long distance = 0;
+    for (int i = 0; i < Math.max(h1.length, h2.length); i++) {
+      distance += Math.abs((i < h1.length ? h1[i] : 0) - (i < h2.length ? h2[i] : 0));
+    }
+    return distance;
+  }
+
+  /**
+   * Converts a bound to float, rounding down such that it remains a lower
+   * bound of the distance computed in float.
+   *
+   * @param bound lower bound of the distance.
+   * @return the largest float not greater than the bound.
+   */
+  static float roundDown(double bound) {
+    float rounded = (float)bound;
+    return rounded > bound ? Math.nextDown(rounded) : rounded;
+  }
+}
@@ -0,0 +1,605 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.distance;
+
+import java.util.ArrayList;
+import java.util.List;
+import at.unisalzburg.dbresearch.apted.node.Node;
+import at.unisalzburg.dbresearch.apted.node.NodeIndexer;
+import at.unisalzburg.dbresearch.apted.costmodel.CostModel;
+
+/**
+ * Cheap upper bounds of the tree edit distance, used to stop searches and
+ * joins early, for example by using the best upper bound found so far as the
+ * threshold of {@link APTED#computeEditDistance(NodeIndexer, NodeIndexer, float)}.
+ *
+ * <p>Each bound builds a valid edit mapping quickly and scores it with the
+ * cost model (see {@link APTED#mappingCost(List)}), hence the bound is the
+ * cost of an actual edit script.
+ *
+ * <ul>
+ * <li>{@link #greedyMapping(NodeIndexer, NodeIndexer)} maps the roots and,
+ *     top-down, the children of mapped nodes with equal labels, in the order
+ *     of the siblings. The remaining children between two matches are mapped
+ *     by their positions. It takes linear time for similar trees.
+ * <li>{@link #constrainedMapping(NodeIndexer, NodeIndexer)} computes the
+ *     constrained edit distance [2], which maps disjoint subtrees to disjoint
+ *     subtrees, in O(n*m) time and memory.
+ * </ul>
+ *
+ * <p>The cost model must be deterministic. An object of this class holds no
+ * state of the computations and may be shared by threads if the cost model
+ * is thread-safe.
+ *
+ * <p>[2] K. Zhang. A constrained edit distance between unordered labeled
+ *        trees. Algorithmica. 1996.
+ *
+ * @param <C> type of cost model.
+ * @param <D> type of node data.
+ */
+public class TEDUpperBounds<C extends CostModel, D> {
+
+  /**
+   * Choice of mapping the roots of two trees, or the children of two forests
+   * to each other.
+   */
+  private static final int MAP = 0;
+
+  /**
+   * Choice of inserting a node of the destination tree and mapping the
+   * source tree into the subtree of one of its children.
+   */
+  private static final int INSERT = 1;
+
+  /**
+   * Choice of deleting a node of the source tree and mapping the subtree of
+   * one of its children.
+   */
+  private static final int DELETE = 2;
+
+  /**
+   * Marks a pair of subtrees to be mapped.
+   */
+  private static final int SUBTREES = 0;
+
+  /**
+   * Marks a pair of forests of children to be mapped.
+   */
+  private static final int FORESTS = 1;
+
+  /**
+   * Cost model to be used for calculating costs of edit operations.
+   */
+  private final C costModel;
+
+  /**
+   * Constructs the upper bounds with the specified cost model.
+   *
+   * @param costModel cost model for edit operations.
+   */
+  public TEDUpperBounds(C costModel) {
+    this.costModel = costModel;
+  }
+
+  /**
+   * Computes the minimum cost of the greedy and the constrained mappings of
+   * two trees.
+   *
+   * @param t1 source tree.
+   * @param t2 destination tree.
+   * @return upper bound of the tree edit distance.
+   */
+  public float upperBound(Node<D> t1, Node<D> t2) {
+    return upperBound(new NodeIndexer(t1, costModel), new NodeIndexer(t2, costModel));
+  }
+
+  /**
+   * Computes the minimum cost of the greedy and the constrained mappings of
+   * two trees indexed in advance.
+   *
+   * @param it1 node indexer of the source tree.
+   * @param it2 node indexer of the destination tree.
+   * @return upper bound of the tree edit distance.
+   */
+  public float upperBound(NodeIndexer it1, NodeIndexer it2) {
+    return Math.min(mappingCost(it1, it2, greedyMapping(it1, it2)), mappingCost(it1, it2, constrainedMapping(it1, it2)));
+  }
+
+  /**
+   * Calculates the cost of an edit mapping between two indexed trees.
+   *
+   * @param it1 node indexer of the source tree.
+   * @param it2 node indexer of the destination tree.
+   * @param mapping an edit mapping as pairs of postorder ids (starting with
+   *                1), with deleted and inserted nodes mapped to 0.
+   * @return cost of edit mapping.
+   */
+  public float mappingCost(NodeIndexer it1, NodeIndexer it2, List<int[]> mapping) {
+    return APTED.mappingCost(costModel, it1, it2, mapping);
+  }
+
+  /**
+   * Builds a top-down mapping that matches the children of mapped nodes by
+   * their labels. The roots are mapped. The children of two mapped nodes are
+   * traversed from left to right, and each child of the source node is
+   * mapped to the next child of the destination node with an equal label, if
+   * any. The unmatched children between two matches are mapped by their
+   * positions, and the surplus children are deleted or inserted with their
+   * subtrees.
+   *
+   * <p>The labels are equal if they have equal label ids (see
+   * {@link costmodel.LabelIdCostModel}), or else if their rename cost is
+   * {@code 0}.
+   *
+   * @param it1 node indexer of the source tree.
+   * @param it2 node indexer of the destination tree.
+   * @return edit mapping as pairs of postorder ids (starting with 1), with
+   *         deleted and inserted nodes mapped to 0.
+   */
+  public List<int[]> greedyMapping(NodeIndexer it1, NodeIndexer it2) {
+    List<int[]> mapping = new ArrayList<>(it1.getSize() + it2.getSize());
+    // The mapped pairs whose children are to be matched.
+    int[] stack = new int[2 * Math.min(it1.getSize(), it2.getSize())];
+    int top = 0;
+    stack[top++] = 0;
+    stack[top++] = 0;
+    while (top > 0) {
+      int j = stack[--top];
+      int i = stack[--top];
+      mapping.add(new int[] {it1.preL_to_postL[i] + 1, it2.preL_to_postL[j] + 1});
+      int end1 = it1.childrenOffsets[i + 1];
+      int end2 = it2.childrenOffsets[j + 1];
+      // The first unmatched children of both nodes.
+      int gap1 = it1.childrenOffsets[i];
+      int gap2 = it2.childrenOffsets[j];
+      for (int c1 = gap1; c1 < end1 && gap2 < end2; c1++) {
+        int c2 = gap2;
+        while (c2 < end2 && !equalLabels(it1, it2, it1.children[c1], it2.children[c2])) {
+          c2++;
+        }
+        if (c2 < end2) {
+          top = mapGap(it1, it2, gap1, c1, gap2, c2, mapping, stack, top);
+          stack[top++] = it1.children[c1];
+          stack[top++] = it2.children[c2];
+          gap1 = c1 + 1;
+          gap2 = c2 + 1;
+        }
+      }
+      top = mapGap(it1, it2, gap1, end1, gap2, end2, mapping, stack, top);
+    }
+    return mapping;
+  }
+
+  /**
+   * Maps two ranges of siblings by their positions. The surplus siblings of
+   * the longer range are deleted or inserted with their subtrees.
+   *
+   * @param it1 node indexer of the source tree.
+   * @param it2 node indexer of the destination tree.
+   * @param from1 first position of the source range in the children array.
+   * @param to1 last position of the source range (exclusive).
+   * @param from2 first position of the destination range.
+   * @param to2 last position of the destination range (exclusive).
+   * @param mapping the mapping to add the deleted and inserted nodes to.
+   * @param stack the stack to push the mapped pairs to.
+   * @param top the top of the stack.
+   * @return the new top of the stack.
+   */
+  private static int mapGap(NodeIndexer it1, NodeIndexer it2, int from1, int to1, int from2, int to2, List<int[]> mapping, int[] stack, int top) {
+    for (; from1 < to1 && from2 < to2; from1++, from2++) {
+      stack[top++] = it1.children[from1];
+      stack[top++] = it2.children[from2];
+    }
+    for (; from1 < to1; from1++) {
+      deleteSubtree(it1, it1.children[from1], mapping);
+    }
+    for (; from2 < to2; from2++) {
+      insertSubtree(it2, it2.children[from2], mapping);
+    }
+    return top;
+  }
+
+  /**
+   * Says if two nodes have equal labels.
+   *
+   * @param it1 node indexer of the source tree.
+   * @param it2 node indexer of the destination tree.
+   * @param i left-to-right preorder id of a source node.
+   * @param j left-to-right preorder id of a destination node.
+   * @return {@code true} if the labels are equal.
+   */
+  private boolean equalLabels(NodeIndexer it1, NodeIndexer it2, int i, int j) {
+    if (it1.preL_to_label != null && it2.preL_to_label != null) {
+      return it1.preL_to_label[i] == it2.preL_to_label[j];
+    }
+    return costModel.ren(it1.preL_to_node[i], it2.preL_to_node[j]) == 0.0f;
+  }
+
+  /**
+   * Builds the mapping of the constrained edit distance [2]. In this mapping,
+   * disjoint subtrees are mapped to disjoint subtrees. The distances between
+   * all pairs of subtrees and of the forests of their children are computed
+   * bottom-up, where the children of two forests are aligned by the
+   * distances of their subtrees as a sequence.
+   *
+   * @param it1 node indexer of the source tree.
+   * @param it2 node indexer of the destination tree.
+   * @return edit mapping as pairs of postorder ids (starting with 1), with
+   *         deleted and inserted nodes mapped to 0.
+   */
+  public List<int[]> constrainedMapping(NodeIndexer it1, NodeIndexer it2) {
+    return new ConstrainedMapping(it1, it2).compute();
+  }
+
+  /**
+   * The state of a constrained mapping computation of two trees.
+   */
+  private class ConstrainedMapping {
+
+    /**
+     * Node indexer of the source tree.
+     */
+    final NodeIndexer it1;
+
+    /**
+     * Node indexer of the destination tree.
+     */
+    final NodeIndexer it2;
+
+    /**
+     * Distances between the subtrees, indexed by the left-to-right preorder
+     * ids of their roots.
+     */
+    final float[][] tree;
+
+    /**
+     * Distances between the forests of the children of two nodes, indexed by
+     * the left-to-right preorder ids of the nodes.
+     */
+    final float[][] forest;
+
+    /**
+     * Rows of the alignment of children, of the length of the maximum number
+     * of children of a destination node plus one.
+     */
+    float[] previousRow;
+
+    /**
+     * The current row of the alignment of children.
+     */
+    float[] currentRow;
+
+    /**
+     * The choice of the last distance computation.
+     */
+    int choice;
+
+    /**
+     * The child of the last choice to insert or delete.
+     */
+    int choiceChild;
+
+    /**
+     * Allocates the distance arrays.
+     *
+     * @param it1 node indexer of the source tree.
+     * @param it2 node indexer of the destination tree.
+     */
+    ConstrainedMapping(NodeIndexer it1, NodeIndexer it2) {
+      this.it1 = it1;
+      this.it2 = it2;
+      tree = new float[it1.getSize()][it2.getSize()];
+      forest = new float[it1.getSize()][it2.getSize()];
+      int maxChildren = 0;
+      for (int j = 0; j < it2.getSize(); j++) {
+        maxChildren = Math.max(maxChildren, it2.childrenOffsets[j + 1] - it2.childrenOffsets[j]);
+      }
+      previousRow = new float[maxChildren + 1];
+      currentRow = new float[maxChildren + 1];
+    }
+
+    /**
+     * Computes the distances bottom-up and the mapping top-down.
+     *
+     * @return edit mapping.
+     */
+    List<int[]> compute() {
+      // The children of a node follow it in preorder.
+      for (int i = it1.getSize() - 1; i >= 0; i--) {
+        for (int j = it2.getSize() - 1; j >= 0; j--) {
+          forest[i][j] = forestDistance(i, j);
+          tree[i][j] = treeDistance(i, j);
+        }
+      }
+      List<int[]> mapping = new ArrayList<>(it1.getSize() + it2.getSize());
+      // The pairs of subtrees or forests to map.
+      List<int[]> pairs = new ArrayList<>();
+      pairs.add(new int[] {SUBTREES, 0, 0});
+      while (!pairs.isEmpty()) {
+        int[] pair = pairs.remove(pairs.size() - 1);
+        int i = pair[1];
+        int j = pair[2];
+        if (pair[0] == SUBTREES) {
+          treeDistance(i, j);
+          if (choice == MAP) {
+            mapping.add(new int[] {it1.preL_to_postL[i] + 1, it2.preL_to_postL[j] + 1});
+            pairs.add(new int[] {FORESTS, i, j});
+          } else if (choice == INSERT) {
+            insertNode(it2, j, mapping);
+            insertChildren(j, choiceChild, mapping);
+            pairs.add(new int[] {SUBTREES, i, choiceChild});
+          } else {
+            deleteNode(it1, i, mapping);
+            deleteChildren(i, choiceChild, mapping);
+            pairs.add(new int[] {SUBTREES, choiceChild, j});
+          }
+        } else {
+          forestDistance(i, j);
+          if (choice == MAP) {
+            alignChildren(i, j, mapping, pairs);
+          } else if (choice == INSERT) {
+            insertNode(it2, choiceChild, mapping);
+            insertChildren(j, choiceChild, mapping);
+            pairs.add(new int[] {FORESTS, i, choiceChild});
+          } else {
+            deleteNode(it1, choiceChild, mapping);
+            deleteChildren(i, choiceChild, mapping);
+            pairs.add(new int[] {FORESTS, choiceChild, j});
+          }
+        }
+      }
+      return mapping;
+    }
+
+    /**
+     * Computes the distance between two subtrees and stores the choice.
+     * Either the roots are mapped, or the root of a tree is deleted or
+     * inserted and the other tree is mapped into the subtree of one of its
+     * children.
+     *
+     * @param i left-to-right preorder id of a source node.
+     * @param j left-to-right preorder id of a destination node.
+     * @return distance between the subtrees.
+     */
+    float treeDistance(int i, int j) {
+      float best = forest[i][j] + costModel.ren(it1.preL_to_node[i], it2.preL_to_node[j]);
+      choice = MAP;
+      for (int c = it2.childrenOffsets[j]; c < it2.childrenOffsets[j + 1]; c++) {
+        int t = it2.children[c];
+        float distance = it2.preL_to_sumInsCost[j] - it2.preL_to_sumInsCost[t] + tree[i][t];
+        if (distance < best) {
+          best = distance;
+          choice = INSERT;
+          choiceChild = t;
+        }
+      }
+      for (int c = it1.childrenOffsets[i]; c < it1.childrenOffsets[i + 1]; c++) {
+        int s = it1.children[c];
+        float distance = it1.preL_to_sumDelCost[i] - it1.preL_to_sumDelCost[s] + tree[s][j];
+        if (distance < best) {
+          best = distance;
+          choice = DELETE;
+          choiceChild = s;
+        }
+      }
+      return best;
+    }
+
+    /**
+     * Computes the distance between the forests of the children of two nodes
+     * and stores the choice. Either the children are aligned, or a forest is
+     * mapped into the forest of the children of one of the other children.
+     *
+     * @param i left-to-right preorder id of a source node.
+     * @param j left-to-right preorder id of a destination node.
+     * @return distance between the forests.
+     */
+    float forestDistance(int i, int j) {
+      float best = alignmentDistance(i, j);
+      choice = MAP;
+      for (int c = it2.childrenOffsets[j]; c < it2.childrenOffsets[j + 1]; c++) {
+        int t = it2.children[c];
+        float distance = (it2.preL_to_sumInsCost[j] - it2.preL_to_insCost[j]) - (it2.preL_to_sumInsCost[t] - it2.preL_to_insCost[t]) + forest[i][t];
+        if (distance < best) {
+          best = distance;
+          choice = INSERT;
+          choiceChild = t;
+        }
+      }
+      for (int c = it1.childrenOffsets[i]; c < it1.childrenOffsets[i + 1]; c++) {
+        int s = it1.children[c];
+        float distance = (it1.preL_to_sumDelCost[i] - it1.preL_to_delCost[i]) - (it1.preL_to_sumDelCost[s] - it1.preL_to_delCost[s]) + forest[s][j];
+        if (distance < best) {
+          best = distance;
+          choice = DELETE;
+          choiceChild = s;
+        }
+      }
+      return best;
+    }
+
+    /**
+     * Computes the sequence edit distance between the children of two nodes,
+     * where deleting or inserting a child costs its subtree, and mapping two
+     * children costs the distance of their subtrees. Uses two rows.
+     *
+     * @param i left-to-right preorder id of a source node.
+     * @param j left-to-right preorder id of a destination node.
+     * @return distance of the alignment.
+     */
+    float alignmentDistance(int i, int j) {
+      int from1 = it1.childrenOffsets[i];
+      int from2 = it2.childrenOffsets[j];
+      int count1 = it1.childrenOffsets[i + 1] - from1;
+      int count2 = it2.childrenOffsets[j + 1] - from2;
+      previousRow[0] = 0.0f;
+      for (int y = 1; y <= count2; y++) {
+        previousRow[y] = previousRow[y - 1] + it2.preL_to_sumInsCost[it2.children[from2 + y - 1]];
+      }
+      for (int x = 1; x <= count1; x++) {
+        int s = it1.children[from1 + x - 1];
+        currentRow[0] = previousRow[0] + it1.preL_to_sumDelCost[s];
+        for (int y = 1; y <= count2; y++) {
+          int t = it2.children[from2 + y - 1];
+          currentRow[y] = Math.min(Math.min(
+            previousRow[y] + it1.preL_to_sumDelCost[s],
+            currentRow[y - 1] + it2.preL_to_sumInsCost[t]),
+            previousRow[y - 1] + tree[s][t]);
+        }
+        float[] row = previousRow;
+        previousRow = currentRow;
+        currentRow = row;
+      }
+      return previousRow[count2];
+    }
+
+    /**
+     * Aligns the children of two nodes with the sequence edit distance and
+     * adds the choices to the mapping. Computes the full array of the
+     * alignment with the same operations as {@link #alignmentDistance}.
+     *
+     * @param i left-to-right preorder id of a source node.
+     * @param j left-to-right preorder id of a destination node.
+     * @param mapping the mapping to add the deleted and inserted nodes to.
+     * @param pairs the pairs of subtrees to map.
+     */
+    void alignChildren(int i, int j, List<int[]> mapping, List<int[]> pairs) {
+      int from1 = it1.childrenOffsets[i];
+      int from2 = it2.childrenOffsets[j];
+      int count1 = it1.childrenOffsets[i + 1] - from1;
+      int count2 = it2.childrenOffsets[j + 1] - from2;
+      float[][] alignment = new float[count1 + 1][count2 + 1];
+      for (int y = 1; y <= count2; y++) {
+        alignment[0][y] = alignment[0][y - 1] + it2.preL_to_sumInsCost[it2.children[from2 + y - 1]];
+      }
+      for (int x = 1; x <= count1; x++) {
+        int s = it1.children[from1 + x - 1];
+        alignment[x][0] = alignment[x - 1][0] + it1.preL_to_sumDelCost[s];
+        for (int y = 1; y <= count2; y++) {
+          int t = it2.children[from2 + y - 1];
+          alignment[x][y] = Math.min(Math.min(
+            alignment[x - 1][y] + it1.preL_to_sumDelCost[s],
+            alignment[x][y - 1] + it2.preL_to_sumInsCost[t]),
+            alignment[x - 1][y - 1] + tree[s][t]);
+        }
+      }
+      int x = count1;
+      int y = count2;
+      while (x > 0 || y > 0) {
+        int s = x > 0 ? it1.children[from1 + x - 1] : -1;
+        int t = y > 0 ? it2.children[from2 + y - 1] : -1;
+        if (x > 0 && y > 0 && alignment[x][y] == alignment[x - 1][y - 1] + tree[s][t]) {
+          pairs.add(new int[] {SUBTREES, s, t});
+          x--;
+          y--;
+        } else if (x > 0 && alignment[x][y] == alignment[x - 1][y] + it1.preL_to_sumDelCost[s]) {
+          deleteSubtree(it1, s, mapping);
+          x--;
+        } else {
+          insertSubtree(it2, t, mapping);
+          y--;
+        }
+      }
+    }
+
+    /**
+     * Inserts the subtrees of all children of a destination node but one.
+     *
+     * @param j left-to-right preorder id of a destination node.
+     * @param except the child whose subtree is not inserted.
+     * @param mapping the mapping to add the inserted nodes to.
+     */
+    void insertChildren(int j, int except, List<int[]> mapping) {
+      for (int c = it2.childrenOffsets[j]; c < it2.childrenOffsets[j + 1]; c++) {
+        if (it2.children[c] != except) {
+          insertSubtree(it2, it2.children[c], mapping);
+        }
+      }
+    }
+
+    /**
+     * Deletes the subtrees of all children of a source node but one.
+     *
+     * @param i left-to-right preorder id of a source node.
+     * @param except the child whose subtree is not deleted.
+     * @param mapping the mapping to add the deleted nodes to.
+     */
+    void deleteChildren(int i, int except, List<int[]> mapping) {
+      for (int c = it1.childrenOffsets[i]; c < it1.childrenOffsets[i + 1]; c++) {
+        if (it1.children[c] != except) {
+          deleteSubtree(it1, it1.children[c], mapping);
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds the deletion of a node to a mapping.
+   *
+   * @param it node indexer of the source tree.
+   * @param i left-to-right preorder id of the node.
+   * @param mapping the mapping.
+   */
+  private static void deleteNode(NodeIndexer it, int i, List<int[]> mapping) {
+    mapping.add(new int[] {it.preL_to_postL[i] + 1, 0});
+  }
+
+  /**
+   * Adds the insertion of a node to a mapping.
+   *
+   * @param it node indexer of the destination tree.
+   * @param j left-to-right preorder id of the node.
+   * @param mapping the mapping.
+   */
+  private static void insertNode(NodeIndexer it, int j, List<int[]> mapping) {
+    mapping.add(new int[] {0, it.preL_to_postL[j] + 1});
+  }
+
+  /**
+   * Adds the deletions of all nodes of a subtree to a mapping. The nodes of a
+   * subtree are consecutive in preorder.
+   *
+   * @param it node indexer of the source tree.
+   * @param i left-to-right preorder id of the root of the subtree.
+   * @param mapping the mapping.
+   */
+  private static void deleteSubtree(NodeIndexer it, int i, List<int[]> mapping) {
+    for (int k = i; k < i + it.sizes[i]; k++) {
+      deleteNode(it, k, mapping);
+    }
+  }
+
+  /**
+   * Adds the insertions of all nodes of a subtree to a mapping.
+   *
+   * @param it node indexer of the destination tree.
+   * @param j left-to-right preorder id of the root of the subtree.
+   * @param mapping the mapping.
+   */
+  private static void insertSubtree(NodeIndexer it, int j, List<int[]> mapping) {
+    for (int k = j; k < j + it.sizes[j]; k++) {
+      insertNode(it, k, mapping);
+    }
+  }
+}
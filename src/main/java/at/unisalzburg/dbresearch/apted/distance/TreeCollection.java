@@ -0,0 +1,164 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.distance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import at.unisalzburg.dbresearch.apted.node.Node;
+import at.unisalzburg.dbresearch.apted.node.NodeIndexer;
+import at.unisalzburg.dbresearch.apted.costmodel.CostModel;
+
+/**
+ * An in-memory collection of trees that answers k-nearest-neighbour queries
+ * by the tree edit distance.
+ *
+ * <p>Each tree is indexed once when added, and its signature for the lower
+ * bounds (see {@link TEDLowerBounds}) is stored with it. A query computes
+ * the lower bounds of its distances to all trees and visits the trees in the
+ * ascending order of their bounds. The distances are computed with APTED
+ * bounded by the distance of the current k-th nearest tree (see
+ * {@link APTED#computeEditDistance(NodeIndexer, NodeIndexer, float)}), and
+ * the search stops as soon as the lower bound of the next tree exceeds it.
+ *
+ * <p>The distances are computed from the query tree to the stored trees. An
+ * object of this class is not thread-safe.
+ *
+ * @param <C> type of cost model.
+ * @param <D> type of node data.
+ * @see SearchResult
+ */
+public class TreeCollection<C extends CostModel, D> {
+
+  /**
+   * Cost model to be used for calculating costs of edit operations.
+   */
+  private final C costModel;
+
+  /**
+   * The lower bounds to order and filter the trees with.
+   */
+  private final TEDLowerBounds lowerBounds;
+
+  /**
+   * Node indexers of the stored trees, by id.
+   */
+  private final List<NodeIndexer> indexers = new ArrayList<>();
+
+  /**
+   * Signatures of the stored trees, by id.
+   */
+  private final List<TEDLowerBounds.Signature> signatures = new ArrayList<>();
+
+  /**
+   * Constructs an empty collection with all built-in lower bounds, assuming
+   * no minimum rename cost.
+   *
+   * @param costModel cost model for edit operations.
+   */
+  public TreeCollection(C costModel) {
+    this(costModel, new TEDLowerBounds(0.0f));
+  }
+
+  /**
+   * Constructs an empty collection with the given lower bounds.
+   *
+   * @param costModel cost model for edit operations.
+   * @param lowerBounds the lower bounds to order and filter the trees with.
+   */
+  public TreeCollection(C costModel, TEDLowerBounds lowerBounds) {
+    this.costModel = costModel;
+    this.lowerBounds = lowerBounds;
+  }
+
+  /**
+   * Indexes a tree and adds it to the collection.
+   *
+   * @param tree the tree to add.
+   * @return id of the tree, the number of trees added before it.
+   */
+  public int add(Node<D> tree) {
+    NodeIndexer indexer = new NodeIndexer(tree, costModel);
+    indexers.add(indexer);
+    signatures.add(new TEDLowerBounds.Signature(indexer));
+    return indexers.size() - 1;
+  }
+
+  /**
+   * Returns the number of trees in the collection.
+   *
+   * @return number of trees.
+   */
+  public int size() {
+    return indexers.size();
+  }
+
+  /**
+   * Returns the tree with the given id.
+   *
+   * @param id id of a tree.
+   * @return the tree.
+   */
+  public Node<D> get(int id) {
+    return (Node<D>)indexers.get(id).preL_to_node[0];
+  }
+
+  /**
+   * Finds the k trees of the collection nearest to the query tree. Trees at
+   * equal distances are ranked by their ids.
+   *
+   * @param query the query tree.
+   * @param k the number of trees to find.
+   * @return the nearest trees, fewer than k if the collection is smaller.
+   * @throws IllegalArgumentException if k is not positive.
+   */
+  public SearchResult nearest(Node<D> query, int k) {
+    NearestTrees nearest = new NearestTrees(k, Float.POSITIVE_INFINITY);
+    int size = indexers.size();
+    NodeIndexer queryIndexer = new NodeIndexer(query, costModel);
+    TEDLowerBounds.Signature querySignature = new TEDLowerBounds.Signature(queryIndexer);
+    // Sort the trees by their lower bounds. Non-negative floats compare as
+    // their bits, which are packed with the ids into longs to sort them
+    // without boxing.
+    long[] candidates = new long[size];
+    for (int id = 0; id < size; id++) {
+      float bound = Math.max(lowerBounds.lowerBound(querySignature, signatures.get(id)), 0.0f);
+      candidates[id] = ((long)Float.floatToIntBits(bound) << 32) | id;
+    }
+    Arrays.sort(candidates);
+    APTED<C, D> apted = new APTED<>(costModel);
+    int computed = 0;
+    for (long candidate : candidates) {
+      float threshold = nearest.threshold();
+      if (Float.intBitsToFloat((int)(candidate >>> 32)) > threshold) {
+        // All remaining trees have larger bounds.
+        break;
+      }
+      int id = (int)candidate;
+      nearest.offer(id, apted.computeEditDistance(queryIndexer, indexers.get(id), threshold));
+      computed++;
+    }
+    return nearest.toResult(computed, size - computed);
+  }
+}
@@ -0,0 +1,1050 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.distance;
+
+import java.util.Arrays;
+import at.unisalzburg.dbresearch.apted.node.Node;
+import at.unisalzburg.dbresearch.apted.node.NodeIndexer;
+import at.unisalzburg.dbresearch.apted.costmodel.LabelIdCostModel;
+
+/**
+ * Implements APTED algorithm [1,2] specialised to the unit cost model on
+ * label ids. Deleting and inserting a node costs {@code 1}, renaming costs
+ * {@code 0} for equal label ids and {@code 1} otherwise. The result is equal
+ * to the result of {@link APTED} with
+ * {@link costmodel.StringUnitLabelIdCostModel}.
+ *
+ * <p>The strategy computation is shared with {@link APTED}. The single-path
+ * functions are the same, but all distances are integers. The distance
+ * matrix is an {@link IntegerDeltaMatrix} that uses short cells whenever the
+ * sum of the input tree sizes fits in a short, and the spf arrays are int
+ * arrays. The cost model is used only to obtain the label ids of the nodes;
+ * its costs are ignored. The distance matrix is always on the Java heap.
+ *
+ * <p>The edit mapping is not supported. Use {@link APTED} to compute it.
+ *
+ * <p>References:
+ * <ul>
+ * <li>[1] M. Pawlik and N. Augsten. Efficient Computation of the Tree Edit
+ *      Distance. ACM Transactions on Database Systems (TODS) 40(1). 2015.
+ * <li>[2] M. Pawlik and N. Augsten. Tree edit distance: Robust and memory-
+ *      efficient. Information Systems 56. 2016.
+ * </ul>
+ *
+ * @param <C> type of cost model.
+ * @param <D> type of node data.
+ * @see APTED
+ */
+public class UnitCostAPTED<C extends LabelIdCostModel, D> {
+
+  /**
+   * Indexer of the source tree.
+   *
+   * @see node.NodeIndexer
+   */
+  private NodeIndexer it1;
+
+  /**
+   * Indexer of the destination tree.
+   *
+   * @see node.NodeIndexer
+   */
+  private NodeIndexer it2;
+
+  /**
+   * The size of the source input tree.
+   */
+  private int size1;
+
+  /**
+   * The size of the destination tree.
+   */
+  private int size2;
+
+  /**
+   * The distance matrix [1, Sections 3.4,8.2,8.3]. Used to store the strategy
+   * and then intermediate distances between pairs of subtrees.
+   */
+  private IntegerDeltaMatrix delta;
+
+  /**
+   * One of distance arrays to store intermediate distances in spfA.
+   */
+  private int q[];
+
+  /**
+   * Array used in the algorithm before [1]. Using it does not change the
+   * complexity.
+   */
+  private int fn[];
+
+  /**
+   * Array used in the algorithm before [1]. Using it does not change the
+   * complexity.
+   */
+  private int ft[];
+
+  /**
+   * Cost model that assigns label ids to the nodes.
+   */
+  private C costModel;
+
+  /**
+   * Arrays reused across distance computations.
+   */
+  private Workspace workspace;
+
+  /**
+   * Constructs the algorithm object with the specified cost model.
+   *
+   * @param costModel cost model that assigns label ids to the nodes.
+   */
+  public UnitCostAPTED(C costModel) {
+    this(costModel, new Workspace());
+  }
+
+  /**
+   * Constructs the algorithm object with the specified cost model and
+   * workspace. The arrays held by the workspace are reused by consecutive
+   * distance computations of this object.
+   *
+   * @param costModel cost model that assigns label ids to the nodes.
+   * @param workspace workspace to take the arrays from.
+   */
+  public UnitCostAPTED(C costModel, Workspace workspace) {
+    this.costModel = costModel;
+    this.workspace = workspace;
+  }
+
+  /**
+   * Compute the unit-cost tree edit distance between source and destination
+   * trees.
+   *
+   * @param t1 source tree.
+   * @param t2 destination tree.
+   * @return tree edit distance.
+   */
+  public int computeEditDistance(Node<D> t1, Node<D> t2) {
+    // Index the nodes of both input trees.
+    init(new NodeIndexer(t1, costModel), new NodeIndexer(t2, costModel));
+    return computeEditDistance();
+  }
+
+  /**
+   * Compute the unit-cost tree edit distance between two trees indexed in
+   * advance with the cost model of this object, or with one that shares its
+   * label ids.
+   *
+   * <p>The indexers are not modified. An indexed tree can be compared to
+   * many other trees without indexing it again, also by algorithm objects
+   * that run concurrently.
+   *
+   * @param it1 node indexer of the source tree.
+   * @param it2 node indexer of the destination tree.
+   * @return tree edit distance.
+   */
+  public int computeEditDistance(NodeIndexer it1, NodeIndexer it2) {
+    init(new NodeIndexer(it1), new NodeIndexer(it2));
+    return computeEditDistance();
+  }
+
+  /**
+   * Computes the distance between the initialised input trees.
+   *
+   * @return tree edit distance.
+   */
+  private int computeEditDistance() {
+    // All strategy path ids and distances are at most size1 + size2.
+    delta = workspace.intDelta(size1, size2, size1 + size2 <= ShortDeltaMatrix.MAX_VALUE);
+    // Determine the optimal strategy for the distance computation.
+    // Use the heuristic from [2, Section 5.3].
+    if (it1.lchl < it1.rchl) {
+      APTED.computeOptStrategy_postL(workspace, it1, it2, delta, null, null);
+    } else {
+      APTED.computeOptStrategy_postR(workspace, it1, it2, delta, null, null);
+    }
+    // Initialise structures for distance computation.
+    tedInit();
+    // Compute the distance.
+    return gted(it1, it2);
+  }
+
+  /**
+   * Initialises node indexers and stores input tree sizes.
+   *
+   * @param it1 node indexer of the source input tree.
+   * @param it2 node indexer of the destination input tree.
+   */
+  private void init(NodeIndexer it1, NodeIndexer it2) {
+    this.it1 = it1;
+    this.it2 = it2;
+    size1 = it1.getSize();
+    size2 = it2.getSize();
+  }
+
+  /**
+   * After the optimal strategy is computed, initialises distances of deleting
+   * and inserting subtrees without their root nodes.
+   */
+  private void tedInit() {
+    // Initialize arrays.
+    int maxSize = Math.max(size1, size2) + 1;
+    q = workspace.intQ(maxSize);
+    fn = workspace.fn(maxSize + 1);
+    ft = workspace.ft(maxSize + 1);
+    // Compute subtree distances without the root nodes when one of subtrees
+    // is a single node.
+    int sizeX = -1;
+    int sizeY = -1;
+    // Loop over the nodes in reversed left-to-right preorder.
+    for(int x = 0; x < size1; x++) {
+      sizeX = it1.sizes[x];
+      for(int y = 0; y < size2; y++) {
+        sizeY = it2.sizes[y];
+        // With unit costs, deleting or inserting a subtree without its root
+        // node costs its size minus one.
+        if (sizeX == 1 && sizeY == 1) {
+          delta.setInt(x, y, 0);
+        } else if (sizeX == 1) {
+          delta.setInt(x, y, sizeY - 1);
+        } else if (sizeY == 1) {
+          delta.setInt(x, y, sizeX - 1);
+        }
+      }
+    }
+  }
+
+  /**
+   * Implements spf1 single path function for the case when one of the subtrees
+   * is a single node [2, Section 6.1, Algorithm 2].
+   *
+   * <p>With unit costs, the single node is either mapped to a node of the
+   * other subtree with the same label, or to any node with a rename, or it is
+   * deleted (inserted). The distance is the size of the other subtree, minus
+   * one if a node with the same label exists.
+   *
+   * @param ni1 node indexer for the source input subtree.
+   * @param ni2 node indexer for the destination input subtree.
+   * @param subtreeRootNode1 root node of a subtree in the source input tree.
+   * @param subtreeRootNode2 root node of a subtree in the destination input tree.
+   * @return the tree edit distance between two subtrees of the source and destination input subtrees.
+   */
+  private int spf1 (NodeIndexer ni1, int subtreeRootNode1, NodeIndexer ni2, int subtreeRootNode2) {
+    int subtreeSize1 = ni1.sizes[subtreeRootNode1];
+    int subtreeSize2 = ni2.sizes[subtreeRootNode2];
+    if (subtreeSize1 == 1) {
+      int label = ni1.preL_to_label[subtreeRootNode1];
+      for (int i = subtreeRootNode2; i < subtreeRootNode2 + subtreeSize2; i++) {
+        if (ni2.preL_to_label[i] == label) {
+          return subtreeSize2 - 1;
+        }
+      }
+      return subtreeSize2;
+    }
+    if (subtreeSize2 == 1) {
+      int label = ni2.preL_to_label[subtreeRootNode2];
+      for (int i = subtreeRootNode1; i < subtreeRootNode1 + subtreeSize1; i++) {
+        if (ni1.preL_to_label[i] == label) {
+          return subtreeSize1 - 1;
+        }
+      }
+      return subtreeSize1;
+    }
+    return -1;
+  }
+
+  /**
+   * Implements GTED algorithm [1, Section 3.4].
+   *
+   * <p>The pairs of subtrees to compute are kept on an explicit stack instead
+   * of the call stack, such that the depth of the input trees is not limited
+   * by the thread stack size. A pair is first decomposed along its strategy
+   * path: it is pushed back marked as decomposed, followed by the pairs of
+   * its relevant subtrees. When it is popped again, the distances of all
+   * relevant subtrees are known, and a single-path function computes the
+   * distance of the pair. The pairs are processed in the same order as by
+   * the recursive formulation.
+   *
+   * @param it1 node indexer for the source input tree.
+   * @param it2 node indexer for the destination input tree.
+   * @return the tree edit distance between the source and destination trees.
+   */
+  private int gted(NodeIndexer it1, NodeIndexer it2) {
+    // Two cells per pair. A decomposed pair stores the complement of the
+    // subtree root in the source tree.
+    int[] stack = workspace.gtedStack(2 * (size1 + size2));
+    int top = 0;
+    stack[top++] = it1.getCurrentNode();
+    stack[top++] = it2.getCurrentNode();
+    int result = 0;
+    while (top > 0) {
+      int currentSubtree2 = stack[--top];
+      int currentSubtree1 = stack[--top];
+      if (currentSubtree1 < 0) {
+        result = spf(it1, ~currentSubtree1, it2, currentSubtree2);
+        continue;
+      }
+      int subtreeSize1 = it1.sizes[currentSubtree1];
+      int subtreeSize2 = it2.sizes[currentSubtree2];
+
+      // Use spf1.
+      if ((subtreeSize1 == 1 || subtreeSize2 == 1)) {
+        result = spf1(it1, currentSubtree1, it2, currentSubtree2);
+        continue;
+      }
+
+      // The pair and its relevant subtrees take at most one cell pair per
+      // node of the decomposed subtree.
+      int required = top + 2 * (Math.max(subtreeSize1, subtreeSize2) + 1);
+      if (required > stack.length) {
+        stack = Arrays.copyOf(stack, 2 * required);
+      }
+      top = APTED.decompose(stack, top, it1, currentSubtree1, it2, currentSubtree2, delta.getInt(currentSubtree1, currentSubtree2));
+    }
+    return result;
+  }
+
+  /**
+   * Computes the distance between a pair of subtrees with the single-path
+   * function of its strategy path. The distances of all relevant subtrees
+   * must be already computed.
+   *
+   * @param it1 node indexer for the source input tree.
+   * @param currentSubtree1 root node of a subtree in the source input tree.
+   * @param it2 node indexer for the destination input tree.
+   * @param currentSubtree2 root node of a subtree in the destination input tree.
+   * @return the tree edit distance between the two subtrees.
+   */
+  private int spf(NodeIndexer it1, int currentSubtree1, NodeIndexer it2, int currentSubtree2) {
+    int strategyPathID = delta.getInt(currentSubtree1, currentSubtree2);
+    int strategyPath = APTED.strategyPath(it1, currentSubtree1, it2, currentSubtree2, strategyPathID);
+    byte strategyPathType = (byte)(strategyPath % APTED.PATH_IN_DESTINATION);
+    // Pass to spfs a boolean that says if the order of input subtrees has
+    // been swapped compared to the order of the initial input trees.
+    boolean treesSwapped = strategyPath >= APTED.PATH_IN_DESTINATION;
+    NodeIndexer pathTree = treesSwapped ? it2 : it1;
+    NodeIndexer otherTree = treesSwapped ? it1 : it2;
+    if (strategyPathType == APTED.LEFT) {
+      return spfL(pathTree, otherTree, treesSwapped);
+    }
+    if (strategyPathType == APTED.RIGHT) {
+      return spfR(pathTree, otherTree, treesSwapped);
+    }
+    return spfA(pathTree, otherTree, APTED.pathLeaf(strategyPathID, it1.getSize()), strategyPathType, treesSwapped);
+  }
+
+  /**
+   * Implements the single-path function spfA. Here, we use it strictly for
+   * inner paths (spfL and spfR have better performance for leaft and right
+   * paths, respectively) [1, Sections 7 and 8]. However, in this stage it
+   * also executes correctly for left and right paths.
+   *
+   * @param it1 node indexer of the left-hand input subtree.
+   * @param it2 node indexer of the right-hand input subtree.
+   * @param pathID the left-to-right preorder id of the strategy path's leaf node.
+   * @param pathType type of the strategy path (LEFT, RIGHT, INNER).
+   * @param treesSwapped says if the order of input subtrees has been swapped
+   *                     compared to the order of the initial input trees. Used
+   *                     for accessing delta array and deciding on the edit
+   *                     operation.
+   * @return tree edit distance between left-hand and right-hand input subtrees.
+   */
+  // The implementation has been micro-tuned: variables initialised once,
+  // pointers to arrays precomputed and fixed for entire lower-level loops,
+  // parts of lower-level loops that don't change moved to upper-level loops.
+  private int spfA(NodeIndexer it1, NodeIndexer it2, int pathID, byte pathType, boolean treesSwapped) {
+    int[] it1labels = it1.preL_to_label;
+    int[] it2labels = it2.preL_to_label;
+    int lFLabel;
+    int[] it1sizes = it1.sizes;
+    int[] it2sizes = it2.sizes;
+    int[] it1parents = it1.parents;
+    int[] it2parents = it2.parents;
+    int[] it1preL_to_preR = it1.preL_to_preR;
+    int[] it2preL_to_preR = it2.preL_to_preR;
+    int[] it1preR_to_preL = it1.preR_to_preL;
+    int[] it2preR_to_preL = it2.preR_to_preL;
+    int currentSubtreePreL1 = it1.getCurrentNode();
+    int currentSubtreePreL2 = it2.getCurrentNode();
+
+    // Variables to incrementally sum up the forest sizes.
+    int currentForestSize1 = 0;
+    int currentForestSize2 = 0;
+    int tmpForestSize1 = 0;
+    // Variables to incrementally sum up the forest cost.
+    int currentForestCost1 = 0;
+    int currentForestCost2 = 0;
+    int tmpForestCost1 = 0;
+
+    int subtreeSize2 = it2.sizes[currentSubtreePreL2];
+    int subtreeSize1 = it1.sizes[currentSubtreePreL1];
+    int[][] t = workspace.intT(subtreeSize2+1, subtreeSize2+1);
+    int[][] s = workspace.intS(subtreeSize1+1, subtreeSize2+1);
+    int minCost = -1;
+    // sp1, sp2 and sp3 correspond to three elements of the minimum in the
+    // recursive formula [1, Figure 12].
+    int sp1 = 0;
+    int sp2 = 0;
+    int sp3 = 0;
+    int startPathNode = -1;
+    int endPathNode = pathID;
+    int it1PreLoff = endPathNode;
+    int it2PreLoff = currentSubtreePreL2;
+    int it1PreRoff = it1preL_to_preR[endPathNode];
+    int it2PreRoff = it2preL_to_preR[it2PreLoff];
+    // variable declarations which were inside the loops
+    int rFlast,lFlast,endPathNode_in_preR,startPathNode_in_preR,parent_of_endPathNode,parent_of_endPathNode_in_preR,
+    lFfirst,rFfirst,rGlast,rGfirst,lGfirst,rG_in_preL,rGminus1_in_preL,parent_of_rG_in_preL,lGlast,lF_in_preR,lFSubtreeSize,
+    lGminus1_in_preR,parent_of_lG,parent_of_lG_in_preR,rF_in_preL,rFSubtreeSize,
+    rGfirst_in_preL;
+    boolean leftPart,rightPart,fForestIsTree,lFIsConsecutiveNodeOfCurrentPathNode,lFIsLeftSiblingOfCurrentPathNode,
+    rFIsConsecutiveNodeOfCurrentPathNode,rFIsRightSiblingOfCurrentPathNode;
+    int[] sp1spointer,sp2spointer,sp3spointer,swritepointer,sp1tpointer,sp3tpointer;
+    // These variables store the id of the source (which array) of looking up
+    // elements of the minimum in the recursive formula [1, Figures 12,13].
+    byte sp1source,sp3source;
+    // Loop A [1, Algorithm 3] - walk up the path.
+    while (endPathNode >= currentSubtreePreL1) {
+      it1PreLoff = endPathNode;
+      it1PreRoff = it1preL_to_preR[endPathNode];
+      rFlast = -1;
+      lFlast = -1;
+      endPathNode_in_preR = it1preL_to_preR[endPathNode];
+      startPathNode_in_preR = startPathNode == -1 ? 0x7fffffff : it1preL_to_preR[startPathNode];
+      parent_of_endPathNode = it1parents[endPathNode];
+      parent_of_endPathNode_in_preR = parent_of_endPathNode == -1 ? 0x7fffffff : it1preL_to_preR[parent_of_endPathNode];
+      if (startPathNode - endPathNode > 1) {
+        leftPart = true;
+      } else {
+        leftPart = false;
+      }
+      if (startPathNode >= 0 && startPathNode_in_preR - endPathNode_in_preR > 1) {
+        rightPart = true;
+      } else {
+        rightPart = false;
+      }
+      // Deal with nodes to the left of the path.
+      if (pathType == 1 || pathType == 2 && leftPart) {
+        if (startPathNode == -1) {
+          rFfirst = endPathNode_in_preR;
+          lFfirst = endPathNode;
+        } else {
+          rFfirst = startPathNode_in_preR;
+          lFfirst = startPathNode - 1;
+        }
+        if (!rightPart) {
+          rFlast = endPathNode_in_preR;
+        }
+        rGlast = it2preL_to_preR[currentSubtreePreL2];
+        rGfirst = (rGlast + subtreeSize2) - 1;
+        lFlast = rightPart ? endPathNode + 1 : endPathNode;
+        fn[fn.length - 1] = -1;
+        for (int i = currentSubtreePreL2; i < currentSubtreePreL2 + subtreeSize2; i++) {
+            fn[i] = -1;
+            ft[i] = -1;
+        }
+        // Store the current size and cost of forest in F.
+        tmpForestSize1 = currentForestSize1;
+        tmpForestCost1 = currentForestCost1;
+        // Loop B [1, Algoritm 3] - for all nodes in G (right-hand input tree).
+        for (int rG = rGfirst; rG >= rGlast; rG--) {
+          lGfirst = it2preR_to_preL[rG];
+          rG_in_preL = it2preR_to_preL[rG];
+          rGminus1_in_preL = rG <= it2preL_to_preR[currentSubtreePreL2] ? 0x7fffffff : it2preR_to_preL[rG - 1];
+          parent_of_rG_in_preL = it2parents[rG_in_preL];
+          // This if statement decides on the last lG node for Loop D [1, Algorithm 3];
+          if (pathType == 1){
+            if (lGfirst == currentSubtreePreL2 || rGminus1_in_preL != parent_of_rG_in_preL) {
+              lGlast = lGfirst;
+            } else {
+              lGlast = it2parents[lGfirst]+1;
+            }
+          } else {
+            lGlast = lGfirst == currentSubtreePreL2 ? lGfirst : currentSubtreePreL2+1;
+          }
+          APTED.updateFnArray(fn, it2.preL_to_ln[lGfirst], lGfirst, currentSubtreePreL2);
+          APTED.updateFtArray(fn, ft, it2.preL_to_ln[lGfirst], lGfirst);
+          int rF = rFfirst;
+          // Reset size and cost of the forest in F.
+          currentForestSize1 = tmpForestSize1;
+          currentForestCost1 = tmpForestCost1;
+          // Loop C [1, Algorithm 3] - for all nodes to the left of the path node.
+          for (int lF = lFfirst; lF >= lFlast; lF--) {
+            // This if statement fixes rF node.
+            if (lF == lFlast && !rightPart) {
+              rF = rFlast;
+            }
+            lFLabel = it1labels[lF];
+            // Increment size and cost of F forest by node lF.
+            currentForestSize1++;
+            currentForestCost1++; // Sum up deletion cost of a forest.
+            // Reset size and cost of forest in G to subtree G_lGfirst.
+            currentForestSize2 = it2sizes[lGfirst];
+            currentForestCost2 = it2sizes[lGfirst]; // Reset to subtree insertion cost.
+            lF_in_preR = it1preL_to_preR[lF];
+            fForestIsTree = lF_in_preR == rF;
+            lFSubtreeSize = it1sizes[lF];
+            lFIsConsecutiveNodeOfCurrentPathNode = startPathNode - lF == 1;
+            lFIsLeftSiblingOfCurrentPathNode = lF + lFSubtreeSize == startPathNode;
+            sp1spointer = s[(lF + 1) - it1PreLoff];
+            sp2spointer = s[lF - it1PreLoff];
+            sp3spointer = s[0];
+            swritepointer = s[lF - it1PreLoff];
+            sp1source = 1; // Search sp1 value in s array by default.
+            sp3source = 1; // Search second part of sp3 value in s array by default.
+            if (fForestIsTree) { // F_{lF,rF} is a tree.
+              if (lFSubtreeSize == 1) { // F_{lF,rF} is a single node.
+                sp1source = 3;
+              } else if (lFIsConsecutiveNodeOfCurrentPathNode) { // F_{lF,rF}-lF is the path node subtree.
+                sp1source = 2;
+              }
+              sp3 = 0;
+              sp3source = 2;
+            } else {
+              if (lFIsConsecutiveNodeOfCurrentPathNode) {
+                sp1source = 2;
+              }
+              sp3 = currentForestCost1 - it1sizes[lF]; // Delete F_{lF,rF}-F_lF.
+              if (lFIsLeftSiblingOfCurrentPathNode) {
+                sp3source = 3;
+              }
+            }
+            if (sp3source == 1) {
+              sp3spointer = s[(lF + lFSubtreeSize) - it1PreLoff];
+            }
+            // Go to first lG.
+            int lG = lGfirst;
+            // currentForestSize2++;
+            // sp1, sp2, sp3 -- Done here for the first node in Loop D. It differs for consecutive nodes.
+            // sp1 -- START
+            switch(sp1source) {
+              case 1: sp1 = sp1spointer[lG - it2PreLoff]; break;
+              case 2: sp1 = t[lG - it2PreLoff][rG - it2PreRoff]; break;
+              case 3: sp1 = currentForestCost2; break; // Insert G_{lG,rG}.
+            }
+            sp1++;// Delete lF, leftmost root node in F_{lF,rF}.
+            // sp1 -- END
+            minCost = sp1; // Start with sp1 as minimal value.
+            // sp2 -- START
+            if (currentForestSize2 == 1) { // G_{lG,rG} is a single node.
+              sp2 = currentForestCost1; // Delete F_{lF,rF}.
+            } else { // G_{lG,rG} is a tree.
+              sp2 = q[lF];
+            }
+            sp2++;// Insert lG, leftmost root node in G_{lG,rG}.
+            if (sp2 < minCost) { // Check if sp2 is minimal value.
+              minCost = sp2;
+            }
+            // sp2 -- END
+            // sp3 -- START
+            if (sp3 < minCost) {
+              sp3 += treesSwapped ? delta.getInt(lG, lF) : delta.getInt(lF, lG);
+              if (sp3 < minCost) {
+                sp3 += (lFLabel == it2labels[lG] ? 0 : 1); // Rename the leftmost root nodes in F_{lF,rF} and G_{lG,rG}.
+                if(sp3 < minCost) {
+                  minCost = sp3;
+                }
+              }
+            }
+            // sp3 -- END
+            swritepointer[lG - it2PreLoff] = minCost;
+            // Go to next lG.
+            lG = ft[lG];
+            // Loop D [1, Algorithm 3] - for all nodes to the left of rG.
+            while (lG >= lGlast) {
+              // Increment size and cost of G forest by node lG.
+              currentForestSize2++;
+              currentForestCost2++;
+              switch(sp1source) {
+                case 1: sp1 = sp1spointer[lG - it2PreLoff] + 1; break; // Delete lF, leftmost root node in F_{lF,rF}.
+                case 2: sp1 = t[lG - it2PreLoff][rG - it2PreRoff] + 1; break; // Delete lF, leftmost root node in F_{lF,rF}.
+                case 3: sp1 = currentForestCost2 + 1; break; // Insert G_{lG,rG} and elete lF, leftmost root node in F_{lF,rF}.
+              }
+              sp2 = sp2spointer[fn[lG] - it2PreLoff] + 1; // Insert lG, leftmost root node in G_{lG,rG}.
+              minCost = sp1;
+              if(sp2 < minCost) {
+                minCost = sp2;
+              }
+              sp3 = treesSwapped ? delta.getInt(lG, lF) : delta.getInt(lF, lG);
+              if (sp3 < minCost) {
+                switch(sp3source) {
+                    case 1: sp3 += sp3spointer[fn[(lG + it2sizes[lG]) - 1] - it2PreLoff]; break;
+                    case 2: sp3 += currentForestCost2 - it2sizes[lG]; break; // Insert G_{lG,rG}-G_lG.
+                    case 3: sp3 += t[fn[(lG + it2sizes[lG]) - 1] - it2PreLoff][rG - it2PreRoff]; break;
+                }
+                if (sp3 < minCost) {
+                  sp3 += (lFLabel == it2labels[lG] ? 0 : 1); // Rename the leftmost root nodes in F_{lF,rF} and G_{lG,rG}.
+                  if (sp3 < minCost) {
+                    minCost = sp3;
+                  }
+                }
+              }
+              swritepointer[lG - it2PreLoff] = minCost;
+              lG = ft[lG];
+            }
+          }
+          if (rGminus1_in_preL == parent_of_rG_in_preL) {
+            if (!rightPart) {
+              if (leftPart) {
+                if (treesSwapped) {
+                  delta.setInt(parent_of_rG_in_preL, endPathNode, s[(lFlast + 1) - it1PreLoff][(rGminus1_in_preL + 1) - it2PreLoff]);
+                } else {
+                  delta.setInt(endPathNode, parent_of_rG_in_preL, s[(lFlast + 1) - it1PreLoff][(rGminus1_in_preL + 1) - it2PreLoff]);
+                }
+              }
+              if (endPathNode > 0 && endPathNode == parent_of_endPathNode + 1 && endPathNode_in_preR == parent_of_endPathNode_in_preR + 1) {
+                if (treesSwapped) {
+                  delta.setInt(parent_of_rG_in_preL, parent_of_endPathNode, s[lFlast - it1PreLoff][(rGminus1_in_preL + 1) - it2PreLoff]);
+                } else {
+                  delta.setInt(parent_of_endPathNode, parent_of_rG_in_preL, s[lFlast - it1PreLoff][(rGminus1_in_preL + 1) - it2PreLoff]);
+                }
+              }
+            }
+            for (int lF = lFfirst; lF >= lFlast; lF--) {
+              q[lF] = s[lF - it1PreLoff][(parent_of_rG_in_preL + 1) - it2PreLoff];
+            }
+          }
+          for (int lG = lGfirst; lG >= lGlast; lG = ft[lG]) {
+            t[lG - it2PreLoff][rG - it2PreRoff] = s[lFlast - it1PreLoff][lG - it2PreLoff];
+          }
+        }
+      }
+      // Deal with nodes to the right of the path.
+      if (pathType == 0 || pathType == 2 && rightPart || pathType == 2 && !leftPart && !rightPart) {
+        if (startPathNode == -1) {
+          lFfirst = endPathNode;
+          rFfirst = it1preL_to_preR[endPathNode];
+        } else {
+          rFfirst = it1preL_to_preR[startPathNode] - 1;
+          lFfirst = endPathNode + 1;
+        }
+        lFlast = endPathNode;
+        lGlast = currentSubtreePreL2;
+        lGfirst = (lGlast + subtreeSize2) - 1;
+        rFlast = it1preL_to_preR[endPathNode];
+        fn[fn.length - 1] = -1;
+        for (int i = currentSubtreePreL2; i < currentSubtreePreL2 + subtreeSize2; i++){
+          fn[i] = -1;
+          ft[i] = -1;
+        }
+        // Store size and cost of the current forest in F.
+        tmpForestSize1 = currentForestSize1;
+        tmpForestCost1 = currentForestCost1;
+        // Loop B' [1, Algorithm 3] - for all nodes in G.
+        for (int lG = lGfirst; lG >= lGlast; lG--) {
+          rGfirst = it2preL_to_preR[lG];
+          APTED.updateFnArray(fn, it2.preR_to_ln[rGfirst], rGfirst, it2preL_to_preR[currentSubtreePreL2]);
+          APTED.updateFtArray(fn, ft, it2.preR_to_ln[rGfirst], rGfirst);
+          int lF = lFfirst;
+          lGminus1_in_preR = lG <= currentSubtreePreL2 ? 0x7fffffff : it2preL_to_preR[lG - 1];
+          parent_of_lG = it2parents[lG];
+          parent_of_lG_in_preR = parent_of_lG == -1 ? -1 : it2preL_to_preR[parent_of_lG];
+          // Reset size and cost of forest if F.
+          currentForestSize1 = tmpForestSize1;
+          currentForestCost1 = tmpForestCost1;
+          if (pathType == 0) {
+            if (lG == currentSubtreePreL2) {
+              rGlast = rGfirst;
+            } else if (it2.children[it2.childrenOffsets[parent_of_lG]] != lG) {
+              rGlast = rGfirst;
+            } else {
+              rGlast = it2preL_to_preR[parent_of_lG]+1;
+            }
+          } else {
+            rGlast = rGfirst == it2preL_to_preR[currentSubtreePreL2] ? rGfirst : it2preL_to_preR[currentSubtreePreL2];
+          }
+          // Loop C' [1, Algorithm 3] - for all nodes to the right of the path node.
+          for (int rF = rFfirst; rF >= rFlast; rF--) {
+            if (rF == rFlast) {
+              lF = lFlast;
+            }
+            rF_in_preL = it1preR_to_preL[rF];
+            // Increment size and cost of F forest by node rF.
+            currentForestSize1++;
+            currentForestCost1++; // Sum up deletion cost of a forest.
+            // Reset size and cost of G forest to G_lG.
+            currentForestSize2 = it2sizes[lG];
+            currentForestCost2 = it2sizes[lG]; // Reset to subtree insertion cost.
+            rFSubtreeSize = it1sizes[rF_in_preL];
+            if (startPathNode > 0) {
+              rFIsConsecutiveNodeOfCurrentPathNode = startPathNode_in_preR - rF == 1;
+              rFIsRightSiblingOfCurrentPathNode = rF + rFSubtreeSize == startPathNode_in_preR;
+            } else {
+              rFIsConsecutiveNodeOfCurrentPathNode = false;
+              rFIsRightSiblingOfCurrentPathNode = false;
+            }
+            fForestIsTree = rF_in_preL == lF;
+            int rFLabel = it1labels[rF_in_preL];
+            sp1spointer = s[(rF + 1) - it1PreRoff];
+            sp2spointer = s[rF - it1PreRoff];
+            sp3spointer = s[0];
+            swritepointer = s[rF - it1PreRoff];
+            sp1tpointer = t[lG - it2PreLoff];
+            sp3tpointer = t[lG - it2PreLoff];
+            sp1source = 1;
+            sp3source = 1;
+            if (fForestIsTree) {
+              if (rFSubtreeSize == 1) {
+                sp1source = 3;
+              } else if (rFIsConsecutiveNodeOfCurrentPathNode) {
+                sp1source = 2;
+              }
+              sp3 = 0;
+              sp3source = 2;
+            } else {
+              if (rFIsConsecutiveNodeOfCurrentPathNode) {
+                sp1source = 2;
+              }
+              sp3 = currentForestCost1 - it1sizes[rF_in_preL]; // Delete F_{lF,rF}-F_rF.
+              if (rFIsRightSiblingOfCurrentPathNode) {
+                sp3source = 3;
+              }
+            }
+            if (sp3source == 1) {
+              sp3spointer = s[(rF + rFSubtreeSize) - it1PreRoff];
+            }
+            if (currentForestSize2 == 1) {
+              sp2 = currentForestCost1;// Delete F_{lF,rF}.
+            } else {
+              sp2 = q[rF];
+            }
+            int rG = rGfirst;
+            rGfirst_in_preL = it2preR_to_preL[rGfirst];
+            currentForestSize2++;
+            switch (sp1source) {
+              case 1: sp1 = sp1spointer[rG - it2PreRoff]; break;
+              case 2: sp1 = sp1tpointer[rG - it2PreRoff]; break;
+              case 3: sp1 = currentForestCost2; break; // Insert G_{lG,rG}.
+            }
+            sp1++; // Delete rF.
+            minCost = sp1;
+            sp2++; // Insert rG.
+            if (sp2 < minCost) {
+              minCost = sp2;
+            }
+            if (sp3 < minCost) {
+              sp3 += treesSwapped ? delta.getInt(rGfirst_in_preL, rF_in_preL) : delta.getInt(rF_in_preL, rGfirst_in_preL);
+              if (sp3 < minCost) {
+                sp3 += (rFLabel == it2labels[rGfirst_in_preL] ? 0 : 1);
+                if (sp3 < minCost) {
+                  minCost = sp3;
+                }
+              }
+            }
+            swritepointer[rG - it2PreRoff] = minCost;
+            rG = ft[rG];
+            // Loop D' [1, Algorithm 3] - for all nodes to the right of lG;
+            while (rG >= rGlast) {
+              rG_in_preL = it2preR_to_preL[rG];
+              // Increment size and cost of G forest by node rG.
+              currentForestSize2++;
+              currentForestCost2++;
+              switch (sp1source) {
+                case 1: sp1 = sp1spointer[rG - it2PreRoff] + 1; break; // Delete rF.
+                case 2: sp1 = sp1tpointer[rG - it2PreRoff] + 1; break; // Delete rF.
+                case 3: sp1 = currentForestCost2 + 1; break; // Insert G_{lG,rG} and delete rF.
+              }
+              sp2 = sp2spointer[fn[rG] - it2PreRoff] + 1; // Insert rG.
+              minCost = sp1;
+              if (sp2 < minCost) {
+                minCost = sp2;
+              }
+              sp3 = treesSwapped ? delta.getInt(rG_in_preL, rF_in_preL) : delta.getInt(rF_in_preL, rG_in_preL);
+              if (sp3 < minCost) {
+                switch (sp3source) {
+                  case 1: sp3 += sp3spointer[fn[(rG + it2sizes[rG_in_preL]) - 1] - it2PreRoff]; break;
+                  case 2: sp3 += currentForestCost2 - it2sizes[rG_in_preL]; break; // Insert G_{lG,rG}-G_rG.
+                  case 3: sp3 += sp3tpointer[fn[(rG + it2sizes[rG_in_preL]) - 1] - it2PreRoff]; break;
+                }
+                if (sp3 < minCost) {
+                  sp3 += (rFLabel == it2labels[rG_in_preL] ? 0 : 1); // Rename rF to rG.
+                  if (sp3 < minCost) {
+                    minCost = sp3;
+                  }
+                }
+              }
+              swritepointer[rG - it2PreRoff] = minCost;
+              rG = ft[rG];
+            }
+          }
+          if (lG > currentSubtreePreL2 && lG - 1 == parent_of_lG) {
+            if (rightPart) {
+              if (treesSwapped) {
+                delta.setInt(parent_of_lG, endPathNode, s[(rFlast + 1) - it1PreRoff][(lGminus1_in_preR + 1) - it2PreRoff]);
+              } else {
+                delta.setInt(endPathNode, parent_of_lG, s[(rFlast + 1) - it1PreRoff][(lGminus1_in_preR + 1) - it2PreRoff]);
+              }
+            }
+            if (endPathNode > 0 && endPathNode == parent_of_endPathNode + 1 && endPathNode_in_preR == parent_of_endPathNode_in_preR + 1)
+              if (treesSwapped) {
+                delta.setInt(parent_of_lG, parent_of_endPathNode, s[rFlast - it1PreRoff][(lGminus1_in_preR + 1) - it2PreRoff]);
+              } else {
+                delta.setInt(parent_of_endPathNode, parent_of_lG, s[rFlast - it1PreRoff][(lGminus1_in_preR + 1) - it2PreRoff]);
+              }
+            for (int rF = rFfirst; rF >= rFlast; rF--) {
+              q[rF] = s[rF - it1PreRoff][(parent_of_lG_in_preR + 1) - it2PreRoff];
+            }
+          }
+          for (int rG = rGfirst; rG >= rGlast; rG = ft[rG]) {
+            t[lG - it2PreLoff][rG - it2PreRoff] = s[rFlast - it1PreRoff][rG - it2PreRoff];
+          }
+        }
+      }
+      // Walk up the path by one node.
+      startPathNode = endPathNode;
+      endPathNode = it1parents[endPathNode];
+    }
+    return minCost;
+  }
+
+  // ===================== BEGIN spfL
+  /**
+   * Implements single-path function for left paths [1, Sections 3.3,3.4,3.5].
+   * The parameters represent input subtrees for the single-path function.
+   * The order of the parameters is important. We use this single-path function
+   * due to better performance compared to spfA.
+   *
+   * @param it1 node indexer of the left-hand input subtree.
+   * @param it2 node indexer of the right-hand input subtree.
+   * @param treesSwapped says if the order of input subtrees has been swapped
+   *                     compared to the order of the initial input trees. Used
+   *                     for accessing delta array and deciding on the edit
+   *                     operation.
+   * @return tree edit distance between left-hand and right-hand input subtrees.
+   */
+  private int spfL(NodeIndexer it1, NodeIndexer it2, boolean treesSwapped) {
+    // Initialise the array to store the keyroot nodes in the right-hand input
+    // subtree.
+    int[] keyRoots = workspace.keyRoots(it2.sizes[it2.getCurrentNode()]);
+    Arrays.fill(keyRoots, 0, it2.sizes[it2.getCurrentNode()], -1);
+    // Get the leftmost leaf node of the right-hand input subtree.
+    int pathID = it2.preL_to_lld(it2.getCurrentNode());
+    // Calculate the keyroot nodes in the right-hand input subtree.
+    // firstKeyRoot is the index in keyRoots of the first keyroot node that
+    // we have to process. We need this index because keyRoots array is larger
+    // than the number of keyroot nodes.
+    int firstKeyRoot = APTED.computeKeyRoots(it2, it2.getCurrentNode(), pathID, keyRoots, 0);
+    // Initialise an array to store intermediate distances for subforest pairs.
+    int[][] forestdist = workspace.intForestdist(it1.sizes[it1.getCurrentNode()]+1, it2.sizes[it2.getCurrentNode()]+1);
+    // Compute the distances between pairs of keyroot nodes. In the left-hand
+    // input subtree only the root is the keyroot. Thus, we compute the distance
+    // between the left-hand input subtree and all keyroot nodes in the
+    // right-hand input subtree.
+    for (int i = firstKeyRoot-1; i >= 0; i--) {
+      treeEditDist(it1, it2, it1.getCurrentNode(), keyRoots[i], forestdist, treesSwapped);
+    }
+    // Return the distance between the input subtrees.
+    return forestdist[it1.sizes[it1.getCurrentNode()]][it2.sizes[it2.getCurrentNode()]];
+  }
+
+  /**
+   * Implements the core of spfL. Fills in forestdist array with intermediate
+   * distances of subforest pairs in dynamic-programming fashion.
+   *
+   * @param it1 node indexer of the left-hand input subtree.
+   * @param it2 node indexer of the right-hand input subtree.
+   * @param it1subtree left-to-right preorder id of the root node of the
+   *                   left-hand input subtree.
+   * @param it2subtree left-to-right preorder id of the root node of the
+   *                   right-hand input subtree.
+   * @param forestdist the array to be filled in with intermediate distances of subforest pairs.
+   * @param treesSwapped says if the order of input subtrees has been swapped
+   *                     compared to the order of the initial input trees. Used
+   *                     for accessing delta array and deciding on the edit
+   *                     operation.
+   */
+  private void treeEditDist(NodeIndexer it1, NodeIndexer it2, int it1subtree, int it2subtree, int[][] forestdist, boolean treesSwapped) {
+    // Translate input subtree root nodes to left-to-right postorder.
+    int i = it1.preL_to_postL[it1subtree];
+    int j = it2.preL_to_postL[it2subtree];
+    // We need to offset the node ids for accessing forestdist array which has
+    // indices from 0 to subtree size. However, the subtree node indices do not
+    // necessarily start with 0.
+    // Whenever the original left-to-right postorder id has to be accessed, use
+    // i+ioff and j+joff.
+    int ioff = it1.postL_to_lld[i] - 1;
+    int joff = it2.postL_to_lld[j] - 1;
+    // Initialize forestdist array with deletion and insertion costs of each
+    // relevant subforest.
+    forestdist[0][0] = 0;
+    for (int i1 = 1; i1 <= i - ioff; i1++) {
+      forestdist[i1][0] = forestdist[i1 - 1][0] + 1; // Delete i1.
+    }
+    for (int j1 = 1; j1 <= j - joff; j1++) {
+      forestdist[0][j1] = forestdist[0][j1 - 1] + 1; // Insert j1.
+    }
+    // Fill in the remaining costs.
+    fillForestdist(forestdist, i, j, ioff, joff, it1.postL_to_lld, it2.postL_to_lld, it1.postL_to_preL, it2.postL_to_preL, it1.postL_to_label, it2.postL_to_label, treesSwapped);
+  }
+  // ===================== END spfL
+
+  // ===================== BEGIN spfR
+  /**
+   * Implements single-path function for right paths [1, Sections 3.3,3.4,3.5].
+   * The parameters represent input subtrees for the single-path function.
+   * The order of the parameters is important. We use this single-path function
+   * due to better performance compared to spfA.
+   *
+   * @param it1 node indexer of the left-hand input subtree.
+   * @param it2 node indexer of the right-hand input subtree.
+   * @param treesSwapped says if the order of input subtrees has been swapped
+   *                     compared to the order of the initial input trees. Used
+   *                     for accessing delta array and deciding on the edit
+   *                     operation.
+   * @return tree edit distance between left-hand and right-hand input subtrees.
+   */
+  private int spfR(NodeIndexer it1, NodeIndexer it2, boolean treesSwapped) {
+    // Initialise the array to store the keyroot nodes in the right-hand input
+    // subtree.
+    int[] revKeyRoots = workspace.keyRoots(it2.sizes[it2.getCurrentNode()]);
+    Arrays.fill(revKeyRoots, 0, it2.sizes[it2.getCurrentNode()], -1);
+    // Get the rightmost leaf node of the right-hand input subtree.
+    int pathID = it2.preL_to_rld(it2.getCurrentNode());
+    // Calculate the keyroot nodes in the right-hand input subtree.
+    // firstKeyRoot is the index in keyRoots of the first keyroot node that
+    // we have to process. We need this index because keyRoots array is larger
+    // than the number of keyroot nodes.
+    int firstKeyRoot = APTED.computeRevKeyRoots(it2, it2.getCurrentNode(), pathID, revKeyRoots, 0);
+    // Initialise an array to store intermediate distances for subforest pairs.
+    int[][] forestdist = workspace.intForestdist(it1.sizes[it1.getCurrentNode()]+1, it2.sizes[it2.getCurrentNode()]+1);
+    // Compute the distances between pairs of keyroot nodes. In the left-hand
+    // input subtree only the root is the keyroot. Thus, we compute the distance
+    // between the left-hand input subtree and all keyroot nodes in the
+    // right-hand input subtree.
+    for (int i = firstKeyRoot-1; i >= 0; i--) {
+      revTreeEditDist(it1, it2, it1.getCurrentNode(), revKeyRoots[i], forestdist, treesSwapped);
+    }
+    // Return the distance between the input subtrees.
+    return forestdist[it1.sizes[it1.getCurrentNode()]][it2.sizes[it2.getCurrentNode()]];
+  }
+
+  /**
+   * Implements the core of spfR. Fills in forestdist array with intermediate
+   * distances of subforest pairs in dynamic-programming fashion.
+   *
+   * @param it1 node indexer of the left-hand input subtree.
+   * @param it2 node indexer of the right-hand input subtree.
+   * @param it1subtree left-to-right preorder id of the root node of the
+   *                   left-hand input subtree.
+   * @param it2subtree left-to-right preorder id of the root node of the
+   *                   right-hand input subtree.
+   * @param forestdist the array to be filled in with intermediate distances of
+   *                   subforest pairs.
+   * @param treesSwapped says if the order of input subtrees has been swapped
+   *                     compared to the order of the initial input trees. Used
+   *                     for accessing delta array and deciding on the edit
+   *                     operation.
+   */
+  private void revTreeEditDist(NodeIndexer it1, NodeIndexer it2, int it1subtree, int it2subtree, int[][] forestdist, boolean treesSwapped) {
+    // Translate input subtree root nodes to right-to-left postorder.
+    int i = it1.preL_to_postR[it1subtree];
+    int j = it2.preL_to_postR[it2subtree];
+    // We need to offset the node ids for accessing forestdist array which has
+    // indices from 0 to subtree size. However, the subtree node indices do not
+    // necessarily start with 0.
+    // Whenever the original right-to-left postorder id has to be accessed, use
+    // i+ioff and j+joff.
+    int ioff = it1.postR_to_rld[i] - 1;
+    int joff = it2.postR_to_rld[j] - 1;
+    // Initialize forestdist array with deletion and insertion costs of each
+    // relevant subforest.
+    forestdist[0][0] = 0;
+    for (int i1 = 1; i1 <= i - ioff; i1++) {
+      forestdist[i1][0] = forestdist[i1 - 1][0] + 1; // Delete i1.
+    }
+    for (int j1 = 1; j1 <= j - joff; j1++) {
+      forestdist[0][j1] = forestdist[0][j1 - 1] + 1; // Insert j1.
+    }
+    // Fill in the remaining costs.
+    fillForestdist(forestdist, i, j, ioff, joff, it1.postR_to_rld, it2.postR_to_rld, it1.postR_to_preL, it2.postR_to_preL, it1.postR_to_label, it2.postR_to_label, treesSwapped);
+  }
+  // ===================== END spfR
+
+  /**
+   * Fills in the forestdist array of spfL or spfR, whose first row and column
+   * are filled in. The nodes are given in the postorder of the single-path
+   * function, left-to-right for spfL and right-to-left for spfR, together
+   * with their leftmost or rightmost leaves, respectively.
+   *
+   * <p>Each row is filled in with two passes. The first one stores in each
+   * cell the distance of the subforests that remain after renaming the node
+   * of the row to the node of the column, which is read from the previous
+   * rows and from the distance matrix. The second one is the row kernel of
+   * {@link ForestDistanceRows}, which adds the cost of the labels and takes
+   * the minimum with deleting and inserting. It uses the Vector API in the
+   * multi-release JAR on Java 17 and later. The order of the rows is the same
+   * as in [1].
+   *
+   * @param forestdist the array to be filled in with intermediate distances
+   *                   of subforest pairs.
+   * @param i postorder id of the root node of the left-hand input subtree.
+   * @param j postorder id of the root node of the right-hand input subtree.
+   * @param ioff offset of the postorder ids of the left-hand input subtree.
+   * @param joff offset of the postorder ids of the right-hand input subtree.
+   * @param ld1 postorder id of the leftmost or rightmost leaf of each node of
+   *            the left-hand input tree.
+   * @param ld2 postorder id of the leftmost or rightmost leaf of each node of
+   *            the right-hand input tree.
+   * @param toPreL1 left-to-right preorder id of each node of the left-hand
+   *                input tree.
+   * @param toPreL2 left-to-right preorder id of each node of the right-hand
+   *                input tree.
+   * @param labels1 label id of each node of the left-hand input tree.
+   * @param labels2 label id of each node of the right-hand input tree.
+   * @param treesSwapped says if the order of input subtrees has been swapped
+   *                     compared to the order of the initial input trees. Used
+   *                     for accessing delta array.
+   */
+  private void fillForestdist(int[][] forestdist, int i, int j, int ioff, int joff, int[] ld1, int[] ld2, int[] toPreL1, int[] toPreL2, int[] labels1, int[] labels2, boolean treesSwapped) {
+    int cols = j - joff;
+    int ld2Root = ld2[j];
+    for (int i1 = 1; i1 <= i - ioff; i1++) {
+      int[] row = forestdist[i1];
+      int[] prevRow = forestdist[i1 - 1];
+      int i1PreL = toPreL1[i1 + ioff];
+      // The subforests of this row with a tree in the source are subtrees
+      // only if the node of the row is on the path.
+      boolean i1OnPath = ld1[i1 + ioff] == ld1[i];
+      // Distances of the subforests without the subtree of the node of the row.
+      int[] ldRow = forestdist[ld1[i1 + ioff] - 1 - ioff];
+      for (int j1 = 1; j1 <= cols; j1++) {
+        // If current subforests are subtrees.
+        if (i1OnPath && ld2[j1 + joff] == ld2Root) {
+          row[j1] = prevRow[j1 - 1];
+          // Store the relevant distance value in delta array.
+          if (treesSwapped) {
+            delta.setInt(toPreL2[j1 + joff], i1PreL, prevRow[j1 - 1]);
+          } else {
+            delta.setInt(i1PreL, toPreL2[j1 + joff], prevRow[j1 - 1]);
+          }
+        } else {
+          row[j1] = ldRow[ld2[j1 + joff] - 1 - joff] +
+            (treesSwapped ? delta.getInt(toPreL2[j1 + joff], i1PreL) : delta.getInt(i1PreL, toPreL2[j1 + joff]));
+        }
+      }
+      ForestDistanceRows.fillRow(row, prevRow, cols, labels1[i1 + ioff], labels2, joff);
+    }
+  }
+
+}
@@ -0,0 +1,407 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.distance;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import at.unisalzburg.dbresearch.apted.node.Node;
+import at.unisalzburg.dbresearch.apted.node.NodeIndexer;
+import at.unisalzburg.dbresearch.apted.costmodel.CostModel;
+
+/**
+ * A vantage-point tree over a list of trees that answers range and
+ * k-nearest-neighbour queries by the tree edit distance. Queries prune the
+ * index with the triangle inequality instead of computing the distances to
+ * all trees.
+ *
+ * <p>The cost model must make the tree edit distance a metric: its costs
+ * must be non-negative and symmetric, the rename cost of equal labels must
+ * be zero, and the costs must satisfy the triangle inequality. This holds,
+ * for example, for {@link costmodel.StringUnitCostModel}. Otherwise, queries
+ * may miss trees.
+ *
+ * <p>Each node of the index is a vantage point, one of the trees. The other
+ * trees of its subtree are split by their distances to the vantage point at
+ * the median into an inner and an outer subtree, and the node stores the
+ * minimum and maximum distances of each. A query computes the distance d to
+ * the vantage point and visits a subtree only if its distances may be within
+ * the search threshold t of the query: if d - t is at most the maximum and
+ * d + t at least the minimum.
+ *
+ * <p>The index is built once and is immutable. The trees are indexed on the
+ * calling thread, and the distances to each vantage point are computed in
+ * parallel on a fork-join pool. Hence, the del, ins and ren methods of the
+ * cost model must be thread-safe. Queries may run concurrently if the cost
+ * model is thread-safe as a whole.
+ *
+ * @param <C> type of cost model.
+ * @param <D> type of node data.
+ * @see BKTree
+ * @see SearchResult
+ */
+public class VPTree<C extends CostModel, D> {
+
+  /**
+   * Minimum number of distances to a vantage point computed in parallel.
+   */
+  private static final int PARALLEL_DISTANCES = 64;
+
+  /**
+   * Number of distances computed by a task while building.
+   */
+  private static final int DISTANCES_PER_TASK = 16;
+
+  /**
+   * Cost model to be used for calculating costs of edit operations.
+   */
+  private final C costModel;
+
+  /**
+   * Node indexers of the trees, by id.
+   */
+  private final NodeIndexer[] indexers;
+
+  /**
+   * Ids of the trees in the layout of the index. The node of the index at
+   * position p holds its vantage point at p, its inner subtree at positions
+   * p + 1 to split[p] (exclusive), and its outer subtree at positions
+   * split[p] to the end of its range.
+   */
+  private final int[] points;
+
+  /**
+   * The first position of the outer subtree of each node.
+   */
+  private final int[] split;
+
+  /**
+   * Minimum and maximum distances from the vantage point of each node to the
+   * trees of its inner subtree and its outer subtree, four per node.
+   */
+  private final float[] bounds;
+
+  /**
+   * Builds the index of the given trees on the common fork-join pool.
+   *
+   * @param costModel cost model for edit operations.
+   * @param trees the trees to index, identified by their positions.
+   * @throws IllegalArgumentException if the cost model is not symmetric.
+   */
+  public VPTree(C costModel, List<Node<D>> trees) {
+    this(costModel, trees, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Builds the index of the given trees on the given pool.
+   *
+   * @param costModel cost model for edit operations.
+   * @param trees the trees to index, identified by their positions.
+   * @param pool fork-join pool to compute the distances on.
+   * @throws IllegalArgumentException if the cost model is not symmetric.
+   */
+  public VPTree(C costModel, List<Node<D>> trees, ForkJoinPool pool) {
+    if (!costModel.isSymmetric()) {
+      throw new IllegalArgumentException("A metric index requires a symmetric cost model.");
+    }
+    this.costModel = costModel;
+    int size = trees.size();
+    indexers = new NodeIndexer[size];
+    points = new int[size];
+    for (int i = 0; i < size; i++) {
+      indexers[i] = new NodeIndexer(trees.get(i), costModel);
+      points[i] = i;
+    }
+    split = new int[size];
+    bounds = new float[4 * size];
+    if (size > 0) {
+      pool.invoke(new BuildTask(0, size, new float[size]));
+    }
+  }
+
+  /**
+   * Returns the number of trees in the index.
+   *
+   * @return number of trees.
+   */
+  public int size() {
+    return indexers.length;
+  }
+
+  /**
+   * Returns the tree with the given id.
+   *
+   * @param id id of a tree.
+   * @return the tree.
+   */
+  public Node<D> get(int id) {
+    return (Node<D>)indexers[id].preL_to_node[0];
+  }
+
+  /**
+   * Finds the k trees nearest to the query tree. Trees at equal distances are
+   * ranked by their ids.
+   *
+   * @param query the query tree.
+   * @param k the number of trees to find.
+   * @return the nearest trees, fewer than k if the index is smaller.
+   * @throws IllegalArgumentException if k is not positive.
+   */
+  public SearchResult nearest(Node<D> query, int k) {
+    return search(query, new NearestTrees(k, Float.POSITIVE_INFINITY));
+  }
+
+  /**
+   * Finds all trees within the given distance from the query tree.
+   *
+   * @param query the query tree.
+   * @param radius the maximum distance.
+   * @return the trees within the radius, in ascending order of distance.
+   */
+  public SearchResult range(Node<D> query, float radius) {
+    return search(query, new NearestTrees(Integer.MAX_VALUE, radius));
+  }
+
+  /**
+   * Visits the nodes of the index that may contain trees within the current
+   * search threshold, nearest first.
+   *
+   * @param query the query tree.
+   * @param nearest collects the trees found.
+   * @return the result of the search.
+   */
+  private SearchResult search(Node<D> query, NearestTrees nearest) {
+    int size = indexers.length;
+    NodeIndexer queryIndexer = new NodeIndexer(query, costModel);
+    APTED<C, D> apted = new APTED<>(costModel);
+    // The subtrees to visit as position ranges, with lower bounds of their
+    // distances. At most two subtrees per level are pending.
+    int[] from = new int[64];
+    int[] to = new int[64];
+    float[] lowerBounds = new float[64];
+    int top = 0;
+    if (size > 0) {
+      to[top++] = size;
+    }
+    int computed = 0;
+    while (top > 0) {
+      top--;
+      if (lowerBounds[top] > nearest.threshold()) {
+        continue;
+      }
+      int node = from[top];
+      int end = to[top];
+      float distance = apted.computeEditDistance(queryIndexer, indexers[points[node]]);
+      computed++;
+      nearest.offer(points[node], distance);
+      if (top + 2 > from.length) {
+        from = Arrays.copyOf(from, 2 * from.length);
+        to = Arrays.copyOf(to, 2 * to.length);
+        lowerBounds = Arrays.copyOf(lowerBounds, 2 * lowerBounds.length);
+      }
+      // The lower bounds of the distances of the subtrees by the triangle
+      // inequality.
+      float inner = subtreeBound(distance, 4 * node);
+      float outer = subtreeBound(distance, 4 * node + 2);
+      boolean innerFirst = inner <= outer;
+      for (int child = 0; child < 2; child++) {
+        // Push the nearer subtree last to visit it first.
+        boolean pushInner = innerFirst == (child == 1);
+        int childFrom = pushInner ? node + 1 : split[node];
+        int childTo = pushInner ? split[node] : end;
+        float bound = pushInner ? inner : outer;
+        if (childFrom < childTo && bound <= nearest.threshold()) {
+          from[top] = childFrom;
+          to[top] = childTo;
+          lowerBounds[top++] = bound;
+        }
+      }
+    }
+    return nearest.toResult(computed, size - computed);
+  }
+
+  /**
+   * Computes the lower bound of the distances from the query tree to the
+   * trees of a subtree, given the distance of the query to the vantage
+   * point and the range of the distances of the subtree.
+   *
+   * @param distance distance from the query to the vantage point.
+   * @param offset position of the minimum distance of the subtree in
+   *               {@link #bounds}, followed by the maximum.
+   * @return lower bound of the distances.
+   */
+  private float subtreeBound(float distance, int offset) {
+    return Math.max(Math.max(bounds[offset] - distance, distance - bounds[offset + 1]), 0.0f);
+  }
+
+  /**
+   * Builds the subtree of the index at a range of positions. Chooses the
+   * vantage point, computes the distances of the other trees to it, sorts
+   * them, and builds the inner and outer subtrees in parallel.
+   */
+  private class BuildTask extends RecursiveAction {
+
+    /**
+     * Version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * First position of the range.
+     */
+    private final int from;
+
+    /**
+     * Last position of the range (exclusive).
+     */
+    private final int to;
+
+    /**
+     * Distances to the vantage points, by position, shared by all tasks.
+     */
+    private final float[] distances;
+
+    /**
+     * Creates the task for a range of positions.
+     *
+     * @param from first position of the range.
+     * @param to last position of the range (exclusive).
+     * @param distances distances to the vantage points, by position.
+     */
+    BuildTask(int from, int to, float[] distances) {
+      this.from = from;
+      this.to = to;
+      this.distances = distances;
+    }
+
+    /**
+     * Builds the subtree.
+     */
+    @Override
+    protected void compute() {
+      int count = to - from - 1;
+      if (count == 0) {
+        split[from] = to;
+        return;
+      }
+      // Take the middle tree of the range as the vantage point, which is
+      // arbitrary with respect to the distances.
+      int vantagePoint = points[from + 1 + count / 2];
+      points[from + 1 + count / 2] = points[from];
+      points[from] = vantagePoint;
+      if (count >= PARALLEL_DISTANCES) {
+        RecursiveAction[] tasks = new RecursiveAction[(count + DISTANCES_PER_TASK - 1) / DISTANCES_PER_TASK];
+        for (int t = 0; t < tasks.length; t++) {
+          int taskFrom = from + 1 + t * DISTANCES_PER_TASK;
+          int taskTo = Math.min(taskFrom + DISTANCES_PER_TASK, to);
+          tasks[t] = new DistancesTask(taskFrom, taskTo);
+        }
+        invokeAll(tasks);
+      } else {
+        computeDistances(from + 1, to);
+      }
+      // Sort the trees by their distances, packed with the ids into longs.
+      long[] sorted = new long[count];
+      for (int p = from + 1; p < to; p++) {
+        sorted[p - from - 1] = ((long)Float.floatToIntBits(distances[p] + 0.0f) << 32) | points[p];
+      }
+      Arrays.sort(sorted);
+      for (int p = from + 1; p < to; p++) {
+        points[p] = (int)sorted[p - from - 1];
+        distances[p] = Float.intBitsToFloat((int)(sorted[p - from - 1] >>> 32));
+      }
+      // Split at the median. The inner subtree is empty for a single tree.
+      int middle = from + 1 + count / 2;
+      split[from] = middle;
+      if (middle > from + 1) {
+        bounds[4 * from] = distances[from + 1];
+        bounds[4 * from + 1] = distances[middle - 1];
+      }
+      bounds[4 * from + 2] = distances[middle];
+      bounds[4 * from + 3] = distances[to - 1];
+      if (middle > from + 1) {
+        invokeAll(new BuildTask(from + 1, middle, distances), new BuildTask(middle, to, distances));
+      } else {
+        new BuildTask(middle, to, distances).compute();
+      }
+    }
+
+    /**
+     * Computes the distances of the trees at a range of positions to the
+     * vantage point of this task.
+     *
+     * @param distancesFrom first position.
+     * @param distancesTo last position (exclusive).
+     */
+    private void computeDistances(int distancesFrom, int distancesTo) {
+      APTED<C, D> apted = new APTED<>(costModel);
+      NodeIndexer vantagePoint = indexers[points[from]];
+      for (int p = distancesFrom; p < distancesTo; p++) {
+        distances[p] = apted.computeEditDistance(vantagePoint, indexers[points[p]]);
+      }
+    }
+
+    /**
+     * Computes the distances of the trees at a range of positions to the
+     * vantage point, in parallel with the other ranges.
+     */
+    private class DistancesTask extends RecursiveAction {
+
+      /**
+       * Version of the serialized form.
+       */
+      private static final long serialVersionUID = 1L;
+
+      /**
+       * First position.
+       */
+      private final int distancesFrom;
+
+      /**
+       * Last position (exclusive).
+       */
+      private final int distancesTo;
+
+      /**
+       * Creates the task for a range of positions.
+       *
+       * @param distancesFrom first position.
+       * @param distancesTo last position (exclusive).
+       */
+      DistancesTask(int distancesFrom, int distancesTo) {
+        this.distancesFrom = distancesFrom;
+        this.distancesTo = distancesTo;
+      }
+
+      /**
+       * Computes the distances of the range.
+       */
+      @Override
+      protected void compute() {
+        computeDistances(distancesFrom, distancesTo);
+      }
+    }
+  }
+}
@@ -0,0 +1,635 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.distance;
+
+import java.util.Arrays;
+import java.util.Stack;
+
+/**
+ * Stores the arrays used by {@link APTED} and {@link UnitCostAPTED} while
+ * computing the distance, such that they can be reused across consecutive
+ * computations.
+ *
+ * <p>Every array grows to the largest size requested so far (high-water mark)
+ * and is handed out again in subsequent computations without allocating.
+ * Callers must not assume that a returned array is zeroed, unless stated
+ * otherwise. Two-dimensional arrays are kept separately for tall requests
+ * (at least as many rows as columns) and for wide requests, each growing to
+ * its own high-water mark. Swapping the input trees thus neither reallocates
+ * them nor grows them to a square of the larger dimension.
+ *
+ * <p>The shrink policy is given by the retained cells limit. An array with
+ * a capacity above that limit is reallocated to the exact requested size
+ * whenever a smaller array is requested. Use {@link #clear()} to release all
+ * arrays.
+ *
+ * <p>The distance matrix is allocated outside of the Java heap if its number
+ * of cells exceeds the off-heap threshold (see {@link OffHeapDeltaMatrix}).
+ * By default, this happens for matrices of more than 256 MB, that is, for
+ * input trees of more than about 8000 nodes each.
+ *
+ * <p>A workspace is not thread-safe. It must not be shared by algorithm
+ * instances that compute distances concurrently.
+ */
+public class Workspace {
+
+  /**
+   * The retained cells limit that never shrinks the arrays = {@value}.
+   */
+  public static final long UNLIMITED = Long.MAX_VALUE;
+
+  /**
+   * The default off-heap threshold = {@value} cells. A distance matrix of
+   * more than 256 MB is allocated off the heap.
+   */
+  public static final long DEFAULT_OFF_HEAP_THRESHOLD = 1L << 26;
+
+  /**
+   * Maximum number of cells an array may have and still be retained for a
+   * smaller request.
+   */
+  private final long retainedCellsLimit;
+
+  /**
+   * Number of cells of the distance matrix above which it is allocated off
+   * the heap.
+   */
+  private final long offHeapThreshold;
+
+  /**
+   * The distance matrix (also strategy matrix) of {@link APTED}.
+   */
+  private DeltaMatrix delta;
+
+  /**
+   * Distance array q used in spfA.
+   */
+  private float[] q;
+
+  /**
+   * Array fn used in spfA.
+   */
+  private int[] fn;
+
+  /**
+   * Array ft used in spfA.
+   */
+  private int[] ft;
+
+  /**
+   * Array s used in spfA, for tall (index 0) and wide (index 1) requests.
+   */
+  private final float[][][] s = new float[2][][];
+
+  /**
+   * Array t used in spfA, for tall and wide requests.
+   */
+  private final float[][][] t = new float[2][][];
+
+  /**
+   * Array with the intermediate distances of subforest pairs used in spfL,
+   * spfR and mapping computation, for tall and wide requests.
+   */
+  private final float[][][] forestdist = new float[2][][];
+
+  /**
+   * Array that stores the keyroot nodes in spfL and spfR.
+   */
+  private int[] keyRoots;
+
+  /**
+   * Array that stores the pairs of subtrees to process in gted.
+   */
+  private int[] gtedStack;
+
+  /**
+   * Rows of the strategy cost arrays for the source tree. Indexed by node.
+   */
+  private double[][] cost1_L;
+  private double[][] cost1_R;
+  private double[][] cost1_I;
+
+  /**
+   * Strategy cost arrays for the destination tree.
+   */
+  private double[] cost2_L;
+  private double[] cost2_R;
+  private double[] cost2_I;
+  private int[] cost2_path;
+
+  /**
+   * Rows of the strategy matrix for a node of the source tree and for its
+   * parent, updated outside of the matrix while computing the strategy.
+   */
+  private int[] strategyRow;
+  private int[] parentStrategyRow;
+
+  /**
+   * Row of zeros shared by the leaf nodes in the strategy computation.
+   */
+  private double[] leafRow;
+
+  /**
+   * Zeroed rows of the strategy cost arrays ready to be reused.
+   */
+  private final Stack<double[]> rowsToReuse_L = new Stack<double[]>();
+  private final Stack<double[]> rowsToReuse_R = new Stack<double[]>();
+  private final Stack<double[]> rowsToReuse_I = new Stack<double[]>();
+
+  /**
+   * Length of the rows in the stacks of rows to reuse.
+   */
+  private int strategyRowLength;
+
+  /**
+   * Label ids of the nodes of the source and destination trees, sorted to
+   * find their distinct labels.
+   */
+  private int[] sortedLabels1;
+  private int[] sortedLabels2;
+
+  /**
+   * Rows of the rename matrix of the nodes of the source tree in
+   * left-to-right preorder, left-to-right postorder and right-to-left
+   * postorder.
+   */
+  private int[] preL_to_row;
+  private int[] postL_to_row;
+  private int[] postR_to_row;
+
+  /**
+   * Columns of the rename matrix of the nodes of the destination tree.
+   */
+  private int[] preL_to_col;
+  private int[] postL_to_col;
+  private int[] postR_to_col;
+
+  /**
+   * Rename costs between distinct labels, or {@code null} if none have been
+   * requested.
+   */
+  private RenameMatrix renameMatrix;
+
+  /**
+   * The distance matrix (also strategy matrix) of {@link UnitCostAPTED}.
+   */
+  private IntegerDeltaMatrix intDelta;
+
+  /**
+   * Integer variants of q, s, t and forestdist used by {@link UnitCostAPTED}.
+   */
+  private int[] intQ;
+  private final int[][][] intS = new int[2][][];
+  private final int[][][] intT = new int[2][][];
+  private final int[][][] intForestdist = new int[2][][];
+
+  /**
+   * Constructs a workspace that never shrinks.
+   */
+  public Workspace() {
+    this(UNLIMITED);
+  }
+
+  /**
+   * Constructs a workspace with the given shrink policy.
+   *
+   * @param retainedCellsLimit maximum number of cells of an array that is
+   *                           retained for a smaller request.
+   */
+  public Workspace(long retainedCellsLimit) {
+    this(retainedCellsLimit, DEFAULT_OFF_HEAP_THRESHOLD);
+  }
+
+  /**
+   * Constructs a workspace with the given shrink policy and off-heap
+   * threshold.
+   *
+   * @param retainedCellsLimit maximum number of cells of an array that is
+   *                           retained for a smaller request.
+   * @param offHeapThreshold number of cells of the distance matrix above
+   *                         which it is allocated off the heap.
+   */
+  public Workspace(long retainedCellsLimit, long offHeapThreshold) {
+    if (retainedCellsLimit < 0) {
+      throw new IllegalArgumentException("Retained cells limit must not be negative.");
+    }
+    if (offHeapThreshold < 0) {
+      throw new IllegalArgumentException("Off-heap threshold must not be negative.");
+    }
+    this.retainedCellsLimit = retainedCellsLimit;
+    this.offHeapThreshold = offHeapThreshold;
+  }
+
+  /**
+   * Releases all arrays. The following computation allocates again.
+   */
+  public void clear() {
+    delta = null;
+    q = null;
+    fn = null;
+    ft = null;
+    Arrays.fill(s, null);
+    Arrays.fill(t, null);
+    Arrays.fill(forestdist, null);
+    keyRoots = null;
+    gtedStack = null;
+    cost1_L = null;
+    cost1_R = null;
+    cost1_I = null;
+    cost2_L = null;
+    cost2_R = null;
+    cost2_I = null;
+    cost2_path = null;
+    strategyRow = null;
+    parentStrategyRow = null;
+    leafRow = null;
+    rowsToReuse_L.clear();
+    rowsToReuse_R.clear();
+    rowsToReuse_I.clear();
+    strategyRowLength = 0;
+    sortedLabels1 = null;
+    sortedLabels2 = null;
+    preL_to_row = null;
+    postL_to_row = null;
+    postR_to_row = null;
+    preL_to_col = null;
+    postL_to_col = null;
+    postR_to_col = null;
+    renameMatrix = null;
+    intDelta = null;
+    intQ = null;
+    Arrays.fill(intS, null);
+    Arrays.fill(intT, null);
+    Arrays.fill(intForestdist, null);
+  }
+
+  /**
+   * Returns the number of array cells currently held by this workspace.
+   *
+   * @return number of retained cells.
+   */
+  public long getRetainedCells() {
+    long cells = (delta == null ? 0 : delta.getCapacity()) + cells(s) + cells(t) + cells(forestdist);
+    cells += length(q) + length(fn) + length(ft) + length(keyRoots)
+           + length(gtedStack);
+    cells += length(cost1_L) + length(cost1_R) + length(cost1_I);
+    cells += length(cost2_L) + length(cost2_R) + length(cost2_I);
+    cells += length(cost2_path) + length(leafRow);
+    cells += length(strategyRow) + length(parentStrategyRow);
+    cells += length(sortedLabels1) + length(sortedLabels2);
+    cells += length(preL_to_row) + length(postL_to_row) + length(postR_to_row);
+    cells += length(preL_to_col) + length(postL_to_col) + length(postR_to_col);
+    cells += renameMatrix == null ? 0 : renameMatrix.getCapacity();
+    cells += (intDelta == null ? 0 : intDelta.getCapacity()) + length(intQ);
+    cells += cells(intS) + cells(intT) + cells(intForestdist);
+    for (double[] row : rowsToReuse_L) {
+      cells += 3L * row.length;
+    }
+    return cells;
+  }
+
+  /**
+   * Returns the distance matrix reshaped to the given dimensions. The values
+   * of its cells are undefined. The matrix is replaced if its storage does
+   * not match the off-heap threshold.
+   */
+  DeltaMatrix delta(int rows, int cols) {
+    long length = (long)rows * cols;
+    boolean offHeap = isOffHeap(length);
+    if (delta == null || shrink(delta.getCapacity(), length) || (delta instanceof OffHeapDeltaMatrix) != offHeap) {
+      // Drop the old matrix first such that its memory can be reclaimed.
+      delta = null;
+      delta = offHeap ? new OffHeapDeltaMatrix(rows, cols) : new HeapDeltaMatrix(rows, cols);
+    } else {
+      delta.reshape(rows, cols);
+    }
+    return delta;
+  }
+
+  /**
+   * Returns the integer distance matrix reshaped to the given dimensions. The
+   * values of its cells are undefined. The matrix is replaced if its storage
+   * does not match the requested cell type.
+   */
+  IntegerDeltaMatrix intDelta(int rows, int cols, boolean shortCells) {
+    long length = (long)rows * cols;
+    if (intDelta == null || shrink(intDelta.getCapacity(), length) || (intDelta instanceof ShortDeltaMatrix) != shortCells) {
+      // Drop the old matrix first such that its memory can be reclaimed.
+      intDelta = null;
+      intDelta = shortCells ? new ShortDeltaMatrix(rows, cols) : new IntDeltaMatrix(rows, cols);
+    } else {
+      intDelta.reshape(rows, cols);
+    }
+    return intDelta;
+  }
+
+  int[] intQ(int length) {
+    return intQ = array(intQ, length);
+  }
+
+  int[][] intS(int rows, int cols) {
+    return matrix(intS, rows, cols);
+  }
+
+  int[][] intT(int rows, int cols) {
+    return matrix(intT, rows, cols);
+  }
+
+  int[][] intForestdist(int rows, int cols) {
+    return matrix(intForestdist, rows, cols);
+  }
+
+  float[] q(int length) {
+    return q = array(q, length);
+  }
+
+  int[] fn(int length) {
+    return fn = array(fn, length);
+  }
+
+  int[] ft(int length) {
+    return ft = array(ft, length);
+  }
+
+  float[][] s(int rows, int cols) {
+    return matrix(s, rows, cols);
+  }
+
+  float[][] t(int rows, int cols) {
+    return matrix(t, rows, cols);
+  }
+
+  float[][] forestdist(int rows, int cols) {
+    return matrix(forestdist, rows, cols);
+  }
+
+  int[] keyRoots(int length) {
+    return keyRoots = array(keyRoots, length);
+  }
+
+  int[] gtedStack(int length) {
+    return gtedStack = array(gtedStack, length);
+  }
+
+  /**
+   * Returns the array of pointers to rows of cost1_L. The first
+   * {@code length} elements are set to {@code null}.
+   */
+  double[][] cost1_L(int length) {
+    return cost1_L = rowPointers(cost1_L, length);
+  }
+
+  double[][] cost1_R(int length) {
+    return cost1_R = rowPointers(cost1_R, length);
+  }
+
+  double[][] cost1_I(int length) {
+    return cost1_I = rowPointers(cost1_I, length);
+  }
+
+  double[] cost2_L(int length) {
+    return cost2_L = array(cost2_L, length);
+  }
+
+  double[] cost2_R(int length) {
+    return cost2_R = array(cost2_R, length);
+  }
+
+  double[] cost2_I(int length) {
+    return cost2_I = array(cost2_I, length);
+  }
+
+  int[] cost2_path(int length) {
+    return cost2_path = array(cost2_path, length);
+  }
+
+  int[] strategyRow(int length) {
+    return strategyRow = array(strategyRow, length);
+  }
+
+  int[] parentStrategyRow(int length) {
+    return parentStrategyRow = array(parentStrategyRow, length);
+  }
+
+  int[] sortedLabels1(int length) {
+    return sortedLabels1 = array(sortedLabels1, length);
+  }
+
+  int[] sortedLabels2(int length) {
+    return sortedLabels2 = array(sortedLabels2, length);
+  }
+
+  int[] preL_to_row(int length) {
+    return preL_to_row = array(preL_to_row, length);
+  }
+
+  int[] postL_to_row(int length) {
+    return postL_to_row = array(postL_to_row, length);
+  }
+
+  int[] postR_to_row(int length) {
+    return postR_to_row = array(postR_to_row, length);
+  }
+
+  int[] preL_to_col(int length) {
+    return preL_to_col = array(preL_to_col, length);
+  }
+
+  int[] postL_to_col(int length) {
+    return postL_to_col = array(postL_to_col, length);
+  }
+
+  int[] postR_to_col(int length) {
+    return postR_to_col = array(postR_to_col, length);
+  }
+
+  /**
+   * Returns the rename matrix. Its size is bounded by
+   * {@link APTED#RENAME_MATRIX_MAX_CELLS}, hence it is always retained.
+   */
+  RenameMatrix renameMatrix() {
+    if (renameMatrix == null) {
+      renameMatrix = new RenameMatrix();
+    }
+    return renameMatrix;
+  }
+
+  /**
+   * Returns a zeroed row of the given length shared by all leaf nodes.
+   */
+  double[] leafRow(int length) {
+    if (leafRow == null || leafRow.length < length || shrink(leafRow.length, length)) {
+      leafRow = new double[length];
+    }
+    return leafRow;
+  }
+
+  /**
+   * Returns the length of the strategy rows to allocate and to reuse. The
+   * stacks of rows to reuse are emptied if their rows are shorter than
+   * {@code length} or if they should not be retained.
+   */
+  int strategyRowLength(int length) {
+    if (strategyRowLength < length || shrink(strategyRowLength, length)) {
+      rowsToReuse_L.clear();
+      rowsToReuse_R.clear();
+      rowsToReuse_I.clear();
+      strategyRowLength = length;
+    }
+    return strategyRowLength;
+  }
+
+  /**
+   * Says if a distance matrix with the given number of cells is allocated
+   * off the heap.
+   */
+  boolean isOffHeap(long cells) {
+    return cells > offHeapThreshold;
+  }
+
+  Stack<double[]> rowsToReuse_L() {
+    return rowsToReuse_L;
+  }
+
+  Stack<double[]> rowsToReuse_R() {
+    return rowsToReuse_R;
+  }
+
+  Stack<double[]> rowsToReuse_I() {
+    return rowsToReuse_I;
+  }
+
+  /**
+   * Decides if an array with the given capacity has to be reallocated for
+   * a smaller request according to the shrink policy.
+   *
+   * @param capacity number of cells of the existing array.
+   * @param requested number of requested cells.
+   * @return {@code true} if the array must be reallocated.
+   */
+  private boolean shrink(long capacity, long requested) {
+    return capacity > retainedCellsLimit && requested < capacity;
+  }
+
+  /**
+   * Returns the tall or the wide matrix of a pair for the given dimensions,
+   * grown to the high-water mark in both dimensions if it is too small.
+   *
+   * @param m the tall and the wide matrix.
+   * @param rows number of requested rows.
+   * @param cols number of requested columns.
+   * @return a matrix of at least the requested dimensions.
+   */
+  private float[][] matrix(float[][][] m, int rows, int cols) {
+    int shape = rows >= cols ? 0 : 1;
+    float[][] matrix = m[shape];
+    if (matrix == null || shrink(cells(matrix), (long)rows * cols)) {
+      return m[shape] = new float[rows][cols];
+    }
+    int capacityRows = matrix.length;
+    int capacityCols = capacityRows == 0 ? 0 : matrix[0].length;
+    if (capacityRows >= rows && capacityCols >= cols) {
+      return matrix;
+    }
+    // Grow to the high-water mark in both dimensions.
+    return m[shape] = new float[Math.max(rows, capacityRows)][Math.max(cols, capacityCols)];
+  }
+
+  private int[][] matrix(int[][][] m, int rows, int cols) {
+    int shape = rows >= cols ? 0 : 1;
+    int[][] matrix = m[shape];
+    if (matrix == null || shrink(cells(matrix), (long)rows * cols)) {
+      return m[shape] = new int[rows][cols];
+    }
+    int capacityRows = matrix.length;
+    int capacityCols = capacityRows == 0 ? 0 : matrix[0].length;
+    if (capacityRows >= rows && capacityCols >= cols) {
+      return matrix;
+    }
+    // Grow to the high-water mark in both dimensions.
+    return m[shape] = new int[Math.max(rows, capacityRows)][Math.max(cols, capacityCols)];
+  }
+
+  private float[] array(float[] a, int length) {
+    if (a == null || a.length < length || shrink(a.length, length)) {
+      return new float[length];
+    }
+    return a;
+  }
+
+  private double[] array(double[] a, int length) {
+    if (a == null || a.length < length || shrink(a.length, length)) {
+      return new double[length];
+    }
+    return a;
+  }
+
+  private int[] array(int[] a, int length) {
+    if (a == null || a.length < length || shrink(a.length, length)) {
+      return new int[length];
+    }
+    return a;
+  }
+
+  private double[][] rowPointers(double[][] a, int length) {
+    if (a == null || a.length < length || shrink(a.length, length)) {
+      return new double[length][];
+    }
+    Arrays.fill(a, 0, length, null);
+    return a;
+  }
+
+  private static long cells(float[][] m) {
+    return m == null || m.length == 0 ? 0 : (long)m.length * m[0].length;
+  }
+
+  private static long cells(int[][] m) {
+    return m == null || m.length == 0 ? 0 : (long)m.length * m[0].length;
+  }
+
+  private static long cells(float[][][] m) {
+    return cells(m[0]) + cells(m[1]);
+  }
+
+  private static long cells(int[][][] m) {
+    return cells(m[0]) + cells(m[1]);
+  }
+
+  private static long length(float[] a) {
+    return a == null ? 0 : a.length;
+  }
+
+  private static long length(int[] a) {
+    return a == null ? 0 : a.length;
+  }
+
+  private static long length(double[] a) {
+    return a == null ? 0 : a.length;
+  }
+
+  private static long length(double[][] a) {
+    return a == null ? 0 : a.length;
+  }
+
+}
@@ -0,0 +1,118 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.node;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encodes string labels with integer ids. Equal labels get equal ids, and ids
+ * are assigned consecutively starting with {@code 0} in the order in which
+ * the labels are first stored.
+ *
+ * <p>A dictionary is meant to be shared by all trees whose labels are
+ * compared with each other, for example, by means of a cost model that owns
+ * it. Labels are never removed from the dictionary.
+ *
+ * <p>A dictionary is thread-safe, such that trees can be indexed by
+ * concurrent threads with a shared cost model. Stored labels are looked up
+ * without locking, only new labels are assigned their ids under a lock.
+ *
+ * @see costmodel.LabelIdCostModel
+ */
+public class LabelDictionary {
+
+  /**
+   * Index from a label to its id.
+   */
+  private final ConcurrentHashMap<String, Integer> labelToId;
+
+  /**
+   * Index from an id to its label.
+   */
+  private final List<String> idToLabel;
+
+  /**
+   * Constructs an empty label dictionary.
+   */
+  public LabelDictionary() {
+    labelToId = new ConcurrentHashMap<>();
+    idToLabel = new ArrayList<>();
+  }
+
+  /**
+   * Returns the id of the given label. Assigns the next free id if the label
+   * has not been stored yet.
+   *
+   * @param label string label.
+   * @return the id of the label.
+   */
+  public int store(String label) {
+    Integer id = labelToId.get(label);
+    if (id == null) {
+      id = assign(label);
+    }
+    return id;
+  }
+
+  /**
+   * Assigns the next free id to a label unless another thread has stored it
+   * in the meantime. The label is added to the list before its id is
+   * published in the index.
+   *
+   * @param label string label.
+   * @return the id of the label.
+   */
+  private synchronized int assign(String label) {
+    Integer id = labelToId.get(label);
+    if (id == null) {
+      id = idToLabel.size();
+      idToLabel.add(label);
+      labelToId.put(label, id);
+    }
+    return id;
+  }
+
+  /**
+   * Returns the label with the given id.
+   *
+   * @param id label id.
+   * @return the label with id {@code id}.
+   * @throws IndexOutOfBoundsException if no label has that id.
+   */
+  public synchronized String read(int id) {
+    return idToLabel.get(id);
+  }
+
+  /**
+   * Returns the number of labels stored in this dictionary. It is also the
+   * next id to be assigned.
+   *
+   * @return the number of stored labels.
+   */
+  public synchronized int size() {
+    return idToLabel.size();
+  }
+}
@@ -23,12 +23,12 @@
 
 package at.unisalzburg.dbresearch.apted.node;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Arrays;
-import java.util.Iterator;
 import at.unisalzburg.dbresearch.apted.node.Node;
 import at.unisalzburg.dbresearch.apted.costmodel.CostModel;
+import at.unisalzburg.dbresearch.apted.costmodel.LabelIdCostModel;
 
 /**
  * Indexes nodes of the input tree to the algorithm that is already parsed to
@@ -88,10 +88,21 @@ public class NodeIndexer<D, C extends CostModel> {
 
   /**
    * Index from left-to-right preorder id of node n (starting with {@code 0})
-   * to the array of n's children. Size of children array at node n equals the number
-   * of n's children.
+   * to the position of n's first child in {@link #children}. The children of
+   * n are stored at positions {@code childrenOffsets[n]} (inclusive) to
+   * {@code childrenOffsets[n+1]} (exclusive). Its length is the tree size
+   * plus one.
    */
-  public int children[][];
+  public int childrenOffsets[];
+
+  /**
+   * The left-to-right preorder ids of the children of all nodes. The children
+   * of each node are stored consecutively from left to right, and the nodes
+   * follow each other in left-to-right preorder.
+   *
+   * @see #childrenOffsets
+   */
+  public int children[];
 
   /**
    * Index from left-to-right postorder id of node n (starting with {@code 0})
@@ -208,61 +219,107 @@ public class NodeIndexer<D, C extends CostModel> {
    */
   public float preL_to_sumInsCost[];
 
-  // Variables holding values modified at runtime while the algorithm executes.
+  /**
+   * Index from left-to-right preorder id of node n (starting with {@code 0})
+   * to the cost of deleting n.
+   */
+  public float preL_to_delCost[];
 
   /**
-   * Stores the left-to-right preorder id of the current subtree's root node.
-   * Used in the tree decomposition phase of APTED [1, Algorithm 1].
+   * Index from left-to-right preorder id of node n (starting with {@code 0})
+   * to the cost of inserting n.
    */
-  private int currentNode;
+  public float preL_to_insCost[];
 
-  // Structure single-value variables.
+  /**
+   * Index from right-to-left preorder id of node n (starting with {@code 0})
+   * to the cost of deleting n.
+   */
+  public float preR_to_delCost[];
 
   /**
-   * Stores the size of the input tree.
+   * Index from right-to-left preorder id of node n (starting with {@code 0})
+   * to the cost of inserting n.
    */
-  private int treeSize;
+  public float preR_to_insCost[];
 
   /**
-   * Stores the number of leftmost-child leaf nodes in the input tree
-   * [2, Section 5.3].
+   * Index from left-to-right postorder id of node n (starting with {@code 0})
+   * to the cost of deleting n.
    */
-  public int lchl;
+  public float postL_to_delCost[];
 
   /**
-   * Stores the number of rightmost-child leaf nodes in the input tree
-   * [2, Section 5.3].
+   * Index from left-to-right postorder id of node n (starting with {@code 0})
+   * to the cost of inserting n.
    */
-  public int rchl;
+  public float postL_to_insCost[];
 
-  // Variables used temporarily while indexing.
+  /**
+   * Index from right-to-left postorder id of node n (starting with {@code 0})
+   * to the cost of deleting n.
+   */
+  public float postR_to_delCost[];
 
   /**
-   * Temporary variable used in indexing for storing subtree size.
+   * Index from right-to-left postorder id of node n (starting with {@code 0})
+   * to the cost of inserting n.
    */
-  private int sizeTmp;
+  public float postR_to_insCost[];
 
   /**
-   * Temporary variable used in indexing for storing sum of subtree sizes
-   * rooted at descendant nodes.
+   * Index from left-to-right preorder id of node n (starting with {@code 0})
+   * to the label id of n. Computed only for a {@link LabelIdCostModel},
+   * {@code null} otherwise.
    */
-  private int descSizesTmp;
+  public int preL_to_label[];
 
   /**
-   * Temporary variable used in indexing for storing sum of keyroot node sizes.
+   * Index from left-to-right postorder id of node n (starting with {@code 0})
+   * to the label id of n. Computed only for a {@link LabelIdCostModel},
+   * {@code null} otherwise.
    */
-  private int krSizesSumTmp;
+  public int postL_to_label[];
 
   /**
-   * Temporary variable used in indexing for storing sum of right-to-left
-   * keyroot node sizes.
+   * Index from right-to-left postorder id of node n (starting with {@code 0})
+   * to the label id of n. Computed only for a {@link LabelIdCostModel},
+   * {@code null} otherwise.
+   */
+  public int postR_to_label[];
+
+  // Variables holding values modified at runtime while the algorithm executes.
+
+  /**
+   * Stores the left-to-right preorder id of the current subtree's root node.
+   * Used in the tree decomposition phase of APTED [1, Algorithm 1].
+   */
+  private int currentNode;
+
+  // Structure single-value variables.
+
+  /**
+   * Stores the size of the input tree.
+   */
+  private int treeSize;
+
+  /**
+   * Stores the number of leftmost-child leaf nodes in the input tree
+   * [2, Section 5.3].
+   */
+  public int lchl;
+
+  /**
+   * Stores the number of rightmost-child leaf nodes in the input tree
+   * [2, Section 5.3].
    */
-  private int revkrSizesSumTmp;
+  public int rchl;
 
   /**
-   * Temporary variable used in indexing for storing preorder index of a node.
+   * Initial length of the arrays that are grown while traversing the input
+   * tree.
    */
-  private int preorderTmp;
+  private static final int INITIAL_CAPACITY = 16;
 
   private C costModel;
 
@@ -271,18 +328,16 @@ public class NodeIndexer<D, C extends CostModel> {
    * from APTED algorithm.
    *
    * @param inputTree an input tree to APTED. Its nodes will be indexed.
-   * @param costModel instance of a cost model to compute preL_to_sumDelCost
-   *                  and preL_to_sumInsCost.
+   * @param costModel instance of a cost model to compute the deletion and
+   *                  insertion costs of the nodes and of the subtrees.
    */
   public NodeIndexer(Node<D> inputTree, C costModel) {
     // Initialise variables.
-    sizeTmp = 0;
-    descSizesTmp = 0;
-    krSizesSumTmp = 0;
-    revkrSizesSumTmp = 0;
-    preorderTmp = 0;
     currentNode = 0;
-    treeSize = inputTree.getNodeCount();
+    this.costModel = costModel;
+
+    // Collect the nodes in left-to-right preorder. Sets the tree size.
+    traverse(inputTree);
 
     // Initialise indices with the lengths equal to the tree size.
     sizes = new int[treeSize];
@@ -294,7 +349,6 @@ public class NodeIndexer<D, C extends CostModel> {
     postR_to_preL = new int[treeSize];
     postL_to_lld = new int[treeSize];
     postR_to_rld = new int[treeSize];
-    preL_to_node = new Node[treeSize];
     preL_to_ln = new int[treeSize];
     preR_to_ln = new int[treeSize];
     preL_to_kr_sum = new int[treeSize];
@@ -303,185 +357,256 @@ public class NodeIndexer<D, C extends CostModel> {
 
     preL_to_sumDelCost = new float[treeSize];
     preL_to_sumInsCost = new float[treeSize];
+    preL_to_delCost = new float[treeSize];
+    preL_to_insCost = new float[treeSize];
+    preR_to_delCost = new float[treeSize];
+    preR_to_insCost = new float[treeSize];
+    postL_to_delCost = new float[treeSize];
+    postL_to_insCost = new float[treeSize];
+    postR_to_delCost = new float[treeSize];
+    postR_to_insCost = new float[treeSize];
+    if (costModel instanceof LabelIdCostModel) {
+      preL_to_label = new int[treeSize];
+      postL_to_label = new int[treeSize];
+      postR_to_label = new int[treeSize];
+    }
 
-    children = new int[treeSize][];
+    childrenOffsets = new int[treeSize + 1];
+    children = new int[treeSize - 1];
     nodeType_L = new boolean[treeSize];
     nodeType_R = new boolean[treeSize];
-    parents = new int[treeSize];
-    parents[0] = -1; // The root has no parent.
-
-    this.costModel = costModel;
 
     // Index the nodes.
-    indexNodes(inputTree, -1);
+    indexNodes();
     postTraversalIndexing();
   }
 
   /**
-   * Indexes the nodes of the input tree. Stores information about each tree
-   * node in index arrays. It computes the following indices: {@link #parents},
-   * {@link #children}, {@link #nodeType_L}, {@link #nodeType_R},
-   * {@link #preL_to_desc_sum}, {@link #preL_to_kr_sum},
-   * {@link #preL_to_rev_kr_sum}, {@link #preL_to_node}, {@link #sizes},
-   * {@link #preL_to_preR}, {@link #preR_to_preL}, {@link #postL_to_preL},
-   * {@link #preL_to_postL}, {@link #preL_to_postR}, {@link #postR_to_preL}.
-   *
-   * <p>It is a recursive method that traverses the tree once.
+   * Creates an indexer of the same tree that shares all indices with the
+   * given indexer, but has its own current node. The indices are not copied.
+   * Used to process one indexed tree in several computations, possibly
+   * concurrently, since the algorithm modifies the current node.
    *
-   * @param node is the current node while traversing the input tree.
-   * @param postorder is the postorder id of the current node.
-   * @return postorder id of the current node.
+   * @param indexer the indexer to share the indices with.
    */
-  private int indexNodes(Node<D> node, int postorder) {
-    // Initialise variables.
-    int currentSize = 0;
-    int childrenCount = 0;
-    int descSizes = 0;
-    int krSizesSum = 0;
-    int revkrSizesSum = 0;
-    int preorder = preorderTmp;
-    int preorderR = 0;
-    int currentPreorder = -1;
-    // Initialise empty array to store children of this node.
-    ArrayList<Integer> childrenPreorders = new ArrayList<>();
-
-    // Store the preorder id of the current node to use it after the recursion.
-    preorderTmp++;
-
-    // Loop over children of a node.
-    Iterator<Node<D>> childrenIt = node.getChildren().iterator();
-    while (childrenIt.hasNext()) {
-      childrenCount++;
-      currentPreorder = preorderTmp;
-      parents[currentPreorder] = preorder;
-
-      // Execute method recursively for next child.
-      postorder = indexNodes(childrenIt.next(), postorder);
-
-      childrenPreorders.add(Integer.valueOf(currentPreorder));
-
-      currentSize += 1 + sizeTmp;
-      descSizes += descSizesTmp;
-      if(childrenCount > 1) {
-          krSizesSum += krSizesSumTmp + sizeTmp + 1;
-      } else {
-          krSizesSum += krSizesSumTmp;
-          nodeType_L[currentPreorder] = true;
+  public NodeIndexer(NodeIndexer<D, C> indexer) {
+    currentNode = 0;
+    preL_to_node = indexer.preL_to_node;
+    sizes = indexer.sizes;
+    parents = indexer.parents;
+    childrenOffsets = indexer.childrenOffsets;
+    children = indexer.children;
+    postL_to_lld = indexer.postL_to_lld;
+    postR_to_rld = indexer.postR_to_rld;
+    preL_to_ln = indexer.preL_to_ln;
+    preR_to_ln = indexer.preR_to_ln;
+    nodeType_L = indexer.nodeType_L;
+    nodeType_R = indexer.nodeType_R;
+    preL_to_preR = indexer.preL_to_preR;
+    preR_to_preL = indexer.preR_to_preL;
+    preL_to_postL = indexer.preL_to_postL;
+    postL_to_preL = indexer.postL_to_preL;
+    preL_to_postR = indexer.preL_to_postR;
+    postR_to_preL = indexer.postR_to_preL;
+    preL_to_kr_sum = indexer.preL_to_kr_sum;
+    preL_to_rev_kr_sum = indexer.preL_to_rev_kr_sum;
+    preL_to_desc_sum = indexer.preL_to_desc_sum;
+    preL_to_sumDelCost = indexer.preL_to_sumDelCost;
+    preL_to_sumInsCost = indexer.preL_to_sumInsCost;
+    preL_to_delCost = indexer.preL_to_delCost;
+    preL_to_insCost = indexer.preL_to_insCost;
+    preR_to_delCost = indexer.preR_to_delCost;
+    preR_to_insCost = indexer.preR_to_insCost;
+    postL_to_delCost = indexer.postL_to_delCost;
+    postL_to_insCost = indexer.postL_to_insCost;
+    postR_to_delCost = indexer.postR_to_delCost;
+    postR_to_insCost = indexer.postR_to_insCost;
+    preL_to_label = indexer.preL_to_label;
+    postL_to_label = indexer.postL_to_label;
+    postR_to_label = indexer.postR_to_label;
+    treeSize = indexer.treeSize;
+    lchl = indexer.lchl;
+    rchl = indexer.rchl;
+    costModel = indexer.costModel;
+  }
+
+  /**
+   * Traverses the input tree once in left-to-right preorder with an explicit
+   * stack. Computes the tree size, {@link #preL_to_node} and
+   * {@link #parents}.
+   *
+   * <p>The two indices are grown while traversing, because the tree size is
+   * not known in advance, and trimmed to the tree size at the end.
+   *
+   * @param inputTree the input tree.
+   */
+  private void traverse(Node<D> inputTree) {
+    Node<D>[] nodes = new Node[INITIAL_CAPACITY];
+    int[] nodeParents = new int[INITIAL_CAPACITY];
+    // The nodes to visit and the preorder ids of their parents.
+    Node<D>[] stack = new Node[INITIAL_CAPACITY];
+    int[] stackParents = new int[INITIAL_CAPACITY];
+    int top = 0;
+    stack[top] = inputTree;
+    stackParents[top++] = -1; // The root has no parent.
+    int preorder = 0;
+    while (top > 0) {
+      Node<D> node = stack[--top];
+      if (preorder == nodes.length) {
+        nodes = Arrays.copyOf(nodes, 2 * preorder);
+        nodeParents = Arrays.copyOf(nodeParents, 2 * preorder);
+      }
+      nodes[preorder] = node;
+      nodeParents[preorder] = stackParents[top];
+      List<Node<D>> nodeChildren = node.getChildren();
+      int childrenCount = nodeChildren.size();
+      if (top + childrenCount > stack.length) {
+        int length = Math.max(2 * stack.length, top + childrenCount);
+        stack = Arrays.copyOf(stack, length);
+        stackParents = Arrays.copyOf(stackParents, length);
       }
-      if(childrenIt.hasNext()) {
-          revkrSizesSum += revkrSizesSumTmp + sizeTmp + 1;
-      } else {
-          revkrSizesSum += revkrSizesSumTmp;
-          nodeType_R[currentPreorder] = true;
+      // Push the children from right to left to visit them from left to right.
+      ListIterator<Node<D>> childrenIt = nodeChildren.listIterator(childrenCount);
+      while (childrenIt.hasPrevious()) {
+        stack[top] = childrenIt.previous();
+        stackParents[top++] = preorder;
       }
+      preorder++;
     }
+    treeSize = preorder;
+    preL_to_node = Arrays.copyOf(nodes, treeSize);
+    parents = Arrays.copyOf(nodeParents, treeSize);
+  }
 
-    postorder++;
-
-    int currentDescSizes = descSizes + currentSize + 1;
-    preL_to_desc_sum[preorder] = ((currentSize + 1) * (currentSize + 1 + 3)) / 2 - currentDescSizes;
-    preL_to_kr_sum[preorder] = krSizesSum + currentSize + 1;
-    preL_to_rev_kr_sum[preorder] = revkrSizesSum + currentSize + 1;
-
-    // Store pointer to a node object corresponding to preorder.
-    preL_to_node[preorder] = node;
-
-    sizes[preorder] = currentSize + 1;
-    preorderR = treeSize - 1 - postorder;
-    preL_to_preR[preorder] = preorderR;
-    preR_to_preL[preorderR] = preorder;
-
-    children[preorder] = toIntArray(childrenPreorders);
-
-    descSizesTmp = currentDescSizes;
-    sizeTmp = currentSize;
-    krSizesSumTmp = krSizesSum;
-    revkrSizesSumTmp = revkrSizesSum;
-
-    postL_to_preL[postorder] = preorder;
-    preL_to_postL[preorder] = postorder;
-    preL_to_postR[preorder] = treeSize-1-preorder;
-    postR_to_preL[treeSize-1-preorder] = preorder;
+  /**
+   * Indexes the nodes of the input tree. Stores information about each tree
+   * node in index arrays. It computes the following indices: {@link #sizes},
+   * {@link #nodeType_L}, {@link #nodeType_R}, {@link #preL_to_desc_sum},
+   * {@link #preL_to_kr_sum}, {@link #preL_to_rev_kr_sum},
+   * {@link #preL_to_preR}, {@link #preR_to_preL}, {@link #postL_to_preL},
+   * {@link #preL_to_postL}, {@link #preL_to_postR}, {@link #postR_to_preL},
+   * {@link #postL_to_lld}, {@link #postR_to_rld}, the sums of deletion and
+   * insertion costs of the subtrees, the deletion and insertion costs of the
+   * nodes in all four traversals, and the label ids of the nodes if the cost
+   * model is a {@link LabelIdCostModel}.
+   *
+   * <p>Uses only the parents of the nodes. Loops over the nodes twice: top-down
+   * to compute the depths, and bottom-up to compute everything else. A node is
+   * visited bottom-up after all its descendants.
+   */
+  private void indexNodes() {
+    // Store the depth of each node in preL_to_postL first.
+    for (int i = 1; i < treeSize; i++) {
+      preL_to_postL[i] = preL_to_postL[parents[i]] + 1;
+    }
+    for (int i = treeSize - 1; i >= 0; i--) {
+      int parent = parents[i];
+      // All children of node i have already added their sizes.
+      int size = ++sizes[i];
+      // The last child of a node is the first one visited bottom-up.
+      boolean lastChild = parent > -1 && sizes[parent] == 0;
+      boolean firstChild = parent > -1 && parent + 1 == i;
+      nodeType_L[i] = firstChild;
+      nodeType_R[i] = lastChild;
+      // Count lchl and rchl.
+      // [TODO] There are no values for parent node.
+      if (size == 1 && parent > -1) {
+        if (firstChild) {
+          lchl++;
+        } else if (lastChild) {
+          rchl++;
+        }
+      }
 
-    return postorder;
+      // The postorder id is the number of nodes that precede the node in
+      // preorder and are not its ancestors, plus the number of descendants.
+      int postorder = i + size - 1 - preL_to_postL[i];
+      int preorderR = treeSize - 1 - postorder;
+      int postorderR = treeSize - 1 - i;
+      preL_to_postL[i] = postorder;
+      postL_to_preL[postorder] = i;
+      preL_to_preR[i] = preorderR;
+      preR_to_preL[preorderR] = i;
+      preL_to_postR[i] = postorderR;
+      postR_to_preL[postorderR] = i;
+      // The leftmost (rightmost) leaf descendant is the first node of the
+      // subtree in left-to-right (right-to-left) postorder.
+      postL_to_lld[postorder] = postorder - size + 1;
+      postR_to_rld[postorderR] = postorderR - size + 1;
+
+      // Sums of subtree sizes and of keyroot node sizes. At this point the
+      // arrays hold the values summed up from the children.
+      int descSizes = preL_to_desc_sum[i] + size;
+      preL_to_desc_sum[i] = (size * (size + 3)) / 2 - descSizes;
+      preL_to_kr_sum[i] += size;
+      preL_to_rev_kr_sum[i] += size;
+
+      // Store the costs of deleting and inserting the node in all traversals.
+      float delCost = costModel.del(preL_to_node[i]);
+      float insCost = costModel.ins(preL_to_node[i]);
+      preL_to_delCost[i] = delCost;
+      preL_to_insCost[i] = insCost;
+      preR_to_delCost[preorderR] = delCost;
+      preR_to_insCost[preorderR] = insCost;
+      postL_to_delCost[postorder] = delCost;
+      postL_to_insCost[postorder] = insCost;
+      postR_to_delCost[postorderR] = delCost;
+      postR_to_insCost[postorderR] = insCost;
+      // Store the label id of the node.
+      if (preL_to_label != null) {
+        int label = ((LabelIdCostModel)costModel).labelId(preL_to_node[i]);
+        preL_to_label[i] = label;
+        postL_to_label[postorder] = label;
+        postR_to_label[postorderR] = label;
+      }
+      // Sum up costs of deleting and inserting entire subtrees.
+      preL_to_sumDelCost[i] += delCost;
+      preL_to_sumInsCost[i] += insCost;
+
+      if (parent > -1) {
+        // Update my parent. The first (last) child is not a keyroot node
+        // for left (right) paths.
+        sizes[parent] += size;
+        preL_to_desc_sum[parent] += descSizes;
+        preL_to_kr_sum[parent] += preL_to_kr_sum[i] - (firstChild ? size : 0);
+        preL_to_rev_kr_sum[parent] += preL_to_rev_kr_sum[i] - (lastChild ? size : 0);
+        preL_to_sumDelCost[parent] += preL_to_sumDelCost[i];
+        preL_to_sumInsCost[parent] += preL_to_sumInsCost[i];
+      }
+    }
   }
 
   /**
    * Indexes the nodes of the input tree. It computes the following indices,
-   * which could not be computed immediately while traversing the tree in
-   * {@link #indexNodes}: {@link #preL_to_ln}, {@link #postL_to_lld},
-   * {@link #postR_to_rld}, {@link #preR_to_ln}.
+   * which require the subtree sizes computed in {@link #indexNodes}:
+   * {@link #childrenOffsets}, {@link #children}, {@link #preL_to_ln} and
+   * {@link #preR_to_ln}.
    *
-   * <p>Runs in linear time in the input tree size. Currently requires two
-   * loops over input tree nodes. Can be reduced to one loop (see the code).
+   * <p>Runs in linear time in the input tree size with one loop over input
+   * tree nodes.
    */
   private void postTraversalIndexing() {
     int currentLeaf = -1;
-    int nodeForSum = -1;
-    int parentForSum = -1;
+    int currentLeafR = -1;
+    int childrenCount = 0;
     for(int i = 0; i < treeSize; i++) {
+      // The children of node i follow each other in preorder, each after the
+      // subtree of its left sibling.
+      childrenOffsets[i] = childrenCount;
+      for (int child = i + 1; child < i + sizes[i]; child += sizes[child]) {
+        children[childrenCount++] = child;
+      }
+
       preL_to_ln[i] = currentLeaf;
       if(isLeaf(i)) {
           currentLeaf = i;
       }
-
-      // This block stores leftmost leaf descendants for each node
-      // indexed in postorder. Used for mapping computation.
-      // Added by Victor.
-      int postl = i; // Assume that the for loop iterates postorder.
-      int preorder = postL_to_preL[i];
-      if (sizes[preorder] == 1) {
-        postL_to_lld[postl] = postl;
-      } else {
-        postL_to_lld[postl] = postL_to_lld[preL_to_postL[children[preorder][0]]];
-      }
-      // This block stores rightmost leaf descendants for each node
-      // indexed in right-to-left postorder.
-      // [TODO] Use postL_to_lld and postR_to_rld instead of APTED.getLLD
-      //        and APTED.gerRLD methods, remove these method.
-      //        Result: faster lookup of these values.
-      int postr = i; // Assume that the for loop iterates reversed postorder.
-      preorder = postR_to_preL[postr];
-      if (sizes[preorder] == 1) {
-        postR_to_rld[postr] = postr;
-      } else {
-        postR_to_rld[postr] = postR_to_rld[preL_to_postR[children[preorder][children[preorder].length-1]]];
-      }
-      // Count lchl and rchl.
-      // [TODO] There are no values for parent node.
-      if (sizes[i] == 1) {
-        int parent = parents[i];
-        if (parent > -1) {
-          if (parent+1 == i) {
-          	lchl++;
-          } else if (preL_to_preR[parent]+1 == preL_to_preR[i]) {
-          	rchl++;
-          }
-        }
-      }
-
-      // Sum up costs of deleting and inserting entire subtrees.
-      // Reverse the node index. Here, we need traverse nodes bottom-up.
-      nodeForSum = treeSize - i - 1;
-      parentForSum = parents[nodeForSum];
-      // Update myself.
-      preL_to_sumDelCost[nodeForSum] += costModel.del(preL_to_node[nodeForSum]);
-      preL_to_sumInsCost[nodeForSum] += costModel.ins(preL_to_node[nodeForSum]);
-      if (parentForSum > -1) {
-        // Update my parent.
-        preL_to_sumDelCost[parentForSum] += preL_to_sumDelCost[nodeForSum];
-        preL_to_sumInsCost[parentForSum] += preL_to_sumInsCost[nodeForSum];
-      }
-    }
-
-    currentLeaf = -1;
-    // [TODO] Merge with the other loop. Assume different traversal.
-    for(int i = 0; i < sizes[0]; i++) {
-      preR_to_ln[i] = currentLeaf;
+      preR_to_ln[i] = currentLeafR;
       if(isLeaf(preR_to_preL[i])) {
-        currentLeaf = i;
+        currentLeafR = i;
       }
     }
+    childrenOffsets[treeSize] = childrenCount;
   }
 
   /**
@@ -547,23 +672,6 @@ public class NodeIndexer<D, C extends CostModel> {
     return sizes[node] == 1;
   }
 
-  /**
-   * Converts {@link ArrayList} of integer values to an array. Reads all items
-   * in the list and copies to the output array. The size of output array equals
-   * the number of elements in the list.
-   *
-   * @param integers ArrayList with integer values.
-   * @return array with values from input ArrayList.
-   */
-  private int[] toIntArray(ArrayList<Integer> integers) {
-    int ints[] = new int[integers.size()];
-    int i = 0;
-    for (Integer n : integers) {
-      ints[i++] = n.intValue();
-    }
-    return ints;
-  }
-
   /**
    * Returns the root node of the currently processed subtree in the tree
    * decomposition part of APTED [1, Algorithm 1]. At each point, we have to
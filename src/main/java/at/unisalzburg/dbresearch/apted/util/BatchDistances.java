@@ -0,0 +1,359 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import at.unisalzburg.dbresearch.apted.distance.APTED;
+import at.unisalzburg.dbresearch.apted.distance.TEDLowerBounds;
+import at.unisalzburg.dbresearch.apted.distance.Workspace;
+import at.unisalzburg.dbresearch.apted.node.NodeIndexer;
+import at.unisalzburg.dbresearch.apted.costmodel.CostModel;
+import at.unisalzburg.dbresearch.apted.parser.InputParser;
+
+/**
+ * Computes the distances of many pairs of trees read from a stream, with
+ * several worker threads in one JVM.
+ *
+ * <p>Each non-empty input line holds a pair of trees separated by a tab,
+ * optionally preceded by an id and a tab: {@code [ID<TAB>]TREE1<TAB>TREE2}.
+ * The default id is the line number, starting with 1. For each pair, a line
+ * {@code ID<TAB>DISTANCE} is written to the output, either in the input order
+ * or as soon as the distance is computed. A line that cannot be parsed is
+ * reported to the error stream and skipped.
+ *
+ * <p>The input is streamed: at most a few pairs per worker thread are read
+ * ahead. Among them, the workers take the pair with the largest estimated
+ * cost first (longest processing time first), where the cost is estimated
+ * by the lengths of the input strings. Each worker thread has its own
+ * {@link APTED} object. A big pair is computed with its independent
+ * subproblems in parallel on the common fork-join pool. The cost model and
+ * the input parser are shared by the worker threads and must be
+ * thread-safe.
+ *
+ * <p>If a threshold is given, only the distances up to the threshold are
+ * computed. For the other pairs, a lower bound of the distance greater than
+ * the threshold is written. The pairs are first filtered by cheap lower
+ * bounds (see {@link TEDLowerBounds}), and the remaining pairs are computed
+ * with the threshold (see
+ * {@link APTED#computeEditDistance(NodeIndexer, NodeIndexer, float)}).
+ *
+ * @param <C> type of cost model.
+ * @param <D> type of node data.
+ * @see CommandLine
+ */
+public class BatchDistances<C extends CostModel, D> {
+
+  /**
+   * Number of pairs read ahead per worker thread.
+   */
+  private static final int PAIRS_PER_THREAD = 16;
+
+  /**
+   * Minimum product of the tree sizes of a big pair, computed with its
+   * subproblems in parallel.
+   */
+  private static final long MIN_BIG_PAIR_COST = 1L << 20;
+
+  /**
+   * A subproblem of a big pair is decomposed in parallel if its cost is at
+   * least the cost of the pair divided by this factor and by the number of
+   * threads.
+   */
+  private static final int SUBPROBLEM_FACTOR = 8;
+
+  /**
+   * Cost model for edit operations.
+   */
+  private final C costModel;
+
+  /**
+   * Parser of the input trees.
+   */
+  private final InputParser<D> inputParser;
+
+  /**
+   * Number of worker threads.
+   */
+  private final int threads;
+
+  /**
+   * If the distances are written in the input order. Otherwise, they are
+   * written in the order of completion.
+   */
+  private final boolean ordered;
+
+  /**
+   * The maximum distance of interest. Infinite if all distances are computed
+   * exactly.
+   */
+  private final float threshold;
+
+  /**
+   * The lower bounds to filter the pairs with, or {@code null}.
+   */
+  private final TEDLowerBounds lowerBounds;
+
+  /**
+   * Constructs a batch computation.
+   *
+   * @param costModel cost model for edit operations.
+   * @param inputParser parser of the input trees.
+   * @param threads number of worker threads.
+   * @param ordered {@code true} to write the distances in the input order,
+   *                {@code false} to write them in the order of completion.
+   */
+  public BatchDistances(C costModel, InputParser<D> inputParser, int threads, boolean ordered) {
+    this(costModel, inputParser, threads, ordered, Float.POSITIVE_INFINITY, null);
+  }
+
+  /**
+   * Constructs a batch computation of the distances up to a threshold.
+   *
+   * @param costModel cost model for edit operations.
+   * @param inputParser parser of the input trees.
+   * @param threads number of worker threads.
+   * @param ordered {@code true} to write the distances in the input order,
+   *                {@code false} to write them in the order of completion.
+   * @param threshold the maximum distance of interest.
+   * @param lowerBounds the lower bounds to filter the pairs with, or
+   *                    {@code null} to compute all pairs with the threshold.
+   */
+  public BatchDistances(C costModel, InputParser<D> inputParser, int threads, boolean ordered, float threshold, TEDLowerBounds lowerBounds) {
+    this.costModel = costModel;
+    this.inputParser = inputParser;
+    this.threads = threads;
+    this.ordered = ordered;
+    this.threshold = threshold;
+    this.lowerBounds = lowerBounds;
+  }
+
+  /**
+   * Reads the pairs of trees and writes their distances.
+   *
+   * @param in input with one pair of trees per line.
+   * @param out output for the distances.
+   * @param err output for the lines that cannot be parsed.
+   * @throws IOException if the input cannot be read.
+   */
+  public void run(BufferedReader in, PrintStream out, PrintStream err) throws IOException {
+    // The workers take the most expensive pending pair first.
+    ThreadPoolExecutor workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>());
+    try {
+      ThreadLocal<APTED<C, D>> engines = ThreadLocal.withInitial(() -> new APTED<C, D>(costModel));
+      // Pairs in the order of completion, used if not ordered.
+      BlockingQueue<Future<String>> completed = ordered ? null : new LinkedBlockingQueue<Future<String>>();
+      // Pairs in the input order, used if ordered.
+      Deque<Future<String>> inputOrder = new ArrayDeque<>();
+      int maxPending = threads * PAIRS_PER_THREAD;
+      int pending = 0;
+      int lineNumber = 0;
+      String line;
+      while ((line = in.readLine()) != null) {
+        lineNumber++;
+        if (line.trim().isEmpty()) {
+          continue;
+        }
+        String pair = line;
+        int defaultId = lineNumber;
+        PairTask task = new PairTask(() -> compute(pair, defaultId, engines.get()), estimateCost(pair), completed);
+        if (ordered) {
+          inputOrder.add(task);
+        }
+        workers.execute(task);
+        pending++;
+        // Write the computed distances. Wait for one if too many are pending.
+        Future<String> result;
+        while ((result = next(inputOrder, completed, pending >= maxPending)) != null) {
+          pending--;
+          write(result, out, err);
+        }
+      }
+      // Write the remaining distances.
+      for (; pending > 0; pending--) {
+        write(next(inputOrder, completed, true), out, err);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      workers.shutdownNow();
+      out.flush();
+    }
+  }
+
+  /**
+   * Returns the next pair to write: the first pending pair in the input
+   * order if ordered, a completed pair otherwise.
+   *
+   * @param inputOrder pending pairs in the input order.
+   * @param completed pairs in the order of completion.
+   * @param wait if to wait for the pair to complete.
+   * @return the next pair, or {@code null} if it is not completed and
+   *         {@code wait} is {@code false}.
+   * @throws InterruptedException if interrupted while waiting.
+   */
+  private Future<String> next(Deque<Future<String>> inputOrder, BlockingQueue<Future<String>> completed, boolean wait) throws InterruptedException {
+    if (!ordered) {
+      return wait ? completed.take() : completed.poll();
+    }
+    Future<String> first = inputOrder.peek();
+    if (first != null && (wait || first.isDone())) {
+      return inputOrder.poll();
+    }
+    return null;
+  }
+
+  /**
+   * Parses a pair of trees and computes their distance.
+   *
+   * @param line input line with the pair of trees.
+   * @param defaultId id of the pair if the line has none.
+   * @param apted algorithm object of the current thread.
+   * @return the output line with the id and the distance.
+   * @throws IllegalArgumentException if the line has wrong format.
+   */
+  private String compute(String line, int defaultId, APTED<C, D> apted) {
+    String[] fields = line.split("\t");
+    if (fields.length < 2 || fields.length > 3) {
+      throw new IllegalArgumentException("Line " + defaultId + " does not have two trees separated by a tab.");
+    }
+    String id = fields.length == 3 ? fields[0] : Integer.toString(defaultId);
+    NodeIndexer it1;
+    NodeIndexer it2;
+    try {
+      it1 = new NodeIndexer(inputParser.fromString(fields[fields.length - 2]), costModel);
+      it2 = new NodeIndexer(inputParser.fromString(fields[fields.length - 1]), costModel);
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("Line " + defaultId + " has trees of wrong format.", e);
+    }
+    if (lowerBounds != null) {
+      float bound = lowerBounds.lowerBound(new TEDLowerBounds.Signature(it1), new TEDLowerBounds.Signature(it2), threshold);
+      if (bound > threshold) {
+        return id + "\t" + bound;
+      }
+    }
+    long cost = (long)it1.getSize() * it2.getSize();
+    if (cost >= MIN_BIG_PAIR_COST) {
+      // Compute the independent subproblems of a big pair in parallel, such
+      // that the pair does not keep a single thread busy at the end.
+      apted = new APTED<>(costModel, new Workspace(), ForkJoinPool.commonPool(), cost / ((long)SUBPROBLEM_FACTOR * threads));
+    }
+    return id + "\t" + apted.computeEditDistance(it1, it2, threshold);
+  }
+
+  /**
+   * Estimates the cost of a pair of trees by the product of the lengths of
+   * their input strings, which are roughly proportional to their sizes.
+   *
+   * @param line input line with the pair of trees.
+   * @return estimated cost.
+   */
+  private static long estimateCost(String line) {
+    int lastTab = line.lastIndexOf('\t');
+    int previousTab = line.lastIndexOf('\t', lastTab - 1);
+    return (long)(lastTab - previousTab - 1) * (line.length() - lastTab - 1);
+  }
+
+  /**
+   * The computation of a pair of trees, ordered by decreasing estimated
+   * cost.
+   */
+  private static class PairTask extends FutureTask<String> implements Comparable<PairTask> {
+
+    /**
+     * Estimated cost of the pair.
+     */
+    private final long cost;
+
+    /**
+     * The queue to add this task to when completed, or {@code null}.
+     */
+    private final BlockingQueue<Future<String>> completed;
+
+    /**
+     * Creates a task.
+     *
+     * @param computation computation of the output line of the pair.
+     * @param cost estimated cost of the pair.
+     * @param completed the queue to add this task to when completed, or
+     *                  {@code null}.
+     */
+    PairTask(Callable<String> computation, long cost, BlockingQueue<Future<String>> completed) {
+      super(computation);
+      this.cost = cost;
+      this.completed = completed;
+    }
+
+    /**
+     * Adds this task to the queue of completed tasks.
+     */
+    @Override
+    protected void done() {
+      if (completed != null) {
+        completed.add(this);
+      }
+    }
+
+    /**
+     * Orders the more expensive task first.
+     *
+     * @param other another task.
+     * @return comparison of the estimated costs in decreasing order.
+     */
+    @Override
+    public int compareTo(PairTask other) {
+      return Long.compare(other.cost, cost);
+    }
+  }
+
+  /**
+   * Writes the result of a computed pair.
+   *
+   * @param result computed pair.
+   * @param out output for the distances.
+   * @param err output for the lines that cannot be parsed.
+   * @throws InterruptedException if interrupted while waiting for the
+   *                              result.
+   */
+  private static void write(Future<String> result, PrintStream out, PrintStream err) throws InterruptedException {
+    try {
+      out.println(result.get());
+    } catch (ExecutionException e) {
+      err.println(e.getCause().getMessage());
+    }
+  }
+}
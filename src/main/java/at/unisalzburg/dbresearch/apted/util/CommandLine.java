@@ -25,6 +25,8 @@ package at.unisalzburg.dbresearch.apted.util;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.util.Date;
 import java.util.List;
 import at.unisalzburg.dbresearch.apted.distance.APTED;
@@ -53,6 +55,10 @@ public class CommandLine<C extends CostModel, P extends InputParser> {
       "\n" +
       "    java -jar APTED.jar {-t TREE1 TREE2 | -f FILE1 FILE2} [-m] [-v]\n" +
       "\n" +
+      "    java -jar APTED.jar -s PORT [--queue N] [--timeout MS]\n" +
+      "\n" +
+      "    java -jar APTED.jar -b FILE [--threads N] [--unordered]\n" +
+      "\n" +
       "    java -jar APTED.jar -h\n" +
       "\n" +
       "DESCRIPTION\n" +
@@ -95,6 +101,36 @@ public class CommandLine<C extends CostModel, P extends InputParser> {
       // "        CI - cost of node insertion\n" +
       // "        CR - cost of node renaming\n" +
       "\n" +
+      "    -b FILE, --batch FILE\n" +
+      "        compute the tree edit distances of many pairs of trees stored in\n" +
+      "        FILE, or read from the standard input if FILE is -. Each line\n" +
+      "        holds an optional id and two trees in bracket notation, separated\n" +
+      "        by tabs. The default id is the line number. For each pair, a line\n" +
+      "        with the id and the distance separated by a tab is printed.\n" +
+      "\n" +
+      "    --threads N\n" +
+      "        number of threads computing the distances in batch mode. Default\n" +
+      "        is the number of processors.\n" +
+      "\n" +
+      "    --unordered\n" +
+      "        print the distances in batch mode in the order of completion\n" +
+      "        instead of the input order.\n" +
+      "\n" +
+      "    -s PORT, --server PORT\n" +
+      "        run a server on the local port PORT instead of computing a single\n" +
+      "        distance. POST two trees in bracket notation, one per line, to\n" +
+      "        http://localhost:PORT/distance to get their distance. Add the\n" +
+      "        query ?mapping to get the edit mapping as with the -m option.\n" +
+      "        The distances are computed by one thread per processor.\n" +
+      "\n" +
+      "    --queue N\n" +
+      "        maximum number of server requests waiting to be computed.\n" +
+      "        Further requests are rejected. Default is 64.\n" +
+      "\n" +
+      "    --timeout MS\n" +
+      "        maximum time in milliseconds to wait for the distance of a server\n" +
+      "        request. Default is 10000.\n" +
+      "\n" +
       "    -v, --verbose\n" +
       "        print verbose output, including tree edit distance, runtime,\n" +
       "        number of relevant subproblems and strategy statistics.\n" +
@@ -114,6 +150,8 @@ public class CommandLine<C extends CostModel, P extends InputParser> {
       "    java -jar APTED.jar -t {a{b}{c}} {a{b{d}}}\n" +// -c 1 1 0.5\n" +
       "    java -jar APTED.jar -f 1.tree 2.tree\n" +
       "    java -jar APTED.jar -t {a{b}{c}} {a{b{d}}} -m -v\n" +
+      "    java -jar APTED.jar -b pairs.tsv --threads 4\n" +
+      "    java -jar APTED.jar -s 8080 --queue 16\n" +
       "\n" +
       "REFERENCES\n" +
       "\n" +
@@ -131,7 +169,13 @@ public class CommandLine<C extends CostModel, P extends InputParser> {
   // TODO: Review if all fields are necessary.
   private String wrongArgumentsMessage = "Wrong arguments. Try \"java -jar RTED.jar --help\" for help.";
 
-  private boolean run, custom, array, strategy, ifSwitch, sota, verbose, demaine, mapping;
+  private boolean run, custom, array, strategy, ifSwitch, sota, verbose, demaine, mapping, server;
+  private int serverPort;
+  private String batchFile;
+  private int batchThreads = Runtime.getRuntime().availableProcessors();
+  private boolean batchUnordered;
+  private int serverQueueSize = 64;
+  private long serverTimeout = 10000;
   private int sotaStrategy;
   private String customStrategy, customStrategyArrayFile;
   private APTED rted;
@@ -190,6 +234,24 @@ public class CommandLine<C extends CostModel, P extends InputParser> {
         // } else if (args[i].equals("-c") || args[i].equals("--costs")) {
         //   setCosts(args[i+1], args[i+2], args[i+3]);
         //   i = i+3;
+        } else if (args[i].equals("-b") || args[i].equals("--batch")) {
+          batchFile = args[i+1];
+          i = i+1;
+        } else if (args[i].equals("--threads")) {
+          batchThreads = Integer.parseInt(args[i+1]);
+          i = i+1;
+        } else if (args[i].equals("--unordered")) {
+          batchUnordered = true;
+        } else if (args[i].equals("-s") || args[i].equals("--server")) {
+          serverPort = Integer.parseInt(args[i+1]);
+          i = i+1;
+          server = true;
+        } else if (args[i].equals("--queue")) {
+          serverQueueSize = Integer.parseInt(args[i+1]);
+          i = i+1;
+        } else if (args[i].equals("--timeout")) {
+          serverTimeout = Long.parseLong(args[i+1]);
+          i = i+1;
         } else if (args[i].equals("-v") || args[i].equals("--verbose")) {
           verbose = true;
         } else if (args[i].equals("-m") || args[i].equals("--mapping")) {
@@ -202,6 +264,19 @@ public class CommandLine<C extends CostModel, P extends InputParser> {
     } catch (ArrayIndexOutOfBoundsException e) {
       System.out.println("Too few arguments.");
       System.exit(0);
+    } catch (NumberFormatException e) {
+      System.out.println(wrongArgumentsMessage);
+      System.exit(0);
+    }
+
+    if (server) {
+      runServer();
+      return;
+    }
+
+    if (batchFile != null) {
+      runBatch();
+      return;
     }
 
     if (!run) {
@@ -230,6 +305,38 @@ public class CommandLine<C extends CostModel, P extends InputParser> {
 
   }
 
+  /**
+   * Computes the distances of the pairs of trees in the batch file.
+   *
+   * @see BatchDistances
+   */
+  private void runBatch() {
+    BatchDistances<C, StringNodeData> batch = new BatchDistances<>(costModel, inputParser, batchThreads, !batchUnordered);
+    try (BufferedReader in = batchFile.equals("-") ? new BufferedReader(new InputStreamReader(System.in)) : new BufferedReader(new FileReader(batchFile))) {
+      batch.run(in, System.out, System.err);
+    } catch (IOException e) {
+      System.out.println("Cannot read the batch file: " + e.getMessage());
+      System.exit(0);
+    }
+  }
+
+  /**
+   * Starts the distance server with one worker thread per processor. The
+   * server keeps running after this method returns.
+   *
+   * @see TEDServer
+   */
+  private void runServer() {
+    TEDServer<C, StringNodeData> tedServer = new TEDServer<>(costModel, inputParser, Runtime.getRuntime().availableProcessors(), serverQueueSize, serverTimeout);
+    try {
+      tedServer.start(serverPort);
+    } catch (IOException e) {
+      System.out.println("Cannot start the server: " + e.getMessage());
+      System.exit(0);
+    }
+    System.out.println("Listening on port " + tedServer.getPort() + ".");
+  }
+
   /**
    * Parse two input trees from the command line and convert them to tree
    * representation using {@link Node} class.
@@ -0,0 +1,319 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import at.unisalzburg.dbresearch.apted.distance.APTEDEngine;
+import at.unisalzburg.dbresearch.apted.distance.APTEDResult;
+import at.unisalzburg.dbresearch.apted.distance.CancellationToken;
+import at.unisalzburg.dbresearch.apted.distance.ComputationCancelledException;
+import at.unisalzburg.dbresearch.apted.node.Node;
+import at.unisalzburg.dbresearch.apted.costmodel.CostModel;
+import at.unisalzburg.dbresearch.apted.parser.InputParser;
+
+/**
+ * A long-running HTTP server that computes tree edit distances, such that
+ * consecutive requests do not pay the start-up of a new JVM and run on
+ * compiled code. It listens on the loopback address only.
+ *
+ * <p>A request is a {@code POST} to {@code /distance} whose body holds the
+ * source and the destination tree, one per line, in the format of the input
+ * parser. The response is in the format of {@link CommandLine}: the distance
+ * on the first line and, if the query contains {@code mapping}, the edit
+ * mapping, one {@code n->m} pair of postorder ids per line. The query
+ * parameter {@code timeout} lowers the timeout of the request in
+ * milliseconds, for example, {@code /distance?mapping&timeout=500}.
+ *
+ * <p>The distances are computed by a fixed number of worker threads with one
+ * {@link APTEDEngine}. Requests waiting for a worker are kept in a bounded
+ * queue. The response status is {@code 503} if the queue is full, {@code 504}
+ * if the request times out, and {@code 400} if the trees cannot be parsed.
+ * A timed-out request is removed from the queue, and a running computation
+ * is stopped with a {@link CancellationToken}. The connections are served
+ * by virtual threads if the JVM supports them, and by a cached thread pool
+ * otherwise.
+ *
+ * <p>The cost model and the input parser are shared by all requests and
+ * must be thread-safe.
+ *
+ * @param <C> type of cost model.
+ * @param <D> type of node data.
+ * @see CommandLine
+ */
+public class TEDServer<C extends CostModel, D> {
+
+  /**
+   * Path of the distance computation.
+   */
+  public static final String PATH = "/distance";
+
+  /**
+   * Engine computing the distances.
+   */
+  private final APTEDEngine<C, D> engine;
+
+  /**
+   * Parser of the input trees.
+   */
+  private final InputParser<D> inputParser;
+
+  /**
+   * Worker threads computing the distances, with the bounded request queue.
+   */
+  private final ThreadPoolExecutor workers;
+
+  /**
+   * Maximum time in milliseconds to wait for the result of a request.
+   */
+  private final long timeoutMillis;
+
+  /**
+   * Threads serving the connections.
+   */
+  private ExecutorService connections;
+
+  /**
+   * The HTTP server, {@code null} if the server is not running.
+   */
+  private HttpServer server;
+
+  /**
+   * Constructs a server that is not yet running.
+   *
+   * @param costModel cost model for edit operations.
+   * @param inputParser parser of the input trees.
+   * @param threads number of worker threads.
+   * @param queueSize maximum number of requests waiting for a worker.
+   * @param timeoutMillis maximum time in milliseconds to wait for the result
+   *                      of a request.
+   */
+  public TEDServer(C costModel, InputParser<D> inputParser, int threads, int queueSize, long timeoutMillis) {
+    this.engine = new APTEDEngine<>(costModel);
+    this.inputParser = inputParser;
+    this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueSize));
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * Starts the server on the loopback address.
+   *
+   * @param port port to listen on, {@code 0} for any free port.
+   * @throws IOException if the server cannot be bound to the port.
+   */
+  public void start(int port) throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.createContext(PATH, this::handle);
+    connections = connectionExecutor();
+    server.setExecutor(connections);
+    server.start();
+  }
+
+  /**
+   * Returns the port the server listens on.
+   *
+   * @return port number.
+   */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * Stops the server. Running requests are completed, waiting for at most
+   * one second.
+   */
+  public void stop() {
+    server.stop(1);
+    server = null;
+    connections.shutdown();
+    workers.shutdown();
+  }
+
+  /**
+   * Returns an executor with a virtual thread per connection if the JVM
+   * supports it (Java 21), and a cached thread pool otherwise.
+   *
+   * @return executor for the connections.
+   */
+  private static ExecutorService connectionExecutor() {
+    try {
+      return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool();
+    }
+  }
+
+  /**
+   * Serves one request.
+   *
+   * @param exchange the request and its response.
+   * @throws IOException if the request cannot be read or the response
+   *                     cannot be written.
+   */
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      if (!exchange.getRequestMethod().equals("POST")) {
+        respond(exchange, 405, "Only POST is supported.");
+        return;
+      }
+      boolean mapping = false;
+      long timeout = timeoutMillis;
+      String query = exchange.getRequestURI().getQuery();
+      if (query != null) {
+        for (String parameter : query.split("&")) {
+          if (parameter.equals("mapping")) {
+            mapping = true;
+          } else if (parameter.startsWith("timeout=")) {
+            try {
+              timeout = Math.min(timeout, Long.parseLong(parameter.substring("timeout=".length())));
+            } catch (NumberFormatException e) {
+              respond(exchange, 400, "Wrong timeout.");
+              return;
+            }
+          }
+        }
+      }
+      // Parse the trees.
+      String[] lines = readBody(exchange.getRequestBody()).trim().split("\r?\n");
+      if (lines.length != 2) {
+        respond(exchange, 400, "Expected two trees, one per line.");
+        return;
+      }
+      Node<D> t1;
+      Node<D> t2;
+      try {
+        t1 = inputParser.fromString(lines[0]);
+        t2 = inputParser.fromString(lines[1]);
+      } catch (RuntimeException e) {
+        respond(exchange, 400, "The trees have wrong format.");
+        return;
+      }
+      // Compute the distance.
+      boolean computeMapping = mapping;
+      CancellationToken cancellation = new CancellationToken(timeout);
+      Future<String> result;
+      try {
+        result = workers.submit(() -> compute(t1, t2, computeMapping, cancellation));
+      } catch (RejectedExecutionException e) {
+        respond(exchange, 503, "Too many requests.");
+        return;
+      }
+      try {
+        respond(exchange, 200, result.get(timeout, TimeUnit.MILLISECONDS));
+      } catch (TimeoutException e) {
+        result.cancel(false);
+        cancellation.cancel();
+        respond(exchange, 504, "The request timed out.");
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof ComputationCancelledException) {
+          respond(exchange, 504, "The request timed out.");
+        } else {
+          respond(exchange, 500, "The computation failed: " + e.getCause());
+        }
+      } catch (InterruptedException e) {
+        result.cancel(false);
+        cancellation.cancel();
+        Thread.currentThread().interrupt();
+        respond(exchange, 503, "The server is stopping.");
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+  /**
+   * Computes the distance and, optionally, the edit mapping, and formats
+   * them as the response body.
+   *
+   * @param t1 source tree.
+   * @param t2 destination tree.
+   * @param mapping if the edit mapping is computed.
+   * @param cancellation token that stops the computation at the timeout.
+   * @return response body.
+   * @throws ComputationCancelledException if the request times out.
+   */
+  private String compute(Node<D> t1, Node<D> t2, boolean mapping, CancellationToken cancellation) {
+    APTEDResult<C, D> result = engine.computeEditDistance(t1, t2, cancellation);
+    StringBuilder response = new StringBuilder();
+    response.append(result.getDistance()).append('\n');
+    if (mapping) {
+      List<int[]> editMapping = result.computeEditMapping();
+      for (int[] nodeAlignment : editMapping) {
+        response.append(nodeAlignment[0]).append("->").append(nodeAlignment[1]).append('\n');
+      }
+    }
+    return response.toString();
+  }
+
+  /**
+   * Reads a request body as UTF-8 text.
+   *
+   * @param in the request body.
+   * @return the text of the body.
+   * @throws IOException if the body cannot be read.
+   */
+  private static String readBody(InputStream in) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int length;
+    while ((length = in.read(buffer)) != -1) {
+      body.write(buffer, 0, length);
+    }
+    return new String(body.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Sends a plain text response.
+   *
+   * @param exchange the request and its response.
+   * @param status HTTP status code.
+   * @param body response body.
+   * @throws IOException if the response cannot be written.
+   */
+  private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.distance;
+
+/**
+ * Row kernel of the forestdist arrays of {@link UnitCostAPTED}, in unit cost
+ * and integer arithmetic.
+ *
+ * <p>This is the version of the class for Java 17 and later in the
+ * multi-release JAR. It delegates to {@link VectorForestDistanceRows} if the
+ * {@code jdk.incubator.vector} module is resolved, e.g., with
+ * {@code --add-modules jdk.incubator.vector}. Otherwise, it uses the scalar
+ * kernel of Java 8.
+ */
+final class ForestDistanceRows {
+
+  /**
+   * Says if the incubating Vector API is available.
+   */
+  private static final boolean VECTOR_API = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+  private ForestDistanceRows() {
+  }
+
+  /**
+   * Fills in a row of a forestdist array with the minimum of deleting the
+   * node of the row, inserting the node of the column and renaming one to
+   * the other.
+   *
+   * @param row the row to be filled in. Its first cell holds the distance
+   *            with no nodes of the destination subforest. On input, each
+   *            other cell holds the cost of the rename without the cost of
+   *            the labels, i.e., the distance of the remaining subforests.
+   * @param prevRow the previous row of the forestdist array.
+   * @param cols number of cells after the first one.
+   * @param label label id of the node of the row.
+   * @param labels label id of the node of each column, at the index of the
+   *               column plus {@code labelOffset}.
+   * @param labelOffset offset of the label of each column in {@code labels}.
+   */
+  static void fillRow(int[] row, int[] prevRow, int cols, int label, int[] labels, int labelOffset) {
+    if (VECTOR_API) {
+      VectorForestDistanceRows.fillRow(row, prevRow, cols, label, labels, labelOffset);
+      return;
+    }
+    for (int j1 = 1; j1 <= cols; j1++) {
+      int da = prevRow[j1] + 1; // Delete the node of the row.
+      int db = row[j1 - 1] + 1; // Insert the node of the column.
+      int dc = row[j1] + (label == labels[j1 + labelOffset] ? 0 : 1); // Rename.
+      row[j1] = da >= db ? db >= dc ? dc : db : da >= dc ? dc : da;
+    }
+  }
+
+}
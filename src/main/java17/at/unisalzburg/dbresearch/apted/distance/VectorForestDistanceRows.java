@@ -0,0 +1,150 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package at.unisalzburg.dbresearch.apted.distance;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Row kernel of {@link ForestDistanceRows} with the incubating Vector API of
+ * Java 17 and later. It is loaded only if the {@code jdk.incubator.vector}
+ * module is resolved.
+ *
+ * <p>The deletions and the renames of a row are independent of each other
+ * and are computed one vector of cells at a time. The insertions depend on
+ * the previous cell of the row: {@code row[j] = min(row[j], row[j-1] + 1)}.
+ * Subtracting the column from each cell turns them into a running minimum,
+ * which is computed within a vector by a logarithmic number of shifts and
+ * carried from one vector to the next by the last cell.
+ */
+final class VectorForestDistanceRows {
+
+  /**
+   * The widest vector shape of the platform.
+   */
+  private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+  /**
+   * Number of lanes.
+   */
+  private static final int LENGTH = SPECIES.length();
+
+  /**
+   * Index of each lane.
+   */
+  private static final IntVector LANES = IntVector.zero(SPECIES).addIndex(1);
+
+  /**
+   * Index of each lane plus a bias that keeps the running maximum positive.
+   */
+  private static final IntVector BIASED_LANES = LANES.add(Integer.MAX_VALUE / 2);
+
+  /**
+   * Filled into the lanes that a shift empties.
+   */
+  private static final IntVector ZERO = IntVector.zero(SPECIES);
+
+  // Shifts of the running maximum by 1, 2, 4, ... lanes, and the lanes that
+  // they empty. The Vector API of Java 17 compiles shuffles and masks to
+  // permutations and blends only if they are constants.
+  private static final VectorShuffle<Integer> SHIFT_1 = VectorShuffle.iota(SPECIES, -1, 1, true);
+  private static final VectorShuffle<Integer> SHIFT_2 = VectorShuffle.iota(SPECIES, -2, 1, true);
+  private static final VectorShuffle<Integer> SHIFT_4 = VectorShuffle.iota(SPECIES, -4, 1, true);
+  private static final VectorShuffle<Integer> SHIFT_8 = VectorShuffle.iota(SPECIES, -8, 1, true);
+  private static final VectorShuffle<Integer> SHIFT_16 = VectorShuffle.iota(SPECIES, -16, 1, true);
+  private static final VectorShuffle<Integer> SHIFT_32 = VectorShuffle.iota(SPECIES, -32, 1, true);
+  private static final VectorMask<Integer> EMPTIED_1 = LANES.lt(1);
+  private static final VectorMask<Integer> EMPTIED_2 = LANES.lt(2);
+  private static final VectorMask<Integer> EMPTIED_4 = LANES.lt(4);
+  private static final VectorMask<Integer> EMPTIED_8 = LANES.lt(8);
+  private static final VectorMask<Integer> EMPTIED_16 = LANES.lt(16);
+  private static final VectorMask<Integer> EMPTIED_32 = LANES.lt(32);
+
+  private VectorForestDistanceRows() {
+  }
+
+  /**
+   * Fills in a row of a forestdist array. See
+   * {@link ForestDistanceRows#fillRow}.
+   *
+   * @param row the row to be filled in.
+   * @param prevRow the previous row of the forestdist array.
+   * @param cols number of cells after the first one.
+   * @param label label id of the node of the row.
+   * @param labels label id of the node of each column, at the index of the
+   *               column plus {@code labelOffset}.
+   * @param labelOffset offset of the label of each column in {@code labels}.
+   */
+  static void fillRow(int[] row, int[] prevRow, int cols, int label, int[] labels, int labelOffset) {
+    int j1 = 1;
+    for (; j1 <= cols - LENGTH + 1; j1 += LENGTH) {
+      IntVector da = IntVector.fromArray(SPECIES, prevRow, j1).add(1); // Delete.
+      VectorMask<Integer> sameLabel = IntVector.fromArray(SPECIES, labels, j1 + labelOffset).eq(label);
+      IntVector dc = IntVector.fromArray(SPECIES, row, j1).add(1, sameLabel.not()); // Rename.
+      // Insert, as the running minimum of the cells minus their lane, which
+      // is the bias minus the running maximum of the bias minus the cells
+      // plus their lane.
+      IntVector max = runningMax(BIASED_LANES.sub(da.min(dc)));
+      // Insert also after the last cell of the previous vector.
+      BIASED_LANES.sub(max).min(LANES.add(row[j1 - 1] + 1)).intoArray(row, j1);
+    }
+    for (; j1 <= cols; j1++) {
+      int da = prevRow[j1] + 1; // Delete the node of the row.
+      int db = row[j1 - 1] + 1; // Insert the node of the column.
+      int dc = row[j1] + (label == labels[j1 + labelOffset] ? 0 : 1); // Rename.
+      row[j1] = da >= db ? db >= dc ? dc : db : da >= dc ? dc : da;
+    }
+  }
+
+  /**
+   * Computes the running maximum of the lanes of a vector of non-negative
+   * numbers. It shifts the vector by 1, 2, 4, ... lanes, filling in zeros,
+   * and takes the maximum with the shifted vector.
+   *
+   * @param max vector of non-negative numbers.
+   * @return the maximum of the lanes up to each lane.
+   */
+  private static IntVector runningMax(IntVector max) {
+    max = max.max(max.rearrange(SHIFT_1).blend(ZERO, EMPTIED_1));
+    if (LENGTH > 2) {
+      max = max.max(max.rearrange(SHIFT_2).blend(ZERO, EMPTIED_2));
+    }
+    if (LENGTH > 4) {
+      max = max.max(max.rearrange(SHIFT_4).blend(ZERO, EMPTIED_4));
+    }
+    if (LENGTH > 8) {
+      max = max.max(max.rearrange(SHIFT_8).blend(ZERO, EMPTIED_8));
+    }
+    if (LENGTH > 16) {
+      max = max.max(max.rearrange(SHIFT_16).blend(ZERO, EMPTIED_16));
+    }
+    if (LENGTH > 32) {
+      max = max.max(max.rearrange(SHIFT_32).blend(ZERO, EMPTIED_32));
+    }
+    return max;
+  }
+
+}
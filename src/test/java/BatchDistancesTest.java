@@ -0,0 +1,117 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import at.unisalzburg.dbresearch.apted.costmodel.StringUnitCostModel;
+import at.unisalzburg.dbresearch.apted.distance.TEDLowerBounds;
+import at.unisalzburg.dbresearch.apted.node.StringNodeData;
+import at.unisalzburg.dbresearch.apted.parser.BracketStringInputParser;
+import at.unisalzburg.dbresearch.apted.util.BatchDistances;
+
+/**
+ * Unit tests of the batch computation of distances.
+ */
+public class BatchDistancesTest {
+
+  /**
+   * Input with numbered and identified pairs, an empty line and a line of
+   * wrong format.
+   */
+  private static final String INPUT =
+      "{a{b}{c}}\t{a{b{d}}}\n" +
+      "x\t{a}\t{b}\n" +
+      "\n" +
+      "{a}\n" +
+      "{a}\t{a}\n";
+
+  /**
+   * Runs a batch computation with two threads.
+   *
+   * @param ordered if the distances are written in the input order.
+   * @return the output and the error output, separated by a line with
+   *         {@code --}.
+   * @throws IOException if the input cannot be read.
+   */
+  private static String run(boolean ordered) throws IOException {
+    return run(new BatchDistances<>(new StringUnitCostModel(), new BracketStringInputParser(), 2, ordered));
+  }
+
+  /**
+   * Runs a batch computation on the input.
+   *
+   * @param batch the batch computation.
+   * @return the output and the error output, separated by a line with
+   *         {@code --}.
+   * @throws IOException if the input cannot be read.
+   */
+  private static String run(BatchDistances<StringUnitCostModel, StringNodeData> batch) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    batch.run(new BufferedReader(new StringReader(INPUT)), new PrintStream(out, true), new PrintStream(err, true));
+    return out.toString() + "--\n" + err.toString();
+  }
+
+  /**
+   * Compute the distances in the input order.
+   *
+   * @throws IOException if the input cannot be read.
+   */
+  @Test
+  public void inputOrder() throws IOException {
+    assertEquals("1\t2.0\nx\t1.0\n5\t0.0\n--\nLine 4 does not have two trees separated by a tab.\n", run(true).replace(System.lineSeparator(), "\n"));
+  }
+
+  /**
+   * Compute the distances up to a threshold in the input order. The first
+   * pair is filtered out by the degree histogram bound, the second exceeds
+   * the threshold while computed.
+   *
+   * @throws IOException if the input cannot be read.
+   */
+  @Test
+  public void threshold() throws IOException {
+    BatchDistances<StringUnitCostModel, StringNodeData> batch = new BatchDistances<>(new StringUnitCostModel(), new BracketStringInputParser(), 2, true, 0.5f, new TEDLowerBounds(1.0f));
+    assertEquals("1\t2.0\nx\t1.0\n5\t0.0\n--\nLine 4 does not have two trees separated by a tab.\n", run(batch).replace(System.lineSeparator(), "\n"));
+  }
+
+  /**
+   * Compute the distances in the order of completion.
+   *
+   * @throws IOException if the input cannot be read.
+   */
+  @Test
+  public void completionOrder() throws IOException {
+    String[] output = run(false).replace(System.lineSeparator(), "\n").split("--\n");
+    String[] distances = output[0].split("\n");
+    Arrays.sort(distances);
+    assertEquals("[1\t2.0, 5\t0.0, x\t1.0]", Arrays.toString(distances));
+    assertEquals("Line 4 does not have two trees separated by a tab.\n", output[1]);
+  }
+}
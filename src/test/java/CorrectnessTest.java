@@ -24,6 +24,10 @@
 import java.util.Collection;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinPool;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
@@ -33,11 +37,27 @@ import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameters;
 import com.google.gson.Gson;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import at.unisalzburg.dbresearch.apted.distance.APTED;
+import at.unisalzburg.dbresearch.apted.distance.APTEDEngine;
+import at.unisalzburg.dbresearch.apted.distance.APTEDResult;
+import at.unisalzburg.dbresearch.apted.distance.AllPairsAPTED;
+import at.unisalzburg.dbresearch.apted.distance.CancellationToken;
+import at.unisalzburg.dbresearch.apted.distance.ComputationCancelledException;
+import at.unisalzburg.dbresearch.apted.distance.DistanceMatrix;
+import at.unisalzburg.dbresearch.apted.distance.ResourceEstimate;
+import at.unisalzburg.dbresearch.apted.distance.TEDLowerBounds;
+import at.unisalzburg.dbresearch.apted.distance.TEDUpperBounds;
+import at.unisalzburg.dbresearch.apted.distance.UnitCostAPTED;
+import at.unisalzburg.dbresearch.apted.distance.Workspace;
 import at.unisalzburg.dbresearch.apted.parser.BracketStringInputParser;
 import at.unisalzburg.dbresearch.apted.node.Node;
+import at.unisalzburg.dbresearch.apted.node.NodeIndexer;
 import at.unisalzburg.dbresearch.apted.node.StringNodeData;
 import at.unisalzburg.dbresearch.apted.costmodel.StringUnitCostModel;
+import at.unisalzburg.dbresearch.apted.costmodel.StringUnitLabelIdCostModel;
+import at.unisalzburg.dbresearch.apted.costmodel.CachingRenameCostModel;
 
 /**
  * Correctness unit tests of distance and mapping computation.
@@ -248,6 +268,394 @@ public class CorrectnessTest {
     assertEquals(testCase.getD(), result);
   }
 
+  /**
+   * APTED instance shared by all test cases. Its workspace is reused across
+   * test cases of different sizes.
+   */
+  private static final APTED<StringUnitCostModel, StringNodeData> sharedApted = new APTED<>(new StringUnitCostModel(), new Workspace(64));
+
+  /**
+   * Compute TED for a single test case and compare to the correct value. Uses
+   * an APTED instance shared by all test cases to verify that reusing the
+   * arrays of a workspace does not affect the result.
+   *
+   * @see distance.Workspace
+   */
+  @Test
+  public void distanceUnitCostStringNodeDataCostModelSharedWorkspace() {
+    // Parse the input.
+    BracketStringInputParser parser = new BracketStringInputParser();
+    Node<StringNodeData> t1 = parser.fromString(testCase.getT1());
+    Node<StringNodeData> t2 = parser.fromString(testCase.getT2());
+    // This cast is safe due to unit cost.
+    int result = (int)sharedApted.computeEditDistance(t1, t2);
+    assertEquals(testCase.getD(), result);
+    // Verify the mapping computed with the reused arrays.
+    result = (int)sharedApted.mappingCost(sharedApted.computeEditMapping());
+    assertEquals(testCase.getD(), result);
+  }
+
+  /**
+   * Compute TED for a single test case and compare to the correct value. The
+   * off-heap threshold of the workspace is zero such that the distance matrix
+   * is always allocated off the heap.
+   *
+   * @see distance.OffHeapDeltaMatrix
+   */
+  @Test
+  public void distanceUnitCostStringNodeDataCostModelOffHeap() {
+    // Parse the input.
+    BracketStringInputParser parser = new BracketStringInputParser();
+    Node<StringNodeData> t1 = parser.fromString(testCase.getT1());
+    Node<StringNodeData> t2 = parser.fromString(testCase.getT2());
+    // Initialise APTED.
+    APTED<StringUnitCostModel, StringNodeData> apted = new APTED<>(new StringUnitCostModel(), new Workspace(Workspace.UNLIMITED, 0));
+    // This cast is safe due to unit cost.
+    int result = (int)apted.computeEditDistance(t1, t2);
+    assertEquals(testCase.getD(), result);
+    // Verify the mapping computed with the off-heap matrix.
+    result = (int)apted.mappingCost(apted.computeEditMapping());
+    assertEquals(testCase.getD(), result);
+  }
+
+  /**
+   * Estimate the resources for a single test case and verify that the
+   * estimate covers the distance matrix and does not affect the following
+   * distance computation.
+   *
+   * @see distance.ResourceEstimate
+   */
+  @Test
+  public void estimateUnitCostStringNodeDataCostModel() {
+    // Parse the input.
+    BracketStringInputParser parser = new BracketStringInputParser();
+    Node<StringNodeData> t1 = parser.fromString(testCase.getT1());
+    Node<StringNodeData> t2 = parser.fromString(testCase.getT2());
+    // Initialise APTED.
+    APTED<StringUnitCostModel, StringNodeData> apted = new APTED<>(new StringUnitCostModel());
+    ResourceEstimate estimate = apted.estimate(t1, t2);
+    assertTrue(estimate.getDeltaBytes() >= 4L * t1.getNodeCount() * t2.getNodeCount());
+    assertTrue(estimate.getPeakBytes() >= estimate.getDeltaBytes() + estimate.getStrategyBytes() + estimate.getDistanceBytes());
+    // This cast is safe due to unit cost.
+    int result = (int)apted.computeEditDistance(t1, t2);
+    assertEquals(testCase.getD(), result);
+    assertTrue(estimate.getSubproblems() >= apted.getSubproblemCount());
+  }
+
+  /**
+   * Compute TED for a single test case and compare to the correct value. Uses
+   * the unit cost model on label ids, with a label dictionary shared by both
+   * directions of the computation.
+   *
+   * @see costmodel.StringUnitLabelIdCostModel
+   */
+  @Test
+  public void distanceUnitCostLabelIdCostModel() {
+    // Parse the input.
+    BracketStringInputParser parser = new BracketStringInputParser();
+    Node<StringNodeData> t1 = parser.fromString(testCase.getT1());
+    Node<StringNodeData> t2 = parser.fromString(testCase.getT2());
+    // Initialise APTED.
+    APTED<StringUnitLabelIdCostModel, StringNodeData> apted = new APTED<>(new StringUnitLabelIdCostModel());
+    // This cast is safe due to unit cost.
+    int result = (int)apted.computeEditDistance(t1, t2);
+    assertEquals(testCase.getD(), result);
+    // Verify the mapping computed with label ids.
+    result = (int)apted.mappingCost(apted.computeEditMapping());
+    assertEquals(testCase.getD(), result);
+    // Verify the symmetric case.
+    result = (int)apted.computeEditDistance(t2, t1);
+    assertEquals(testCase.getD(), result);
+  }
+
+  /**
+   * Compute TED for a single test case and compare to the correct value. Uses
+   * the unit cost model on label ids decorated with a rename-cost cache, once
+   * with the default capacity and once with a capacity that forces the cache
+   * to be cleared.
+   *
+   * @see costmodel.CachingRenameCostModel
+   */
+  @Test
+  public void distanceCachingRenameCostModel() {
+    // Parse the input.
+    BracketStringInputParser parser = new BracketStringInputParser();
+    Node<StringNodeData> t1 = parser.fromString(testCase.getT1());
+    Node<StringNodeData> t2 = parser.fromString(testCase.getT2());
+    // Initialise APTED.
+    CachingRenameCostModel<StringNodeData> cache = new CachingRenameCostModel<>(new StringUnitLabelIdCostModel());
+    APTED<CachingRenameCostModel<StringNodeData>, StringNodeData> apted = new APTED<>(cache);
+    // This cast is safe due to unit cost.
+    int result = (int)apted.computeEditDistance(t1, t2);
+    assertEquals(testCase.getD(), result);
+    long misses = cache.getMisses();
+    assertTrue(misses > 0);
+    // The rename matrix of the same labels is reused from the workspace.
+    long hits = cache.getHits();
+    result = (int)apted.computeEditDistance(t1, t2);
+    assertEquals(testCase.getD(), result);
+    assertEquals(misses, cache.getMisses());
+    assertEquals(hits, cache.getHits());
+    // The same label pairs are found in the cache by another object.
+    result = (int)new APTED<CachingRenameCostModel<StringNodeData>, StringNodeData>(cache).computeEditDistance(t1, t2);
+    assertEquals(testCase.getD(), result);
+    assertEquals(misses, cache.getMisses());
+    assertTrue(cache.getHits() >= misses);
+    // Verify the mapping computed with the cache.
+    result = (int)apted.mappingCost(apted.computeEditMapping());
+    assertEquals(testCase.getD(), result);
+    // Verify the symmetric case with a cache of a single entry.
+    cache = new CachingRenameCostModel<>(new StringUnitLabelIdCostModel(), 1);
+    apted = new APTED<>(cache);
+    result = (int)apted.computeEditDistance(t2, t1);
+    assertEquals(testCase.getD(), result);
+  }
+
+  /**
+   * Compute TED and mapping for a single test case with the independent
+   * subproblems computed in parallel, and compare to the correct value. The
+   * parallel threshold of one pair of nodes forks every decomposition.
+   */
+  @Test
+  public void distanceParallelSubproblems() {
+    // Parse the input.
+    BracketStringInputParser parser = new BracketStringInputParser();
+    Node<StringNodeData> t1 = parser.fromString(testCase.getT1());
+    Node<StringNodeData> t2 = parser.fromString(testCase.getT2());
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      // Initialise APTED.
+      APTED<StringUnitCostModel, StringNodeData> apted = new APTED<>(new StringUnitCostModel(), new Workspace(), pool, 1L);
+      APTED<StringUnitCostModel, StringNodeData> sequential = new APTED<>(new StringUnitCostModel());
+      // This cast is safe due to unit cost.
+      int result = (int)apted.computeEditDistance(t1, t2);
+      assertEquals(testCase.getD(), result);
+      sequential.computeEditDistance(t1, t2);
+      assertEquals(sequential.getSubproblemCount(), apted.getSubproblemCount());
+      result = (int)apted.mappingCost(apted.computeEditMapping());
+      assertEquals(testCase.getD(), result);
+      // Verify the symmetric case.
+      result = (int)apted.computeEditDistance(t2, t1);
+      assertEquals(testCase.getD(), result);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Compute TED and mapping for a single test case with a cancellation token
+   * that is not cancelled, and compare to the correct value. Then, verify
+   * that a cancelled token stops the computation and leaves no mapping.
+   *
+   * @see distance.CancellationToken
+   */
+  @Test
+  public void distanceCancellation() {
+    // Parse the input.
+    BracketStringInputParser parser = new BracketStringInputParser();
+    Node<StringNodeData> t1 = parser.fromString(testCase.getT1());
+    Node<StringNodeData> t2 = parser.fromString(testCase.getT2());
+    // Initialise APTED.
+    APTED<StringUnitCostModel, StringNodeData> apted = new APTED<>(new StringUnitCostModel());
+    // This cast is safe due to unit cost.
+    int result = (int)apted.computeEditDistance(t1, t2, new CancellationToken(60000));
+    assertEquals(testCase.getD(), result);
+    result = (int)apted.mappingCost(apted.computeEditMapping());
+    assertEquals(testCase.getD(), result);
+    // Cancel the computation.
+    CancellationToken cancellation = new CancellationToken();
+    cancellation.cancel();
+    try {
+      apted.computeEditDistance(t1, t2, cancellation);
+      fail("The computation has not been cancelled.");
+    } catch (ComputationCancelledException e) {
+      // Expected.
+    }
+    try {
+      apted.computeEditMapping();
+      fail("The mapping of a cancelled computation has been computed.");
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+  }
+
+  /**
+   * Compute TED for a single test case with thresholds at and below the
+   * correct value, with the unit cost model on strings and on label ids.
+   * Verify that the distance is returned if it does not exceed the
+   * threshold, and a value greater than the threshold otherwise.
+   */
+  @Test
+  public void distanceThreshold() {
+    // Parse the input.
+    BracketStringInputParser parser = new BracketStringInputParser();
+    Node<StringNodeData> t1 = parser.fromString(testCase.getT1());
+    Node<StringNodeData> t2 = parser.fromString(testCase.getT2());
+    // Initialise APTED.
+    APTED<StringUnitCostModel, StringNodeData> apted = new APTED<>(new StringUnitCostModel());
+    APTED<StringUnitLabelIdCostModel, StringNodeData> aptedLabelId = new APTED<>(new StringUnitLabelIdCostModel());
+    int d = testCase.getD();
+    // This cast is safe due to unit cost.
+    assertEquals(d, (int)apted.computeEditDistance(t1, t2, d));
+    assertEquals(d, (int)apted.mappingCost(apted.computeEditMapping()));
+    assertEquals(d, (int)aptedLabelId.computeEditDistance(t2, t1, d));
+    if (d > 0) {
+      assertTrue(apted.computeEditDistance(t1, t2, d - 1) > d - 1);
+      assertTrue(aptedLabelId.computeEditDistance(t1, t2, d - 1) > d - 1);
+      assertTrue(aptedLabelId.computeEditDistance(t2, t1, d / 2) > d / 2);
+    }
+    // The threshold does not affect subsequent computations.
+    assertEquals(d, (int)apted.computeEditDistance(t1, t2));
+    // The rows of the forest distance arrays computed in parallel tiles.
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      APTED<StringUnitCostModel, StringNodeData> parallel = new APTED<>(new StringUnitCostModel(), new Workspace(), pool, 1L);
+      assertEquals(d, (int)parallel.computeEditDistance(t1, t2, d));
+      if (d > 0) {
+        assertTrue(parallel.computeEditDistance(t1, t2, d - 1) > d - 1);
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Compute TED and mapping for a single test case in both directions with
+   * one engine, concurrently, and compare to the correct value. Each result
+   * computes its own mapping regardless of the other computation.
+   *
+   * @see distance.APTEDEngine
+   */
+  @Test
+  public void distanceEngine() throws Exception {
+    // Parse the input.
+    BracketStringInputParser parser = new BracketStringInputParser();
+    final Node<StringNodeData> t1 = parser.fromString(testCase.getT1());
+    final Node<StringNodeData> t2 = parser.fromString(testCase.getT2());
+    // Initialise the engine.
+    final APTEDEngine<StringUnitCostModel, StringNodeData> engine = new APTEDEngine<>(new StringUnitCostModel());
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<APTEDResult<StringUnitCostModel, StringNodeData>> forward = executor.submit(() -> engine.computeEditDistance(t1, t2));
+      Future<APTEDResult<StringUnitCostModel, StringNodeData>> backward = executor.submit(() -> engine.computeEditDistance(t2, t1));
+      for (APTEDResult<StringUnitCostModel, StringNodeData> result : Arrays.asList(forward.get(), backward.get())) {
+        // This cast is safe due to unit cost.
+        assertEquals(testCase.getD(), (int)result.getDistance());
+        assertEquals(testCase.getD(), (int)result.mappingCost(result.computeEditMapping()));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Compute the distance matrix of the trees of a single test case, with the
+   * source tree twice, and compare to the correct value.
+   *
+   * @see distance.AllPairsAPTED
+   */
+  @Test
+  public void distanceMatrix() {
+    // Parse the input.
+    BracketStringInputParser parser = new BracketStringInputParser();
+    Node<StringNodeData> t1 = parser.fromString(testCase.getT1());
+    Node<StringNodeData> t2 = parser.fromString(testCase.getT2());
+    // Initialise the all-pairs algorithm.
+    AllPairsAPTED<StringUnitCostModel, StringNodeData> apted = new AllPairsAPTED<>(new StringUnitCostModel());
+    DistanceMatrix matrix = apted.computeDistanceMatrix(Arrays.asList(t1, t2, t1));
+    assertTrue(matrix.isSymmetric());
+    assertEquals(3, matrix.size());
+    // This cast is safe due to unit cost.
+    assertEquals(testCase.getD(), (int)matrix.get(0, 1));
+    assertEquals(testCase.getD(), (int)matrix.get(1, 0));
+    assertEquals(testCase.getD(), (int)matrix.get(2, 1));
+    assertEquals(0, (int)matrix.get(0, 2));
+    assertEquals(0, (int)matrix.get(1, 1));
+  }
+
+  /**
+   * Compute the lower bounds of TED for a single test case in both directions
+   * and verify that they do not exceed the correct value. Then, compute the
+   * distance matrix up to thresholds at and below the correct value with the
+   * pairs filtered by the lower bounds.
+   *
+   * @see distance.TEDLowerBounds
+   */
+  @Test
+  public void lowerBounds() {
+    // Parse the input.
+    BracketStringInputParser parser = new BracketStringInputParser();
+    Node<StringNodeData> t1 = parser.fromString(testCase.getT1());
+    Node<StringNodeData> t2 = parser.fromString(testCase.getT2());
+    // Compute the signatures with label ids.
+    StringUnitLabelIdCostModel costModel = new StringUnitLabelIdCostModel();
+    TEDLowerBounds.Signature s1 = new TEDLowerBounds.Signature(new NodeIndexer(t1, costModel));
+    TEDLowerBounds.Signature s2 = new TEDLowerBounds.Signature(new NodeIndexer(t2, costModel));
+    int d = testCase.getD();
+    for (TEDLowerBounds.Bound bound : Arrays.asList(TEDLowerBounds.SIZE, TEDLowerBounds.labels(1.0f), TEDLowerBounds.DEGREES, TEDLowerBounds.LEAF_DISTANCES)) {
+      assertTrue(bound.compute(s1, s2) <= d);
+      assertTrue(bound.compute(s2, s1) <= d);
+    }
+    TEDLowerBounds lowerBounds = new TEDLowerBounds(1.0f);
+    assertTrue(lowerBounds.lowerBound(s1, s2) <= d);
+    // Compute the distance matrix up to the thresholds.
+    AllPairsAPTED<StringUnitLabelIdCostModel, StringNodeData> apted = new AllPairsAPTED<>(costModel);
+    DistanceMatrix matrix = apted.computeDistanceMatrix(Arrays.asList(t1, t2), d, lowerBounds);
+    // This cast is safe due to unit cost.
+    assertEquals(d, (int)matrix.get(0, 1));
+    if (d > 0) {
+      matrix = apted.computeDistanceMatrix(Arrays.asList(t1, t2), d - 1, lowerBounds);
+      assertTrue(matrix.get(0, 1) > d - 1);
+    }
+  }
+
+  /**
+   * Compute the upper bounds of TED for a single test case and verify that
+   * they are not below the correct value, and that they are exact for equal
+   * trees.
+   *
+   * @see distance.TEDUpperBounds
+   */
+  @Test
+  public void upperBounds() {
+    // Parse the input.
+    BracketStringInputParser parser = new BracketStringInputParser();
+    Node<StringNodeData> t1 = parser.fromString(testCase.getT1());
+    Node<StringNodeData> t2 = parser.fromString(testCase.getT2());
+    StringUnitCostModel costModel = new StringUnitCostModel();
+    TEDUpperBounds<StringUnitCostModel, StringNodeData> upperBounds = new TEDUpperBounds<>(costModel);
+    NodeIndexer it1 = new NodeIndexer(t1, costModel);
+    NodeIndexer it2 = new NodeIndexer(t2, costModel);
+    int d = testCase.getD();
+    assertTrue(upperBounds.mappingCost(it1, it2, upperBounds.greedyMapping(it1, it2)) >= d);
+    assertTrue(upperBounds.mappingCost(it1, it2, upperBounds.constrainedMapping(it1, it2)) >= d);
+    assertTrue(upperBounds.upperBound(t2, t1) >= d);
+    // This cast is safe due to unit cost.
+    assertEquals(0, (int)upperBounds.upperBound(t1, t1));
+  }
+
+  /**
+   * Compute TED for a single test case with the integer unit-cost engine and
+   * compare to the correct value. Uses node labels with a single string value
+   * mapped to label ids.
+   *
+   * @see distance.UnitCostAPTED
+   */
+  @Test
+  public void distanceUnitCostAPTED() {
+    // Parse the input.
+    BracketStringInputParser parser = new BracketStringInputParser();
+    Node<StringNodeData> t1 = parser.fromString(testCase.getT1());
+    Node<StringNodeData> t2 = parser.fromString(testCase.getT2());
+    // Initialise the unit-cost engine.
+    UnitCostAPTED<StringUnitLabelIdCostModel, StringNodeData> apted = new UnitCostAPTED<>(new StringUnitLabelIdCostModel());
+    int result = apted.computeEditDistance(t1, t2);
+    assertEquals(testCase.getD(), result);
+    // Verify the symmetric case.
+    result = apted.computeEditDistance(t2, t1);
+    assertEquals(testCase.getD(), result);
+  }
+
   // IDEA: Write test that triggers spf_A for each subtree pair - disallow
   //       using spf_L and spf_R.
 
@@ -0,0 +1,120 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import at.unisalzburg.dbresearch.apted.costmodel.StringUnitCostModel;
+import at.unisalzburg.dbresearch.apted.costmodel.StringUnitLabelIdCostModel;
+import at.unisalzburg.dbresearch.apted.distance.APTED;
+import at.unisalzburg.dbresearch.apted.distance.CancellationToken;
+import at.unisalzburg.dbresearch.apted.distance.ComputationCancelledException;
+import at.unisalzburg.dbresearch.apted.distance.UnitCostAPTED;
+import at.unisalzburg.dbresearch.apted.node.Node;
+import at.unisalzburg.dbresearch.apted.node.StringNodeData;
+
+/**
+ * Unit tests of distance and mapping computation for trees whose depth
+ * exceeds what a recursive traversal can handle with the default thread
+ * stack size.
+ */
+public class DeepTreeTest {
+
+  /**
+   * Depth of the deep input tree.
+   */
+  private static final int DEPTH = 20000;
+
+  /**
+   * Builds a path-shaped tree, each node with a single child.
+   *
+   * @param labels labels of the nodes from the root to the leaf.
+   * @return the root of the tree.
+   */
+  private static Node<StringNodeData> chain(String... labels) {
+    Node<StringNodeData> root = new Node<>(new StringNodeData(labels[0]));
+    Node<StringNodeData> node = root;
+    for (int i = 1; i < labels.length; i++) {
+      Node<StringNodeData> child = new Node<>(new StringNodeData(labels[i]));
+      node.addChild(child);
+      node = child;
+    }
+    return root;
+  }
+
+  /**
+   * Builds a path-shaped tree of {@link #DEPTH} nodes with label {@code a}.
+   *
+   * @return the root of the tree.
+   */
+  private static Node<StringNodeData> deepChain() {
+    String[] labels = new String[DEPTH];
+    Arrays.fill(labels, "a");
+    return chain(labels);
+  }
+
+  /**
+   * Compute TED and mapping between a deep and a small tree. Both trees are
+   * paths, hence the nodes of the small tree are mapped and the remaining
+   * nodes of the deep tree are deleted.
+   */
+  @Test
+  public void deepTree() {
+    Node<StringNodeData> t1 = deepChain();
+    Node<StringNodeData> t2 = chain("a", "b", "a");
+    APTED<StringUnitCostModel, StringNodeData> apted = new APTED<>(new StringUnitCostModel());
+    // This cast is safe due to unit cost.
+    int result = (int)apted.computeEditDistance(t1, t2);
+    assertEquals(DEPTH - 2, result);
+    result = (int)apted.mappingCost(apted.computeEditMapping());
+    assertEquals(DEPTH - 2, result);
+    // Verify the symmetric case.
+    result = (int)apted.computeEditDistance(t2, t1);
+    assertEquals(DEPTH - 2, result);
+  }
+
+  /**
+   * Stop the computation between a deep and a small tree at a deadline that
+   * has already passed.
+   */
+  @Test(expected = ComputationCancelledException.class)
+  public void deepTreeDeadline() {
+    Node<StringNodeData> t1 = deepChain();
+    Node<StringNodeData> t2 = chain("a", "b", "a");
+    APTED<StringUnitCostModel, StringNodeData> apted = new APTED<>(new StringUnitCostModel());
+    apted.computeEditDistance(t1, t2, new CancellationToken(0));
+  }
+
+  /**
+   * Compute TED between a deep and a small tree with the integer unit-cost
+   * engine.
+   */
+  @Test
+  public void deepTreeUnitCostAPTED() {
+    Node<StringNodeData> t1 = deepChain();
+    Node<StringNodeData> t2 = chain("a", "b", "a");
+    UnitCostAPTED<StringUnitLabelIdCostModel, StringNodeData> apted = new UnitCostAPTED<>(new StringUnitLabelIdCostModel());
+    assertEquals(DEPTH - 2, apted.computeEditDistance(t1, t2));
+    assertEquals(DEPTH - 2, apted.computeEditDistance(t2, t1));
+  }
+}
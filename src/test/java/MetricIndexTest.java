@@ -0,0 +1,145 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import at.unisalzburg.dbresearch.apted.costmodel.StringUnitCostModel;
+import at.unisalzburg.dbresearch.apted.costmodel.StringUnitLabelIdCostModel;
+import at.unisalzburg.dbresearch.apted.distance.APTED;
+import at.unisalzburg.dbresearch.apted.distance.BKTree;
+import at.unisalzburg.dbresearch.apted.distance.SearchResult;
+import at.unisalzburg.dbresearch.apted.distance.VPTree;
+import at.unisalzburg.dbresearch.apted.node.Node;
+import at.unisalzburg.dbresearch.apted.node.StringNodeData;
+
+/**
+ * Unit tests of the metric indexes over trees. The results of the queries
+ * are compared to the distances to all trees.
+ */
+public class MetricIndexTest {
+
+  /**
+   * Number of trees in an index.
+   */
+  private static final int TREES = 300;
+
+  /**
+   * Number of distinct labels of the random trees.
+   */
+  private static final int ALPHABET = 3;
+
+  /**
+   * Generates the trees of an index, with some duplicates.
+   *
+   * @param random the random number generator.
+   * @return the trees.
+   */
+  private static List<Node<StringNodeData>> randomTrees(Random random) {
+    List<Node<StringNodeData>> trees = new ArrayList<>();
+    for (int i = 0; i < TREES; i++) {
+      trees.add(i % 10 == 9 ? trees.get(random.nextInt(i)) : RandomTrees.randomTree(random, ALPHABET));
+    }
+    return trees;
+  }
+
+  /**
+   * Verifies the result of a query against the sorted distances to all
+   * trees.
+   *
+   * @param result the result of the query.
+   * @param distances the sorted distances to all trees.
+   * @param expectedSize the expected number of trees found.
+   * @param apted algorithm object to verify the distances of the trees found.
+   * @param query the query tree.
+   * @param trees the trees of the index.
+   */
+  private static void verify(SearchResult result, float[] distances, int expectedSize, APTED<StringUnitCostModel, StringNodeData> apted, Node<StringNodeData> query, List<Node<StringNodeData>> trees) {
+    assertEquals(expectedSize, result.size());
+    for (int rank = 0; rank < result.size(); rank++) {
+      assertEquals(distances[rank], result.getDistance(rank), 0.0f);
+      assertEquals(result.getDistance(rank), apted.computeEditDistance(query, trees.get(result.getId(rank))), 0.0f);
+    }
+    assertEquals(TREES, result.getComputedCount() + result.getPrunedCount());
+  }
+
+  /**
+   * Answer nearest-neighbour and range queries with both indexes and compare
+   * to the distances to all trees.
+   */
+  @Test
+  public void queries() {
+    Random random = new Random(42);
+    List<Node<StringNodeData>> trees = randomTrees(random);
+    VPTree<StringUnitCostModel, StringNodeData> vpTree = new VPTree<>(new StringUnitCostModel(), trees);
+    BKTree<StringUnitLabelIdCostModel, StringNodeData> bkTree = new BKTree<>(new StringUnitLabelIdCostModel(), trees);
+    assertEquals(TREES, vpTree.size());
+    assertEquals(TREES, bkTree.size());
+    APTED<StringUnitCostModel, StringNodeData> apted = new APTED<>(new StringUnitCostModel());
+    int pruned = 0;
+    for (int q = 0; q < 20; q++) {
+      Node<StringNodeData> query = q % 2 == 0 ? trees.get(random.nextInt(TREES)) : RandomTrees.randomTree(random, ALPHABET);
+      float[] distances = new float[TREES];
+      for (int id = 0; id < TREES; id++) {
+        distances[id] = apted.computeEditDistance(query, trees.get(id));
+      }
+      Arrays.sort(distances);
+      for (int k : new int[] {1, 5, 20}) {
+        verify(vpTree.nearest(query, k), distances, k, apted, query, trees);
+        verify(bkTree.nearest(query, k), distances, k, apted, query, trees);
+        pruned += bkTree.nearest(query, k).getPrunedCount();
+      }
+      for (int radius : new int[] {0, 2, 5}) {
+        int expectedSize = 0;
+        while (expectedSize < TREES && distances[expectedSize] <= radius) {
+          expectedSize++;
+        }
+        verify(vpTree.range(query, radius), distances, expectedSize, apted, query, trees);
+        verify(bkTree.range(query, radius), distances, expectedSize, apted, query, trees);
+      }
+    }
+    assertTrue(pruned > 0);
+  }
+
+  /**
+   * Index many copies of a single tree, which makes a deep BK-tree, and find
+   * them.
+   */
+  @Test
+  public void duplicates() {
+    Random random = new Random(7);
+    List<Node<StringNodeData>> trees = Collections.nCopies(TREES, RandomTrees.randomTree(random, ALPHABET));
+    BKTree<StringUnitLabelIdCostModel, StringNodeData> bkTree = new BKTree<>(new StringUnitLabelIdCostModel(), trees);
+    VPTree<StringUnitCostModel, StringNodeData> vpTree = new VPTree<>(new StringUnitCostModel(), trees);
+    assertEquals(TREES, bkTree.range(trees.get(0), 0).size());
+    assertEquals(TREES, vpTree.range(trees.get(0), 0).size());
+    SearchResult result = bkTree.nearest(trees.get(0), 3);
+    assertEquals(0, result.getId(0));
+    assertEquals(2, result.getId(2));
+  }
+}
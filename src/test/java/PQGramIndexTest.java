@@ -0,0 +1,119 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import at.unisalzburg.dbresearch.apted.costmodel.StringUnitLabelIdCostModel;
+import at.unisalzburg.dbresearch.apted.distance.APTED;
+import at.unisalzburg.dbresearch.apted.distance.PQGramIndex;
+import at.unisalzburg.dbresearch.apted.distance.PQGramProfile;
+import at.unisalzburg.dbresearch.apted.distance.SearchResult;
+import at.unisalzburg.dbresearch.apted.node.Node;
+import at.unisalzburg.dbresearch.apted.node.NodeIndexer;
+import at.unisalzburg.dbresearch.apted.node.StringNodeData;
+import at.unisalzburg.dbresearch.apted.parser.BracketStringInputParser;
+
+/**
+ * Unit tests of the pq-gram profiles and of the pq-gram index.
+ */
+public class PQGramIndexTest {
+
+  /**
+   * Number of trees in an index.
+   */
+  private static final int TREES = 300;
+
+  /**
+   * Number of distinct labels of the random trees.
+   */
+  private static final int ALPHABET = 4;
+
+  /**
+   * Compute the profiles of small trees and their distances.
+   */
+  @Test
+  public void profiles() {
+    StringUnitLabelIdCostModel costModel = new StringUnitLabelIdCostModel();
+    BracketStringInputParser parser = new BracketStringInputParser();
+    // Four pq-grams of the root with bases **b, *bc, bc*, c**, and one of
+    // each leaf with base ***.
+    PQGramProfile abc = new PQGramProfile(new NodeIndexer(parser.fromString("{a{b}{c}}"), costModel));
+    assertEquals(6, abc.size());
+    PQGramProfile copy = new PQGramProfile(new NodeIndexer(parser.fromString("{a{b}{c}}"), costModel));
+    assertEquals(0.0f, abc.distance(copy), 0.0f);
+    PQGramProfile other = new PQGramProfile(new NodeIndexer(parser.fromString("{x{y}}"), costModel));
+    assertEquals(1.0f, abc.distance(other), 0.0f);
+    Random random = new Random(5);
+    for (int i = 0; i < 100; i++) {
+      PQGramProfile profile1 = new PQGramProfile(new NodeIndexer(RandomTrees.randomTree(random, ALPHABET), costModel));
+      PQGramProfile profile2 = new PQGramProfile(new NodeIndexer(RandomTrees.randomTree(random, ALPHABET), costModel));
+      float distance = profile1.distance(profile2);
+      assertEquals(distance, profile2.distance(profile1), 0.0f);
+      assertTrue(distance >= 0.0f && distance <= 1.0f);
+    }
+  }
+
+  /**
+   * Query an index with members and other trees. Compare the candidates to
+   * the pq-gram distances and the nearest trees to the tree edit distances.
+   */
+  @Test
+  public void candidatesAndNearest() {
+    Random random = new Random(42);
+    StringUnitLabelIdCostModel costModel = new StringUnitLabelIdCostModel();
+    List<Node<StringNodeData>> trees = new ArrayList<>();
+    for (int i = 0; i < TREES; i++) {
+      trees.add(RandomTrees.randomTree(random, ALPHABET));
+    }
+    PQGramIndex<StringUnitLabelIdCostModel, StringNodeData> index = new PQGramIndex<>(costModel, trees);
+    assertEquals(TREES, index.size());
+    APTED<StringUnitLabelIdCostModel, StringNodeData> apted = new APTED<>(costModel);
+    for (int i = 0; i < 40; i++) {
+      Node<StringNodeData> query = i % 2 == 0 ? trees.get(random.nextInt(TREES)) : RandomTrees.randomTree(random, ALPHABET);
+      PQGramProfile queryProfile = new PQGramProfile(new NodeIndexer(query, costModel));
+      SearchResult candidates = index.candidates(query, 10);
+      assertTrue(candidates.size() <= 10);
+      assertEquals(TREES, candidates.getComputedCount() + candidates.getPrunedCount());
+      for (int rank = 0; rank < candidates.size(); rank++) {
+        PQGramProfile profile = new PQGramProfile(new NodeIndexer(index.get(candidates.getId(rank)), costModel));
+        assertEquals(queryProfile.distance(profile), candidates.getDistance(rank), 0.0f);
+        assertTrue(candidates.getDistance(rank) < 1.0f);
+        assertTrue(rank == 0 || candidates.getDistance(rank - 1) <= candidates.getDistance(rank));
+      }
+      SearchResult nearest = index.nearest(query, 3, 20);
+      assertEquals(TREES, nearest.getComputedCount() + nearest.getPrunedCount());
+      for (int rank = 0; rank < nearest.size(); rank++) {
+        assertEquals(apted.computeEditDistance(query, index.get(nearest.getId(rank))), nearest.getDistance(rank), 0.0f);
+        assertTrue(rank == 0 || nearest.getDistance(rank - 1) <= nearest.getDistance(rank));
+      }
+      if (i % 2 == 0) {
+        assertEquals(0.0f, candidates.getDistance(0), 0.0f);
+        assertEquals(0.0f, nearest.getDistance(0), 0.0f);
+      }
+    }
+  }
+}
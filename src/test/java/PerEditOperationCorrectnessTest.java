@@ -34,12 +34,16 @@ import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameters;
 import com.google.gson.Gson;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import at.unisalzburg.dbresearch.apted.distance.APTED;
 import at.unisalzburg.dbresearch.apted.distance.AllPossibleMappingsTED;
+import at.unisalzburg.dbresearch.apted.distance.AllPairsAPTED;
+import at.unisalzburg.dbresearch.apted.distance.DistanceMatrix;
 import at.unisalzburg.dbresearch.apted.parser.BracketStringInputParser;
 import at.unisalzburg.dbresearch.apted.node.Node;
 import at.unisalzburg.dbresearch.apted.node.StringNodeData;
 import at.unisalzburg.dbresearch.apted.costmodel.PerEditOperationStringNodeDataCostModel;
+import at.unisalzburg.dbresearch.apted.costmodel.PerEditOperationLabelIdCostModel;
 
 /**
  * Correctness unit tests of distance computation for node labels with a single
@@ -190,4 +194,50 @@ public class PerEditOperationCorrectnessTest {
     assertEquals(correctResult, result, 0.0001);
   }
 
+  /**
+   * Compute TED for a single test case with the label id variant of the
+   * per-edit-operation cost model and compare to the value computed with
+   * string labels.
+   *
+   * @see costmodel.PerEditOperationLabelIdCostModel
+   */
+  @Test
+  public void distancePerEditOperationLabelIdCostModel() {
+    // Parse the input.
+    BracketStringInputParser parser = new BracketStringInputParser();
+    Node<StringNodeData> t1 = parser.fromString(testCase.getT1());
+    Node<StringNodeData> t2 = parser.fromString(testCase.getT2());
+    // Initialise algorithms.
+    APTED<PerEditOperationLabelIdCostModel, StringNodeData> apted = new APTED<>(new PerEditOperationLabelIdCostModel(0.4f, 0.4f, 0.6f));
+    AllPossibleMappingsTED<PerEditOperationStringNodeDataCostModel, StringNodeData> apmted = new AllPossibleMappingsTED<>(new PerEditOperationStringNodeDataCostModel(0.4f, 0.4f, 0.6f));
+    // Calculate distances using both algorithms.
+    float result = apted.computeEditDistance(t1, t2);
+    float correctResult = apmted.computeEditDistance(t1, t2);
+    assertEquals(correctResult, result, 0.0001);
+  }
+
+  /**
+   * Compute the distance matrix of the trees of a single test case with an
+   * asymmetric per-edit-operation cost model on label ids and compare to the
+   * values computed for each pair of trees.
+   *
+   * @see distance.AllPairsAPTED
+   */
+  @Test
+  public void distanceMatrixPerEditOperationLabelIdCostModel() {
+    // Parse the input.
+    BracketStringInputParser parser = new BracketStringInputParser();
+    Node<StringNodeData> t1 = parser.fromString(testCase.getT1());
+    Node<StringNodeData> t2 = parser.fromString(testCase.getT2());
+    // Initialise algorithms.
+    PerEditOperationLabelIdCostModel costModel = new PerEditOperationLabelIdCostModel(0.4f, 0.7f, 0.6f);
+    AllPairsAPTED<PerEditOperationLabelIdCostModel, StringNodeData> allPairs = new AllPairsAPTED<>(costModel);
+    AllPossibleMappingsTED<PerEditOperationStringNodeDataCostModel, StringNodeData> apmted = new AllPossibleMappingsTED<>(new PerEditOperationStringNodeDataCostModel(0.4f, 0.7f, 0.6f));
+    // Calculate distances using both algorithms.
+    DistanceMatrix matrix = allPairs.computeDistanceMatrix(Arrays.asList(t1, t2));
+    assertFalse(matrix.isSymmetric());
+    assertEquals(apmted.computeEditDistance(t1, t2), matrix.get(0, 1), 0.0001);
+    assertEquals(apmted.computeEditDistance(t2, t1), matrix.get(1, 0), 0.0001);
+  }
+
 }
@@ -0,0 +1,56 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import at.unisalzburg.dbresearch.apted.node.Node;
+import at.unisalzburg.dbresearch.apted.node.StringNodeData;
+
+/**
+ * Generates random trees for the tests of the search structures.
+ */
+public class RandomTrees {
+
+  /**
+   * Generates a random tree of at most 15 nodes. Every node is attached to a
+   * random earlier node, and its label is one of the first letters of the
+   * alphabet.
+   *
+   * @param random the random number generator.
+   * @param alphabetSize the number of distinct labels, at most 26.
+   * @return the root of the tree.
+   */
+  public static Node<StringNodeData> randomTree(Random random, int alphabetSize) {
+    int size = 1 + random.nextInt(15);
+    List<Node<StringNodeData>> nodes = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      Node<StringNodeData> node = new Node<>(new StringNodeData(Character.toString((char)('a' + random.nextInt(alphabetSize)))));
+      if (i > 0) {
+        nodes.get(random.nextInt(i)).addChild(node);
+      }
+      nodes.add(node);
+    }
+    return nodes.get(0);
+  }
+}
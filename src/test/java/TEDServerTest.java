@@ -0,0 +1,123 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import static org.junit.Assert.assertEquals;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import at.unisalzburg.dbresearch.apted.costmodel.StringUnitCostModel;
+import at.unisalzburg.dbresearch.apted.node.StringNodeData;
+import at.unisalzburg.dbresearch.apted.parser.BracketStringInputParser;
+import at.unisalzburg.dbresearch.apted.util.TEDServer;
+
+/**
+ * Unit tests of the distance server.
+ */
+public class TEDServerTest {
+
+  /**
+   * The server under test, on a free port.
+   */
+  private TEDServer<StringUnitCostModel, StringNodeData> server;
+
+  /**
+   * Starts the server.
+   *
+   * @throws IOException if the server cannot be started.
+   */
+  @Before
+  public void startServer() throws IOException {
+    server = new TEDServer<>(new StringUnitCostModel(), new BracketStringInputParser(), 2, 4, 10000);
+    server.start(0);
+  }
+
+  /**
+   * Stops the server.
+   */
+  @After
+  public void stopServer() {
+    server.stop();
+  }
+
+  /**
+   * Sends a request to the server.
+   *
+   * @param method HTTP method.
+   * @param query query of the request, or empty.
+   * @param body request body, or {@code null}.
+   * @return the status code and the response body, separated by a space.
+   * @throws IOException if the request fails.
+   */
+  private String request(String method, String query, String body) throws IOException {
+    URL url = new URL("http://localhost:" + server.getPort() + TEDServer.PATH + query);
+    HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+    connection.setRequestMethod(method);
+    if (body != null) {
+      connection.setDoOutput(true);
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(body.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    int status = connection.getResponseCode();
+    InputStream in = status == 200 ? connection.getInputStream() : connection.getErrorStream();
+    ByteArrayOutputStream response = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    int length;
+    while ((length = in.read(buffer)) != -1) {
+      response.write(buffer, 0, length);
+    }
+    in.close();
+    return status + " " + new String(response.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Compute the distance and the mapping of a pair of trees.
+   *
+   * @throws IOException if the request fails.
+   */
+  @Test
+  public void distance() throws IOException {
+    assertEquals("200 2.0\n", request("POST", "", "{a{b}{c}}\n{a{b{d}}}\n"));
+    assertEquals("200 2.0\n0->1\n1->2\n2->0\n3->3\n", request("POST", "?mapping", "{a{b}{c}}\n{a{b{d}}}"));
+  }
+
+  /**
+   * Reject malformed requests.
+   *
+   * @throws IOException if the request fails.
+   */
+  @Test
+  public void wrongRequests() throws IOException {
+    assertEquals(405, Integer.parseInt(request("GET", "", null).split(" ")[0]));
+    assertEquals(400, Integer.parseInt(request("POST", "", "{a{b}{c}}").split(" ")[0]));
+    assertEquals(400, Integer.parseInt(request("POST", "", "a\nb").split(" ")[0]));
+    assertEquals(400, Integer.parseInt(request("POST", "?timeout=x", "{a}\n{b}").split(" ")[0]));
+  }
+}
@@ -0,0 +1,102 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import at.unisalzburg.dbresearch.apted.costmodel.StringUnitLabelIdCostModel;
+import at.unisalzburg.dbresearch.apted.distance.APTED;
+import at.unisalzburg.dbresearch.apted.distance.SearchResult;
+import at.unisalzburg.dbresearch.apted.distance.TEDLowerBounds;
+import at.unisalzburg.dbresearch.apted.distance.TreeCollection;
+import at.unisalzburg.dbresearch.apted.node.Node;
+import at.unisalzburg.dbresearch.apted.node.StringNodeData;
+import at.unisalzburg.dbresearch.apted.parser.BracketStringInputParser;
+
+/**
+ * Unit tests of the nearest-tree search in a collection of trees.
+ */
+public class TreeCollectionTest {
+
+  /**
+   * The trees of the collection.
+   */
+  private static final String[] TREES = {
+      "{a}",
+      "{a{b}{c}}",
+      "{a{b{d}}}",
+      "{a{b}{c}{d}}",
+      "{x{y{z}}}",
+      "{a{b{c{d{e}}}}}",
+      "{f{g}{h}{i}{j}{k}{l}}",
+      "{a{b}{c{d}{e}}}",
+      "{b{a}{c}}",
+      "{a{b}{c}{d}{e}{f}{g}{h}}",
+      "{m{n{o}{p}}{q{r}{s}}}",
+      "{a{c}{b}}"
+  };
+
+  /**
+   * Find the nearest trees to each tree of the collection and to a tree
+   * outside it, and compare their distances to the sorted distances to all
+   * trees.
+   */
+  @Test
+  public void nearest() {
+    BracketStringInputParser parser = new BracketStringInputParser();
+    StringUnitLabelIdCostModel costModel = new StringUnitLabelIdCostModel();
+    TreeCollection<StringUnitLabelIdCostModel, StringNodeData> collection = new TreeCollection<>(costModel, new TEDLowerBounds(1.0f));
+    List<Node<StringNodeData>> trees = new ArrayList<>();
+    for (String tree : TREES) {
+      trees.add(parser.fromString(tree));
+      assertEquals(trees.size() - 1, collection.add(trees.get(trees.size() - 1)));
+    }
+    assertEquals(TREES.length, collection.size());
+    List<Node<StringNodeData>> queries = new ArrayList<>(trees);
+    queries.add(parser.fromString("{a{b}{x}{d}}"));
+    APTED<StringUnitLabelIdCostModel, StringNodeData> apted = new APTED<>(costModel);
+    for (Node<StringNodeData> query : queries) {
+      float[] distances = new float[TREES.length];
+      for (int id = 0; id < TREES.length; id++) {
+        distances[id] = apted.computeEditDistance(query, collection.get(id));
+      }
+      Arrays.sort(distances);
+      for (int k : new int[] {1, 3, TREES.length + 1}) {
+        SearchResult result = collection.nearest(query, k);
+        assertEquals(Math.min(k, TREES.length), result.size());
+        for (int rank = 0; rank < result.size(); rank++) {
+          assertEquals(distances[rank], result.getDistance(rank), 0.0f);
+          assertEquals(result.getDistance(rank), apted.computeEditDistance(query, collection.get(result.getId(rank))), 0.0f);
+        }
+        assertEquals(TREES.length, result.getComputedCount() + result.getPrunedCount());
+      }
+    }
+    // Equal trees are found first, and distant trees are not computed.
+    SearchResult result = collection.nearest(trees.get(6), 1);
+    assertEquals(6, result.getId(0));
+    assertTrue(result.getPrunedCount() > 0);
+  }
+}
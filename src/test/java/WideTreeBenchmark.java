@@ -0,0 +1,117 @@
+/* MIT License
+ *
+ * Copyright (c) 2017 Mateusz Pawlik
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import at.unisalzburg.dbresearch.apted.costmodel.StringUnitLabelIdCostModel;
+import at.unisalzburg.dbresearch.apted.distance.UnitCostAPTED;
+import at.unisalzburg.dbresearch.apted.node.Node;
+import at.unisalzburg.dbresearch.apted.node.StringNodeData;
+
+/**
+ * Measures {@link UnitCostAPTED} on wide and shallow trees, such as the trees
+ * of HTML pages, whose forestdist arrays have long rows. It compares the row
+ * kernels of the multi-release JAR: the scalar kernel of Java 8 and the
+ * Vector API kernel of Java 17 and later.
+ *
+ * <p>It is not a unit test. Run it twice with the test classes and the JAR
+ * built by {@code gradle jar}, which must be on the class path for its Java 17
+ * classes to be used, once for each kernel:
+ * <pre>
+ * java -cp build/libs/apted.jar:build/classes/java/test WideTreeBenchmark [size] [width] [repetitions]
+ * java --add-modules jdk.incubator.vector -cp build/libs/apted.jar:build/classes/java/test WideTreeBenchmark [size] [width] [repetitions]
+ * </pre>
+ * where {@code size} is the number of nodes of each tree (default 4000),
+ * {@code width} is the number of nodes that may be parents (default 5), and
+ * {@code repetitions} is the number of measured computations (default 10),
+ * which follow as many computations to warm up.
+ */
+public class WideTreeBenchmark {
+
+  /**
+   * Builds a random tree whose nodes are children of one of the first nodes.
+   *
+   * @param random source of randomness.
+   * @param size number of nodes.
+   * @param width number of the first nodes that may be parents.
+   * @return the root of the tree.
+   */
+  private static Node<StringNodeData> wideTree(Random random, int size, int width) {
+    List<Node<StringNodeData>> nodes = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      Node<StringNodeData> node = new Node<>(new StringNodeData(Integer.toString(random.nextInt(20))));
+      if (i > 0) {
+        nodes.get(random.nextInt(Math.min(i, width))).addChild(node);
+      }
+      nodes.add(node);
+    }
+    return nodes.get(0);
+  }
+
+  /**
+   * Says if the incubating Vector API is available, in which case the row
+   * kernel of the multi-release JAR uses it on Java 17 and later.
+   *
+   * @return {@code true} if the module {@code jdk.incubator.vector} is
+   *         resolved.
+   */
+  private static boolean isVectorApiAvailable() {
+    try {
+      Class.forName("jdk.incubator.vector.IntVector");
+      return true;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Runs the benchmark and prints the time of each measured computation and
+   * their median.
+   *
+   * @param args tree size, width and number of repetitions.
+   */
+  public static void main(String[] args) {
+    int size = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+    int width = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+    int repetitions = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+    System.out.println("Row kernel: " + (isVectorApiAvailable() ? "Vector API" : "scalar"));
+    Random random = new Random(1);
+    Node<StringNodeData> t1 = wideTree(random, size, width);
+    Node<StringNodeData> t2 = wideTree(random, size, width);
+    UnitCostAPTED<StringUnitLabelIdCostModel, StringNodeData> apted = new UnitCostAPTED<>(new StringUnitLabelIdCostModel());
+    long[] times = new long[repetitions];
+    for (int r = -repetitions; r < repetitions; r++) {
+      long start = System.nanoTime();
+      int distance = apted.computeEditDistance(t1, t2);
+      long time = (System.nanoTime() - start) / 1000000;
+      if (r >= 0) {
+        times[r] = time;
+        System.out.println("Distance " + distance + " in " + time + " ms");
+      }
+    }
+    Arrays.sort(times);
+    System.out.println("Median: " + times[repetitions / 2] + " ms");
+  }
+}